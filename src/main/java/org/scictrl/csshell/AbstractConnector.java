@@ -1,16 +1,16 @@
 package org.scictrl.csshell;
 
 import java.beans.PropertyChangeListener;
-import java.lang.ref.WeakReference;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -31,74 +31,403 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 {
 
 	/**
-	 * Default implementation of connection cache interface. Uses weak references.
+	 * Default implementation of connection cache interface. It is a shared pool of reference-counted connections.
+	 * <p>
+	 * Each successful {@link #acquire(String)}, {@link #acquire(String, ConnectionCache.Factory)} or {@link #add(Connection)}
+	 * must be balanced by exactly one {@link #release(Connection)}. Holders share same connection object, so pool can not tell
+	 * which holder releases, connector gives each holder own handle, which releases only once.
+	 * Release beyond last reference is counted by {@link #getOverReleases()} and ignored.
+	 * When last reference is released the connection stays idle in the pool and is reused by next lookup,
+	 * until it is evicted and destroyed after idle timeout. If idle timeout is <code>0</code> connection is evicted
+	 * immediately after last reference is released.
+	 * If pool reaches maximal size, the oldest idle connection is evicted, if there is no idle connection, then
+	 * new connection is not pooled.
+	 * </p>
 	 * @author igor@scictrl.com
 	 */
 	public class DefaultConnectionCache implements ConnectionCache<C> {
-		Map<String, WeakReference<C>> cache= new HashMap<String, WeakReference<C>>(16);
+		
+		/**
+		 * Carries failure of connection factory out of map computation.
+		 */
+		private static final class FactoryFailure extends RuntimeException {
+			private static final long serialVersionUID = 1L;
+			FactoryFailure(RemoteException cause) {
+				super(cause);
+			}
+			@Override
+			public synchronized RemoteException getCause() {
+				return (RemoteException)super.getCause();
+			}
+		}
+		
+		private final class Entry {
+			/** Returned by {@link #release()} when there is no reference left to be released. */
+			static final int OVER_RELEASED= Integer.MIN_VALUE;
+			final C connection;
+			/** Number of references, <code>-1</code> when evicted. */
+			final AtomicInteger references= new AtomicInteger(1);
+			volatile long idleSince;
+			
+			Entry(C connection) {
+				this.connection=connection;
+			}
+			
+			boolean retain() {
+				for (;;) {
+					int r= references.get();
+					if (r<0) {
+						return false;
+					}
+					if (references.compareAndSet(r, r+1)) {
+						return true;
+					}
+				}
+			}
+			
+			int release() {
+				for (;;) {
+					int r= references.get();
+					if (r==0) {
+						return OVER_RELEASED;
+					}
+					if (r<0) {
+						return r;
+					}
+					if (r==1) {
+						idleSince= System.currentTimeMillis();
+					}
+					if (references.compareAndSet(r, r-1)) {
+						return r-1;
+					}
+				}
+			}
+			
+			boolean evict() {
+				return references.compareAndSet(0, -1);
+			}
+		}
+		
+		private final ConcurrentHashMap<String, Entry> cache= new ConcurrentHashMap<String, Entry>(16);
+		private final long idleTimeout;
+		private final int maxSize;
+		private final AtomicLong hits= new AtomicLong();
+		private final AtomicLong misses= new AtomicLong();
+		private final AtomicLong evictions= new AtomicLong();
+		private final AtomicLong rejections= new AtomicLong();
+		private final AtomicLong overReleases= new AtomicLong();
+		private TimerTask evictionTask;
 
 		/**
-		 * Constructor.
+		 * Constructor, with idle timeout and maximal size from connector configuration,
+		 * see {@link AbstractConnector#PROPERTY_POOL_IDLE_TIMEOUT} and {@link AbstractConnector#PROPERTY_POOL_MAX_SIZE}.
 		 */
 		public DefaultConnectionCache() {
+			this(poolIdleTimeout, poolMaxSize);
+		}
+		
+		/**
+		 * Constructor.
+		 *
+		 * @param idleTimeout time in milliseconds after which unused connection is evicted, if <code>0</code> evicted immediately
+		 * @param maxSize maximal number of connections in pool, if <code>0</code> then unlimited
+		 */
+		public DefaultConnectionCache(long idleTimeout, int maxSize) {
+			this.idleTimeout= Math.max(0L, idleTimeout);
+			this.maxSize= Math.max(0, maxSize);
+			if (this.idleTimeout>0) {
+				long period= Math.max(100L, this.idleTimeout/2);
+				evictionTask= schedule(this::cleanup, period, period);
+			}
 		}
 		
 		/* (non-Javadoc)
 		 * @see org.scictrl.csshell.ConnectionCache#add(C)
 		 */
 		@Override
-		public synchronized C add(C ch) {
-			WeakReference<C> wr= new WeakReference<C>(ch);
-			WeakReference<C> wr1= cache.put(ch.getName(),wr);
-			C ch1= wr1 != null ? wr1.get() : null;
-			if (wr1!=null) {
-				wr1.clear();
+		public C add(C ch) {
+			if (maxSize>0 && cache.size()>=maxSize && !cache.containsKey(ch.getName()) && !evictOldestIdle()) {
+				long r= rejections.incrementAndGet();
+				if (r==1 || r%100==0) {
+					getLogger().warn("Connection pool is full with "+cache.size()+" connections in use, '"+ch.getName()+"' is not pooled, rejected "+r+" times.");
+				}
+				return null;
 			}
-			return ch1;
+			Entry e= cache.put(ch.getName(), new Entry(ch));
+			return e!=null ? e.connection : null;
 		}
 		
 		/* (non-Javadoc)
 		 * @see org.scictrl.csshell.ConnectionCache#remove(C)
 		 */
 		@Override
-		public synchronized C remove(String name) {
-			WeakReference<C> wr= cache.remove(name);
-			C ch= wr != null ? wr.get() : null;
-			if (wr!=null) {
-				wr.clear();
-			}
-			return ch;
+		public C remove(String name) {
+			Entry e= cache.remove(name);
+			return e != null ? e.connection : null;
 		}
 		
 		/* (non-Javadoc)
 		 * @see org.scictrl.csshell.ConnectionCache#get(java.lang.String)
 		 */
 		@Override
-		public synchronized C get(String name) {
-			WeakReference<C> wr= cache.get(name);
-			C ch= wr != null ? wr.get() : null;
-			
-			if (ch==null) {
-				cache.remove(name);
-				if (wr!=null) {
-					wr.clear();
+		public C get(String name) {
+			Entry e= cache.get(name);
+			if (e==null) {
+				return null;
+			}
+			if (e.connection.isDestroyed()) {
+				cache.remove(name, e);
+				return null;
+			}
+			return e.connection;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.scictrl.csshell.ConnectionCache#acquire(java.lang.String)
+		 */
+		@Override
+		public C acquire(String name) {
+			Entry e= cache.get(name);
+			if (e!=null) {
+				if (e.connection.isDestroyed()) {
+					cache.remove(name, e);
+				} else if (e.retain()) {
+					hits.incrementAndGet();
+					return e.connection;
 				}
 			}
-			
-			return ch;
+			misses.incrementAndGet();
+			return null;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.scictrl.csshell.ConnectionCache#acquire(java.lang.String, org.scictrl.csshell.ConnectionCache.Factory)
+		 */
+		@Override
+		public C acquire(String name, Factory<C> factory) throws RemoteException {
+			Entry e= cache.get(name);
+			if (e!=null && !e.connection.isDestroyed() && e.retain()) {
+				hits.incrementAndGet();
+				return e.connection;
+			}
+			if (maxSize>0 && cache.size()>=maxSize && !cache.containsKey(name) && !evictOldestIdle()) {
+				long r= rejections.incrementAndGet();
+				if (r==1 || r%100==0) {
+					getLogger().warn("Connection pool is full with "+cache.size()+" connections in use, '"+name+"' is not pooled, rejected "+r+" times.");
+				}
+				misses.incrementAndGet();
+				return factory.create(name);
+			}
+			final boolean[] created= new boolean[1];
+			try {
+				// map must not be changed from inside compute, evicted or destroyed entry is just replaced
+				e= cache.compute(name, (k, old) -> {
+					if (old!=null && !old.connection.isDestroyed() && old.retain()) {
+						return old;
+					}
+					created[0]=true;
+					try {
+						return new Entry(factory.create(k));
+					} catch (RemoteException ex) {
+						throw new FactoryFailure(ex);
+					}
+				});
+			} catch (FactoryFailure ex) {
+				misses.incrementAndGet();
+				throw ex.getCause();
+			}
+			if (created[0]) {
+				misses.incrementAndGet();
+			} else {
+				hits.incrementAndGet();
+			}
+			return e.connection;
+		}
+		
+		/* (non-Javadoc)
+		 * @see org.scictrl.csshell.ConnectionCache#release(C)
+		 */
+		@Override
+		public boolean release(C ch) {
+			Entry e= cache.get(ch.getName());
+			if (e==null || e.connection!=ch) {
+				return true;
+			}
+			int r= e.release();
+			if (r>0) {
+				return false;
+			}
+			if (r==Entry.OVER_RELEASED) {
+				// more releases than references, some holder released twice, connection is not closed under other holders
+				long o= overReleases.incrementAndGet();
+				if (o==1 || o%100==0) {
+					getLogger().warn("Connection '"+ch.getName()+"' released more times than acquired, "+o+" times in pool.");
+				}
+				return false;
+			}
+			if (r<0) {
+				return true;
+			}
+			if (idleTimeout==0 && e.evict()) {
+				cache.remove(ch.getName(), e);
+				evictions.incrementAndGet();
+				return true;
+			}
+			return false;
 		}
 		
 		@Override
 		public void cleanup() {
-			String [] names= cache.keySet().toArray(new String[cache.size()]);
-			for (String name : names) {
-				WeakReference<C> wr= cache.get(name);
-				C ch = wr.get();
-				if (ch==null || ch.isDestroyed()) {
-					cache.remove(name);
-					wr.clear();
+			long now= System.currentTimeMillis();
+			for (Entry e : cache.values()) {
+				if (e.connection.isDestroyed()) {
+					cache.remove(e.connection.getName(), e);
+				} else if (e.references.get()==0 && now-e.idleSince>=idleTimeout && e.evict()) {
+					dispose(e);
+				}
+			}
+		}
+		
+		private boolean evictOldestIdle() {
+			Entry oldest= null;
+			for (Entry e : cache.values()) {
+				if (e.references.get()==0 && (oldest==null || e.idleSince<oldest.idleSince)) {
+					oldest=e;
 				}
 			}
+			if (oldest!=null && oldest.evict()) {
+				dispose(oldest);
+				return true;
+			}
+			return false;
+		}
+		
+		private void dispose(Entry e) {
+			cache.remove(e.connection.getName(), e);
+			evictions.incrementAndGet();
+			try {
+				// entry is no longer in pool, so destroy closes the connection
+				e.connection.destroy();
+			} catch (Exception ex) {
+				getLogger().warn("Evicted connection '"+e.connection.getName()+"' destroy failed: "+ex, ex);
+			}
+		}
+		
+		/**
+		 * Stops periodic eviction and destroys all idle connections.
+		 */
+		public void shutdown() {
+			if (evictionTask!=null) {
+				evictionTask.cancel();
+			}
+			for (Entry e : cache.values()) {
+				if (e.evict()) {
+					dispose(e);
+				}
+			}
+		}
+		
+		@Override
+		public int size() {
+			return cache.size();
+		}
+		
+		/**
+		 * Returns number of pooled connections, which are not used and wait for eviction.
+		 *
+		 * @return number of idle connections
+		 */
+		public int getIdleCount() {
+			int c=0;
+			for (Entry e : cache.values()) {
+				if (e.references.get()==0) {
+					c++;
+				}
+			}
+			return c;
+		}
+		
+		/**
+		 * Returns number of lookups, which returned pooled connection.
+		 *
+		 * @return number of hits
+		 */
+		public long getHits() {
+			return hits.get();
+		}
+		
+		/**
+		 * Returns number of lookups, which did not find pooled connection.
+		 *
+		 * @return number of misses
+		 */
+		public long getMisses() {
+			return misses.get();
+		}
+		
+		/**
+		 * Returns number of connections evicted from pool and destroyed.
+		 *
+		 * @return number of evictions
+		 */
+		public long getEvictions() {
+			return evictions.get();
+		}
+		
+		/**
+		 * Returns number of connections, which were not pooled, because pool was full.
+		 *
+		 * @return number of rejections
+		 */
+		public long getRejections() {
+			return rejections.get();
+		}
+		
+		/**
+		 * Returns number of releases of idle connections, which had no reference left.
+		 * Each is a holder releasing connection more than once, see {@link ConnectionCache#release(Connection)}.
+		 *
+		 * @return number of over-releases
+		 */
+		public long getOverReleases() {
+			return overReleases.get();
+		}
+		
+		/**
+		 * <p>Getter for the field <code>idleTimeout</code>.</p>
+		 *
+		 * @return idle timeout in milliseconds
+		 */
+		public long getIdleTimeout() {
+			return idleTimeout;
+		}
+		
+		/**
+		 * <p>Getter for the field <code>maxSize</code>.</p>
+		 *
+		 * @return maximal pool size, <code>0</code> if unlimited
+		 */
+		public int getMaxSize() {
+			return maxSize;
+		}
+		
+		@Override
+		public String toString() {
+			StringBuilder sb= new StringBuilder(128);
+			sb.append("ConnectionPool{live:");
+			sb.append(size());
+			sb.append(",idle:");
+			sb.append(getIdleCount());
+			sb.append(",hits:");
+			sb.append(hits.get());
+			sb.append(",misses:");
+			sb.append(misses.get());
+			sb.append(",evictions:");
+			sb.append(evictions.get());
+			sb.append(",rejections:");
+			sb.append(rejections.get());
+			sb.append('}');
+			return sb.toString();
 		}
 		
 	}
@@ -135,7 +464,8 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 	 */
 	protected boolean debug = false;
 	private boolean alive=true;
-	private LinkedHashMap<String, MetaData> metaDataCache = new LinkedHashMap<String, MetaData>(10);
+	private SubstringMatcher<MetaData> metaDataPatterns = new SubstringMatcher<MetaData>();
+	private ConcurrentHashMap<String, MetaData> metaDataTypes = new ConcurrentHashMap<String, MetaData>(8);
 	/**
 	 * Connection cache.
 	 */
@@ -166,6 +496,9 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 
 
 	private boolean readOnly=false;
+	
+	private long poolIdleTimeout;
+	private int poolMaxSize;
 
 
 	/**
@@ -189,6 +522,18 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 	 */
 	public static final String PROPERTY_READ_ONLY = "CSSHELL.property.read_only";
 
+	/**
+	 * Property name for time in milliseconds, after which unused connection is evicted from default connection cache
+	 * and destroyed. If <code>0</code>, connection is destroyed as soon as it is not used. Default value is <code>60000</code>.
+	 */
+	public static final String PROPERTY_POOL_IDLE_TIMEOUT = "CSSHELL.property.pool_idle_timeout";
+	
+	/**
+	 * Property name for maximal number of connections in default connection cache.
+	 * If <code>0</code> number is unlimited. Default value is <code>0</code>.
+	 */
+	public static final String PROPERTY_POOL_MAX_SIZE = "CSSHELL.property.pool_max_size";
+
 	/**
 	 * Creates new plug instance.
 	 *
@@ -254,13 +599,25 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 		if (readOnly) {
 			getLogger().warn("READ-ONLY CONNECTOR - local changes only, values are not sent to the remote connections!");
 		}
+		
+		if (System.getProperties().containsKey(PROPERTY_POOL_IDLE_TIMEOUT)) {
+			poolIdleTimeout= Long.parseLong(System.getProperty(PROPERTY_POOL_IDLE_TIMEOUT, "60000"));
+		} else {
+			poolIdleTimeout= Long.parseLong(getConfiguration().getProperty(PROPERTY_POOL_IDLE_TIMEOUT, "60000"));
+		}
+		
+		if (System.getProperties().containsKey(PROPERTY_POOL_MAX_SIZE)) {
+			poolMaxSize= Integer.parseInt(System.getProperty(PROPERTY_POOL_MAX_SIZE, "0"));
+		} else {
+			poolMaxSize= Integer.parseInt(getConfiguration().getProperty(PROPERTY_POOL_MAX_SIZE, "0"));
+		}
 
 	}
 
 	/**
 	 * Creates new instance of default connection cache.
-	 * Default connector cache uses weak reference, therefore not used connection are automatically removed from
-	 * the cache. Also deleted connection are removed, when spotted.
+	 * Default connector cache is pool of shared reference-counted connections, not used connections are
+	 * destroyed after idle timeout. Also deleted connection are removed, when spotted.
 	 *
 	 * @return new instance of default connection cache
 	 */
@@ -318,6 +675,13 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 			return;
 		}
 		alive=false;
+		if (connectionCache instanceof AbstractConnector.DefaultConnectionCache) {
+			((DefaultConnectionCache)connectionCache).shutdown();
+		}
+		if (timer!=null) {
+			timer.cancel();
+			timer=null;
+		}
 		if (executor!=null) {
 			executor.shutdown();
 	        try {
@@ -482,23 +846,27 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 	/**
 	 * <p>getDefaultMetaData.</p>
 	 *
+	 * Returns default metadata of first registered name pattern, which is contained in connection name.
+	 * If no name pattern matches, then default metadata for data type is returned.
+	 *
 	 * @param name a {@link java.lang.String} object
 	 * @param dataType a {@link org.scictrl.csshell.DataType} object
 	 * @return a {@link org.scictrl.csshell.MetaData} object
 	 */
 	public MetaData getDefaultMetaData(String name, DataType dataType) {
 		
-		for (String key: metaDataCache.keySet()) {
-			
-			if (name.contains(key)) {
-				return metaDataCache.get(key);
+		if (name != null) {
+			MetaData md= metaDataPatterns.match(name);
+			if (md!=null) {
+				return md;
 			}
-			
 		}
 		
-		String key= dataType.getClass().getName()+"#"+dataType.toString();
-		if (metaDataCache.containsKey(key)) {
-			return metaDataCache.get(key);
+		if (dataType!=null) {
+			MetaData md= metaDataTypes.get(dataType.getClass().getName()+"#"+dataType.toString());
+			if (md!=null) {
+				return md;
+			}
 		}
 		
 		return UNINITIALIZED;
@@ -515,12 +883,12 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 	protected void registerDefaultMetaData(String name, DataType dataType, MetaData data) {
 	
 		if (name != null) {
-			metaDataCache.put(name, data);
+			metaDataPatterns.put(name, data);
 		}
 		
 		if (dataType!=null) {
 			String key= dataType.getClass().getName()+"#"+dataType.toString();
-			metaDataCache.put(key, data);
+			metaDataTypes.put(key, data);
 		}
 		
 	}
@@ -555,6 +923,18 @@ public abstract class AbstractConnector<C extends Connection<?,?,?>>
 		this.connectionCache = connectionCache;
 	}
 	
+	/**
+	 * Releases one reference to the connection from connection cache. Connection implementations call this
+	 * from their destroy method and release remote resources only if this method returns <code>true</code>.
+	 *
+	 * @param connection the connection to be released
+	 * @return <code>true</code> if connection is no longer used and should be closed
+	 */
+	public boolean releaseConnection(C connection) {
+		ConnectionCache<C> cc= connectionCache;
+		return cc==null || cc.release(connection);
+	}
+	
 	/**
 	 * Returns <code>true</code> when this connector is not setting values to underlying remote connections.
 	 *
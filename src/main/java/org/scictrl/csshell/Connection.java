@@ -118,6 +118,9 @@ public interface Connection<C extends AbstractConnector<?>,T,V> {
 	
 	/**
 	 * <p>destroy.</p>
+	 *
+	 * Releases connection. If connection is shared by connector's connection cache, then
+	 * remote resources are released after last user releases connection.
 	 */
 	public void destroy();
 	
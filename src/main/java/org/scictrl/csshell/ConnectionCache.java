@@ -9,7 +9,24 @@ package org.scictrl.csshell;
 public interface ConnectionCache<C extends Connection<?,?,?>> {
 
 	/**
-	 * Adds connection to the cache by it's name.
+	 * Creates new connection for the cache.
+	 *
+	 * @param <C> class implementing {@link org.scictrl.csshell.Connection} interface
+	 */
+	@FunctionalInterface
+	public interface Factory<C> {
+		/**
+		 * Creates new connection.
+		 *
+		 * @param name the connection name
+		 * @return new connection
+		 * @throws org.scictrl.csshell.RemoteException if connection can not be created
+		 */
+		public C create(String name) throws RemoteException;
+	}
+
+	/**
+	 * Adds connection to the cache by it's name, with one reference held by caller.
 	 * If any connection by same name already exists, it is released and returned.
 	 *
 	 * @param ch the connection to be placed in cache
@@ -33,6 +50,45 @@ public interface ConnectionCache<C extends Connection<?,?,?>> {
 	 */
 	public abstract C get(String name);
 
+	/**
+	 * Returns connection, which has provided name, and increments its reference count.
+	 * Or <code>null</code> if no such connection, then caller creates new connection and adds it to cache.
+	 *
+	 * @param name the connection name
+	 * @return the connection, or null
+	 */
+	public abstract C acquire(String name);
+
+	/**
+	 * Returns connection, which has provided name, and increments its reference count. If there is no such connection,
+	 * it is created by factory and added to cache with one reference held by caller.
+	 * Lookup and creation are atomic, concurrent callers for same name get same connection.
+	 * If connection can not be added to the cache, it is created and returned without being cached.
+	 *
+	 * @param name the connection name
+	 * @param factory creates new connection, when there is none in cache
+	 * @return the connection
+	 * @throws org.scictrl.csshell.RemoteException if factory fails
+	 */
+	public abstract C acquire(String name, Factory<C> factory) throws RemoteException;
+
+	/**
+	 * Decrements reference count of connection, which was acquired from or added to the cache.
+	 * Must be called exactly once for each acquire or add, cache can not distinguish holders of same connection,
+	 * connector should give each holder own handle, which releases only once.
+	 *
+	 * @param ch the connection to be released
+	 * @return <code>true</code> if connection is no longer used or not in cache and should be closed by caller
+	 */
+	public abstract boolean release(C ch);
+
+	/**
+	 * Returns number of live connections in cache.
+	 *
+	 * @return number of connections in cache
+	 */
+	public abstract int size();
+
 	/**
 	 * Removes all dead references and deleted connections.
 	 */
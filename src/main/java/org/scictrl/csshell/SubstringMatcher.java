@@ -0,0 +1,191 @@
+package org.scictrl.csshell;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Thread safe map of string patterns to values, which finds patterns contained in provided text.
+ * <p>
+ * Patterns are matched with Aho-Corasick automaton, so cost of lookup depends on length of text and
+ * not on number of registered patterns. If several patterns are contained in text, the value of
+ * pattern registered first is returned, same as linear scan over patterns in registration order would.
+ * </p>
+ * <p>
+ * Automaton is rebuilt lazily on first lookup after patterns have been changed. Lookups use immutable
+ * automaton and do not lock.
+ * </p>
+ *
+ * @param <V> type of values
+ * @author igor@scictrl.com
+ */
+public class SubstringMatcher<V> {
+
+	private static final char[] NO_KEYS= new char[0];
+	private static final Node[] NO_NODES= new Node[0];
+
+	private static final class Node {
+		char[] keys= NO_KEYS;
+		Node[] children= NO_NODES;
+		Node fail;
+		/** Lowest registration order of pattern ending in this node or in any of its suffixes. */
+		int best= Integer.MAX_VALUE;
+
+		Node child(char c) {
+			int i= Arrays.binarySearch(keys, c);
+			return i<0 ? null : children[i];
+		}
+
+		Node addChild(char c) {
+			int i= Arrays.binarySearch(keys, c);
+			if (i>=0) {
+				return children[i];
+			}
+			i= -i-1;
+			Node n= new Node();
+			char[] k= new char[keys.length+1];
+			Node[] ch= new Node[children.length+1];
+			System.arraycopy(keys, 0, k, 0, i);
+			System.arraycopy(children, 0, ch, 0, i);
+			k[i]=c;
+			ch[i]=n;
+			System.arraycopy(keys, i, k, i+1, keys.length-i);
+			System.arraycopy(children, i, ch, i+1, children.length-i);
+			keys=k;
+			children=ch;
+			return n;
+		}
+	}
+
+	private final Map<String, Integer> order= new HashMap<String, Integer>();
+	private final List<V> values= new ArrayList<V>();
+	private volatile Node root;
+	private volatile Object[] snapshot;
+
+	/**
+	 * Constructor.
+	 */
+	public SubstringMatcher() {
+	}
+
+	/**
+	 * Registers pattern with value. If pattern is already registered, value is replaced and pattern keeps
+	 * its original registration order.
+	 *
+	 * @param pattern the pattern
+	 * @param value the value for pattern
+	 */
+	public synchronized void put(String pattern, V value) {
+		Integer i= order.get(pattern);
+		if (i!=null) {
+			values.set(i, value);
+		} else {
+			order.put(pattern, values.size());
+			values.add(value);
+		}
+		root=null;
+		snapshot=null;
+	}
+
+	/**
+	 * Returns value registered for exactly this pattern.
+	 *
+	 * @param pattern the pattern
+	 * @return registered value or <code>null</code>
+	 */
+	public synchronized V get(String pattern) {
+		Integer i= order.get(pattern);
+		return i!=null ? values.get(i) : null;
+	}
+
+	/**
+	 * Returns number of registered patterns.
+	 *
+	 * @return number of registered patterns
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+
+	/**
+	 * Returns value of first registered pattern, which is contained in provided text.
+	 *
+	 * @param text the text to be searched for patterns
+	 * @return value of first registered pattern contained in text, or <code>null</code> if none
+	 */
+	@SuppressWarnings("unchecked")
+	public V match(String text) {
+		Node r= root;
+		Object[] v= snapshot;
+		if (r==null || v==null) {
+			synchronized (this) {
+				if (root==null) {
+					build();
+				}
+				r= root;
+				v= snapshot;
+			}
+		}
+
+		int best= r.best;
+		Node n= r;
+		for (int i = 0; i < text.length() && best>0; i++) {
+			char c= text.charAt(i);
+			Node next= n.child(c);
+			while (next==null && n!=r) {
+				n= n.fail;
+				next= n.child(c);
+			}
+			n= next!=null ? next : r;
+			if (n.best<best) {
+				best= n.best;
+			}
+		}
+
+		return best<v.length ? (V)v[best] : null;
+	}
+
+	private void build() {
+		Node r= new Node();
+		for (Map.Entry<String, Integer> e : order.entrySet()) {
+			String p= e.getKey();
+			Node n= r;
+			for (int i = 0; i < p.length(); i++) {
+				n= n.addChild(p.charAt(i));
+			}
+			n.best= e.getValue();
+		}
+
+		// breadth first, so failure node is always complete before its dependents
+		r.fail= r;
+		ArrayDeque<Node> queue= new ArrayDeque<Node>();
+		for (Node ch : r.children) {
+			ch.fail= r;
+			ch.best= Math.min(ch.best, r.best);
+			queue.add(ch);
+		}
+		while (!queue.isEmpty()) {
+			Node n= queue.poll();
+			for (int i = 0; i < n.keys.length; i++) {
+				char c= n.keys[i];
+				Node ch= n.children[i];
+				Node f= n.fail;
+				Node fc= f.child(c);
+				while (fc==null && f!=r) {
+					f= f.fail;
+					fc= f.child(c);
+				}
+				ch.fail= fc!=null ? fc : r;
+				ch.best= Math.min(ch.best, ch.fail.best);
+				queue.add(ch);
+			}
+		}
+
+		snapshot= values.toArray();
+		root= r;
+	}
+
+}
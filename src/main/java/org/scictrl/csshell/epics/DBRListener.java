@@ -0,0 +1,33 @@
+package org.scictrl.csshell.epics;
+
+import java.util.EventListener;
+
+import gov.aps.jca.dbr.DBR;
+
+/**
+ * Lightweight monitor listener of {@link EPICSConnection}. Listener receives the DBR, as it was received
+ * by the monitor, without conversion to Java value and without creating {@link org.scictrl.csshell.Poop},
+ * timestamp, status or event objects. Primitive array with value is available trough {@link DBR#getValue()}.
+ * <p>
+ * If listener needs Java value, it can call {@link EPICSConnection#getLastPoop()}, which creates
+ * the {@link org.scictrl.csshell.Poop} from the last DBR on first request.
+ * </p>
+ * <p>
+ * Listener is called from CA thread, it must not block and must not change the received DBR.
+ * </p>
+ *
+ * @author igor@scictrl.com
+ *
+ * @param <T> Java value type of connection
+ */
+public interface DBRListener<T> extends EventListener {
+
+	/**
+	 * Notification of new monitor update.
+	 *
+	 * @param connection the connection which received monitor update
+	 * @param dbr the received DBR, of TIME type
+	 */
+	public void dbrChanged(EPICSConnection<T> connection, DBR dbr);
+
+}
@@ -10,6 +10,13 @@ import java.lang.reflect.Array;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -79,22 +86,37 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		
 		@SuppressWarnings("unused")
 		private Map<String, Object> parameters;
+		/** If not null, monitor updates are delivered only to this listener. */
+		private final DBRListener<T> target;
 		private Monitor monitor;
 		private boolean destroyed;
 		
 		public MonitorProxy(Map<String,Object> param) throws CAException {
+			this(param, null);
+		}
+		
+		public MonitorProxy(Map<String,Object> param, DBRListener<T> target) throws CAException {
 			this.parameters=param;
+			this.target=target;
 			
 			int mask= connector.getDefaultMonitorMask();
+			DBRType type= EPICSUtilities.toTimeDBRType(dataType);
+			int count= channel.getElementCount();
 			
 			if (param!=null && param.get(EPICSConnector.PARAMETER_MONITOR_MASK) instanceof Integer) {
 				mask= (Integer)param.get(EPICSConnector.PARAMETER_MONITOR_MASK);
 			}
+			if (param!=null && param.get(EPICSConnector.PARAMETER_MONITOR_TYPE) instanceof DBRType) {
+				type= EPICSUtilities.toTimeDBRType((DBRType)param.get(EPICSConnector.PARAMETER_MONITOR_TYPE));
+			}
+			if (param!=null && param.get(EPICSConnector.PARAMETER_MONITOR_COUNT) instanceof Integer) {
+				int c= (Integer)param.get(EPICSConnector.PARAMETER_MONITOR_COUNT);
+				if (c>0 && c<count) {
+					count=c;
+				}
+			}
 			
-			monitor = channel.addMonitor(
-					EPICSUtilities.toTimeDBRType(dataType),
-					channel.getElementCount(),
-					mask, this);
+			monitor = channel.addMonitor(type, count, mask, this);
 			connector.flushIO();
 		}
 
@@ -115,7 +137,15 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 			}
 			
 			updateStatus(dbr);
-			fireValueChange(ev);
+			if (target!=null) {
+				try {
+					target.dbrChanged(EPICSConnection.this, dbr);
+				} catch (Exception e) {
+					log.warn('['+getName()+']'+" DBR listener failed: "+e, e);
+				}
+			} else {
+				fireValueChange(ev);
+			}
 		}
 		
 		public void destroy() {
@@ -141,19 +171,6 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		}
 	}
 	
-	/**
-	 * Get listener implementation to implement sync. get.
-	 */
-	private class GetListenerImpl implements gov.aps.jca.event.GetListener {
-		volatile gov.aps.jca.event.GetEvent event = null;
-
-		@Override
-        public synchronized void getCompleted(final gov.aps.jca.event.GetEvent ev) {
-			event = ev;
-			this.notifyAll();
-		}
-	}
-	
 	/**
 	 * Put request object. Callback object for put requests.
 	 */
@@ -239,9 +256,16 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	private PropertyChangeSupport support;
 	private MonitorProxy monitor;
 	//private MonitorProxy monitorAlarm;
-	private Poop<T,DBR> lastPoop;
+	/** Last received DBR, lastPoop is valid only if created from this DBR. */
+	private volatile DBR lastDBR;
+	private volatile Poop<T,DBR> lastPoop;
+	private final CopyOnWriteArrayList<DBRListener<T>> dbrListeners= new CopyOnWriteArrayList<DBRListener<T>>();
+	/** DBR listeners with own monitor parameters and their monitors, guarded by this. */
+	private final Map<DBRListener<T>, Map<String,Object>> filteredListeners= new HashMap<DBRListener<T>, Map<String,Object>>(4);
+	private final Map<DBRListener<T>, MonitorProxy> filteredMonitors= new HashMap<DBRListener<T>, MonitorProxy>(4);
 	private boolean destroyed;
 	private Status status;
+	private volatile CompletableFuture<EPICSConnection<T>> connected= new CompletableFuture<EPICSConnection<T>>();
 	
 	/**
 	 * <p>Constructor for EPICSConnection.</p>
@@ -280,6 +304,18 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		
 	}
 	
+	/**
+	 * Constructor for {@link EPICSConnectionLease}, which delegates to shared connection and has no own channel.
+	 *
+	 * @param shared the shared connection
+	 */
+	EPICSConnection(EPICSConnection<T> shared) {
+		this.name=shared.name;
+		this.dataType=shared.dataType;
+		this.connector=shared.connector;
+		this.status=shared.status;
+	}
+	
 	/** {@inheritDoc} */
 	@Override
 	public synchronized void connectionChanged(ConnectionEvent ev) {
@@ -299,6 +335,7 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		updateConnectionState();
 		try {
 			ensureMonitor();
+			ensureFilteredMonitors();
 		} catch (RemoteException e) {
 			e.printStackTrace();
 			connector.getLogger().debug('['+getName()+']'+" monitor creation failed "+e,e);
@@ -310,7 +347,7 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		ConnectionState cd= channel.getConnectionState();
 		
 		if (cd==ConnectionState.CLOSED) {
-			destroy();
+			close();
 		} else if (cd==ConnectionState.CONNECTED) {
 			setStatus(State.CONNECTED);
 		} else if (cd==ConnectionState.DISCONNECTED) {
@@ -330,6 +367,7 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	private void setStatus(Status status) {
 		if (!this.status.equals(status)) {
 			this.status=status;
+			updateConnected(status);
 			synchronized (this) {
 				notifyAll();
 			}
@@ -341,6 +379,32 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		}
 	}
 
+	/**
+	 * Completes connection future when connected, fails it when connection failed or closed
+	 * and replaces completed future with new one when connection is lost.
+	 * Called while holding lock of this connection, dependent stages must be attached with {@link #connectedStage()}.
+	 */
+	private void updateConnected(Status st) {
+		CompletableFuture<EPICSConnection<T>> cf= connected;
+		if (st.isSet(State.CONNECTED)) {
+			if (!cf.complete(this) && cf.isCompletedExceptionally()) {
+				connected= CompletableFuture.completedFuture(this);
+			}
+		} else if (st.isSet(State.CLOSED)) {
+			if (cf.isDone()) {
+				cf= connected= new CompletableFuture<EPICSConnection<T>>();
+			}
+			cf.completeExceptionally(new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Connection closed.", null)));
+		} else if (st.isSet(State.FAILED)) {
+			if (cf.isDone()) {
+				cf= connected= new CompletableFuture<EPICSConnection<T>>();
+			}
+			cf.completeExceptionally(new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Connection failed.", null)));
+		} else if (cf.isDone()) {
+			connected= new CompletableFuture<EPICSConnection<T>>();
+		}
+	}
+
 	private void updateStatus(final DBR dbr) {
 		if (dbr== null  || !dbr.isSTS()) {
 			return;
@@ -381,16 +445,29 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	 * @param ev a {@link gov.aps.jca.event.MonitorEvent} object
 	 */
 	public void fireValueChange(MonitorEvent ev) {
-		@SuppressWarnings("unchecked")
-		T value= (T)EPICSUtilities.toJavaValue(ev.getDBR(), dataType.getJavaClass(), channel.getFieldType());
-		lastPoop= new Poop<T,DBR>(value, EPICSUtilities.toTimestamp(ev.getDBR()), metaData, EPICSUtilities.toStatus(ev.getDBR()), ev.getDBR());
+		DBR dbr= ev.getDBR();
+		lastDBR= dbr;
 		
+		// Poop is created only if there is property listener, otherwise on first getLastPoop call
 		if (support!=null) {
-			if (support.hasListeners(PROPERTY_VALUE)) {
-				support.firePropertyChange(PROPERTY_VALUE, null, value);
+			boolean v= support.hasListeners(PROPERTY_VALUE);
+			boolean p= support.hasListeners(PROPERTY_POOP);
+			if (v || p) {
+				Poop<T,DBR> poop= getLastPoop();
+				if (v) {
+					support.firePropertyChange(PROPERTY_VALUE, null, poop.getValue());
+				}
+				if (p) {
+					support.firePropertyChange(PROPERTY_POOP, null, poop);
+				}
 			}
-			if (support.hasListeners(PROPERTY_POOP)) {
-				support.firePropertyChange(PROPERTY_POOP, null, lastPoop);
+		}
+		
+		for (DBRListener<T> l : dbrListeners) {
+			try {
+				l.dbrChanged(this, dbr);
+			} catch (Exception e) {
+				log.warn('['+getName()+']'+" DBR listener failed: "+e, e);
 			}
 		}
 	}
@@ -433,23 +510,103 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		if (support!=null) {
 			support.removePropertyChangeListener(pName, l);
 			
-			if (PROPERTY_VALUE.equals(pName) && !(support.hasListeners(PROPERTY_VALUE)||support.hasListeners(PROPERTY_POOP)) && monitor!=null) {
+			if (PROPERTY_VALUE.equals(pName) && !hasValueListeners() && monitor!=null) {
 				monitor.destroy();
 				monitor=null;
 			}
 		}
 	}
 
+	/**
+	 * Adds lightweight monitor listener, which receives DBR updates without creating Java values and Poop objects.
+	 * Listener keeps monitor alive same way as value property listener.
+	 * If monitor already exists and has received value, listener is notified with last DBR.
+	 *
+	 * @param l the listener
+	 * @throws org.scictrl.csshell.RemoteException if monitor creation fails
+	 */
+	public synchronized void addDBRListener(DBRListener<T> l) throws RemoteException {
+		dbrListeners.add(l);
+		DBR dbr= lastDBR;
+		if (!ensureMonitor() && hasMonitor() && dbr!=null) {
+			log.debug('['+getName()+']'+" initial DBR listener update.");
+			l.dbrChanged(this, dbr);
+		}
+	}
+	
+	/**
+	 * Adds lightweight monitor listener with own monitor, created with provided parameters.
+	 * Parameters can define {@link EPICSConnector#PARAMETER_MONITOR_MASK}, {@link EPICSConnector#PARAMETER_MONITOR_COUNT}
+	 * and {@link EPICSConnector#PARAMETER_MONITOR_TYPE}, so remote server sends only updates and data listener needs.
+	 * Monitor is created as soon as connection is established and destroyed when listener is removed.
+	 * Received DBR are not stored as last value of this connection, because they might be of different type or size.
+	 * If parameters are <code>null</code> or empty, listener is added to shared monitor.
+	 *
+	 * @param l the listener
+	 * @param parameters the monitor parameters
+	 * @throws org.scictrl.csshell.RemoteException if monitor creation fails
+	 */
+	public synchronized void addDBRListener(DBRListener<T> l, Map<String,Object> parameters) throws RemoteException {
+		if (parameters==null || parameters.isEmpty()) {
+			addDBRListener(l);
+			return;
+		}
+		filteredListeners.put(l, parameters);
+		ensureFilteredMonitors();
+	}
+	
+	private synchronized void ensureFilteredMonitors() throws RemoteException {
+		if (filteredListeners.isEmpty() 
+				|| channel.getConnectionState()!=ConnectionState.CONNECTED
+				|| !isConnected()) 
+		{
+			return;
+		}
+		for (Map.Entry<DBRListener<T>, Map<String,Object>> e : filteredListeners.entrySet()) {
+			if (!filteredMonitors.containsKey(e.getKey())) {
+				try {
+					filteredMonitors.put(e.getKey(), new MonitorProxy(e.getValue(), e.getKey()));
+					log.debug('['+getName()+']'+" monitor created with "+e.getValue());
+				} catch (Exception ex) {
+					throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Monitor creation failed.", ex),ex);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Removes lightweight monitor listener. If there is no more value listeners, monitor is destroyed.
+	 *
+	 * @param l the listener
+	 */
+	public synchronized void removeDBRListener(DBRListener<T> l) {
+		if (filteredListeners.remove(l)!=null) {
+			MonitorProxy m= filteredMonitors.remove(l);
+			if (m!=null) {
+				m.destroy();
+			}
+			return;
+		}
+		dbrListeners.remove(l);
+		if (!hasValueListeners() && monitor!=null) {
+			monitor.destroy();
+			monitor=null;
+		}
+	}
+	
+	private boolean hasValueListeners() {
+		return !dbrListeners.isEmpty() || (support!=null && (support.hasListeners(PROPERTY_VALUE) || support.hasListeners(PROPERTY_POOP)));
+	}
+
 	/**
 	 * Return <code>true</code> if monitor was created.
 	 * @return <code>true</code> if monitor was created
 	 * @throws RemoteException if monitor creation fails
 	 */
 	private synchronized boolean ensureMonitor() throws RemoteException {
-		log.debug('['+getName()+']'+" monitor request:"+(support!=null && (support.hasListeners(PROPERTY_VALUE)||support.hasListeners(PROPERTY_POOP)))+","+(monitor==null)+","+(channel.getConnectionState()==ConnectionState.CONNECTED)+","+isConnected());
+		log.debug('['+getName()+']'+" monitor request:"+hasValueListeners()+","+(monitor==null)+","+(channel.getConnectionState()==ConnectionState.CONNECTED)+","+isConnected());
 		
-		if (support!=null 
-				&& (support.hasListeners(PROPERTY_VALUE) || support.hasListeners(PROPERTY_POOP)) 
+		if (hasValueListeners() 
 				&& monitor==null 
 				&& channel.getConnectionState()==ConnectionState.CONNECTED
 				&& isConnected()) 
@@ -547,19 +704,102 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	
 	/** {@inheritDoc} */
 	@Override
-	public void getMetaDataAsync(PropertyChangeListener l) {
+	public void getMetaDataAsync(final PropertyChangeListener l) {
 		if (metaData==null) {
-			waitTillConnected();
-			connector.getLogger().debug('['+getName()+']'+" metadata requested...");
+			whenConnected().orTimeout(connector.getTimeout(), TimeUnit.MILLISECONDS).whenComplete((c,t) -> {
+				connector.getLogger().debug('['+getName()+']'+" metadata requested...");
+				try {
+					connector.getMetaDataAsync(this.getChannel(),new MetaDataInterceptor(l));
+				} catch (Exception e) {
+					connector.getLogger().error('['+getName()+']'+" metadata request failed: "+e.toString(),e);
+					l.propertyChange(new PropertyChangeEvent(this, PROPERTY_META_DATA, null, MetaDataImpl.createUninitializedMetaData()));
+				}
+			});
+		} else {
+			l.propertyChange(new PropertyChangeEvent(this, PROPERTY_META_DATA, null, metaData));
+		}
+	}
+	
+	/**
+	 * Returns future, which completes when channel is connected. If channel is already connected, future is completed.
+	 * Future completes exceptionally if connection fails or is closed. Future does not time out by itself.
+	 *
+	 * @return future completed with this connection when connected
+	 */
+	public CompletableFuture<EPICSConnection<T>> whenConnected() {
+		return connectedStage();
+	}
+	
+	/**
+	 * Returns stage completed with connection future. Connection future is completed by CA thread while holding
+	 * lock of this connection, therefore if not connected yet, returned stage completes on connector executor,
+	 * so that dependent stages are not executed under the lock. If already connected, dependent stages
+	 * are executed immediately in calling thread.
+	 * @return stage completed when connected
+	 */
+	private CompletableFuture<EPICSConnection<T>> connectedStage() {
+		CompletableFuture<EPICSConnection<T>> cf= connected;
+		if (cf.isDone()) {
+			return cf.copy();
+		}
+		try {
+			return cf.thenApplyAsync(c -> c, connector.getExecutor());
+		} catch (IllegalStateException e) {
+			// connector without executor
+			return cf.thenApplyAsync(c -> c);
+		}
+	}
+	
+	/**
+	 * Makes get request as soon as connected, future completes with received {@link DBR}.
+	 * @param type provides the DBR type of request, it is called after connection is established and data type is known 
+	 * @return future completed with DBR
+	 */
+	private CompletableFuture<DBR> requestAsync(final Callable<DBRType> type) {
+		return connectedStage().orTimeout(connector.getTimeout(), TimeUnit.MILLISECONDS).thenCompose(c -> {
+			final CompletableFuture<DBR> f= new CompletableFuture<DBR>();
 			try {
-				connector.getMetaDataAsync(this.getChannel(),new MetaDataInterceptor(l));
+				channel.get(type.call(), channel.getElementCount(), new GetListener() {
+					@Override
+					public void getCompleted(GetEvent ev) {
+						if (ev.getStatus() != CAStatus.NORMAL) {
+							f.completeExceptionally(new RemoteException(EPICSConnection.this,ConnectorUtilities.formatConnectionMessage(EPICSConnection.this, "Get failed, status error.", null)));
+						} else if (ev.getDBR() == null) {
+							f.completeExceptionally(new RemoteException(EPICSConnection.this,ConnectorUtilities.formatConnectionMessage(EPICSConnection.this, "Get failed, DBR is null.", null)));
+						} else {
+							f.complete(ev.getDBR());
+						}
+					}
+				});
+				connector.flushIO();
 			} catch (Exception e) {
-				connector.getLogger().error('['+getName()+']'+" metadata request failed: "+e.toString(),e);
-				l.propertyChange(new PropertyChangeEvent(this, PROPERTY_META_DATA, null, MetaDataImpl.createUninitializedMetaData()));
+				f.completeExceptionally(new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed.", e),e));
 			}
-			
-		} else {
-			l.propertyChange(new PropertyChangeEvent(this, PROPERTY_META_DATA, null, metaData));
+			return f.orTimeout(connector.getTimeout(), TimeUnit.MILLISECONDS);
+		});
+	}
+	
+	/**
+	 * Waits for future and converts failures to {@link RemoteException}.
+	 */
+	private <R> R join(CompletableFuture<R> f, String operation) throws RemoteException {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, operation+" interrupted.", e),e);
+		} catch (ExecutionException e) {
+			Throwable t= e.getCause();
+			if (t instanceof CompletionException && t.getCause()!=null) {
+				t= t.getCause();
+			}
+			if (t instanceof RemoteException) {
+				throw (RemoteException)t;
+			}
+			if (t instanceof TimeoutException) {
+				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, operation+" failed, timeout ("+(int)(connector.getTimeout()/1000.0)+"s).", null));
+			}
+			throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, operation+" failed.", t),t);
 		}
 	}
 	
@@ -568,46 +808,40 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	@Override
 	public T getValue() throws RemoteException {
 		connector.getLogger().debug('['+getName()+']'+" value requested... ");
-		//Object o= getPoop().getValue();
 		
-		waitTillConnected();
-		try
-		{
-			final GetListenerImpl listener = new GetListenerImpl();
-	         synchronized (listener) {
-	        	
-	    		DBRType type = EPICSUtilities.toDBRType(dataType); 
-				channel.get(type, channel.getElementCount(), listener);
-				connector.flushIO();
-
-				try {
-					listener.wait(connector.getTimeout());
-				} catch (final InterruptedException e) {
-					// noop
-				}
+		DBR dbr= join(requestAsync(() -> EPICSUtilities.toDBRType(dataType)), "Get");
+		
+		Object o= EPICSUtilities.toJavaValue(dbr, dataType.getJavaClass(), channel.getFieldType());
+		connector.getLogger().debug('['+getName()+']'+" value is "+o);
+		return (T)o;
+	}
+	
+	/**
+	 * Makes asynchronous get request as soon as connection is established. If meta data is not known yet, it is
+	 * requested together with value. Future completes exceptionally with {@link RemoteException} if request fails,
+	 * or with {@link TimeoutException} if connection or response is not received within connector timeout.
+	 *
+	 * @return future completed with value, timestamp, meta data and status
+	 */
+	public CompletableFuture<Poop<T,DBR>> getAsync() {
+		return requestAsync(() -> {
+			DBRType type = EPICSUtilities.toDBRType(dataType); 
+			if (metaData==null) {
+				int CTRL_OFFSET = 28;
+				type= DBRType.forValue(type.getValue() + CTRL_OFFSET);
+			} else {
+				type=EPICSUtilities.toTimeDBRType(type);
 			}
-
-			final gov.aps.jca.event.GetEvent event = listener.event;
-			if (event == null) {
-				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed, timeout ("+(int)(connector.getTimeout()/1000.0)+"s).", null));
-            }
-
-			// status check
-			if (event.getStatus() != CAStatus.NORMAL) {
-				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed, status error.", null));
-            }
-
-			// sanity check
-			if (event.getDBR() == null) {
-				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed, DBR is null.", null));
-            }
-
-			Object o= EPICSUtilities.toJavaValue(event.getDBR(), dataType.getJavaClass(), channel.getFieldType());
-			connector.getLogger().debug('['+getName()+']'+" value is "+o);
-			return (T)o;
-		} catch (Exception e) {
-			throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed.", e),e);
-		}
+			return type;
+		}).thenApply(dbr -> {
+			if (metaData==null) {
+				metaData = EPICSUtilities.toMetaData(channel, dbr);
+			}
+			@SuppressWarnings("unchecked")
+			Poop<T,DBR> p= new Poop<T,DBR>((T)EPICSUtilities.toJavaValue(dbr, dataType.getJavaClass(), channel.getFieldType()),EPICSUtilities.toTimestamp(dbr),metaData, EPICSUtilities.toStatus(dbr), dbr);
+			lastDBR= dbr;
+			return lastPoop=p;
+		});
 	}
 	
 	/**
@@ -615,96 +849,126 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	 *
 	 * @return a {@link org.scictrl.csshell.Poop} object
 	 * @throws org.scictrl.csshell.RemoteException if any.
+	 * @see #getAsync()
 	 */
 	public Poop<T,DBR> getPoop() throws RemoteException {
-		
-		waitTillConnected();
-		try
-		{
-			final GetListenerImpl listener = new GetListenerImpl();
-	         synchronized (listener) {
-	        	
-	    		DBRType type = EPICSUtilities.toDBRType(dataType); 
-	    				
-	    		if (metaData==null) {
-		     		int CTRL_OFFSET = 28;
-    				type= DBRType.forValue(type.getValue() + CTRL_OFFSET);
-	    		} else {
-	    			type=EPICSUtilities.toTimeDBRType(type);
-	    		}
-	        	 
-				channel.get(type, channel.getElementCount(), listener);
+		return join(getAsync(), "Get");
+	}
+	
+	/**
+	 * Makes asynchronous put request without remote callback as soon as connection is established.
+	 * Future completes when request has been sent, with the value which was sent.
+	 * If connector is read only, future completes immediately and nothing is sent.
+	 *
+	 * @param value the value to be set
+	 * @return future completed with sent value and local timestamp
+	 */
+	public CompletableFuture<Poop<T,DBR>> putAsync(final T value) {
+		if (connector.isReadOnly()) {
+			return CompletableFuture.completedFuture(new Poop<T,DBR>(value, new Timestamp(), metaData, status, null));
+		}
+		return connectedStage().orTimeout(connector.getTimeout(), TimeUnit.MILLISECONDS).thenApply(c -> {
+			try {
+				log.debug('['+getName()+']'+" setting '"+value+"'");
+				EPICSUtilities.put(channel, value);
 				connector.flushIO();
-
-				try {
-					listener.wait(connector.getTimeout());
-				} catch (final InterruptedException e) {
-					// noop
-				}
+			} catch (Exception e) {
+				throw new CompletionException(new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Set failed.", e),e));
 			}
-
-			final gov.aps.jca.event.GetEvent event = listener.event;
-			if (event == null) {
-				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed, timeout ("+(int)(connector.getTimeout()/1000.0)+"s).", null));
-            }
-
-			// status check
-			if (event.getStatus() != CAStatus.NORMAL) {
-				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed, status error.", null));
-            }
-
-			// sanity check
-			if (event.getDBR() == null) {
-				throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed, DBR is null.", null));
-            }
-
-			if (metaData==null) {
-				metaData = EPICSUtilities.toMetaData(channel, event.getDBR());
+			return new Poop<T,DBR>(value, new Timestamp(), metaData, status, null);
+		});
+	}
+	
+	/**
+	 * Makes asynchronous put request with remote callback as soon as connection is established.
+	 * Future completes when remote server confirms that put has been processed.
+	 * If connector is read only, future completes immediately and nothing is sent.
+	 *
+	 * @param value the value to be set
+	 * @return future completed with sent value and timestamp of confirmation
+	 */
+	public CompletableFuture<Poop<T,DBR>> putCallbackAsync(final T value) {
+		if (connector.isReadOnly()) {
+			return CompletableFuture.completedFuture(new Poop<T,DBR>(value, new Timestamp(), metaData, status, null));
+		}
+		return connectedStage().orTimeout(connector.getTimeout(), TimeUnit.MILLISECONDS).thenCompose(c -> {
+			final CompletableFuture<Poop<T,DBR>> f= new CompletableFuture<Poop<T,DBR>>();
+			PutListener l= new PutListener() {
+				@Override
+				public void putCompleted(PutEvent ev) {
+					if (ev.getStatus()!=null && ev.getStatus().isSuccessful()) {
+						f.complete(new Poop<T,DBR>(value, new Timestamp(), metaData, status, null));
+					} else {
+						f.completeExceptionally(new RemoteException(EPICSConnection.this,ConnectorUtilities.formatConnectionMessage(EPICSConnection.this, "Set failed, status "+ev.getStatus()+".", null)));
+					}
+				}
+			};
+			try {
+				log.debug('['+getName()+']'+" setting with callback '"+value+"'");
+				put(value, l);
+			} catch (Exception e) {
+				f.completeExceptionally(new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Set failed.", e),e));
 			}
-
-			@SuppressWarnings("unchecked")
-			Poop<T,DBR> p= new Poop<T,DBR>((T)EPICSUtilities.toJavaValue(event.getDBR(), dataType.getJavaClass(), channel.getFieldType()),EPICSUtilities.toTimestamp(event.getDBR()),getMetaData(), EPICSUtilities.toStatus(event.getDBR()), event.getDBR());
-			return lastPoop=p;
-		} catch (Exception e) {
-			throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Get failed.", e),e);
+			return f.orTimeout(connector.getTimeout(), TimeUnit.MILLISECONDS);
+		});
+	}
+	
+	private void put(T value, PutListener l) throws Exception {
+		final Object o = EPICSUtilities.toDBRValue(value, channel.getFieldType());
+		if (channel instanceof CAJChannel) {
+			((CAJChannel) channel).put(EPICSUtilities.toDBRType(dataType), Array.getLength(o), o, l);
+		} else {
+			// TODO workaround until Channel supports put(DBRType, int, Object, PutListener)
+			EPICSUtilities.put(channel, o, l);
 		}
+		connector.flushIO();
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public void setValue(T value) throws RemoteException {
-		waitTillConnected();
-		if (connector.isReadOnly()) {
-			return;
-		}
-		try {
-			log.debug('['+getName()+']'+" setting '"+value+"'");
-			EPICSUtilities.put(channel, value);
-			connector.flushIO();
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(this, "Set failed.", e),e);
-		}
-		
+		join(putAsync(value), "Set");
 	};
 	
-	/** {@inheritDoc} */
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Poop is created from last received DBR on first call after update.
+	 */
 	@Override
 	public Poop<T,DBR> getLastPoop() {
-		return lastPoop;
+		DBR dbr= lastDBR;
+		Poop<T,DBR> p= lastPoop;
+		if (dbr==null || (p!=null && p.getVector()==dbr)) {
+			return p;
+		}
+		@SuppressWarnings("unchecked")
+		T value= (T)EPICSUtilities.toJavaValue(dbr, dataType.getJavaClass(), channel.getFieldType());
+		p= new Poop<T,DBR>(value, EPICSUtilities.toTimestamp(dbr), metaData, EPICSUtilities.toStatus(dbr), dbr);
+		lastPoop= p;
+		return p;
+	}
+	
+	/**
+	 * Returns last DBR received by monitor or get request.
+	 *
+	 * @return last DBR or <code>null</code> if none received
+	 */
+	public DBR getLastDBR() {
+		return lastDBR;
 	}
 	
 	/** {@inheritDoc} */
 	@SuppressWarnings("unchecked")
 	@Override
 	public T getLastValue() {
-		return (T) EPICSUtilities.toJavaValue(lastPoop.getVector(), dataType.getJavaClass(), channel.getFieldType());
+		return (T) EPICSUtilities.toJavaValue(lastDBR, dataType.getJavaClass(), channel.getFieldType());
 	}
 
 	/** {@inheritDoc} */
 	@Override
 	public boolean hasLastPoop() {
-		return lastPoop!=null;
+		return lastDBR!=null;
 	}
 	
 	/**
@@ -717,9 +981,27 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	}
 
 	
-	/** {@inheritDoc} */
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Connection is shared by connector's connection cache, this call releases one reference.
+	 * Remote channel is closed when connection is no longer used and has been evicted from cache.
+	 * <p>
+	 * When connection cache is used, each holder gets own {@link EPICSConnectionLease} from
+	 * {@link EPICSConnector#newConnection(String, DataType)}, which releases its reference only once.
+	 * </p>
+	 */
 	@Override
-	public synchronized void destroy() {
+	public void destroy() {
+		if (destroyed) {
+			return;
+		}
+		if (connector.releaseConnection(this)) {
+			close();
+		}
+	}
+	
+	private synchronized void close() {
 		if (destroyed) {
 			return;
 		}
@@ -729,6 +1011,10 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 		if (monitor!=null) {
 			monitor.destroy();
 		}
+		for (MonitorProxy m : filteredMonitors.values()) {
+			m.destroy();
+		}
+		filteredMonitors.clear();
 		
 		if (channel.getConnectionState() != Channel.CLOSED) { // FIXME workaround because CAJChannel.removeConnectionListener throws IllegalStateException: "Channel closed."
 			try {
@@ -765,17 +1051,15 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 	/** {@inheritDoc} */
 	@Override
 	public void waitTillConnected() {
-		if (!status.isSet(State.CONNECTED)) {
-			_waitTillConnected();
-		}
-	}
-	
-	private synchronized void _waitTillConnected() {
 		if (!status.isSet(State.CONNECTED)) {
 			try {
-				wait(connector.getTimeout());
+				connected.get(connector.getTimeout(), TimeUnit.MILLISECONDS);
 			} catch (InterruptedException e) {
-				e.printStackTrace();
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				log.warn('['+getName()+']'+" connection failed: "+(e.getCause()!=null ? e.getCause() : e).toString());
+			} catch (TimeoutException e) {
+				log.debug('['+getName()+']'+" not connected within timeout ("+(int)(connector.getTimeout()/1000.0)+"s).");
 			}
 		}
 	}
@@ -790,14 +1074,7 @@ public class EPICSConnection<T> implements Connection<EPICSConnector,T,DBR>, Con
 			return r;
 		}
 		try {
-			final Object o = EPICSUtilities.toDBRValue(value, channel.getFieldType());
-			if (channel instanceof CAJChannel) {
-                ((CAJChannel) channel).put(EPICSUtilities.toDBRType(dataType), Array.getLength(o), o, r);
-            } else {
-				// TODO workaround until Channel supports put(DBRType, int, Object, PutListener)
-				EPICSUtilities.put(channel, o, r);
-			}
-			connector.flushIO();
+			put(value, r);
 		} catch (final Exception e) {
 			r.addResponse(new ResponseImpl<EPICSConnector>(this, r, null, false, e, Poop.createTimestampPoop(), true));
 		}
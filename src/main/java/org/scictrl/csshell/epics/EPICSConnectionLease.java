@@ -0,0 +1,325 @@
+package org.scictrl.csshell.epics;
+
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.scictrl.csshell.DataType;
+import org.scictrl.csshell.MetaData;
+import org.scictrl.csshell.Poop;
+import org.scictrl.csshell.RemoteException;
+import org.scictrl.csshell.Request;
+import org.scictrl.csshell.ResponseListener;
+import org.scictrl.csshell.Status;
+
+import gov.aps.jca.Channel;
+import gov.aps.jca.dbr.DBR;
+import gov.aps.jca.event.ConnectionEvent;
+import gov.aps.jca.event.MonitorEvent;
+
+/**
+ * <p>Handle of one holder to {@link EPICSConnection}, which is shared trough connector's connection cache.</p>
+ *
+ * <p>All calls are delegated to shared connection. {@link #destroy()} releases reference of this holder only once,
+ * further calls have no effect, so holder can not release reference of other holder. Listeners added trough this
+ * handle are removed from shared connection, when handle is destroyed.
+ * Events are fired by shared connection, which is their source.</p>
+ *
+ * @author igor@scictrl.com
+ *
+ * @param <T> Java value type of connection
+ */
+public class EPICSConnectionLease<T> extends EPICSConnection<T> {
+
+	private final EPICSConnection<T> shared;
+	private final AtomicBoolean released= new AtomicBoolean();
+	/** Property listeners added trough this handle, as name and listener pairs, guarded by this. */
+	private final List<Object[]> propertyListeners= new ArrayList<Object[]>(2);
+	/** DBR listeners added trough this handle, guarded by this. */
+	private final List<DBRListener<T>> dbrListeners= new ArrayList<DBRListener<T>>(2);
+
+	/**
+	 * Constructor.
+	 *
+	 * @param shared the shared connection, for which one reference is held by this handle
+	 */
+	EPICSConnectionLease(EPICSConnection<T> shared) {
+		super(shared);
+		this.shared=shared;
+	}
+
+	/**
+	 * Returns shared connection, to which this handle delegates.
+	 *
+	 * @return shared connection
+	 */
+	public EPICSConnection<T> getShared() {
+		return shared;
+	}
+
+	/**
+	 * Returns <code>true</code> if this handle has already released its reference.
+	 *
+	 * @return <code>true</code> if released
+	 */
+	public boolean isReleased() {
+		return released.get();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Releases reference of this handle, only first call has effect.
+	 * Remote channel is closed when shared connection is no longer used and has been evicted from cache.
+	 */
+	@Override
+	public void destroy() {
+		if (!released.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (this) {
+			for (Object[] p : propertyListeners) {
+				shared.removePropertyChangeListener((String)p[0], (PropertyChangeListener)p[1]);
+			}
+			propertyListeners.clear();
+			for (DBRListener<T> l : dbrListeners) {
+				shared.removeDBRListener(l);
+			}
+			dbrListeners.clear();
+		}
+		shared.destroy();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Returns <code>true</code> also if this handle has been released, while shared connection is still open.
+	 */
+	@Override
+	public boolean isDestroyed() {
+		return released.get() || shared.isDestroyed();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addPropertyChangeListener(String pName, PropertyChangeListener l) throws RemoteException {
+		synchronized (this) {
+			propertyListeners.add(new Object[]{pName,l});
+		}
+		shared.addPropertyChangeListener(pName, l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void removePropertyChangeListener(String pName, PropertyChangeListener l) {
+		synchronized (this) {
+			for (int i = 0; i < propertyListeners.size(); i++) {
+				Object[] p= propertyListeners.get(i);
+				if (p[1]==l && (pName==null ? p[0]==null : pName.equals(p[0]))) {
+					propertyListeners.remove(i);
+					break;
+				}
+			}
+		}
+		shared.removePropertyChangeListener(pName, l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addDBRListener(DBRListener<T> l) throws RemoteException {
+		synchronized (this) {
+			dbrListeners.add(l);
+		}
+		shared.addDBRListener(l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addDBRListener(DBRListener<T> l, Map<String,Object> parameters) throws RemoteException {
+		synchronized (this) {
+			dbrListeners.add(l);
+		}
+		shared.addDBRListener(l, parameters);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void removeDBRListener(DBRListener<T> l) {
+		synchronized (this) {
+			dbrListeners.remove(l);
+		}
+		shared.removeDBRListener(l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void connectionChanged(ConnectionEvent ev) {
+		shared.connectionChanged(ev);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void fireValueChange(MonitorEvent ev) {
+		shared.fireValueChange(ev);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void fireMetaDataChange(MetaData md) {
+		shared.fireMetaDataChange(md);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public DataType getDataType() {
+		return shared.getDataType();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getName() {
+		return shared.getName();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Channel getChannel() {
+		return shared.getChannel();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EPICSConnector getConnector() {
+		return shared.getConnector();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MetaData getMetaData() {
+		return shared.getMetaData();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void getMetaDataAsync(PropertyChangeListener l) {
+		shared.getMetaDataAsync(l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public CompletableFuture<EPICSConnection<T>> whenConnected() {
+		return shared.whenConnected().<EPICSConnection<T>>thenApply(c -> this);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public T getValue() throws RemoteException {
+		return shared.getValue();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public CompletableFuture<Poop<T,DBR>> getAsync() {
+		return shared.getAsync();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Poop<T,DBR> getPoop() throws RemoteException {
+		return shared.getPoop();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public CompletableFuture<Poop<T,DBR>> putAsync(T value) {
+		return shared.putAsync(value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public CompletableFuture<Poop<T,DBR>> putCallbackAsync(T value) {
+		return shared.putCallbackAsync(value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setValue(T value) throws RemoteException {
+		shared.setValue(value);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Request<EPICSConnector> setValue(T value, ResponseListener<EPICSConnector> l) throws RemoteException {
+		return shared.setValue(value, l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Request<EPICSConnector> getValue(ResponseListener<EPICSConnector> l) throws RemoteException {
+		return shared.getValue(l);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Poop<T,DBR> getLastPoop() {
+		return shared.getLastPoop();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public DBR getLastDBR() {
+		return shared.getLastDBR();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public T getLastValue() {
+		return shared.getLastValue();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean hasLastPoop() {
+		return shared.hasLastPoop();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean hasMonitor() {
+		return shared.hasMonitor();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isReady() {
+		return shared.isReady();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isConnected() {
+		return shared.isConnected();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void waitTillConnected() {
+		shared.waitTillConnected();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Status getStatus() {
+		return shared.getStatus();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return shared.toString();
+	}
+
+}
@@ -24,7 +24,10 @@ package org.scictrl.csshell.epics;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -58,9 +61,9 @@ import gov.aps.jca.event.ContextExceptionListener;
 import gov.aps.jca.event.ContextMessageEvent;
 import gov.aps.jca.event.ContextMessageListener;
 import gov.aps.jca.event.ContextVirtualCircuitExceptionEvent;
+import gov.aps.jca.event.EventDispatcher;
 import gov.aps.jca.event.GetEvent;
 import gov.aps.jca.event.GetListener;
-import gov.aps.jca.event.QueuedEventDispatcher;
 
 /**
  * Implementation of EPICS plugin.
@@ -254,6 +257,208 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 		}
 	}
 	
+	/**
+	 * Makes one time asynchronous get requests to many channels at once. All channels are created and
+	 * get requests are issued as soon as channels connect, without waiting for previous replies, 
+	 * so all values are collected within single round-trip time.
+	 */
+	public static class MultiGet {
+		
+		private class Slot implements ConnectionListener, GetListener {
+			
+			private final int index;
+			
+			Slot(int index) {
+				this.index=index;
+			}
+
+			@Override
+			public void connectionChanged(ConnectionEvent ev) {
+				if (ev.isConnected() && ev.getSource() instanceof Channel) {
+					if (request(index, (Channel)ev.getSource())) {
+						flushIO();
+					}
+				}
+			}
+
+			@Override
+			public void getCompleted(GetEvent ev) {
+				DBR dbr= ev.getStatus()!=null && ev.getStatus().isSuccessful() ? ev.getDBR() : null;
+				Object value= null;
+				if (dbr!=null) {
+					if (poops) {
+						Channel ch= (Channel)ev.getSource();
+						try {
+							Object v= EPICSUtilities.toJavaValue(dbr, EPICSUtilities.toDataType(dbr).getJavaClass(), ch.getFieldType());
+							value= new Poop<Object,DBR>(v, EPICSUtilities.toTimestamp(dbr), EPICSUtilities.toMetaData(ch, dbr), EPICSUtilities.toStatus(dbr), dbr);
+						} catch (Exception e) {
+							LogManager.getLogger(MultiGet.class).debug("Conversion of '"+ch.getName()+"' failed: "+e.toString(), e);
+						}
+					} else {
+						value= dbr;
+					}
+				}
+				complete(index, value);
+			}
+		}
+		
+		private final String[] names;
+		private final Context ctx;
+		private final DBRType type;
+		private final boolean poops;
+		private final Channel[] channels;
+		private final boolean[] requested;
+		private final boolean[] done;
+		private final Object[] results;
+		private final CompletableFuture<Object[]> future= new CompletableFuture<Object[]>();
+		private int remaining;
+
+		/**
+		 * Constructor.
+		 * @param names the names of remote channels, <code>null</code> names are skipped 
+		 * @param ctx  the context for the connections
+		 * @param type the data type of requests, if <code>null</code> then time type of channel native type is used
+		 * @param poops if <code>true</code> results are {@link Poop} objects, otherwise {@link DBR} objects
+		 */
+		public MultiGet(String[] names, Context ctx, DBRType type, boolean poops) {
+			this.names=names;
+			this.ctx=ctx;
+			this.type=type;
+			this.poops=poops;
+			this.channels= new Channel[names.length];
+			this.requested= new boolean[names.length];
+			this.done= new boolean[names.length];
+			this.results= new Object[names.length];
+			this.remaining= names.length;
+		}
+		
+		/**
+		 * Creates all channels, issues get requests for already connected channels and flushes IO once.
+		 * Remaining requests are issued when channels connect. After timeout all pending channels are 
+		 * destroyed and future is completed with results collected so far.
+		 * 
+		 * @param timeout the timeout in milliseconds
+		 * @return future with array of results, same length and order as names, <code>null</code> elements for failed or timed out requests  
+		 */
+		public CompletableFuture<Object[]> start(long timeout) {
+			if (names.length==0) {
+				future.complete(results);
+				return future;
+			}
+			
+			for (int i = 0; i < names.length; i++) {
+				if (names[i]==null) {
+					complete(i, null);
+					continue;
+				}
+				try {
+					Channel ch= ctx.createChannel(names[i], new Slot(i));
+					synchronized (this) {
+						channels[i]= ch;
+						if (done[i]) {
+							// completed before channel was stored 
+							destroy(ch);
+							continue;
+						}
+					}
+					if (ch.getConnectionState()==ConnectionState.CONNECTED) {
+						request(i, ch);
+					}
+				} catch (Exception e) {
+					LogManager.getLogger(MultiGet.class).debug("Channel creation for '"+names[i]+"' failed: "+e.toString(), e);
+					complete(i, null);
+				}
+			}
+			
+			flushIO();
+			
+			CompletableFuture.delayedExecutor(timeout, TimeUnit.MILLISECONDS).execute(new Runnable() {
+				@Override
+				public void run() {
+					expire();
+				}
+			});
+			
+			return future;
+		}
+		
+		private void flushIO() {
+			try {
+				ctx.flushIO();
+			} catch (Exception e) {
+				LogManager.getLogger(MultiGet.class).warn("Flush IO error: "+EPICSUtilities.toShortErrorReport(e), e);
+			}
+		}
+
+		private boolean request(int i, Channel ch) {
+			synchronized (this) {
+				if (requested[i] || done[i]) {
+					return false;
+				}
+				requested[i]=true;
+			}
+			try {
+				DBRType t= type!=null ? type : EPICSUtilities.toTimeDBRType(ch.getFieldType());
+				ch.get(t, ch.getElementCount(), new Slot(i));
+				return true;
+			} catch (Exception e) {
+				LogManager.getLogger(MultiGet.class).debug("Get request for '"+ch.getName()+"' failed: "+e.toString(), e);
+				complete(i, null);
+				return false;
+			}
+		}
+		
+		private void complete(int i, Object value) {
+			Channel ch;
+			Object[] r= null;
+			synchronized (this) {
+				if (done[i]) {
+					return;
+				}
+				done[i]=true;
+				results[i]=value;
+				ch= channels[i];
+				if (--remaining==0) {
+					r= results.clone();
+				}
+			}
+			destroy(ch);
+			if (r!=null) {
+				future.complete(r);
+			}
+		}
+		
+		private void expire() {
+			Object[] r;
+			synchronized (this) {
+				if (future.isDone() || remaining==0) {
+					return;
+				}
+				for (int i = 0; i < done.length; i++) {
+					if (!done[i]) {
+						done[i]=true;
+						destroy(channels[i]);
+					}
+				}
+				remaining=0;
+				r= results.clone();
+			}
+			future.complete(r);
+		}
+		
+		private void destroy(Channel ch) {
+			if (ch==null) {
+				return;
+			}
+			try {
+				ch.destroy();
+			} catch (Exception e) {
+				// already destroyed
+			}
+		}
+
+	}
+	
 	/**
 	 * Plug type string.
 	 */
@@ -279,6 +484,20 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 	 */
 	public static final String PARAMETER_MONITOR_MASK = "EPICS.monitor.mask";
 	
+	/**
+	 * Parameter name for expert monitor creation. 
+	 * Value is of type Integer and provides number of array elements requested by EPICS monitor,
+	 * if smaller than channel element count. Elements from the start of array are returned.
+	 */
+	public static final String PARAMETER_MONITOR_COUNT = "EPICS.monitor.count";
+	
+	/**
+	 * Parameter name for expert monitor creation. 
+	 * Value is of type {@link DBRType} and provides value type requested by EPICS monitor instead of 
+	 * connection data type. Monitor always requests TIME variant of the type.
+	 */
+	public static final String PARAMETER_MONITOR_TYPE = "EPICS.monitor.type";
+	
 	/**
 	 * Property name for verbosity of INFO log level. 
 	 * Verbosity 0 is minimal, verbosity 1 reports individual connections are made. Default is 1.
@@ -356,6 +575,26 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 	 */
 	private int defaultMonitorMask = Monitor.ALARM | Monitor.VALUE;
 	
+	/**
+	 * Property name for class of CA event dispatcher. 
+	 * Default is {@link StripedEventDispatcher}, which by default uses single thread, like <code>gov.aps.jca.event.QueuedEventDispatcher</code>,
+	 * and delivers events of different channels in parallel if more threads are configured.
+	 */
+	public static final String PROPERTY_EVENT_DISPATCHER = "EPICS.event_dispatcher";
+	
+	/**
+	 * Property name for number of threads of {@link StripedEventDispatcher}.
+	 * Default is <code>1</code>, parallel dispatching is opt-in.
+	 */
+	public static final String PROPERTY_EVENT_DISPATCHER_THREADS = "EPICS.event_dispatcher.threads";
+	
+	/**
+	 * Property name for capacity of queue of each {@link StripedEventDispatcher} thread.
+	 * Default is <code>0</code>, queues are unbounded. If set to positive value, CA thread waits
+	 * when queue is full before dispatching more events.
+	 */
+	public static final String PROPERTY_EVENT_DISPATCHER_QUEUE_LIMIT = "EPICS.event_dispatcher.queue_limit";
+	
 	/** Constant <code>PROPERTY_JCA_ADDR_LIST="addr_list"</code> */
 	public static final String PROPERTY_JCA_ADDR_LIST="addr_list";
 	/** Constant <code>PROPERTY_JCA_AUTO_ADDR_LIST="auto_addr_list"</code> */
@@ -597,10 +836,39 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 		return context;
 	}
 	
+	/**
+	 * Returns event dispatcher of CA context. If it is {@link StripedEventDispatcher}, it provides
+	 * queue depth and dispatch latency metrics.
+	 *
+	 * @return a {@link gov.aps.jca.event.EventDispatcher} object
+	 */
+	public EventDispatcher getEventDispatcher() {
+		return ((CAJContext)getContext()).getEventDispatcher();
+	}
+	
 	private CAJContext createJCAContext() throws RemoteException {
 		try {
+			String dispatcher;
+			int threads;
+			int queueLimit;
+			if (System.getProperties().containsKey(PROPERTY_EVENT_DISPATCHER)) {
+				dispatcher= System.getProperty(PROPERTY_EVENT_DISPATCHER, StripedEventDispatcher.class.getName());
+			} else {
+				dispatcher= getConfiguration().getProperty(PROPERTY_EVENT_DISPATCHER, StripedEventDispatcher.class.getName());
+			}
+			if (System.getProperties().containsKey(PROPERTY_EVENT_DISPATCHER_THREADS)) {
+				threads= Integer.parseInt(System.getProperty(PROPERTY_EVENT_DISPATCHER_THREADS, Integer.toString(StripedEventDispatcher.DEFAULT_THREADS)));
+			} else {
+				threads= Integer.parseInt(getConfiguration().getProperty(PROPERTY_EVENT_DISPATCHER_THREADS, Integer.toString(StripedEventDispatcher.DEFAULT_THREADS)));
+			}
+			if (System.getProperties().containsKey(PROPERTY_EVENT_DISPATCHER_QUEUE_LIMIT)) {
+				queueLimit= Integer.parseInt(System.getProperty(PROPERTY_EVENT_DISPATCHER_QUEUE_LIMIT, Integer.toString(StripedEventDispatcher.DEFAULT_QUEUE_LIMIT)));
+			} else {
+				queueLimit= Integer.parseInt(getConfiguration().getProperty(PROPERTY_EVENT_DISPATCHER_QUEUE_LIMIT, Integer.toString(StripedEventDispatcher.DEFAULT_QUEUE_LIMIT)));
+			}
+			
 			DefaultConfiguration edconf = new DefaultConfiguration("event_dispatcher");
-			edconf.setAttribute("class", QueuedEventDispatcher.class.getName());
+			edconf.setAttribute("class", dispatcher);
 
 			
 			DefaultConfiguration config = new DefaultConfiguration("EPICSPlugConfig");
@@ -620,6 +888,11 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 			// create context
 		    CAJContext c= (CAJContext)JCALibrary.getInstance().createContext(config);
 		    
+		    if (c.getEventDispatcher() instanceof StripedEventDispatcher) {
+		    	((StripedEventDispatcher)c.getEventDispatcher()).configure(threads, queueLimit);
+		    }
+		    getLogger().debug("Event dispatcher "+c.getEventDispatcher());
+		    
 			// force explicit initialization
 			c.initialize();
 
@@ -829,6 +1102,60 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 		
 	}
 
+	/**
+	 * Makes one time get requests to many channels at once. All channels are created and requested 
+	 * without waiting for each other, IO is flushed once. Returned future completes when all 
+	 * replies arrived or after connection timeout.
+	 *
+	 * @param names PV names
+	 * @param type DBR type of requests, if <code>null</code> then time type of channel native type is used
+	 * @return future with array of DBR objects, same length and order as names, with <code>null</code> for failed or timed out requests
+	 */
+	public CompletableFuture<DBR[]> getManyAsync(String[] names, DBRType type) {
+		if (!isAlive()) {
+			throw new IllegalStateException("This connector is not alive any more!");
+		}
+		
+		MultiGet get= new MultiGet(names, getContext(), type, false);
+		
+		return get.start(timeout).thenApply(r -> Arrays.copyOf(r, r.length, DBR[].class));
+	}
+
+	/**
+	 * Makes one time get requests to many channels at once and blocks until all replies arrived or connection timeout.
+	 *
+	 * @param names PV names
+	 * @param type DBR type of requests, if <code>null</code> then time type of channel native type is used
+	 * @return array of DBR objects, same length and order as names, with <code>null</code> for failed or timed out requests
+	 * @throws java.lang.Exception if any
+	 * @see #getManyAsync(String[], DBRType)
+	 */
+	public DBR[] getMany(String[] names, DBRType type) throws Exception {
+		return getManyAsync(names, type).get();
+	}
+	
+	/**
+	 * Makes one time get requests to many channels at once and tries to get as many data as possible, 
+	 * same as {@link #getOneShot(String)}, but all requests are issued without waiting for each other.
+	 * Data type is taken from channel.
+	 *
+	 * @param names PV names
+	 * @return array of Poop objects, same length and order as names, with <code>null</code> for failed or timed out requests
+	 * @throws java.lang.Exception if any
+	 */
+	@SuppressWarnings("unchecked")
+	public Poop<?,DBR>[] getOneShot(String[] names) throws Exception {
+		if (!isAlive()) {
+			throw new IllegalStateException("This connector is not alive any more!");
+		}
+		
+		MultiGet get= new MultiGet(names, getContext(), null, true);
+		
+		Object[] r= get.start(timeout).get();
+		
+		return Arrays.copyOf(r, r.length, Poop[].class);
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public Object getValue(String name, DataType type) throws RemoteException {
@@ -859,22 +1186,18 @@ public class EPICSConnector extends AbstractConnector<EPICSConnection<?>> implem
 		ConnectionCache<EPICSConnection<?>> cc= getConnectionCache();
 		
 		if (cc!=null) {
-			EPICSConnection<?> ec= cc.get(name);
-			if (ec!=null) {
-				if (ec.isDestroyed()) {
-					cc.remove(name);
-				} else {
-					return ec;
-				}
-			}
+			// each holder gets own handle of shared connection, which releases reference only once
+			@SuppressWarnings("unchecked")
+			EPICSConnection<Object> ec= (EPICSConnection<Object>)cc.acquire(name, n -> createConnection(n, dataType));
+			return new EPICSConnectionLease<Object>(ec);
 		}
 		
+		return createConnection(name, dataType);
+	}
+	
+	private EPICSConnection<Object> createConnection(String name, DataType dataType) throws RemoteException {
 		try {
-			EPICSConnection<Object> ec = new EPICSConnection<Object>(name,dataType,this);
-			if (cc!=null) {
-				cc.add(ec);
-			}
-			return ec;
+			return new EPICSConnection<Object>(name,dataType,this);
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new RemoteException(this,ConnectorUtilities.formatConnectionMessage(name, "Connection failed.", e),e);
@@ -153,6 +153,10 @@ public final class EPICSUtilities
 			if (dbr.isFLOAT()) {
 				return javaType.cast(Double.valueOf(((float[])dbr.getValue())[0]));
 			}
+
+			if (dbr.isINT() || dbr.isSHORT() || dbr.isENUM() || dbr.isBYTE()) {
+				return javaType.cast(Double.valueOf(getDouble(dbr.getValue(), 0)));
+			}
 		}
 
 		if (javaType.equals(double[].class)) {
@@ -170,6 +174,10 @@ public final class EPICSUtilities
 
 				return javaType.cast(d);
 			}
+
+			if (dbr.isINT() || dbr.isSHORT() || dbr.isENUM() || dbr.isBYTE()) {
+				return javaType.cast(convertPrimitiveArray(dbr.getValue(), DBRType.DOUBLE, false));
+			}
 		}
 
 		if (javaType.equals(Long.class)) {
@@ -492,12 +500,34 @@ public final class EPICSUtilities
 	 * @throws java.lang.NullPointerException parameter is null
 	 */
 	public static Object convertToDBRValue(Object value, DBRType type)
+	{
+		return convertToDBRValue(value, type, true);
+	}
+
+	/**
+	 * Convert java object to DBR value of provided DBR type.
+	 * If <code>copy</code> is <code>false</code> and value is primitive array, which already
+	 * matches the DBR type, then same array instance is returned without copying.
+	 * Caller must in this case guarantee, that provided array is not modified afterwards.
+	 *
+	 * @param value java object to convert.
+	 * @param type the channel field type of converted value
+	 * @param copy if <code>false</code> matching primitive arrays are returned without copying
+	 * @return Object value.
+	 * @throws java.lang.NullPointerException parameter is null
+	 */
+	public static Object convertToDBRValue(Object value, DBRType type, boolean copy)
 	{
 		
 		if (value == null) {
 			throw new NullPointerException("value");
 		}
 		
+		Object fast= convertPrimitiveArray(value, type, copy);
+		if (fast!=null) {
+			return fast;
+		}
+		
 		if (value.getClass().isArray()) {
 			int l= Array.getLength(value);
 			if (l==0) {
@@ -721,6 +751,249 @@ public final class EPICSUtilities
 		throw new IllegalArgumentException("Value to convert with class '" + value.getClass().getName() + "' is not supported by CA for target type '"+type.toString()+"'.");
 	}
 
+	/**
+	 * Converts primitive numeric array to the DBR array type with bulk loops, without boxing.
+	 * Returns <code>null</code> if value is not primitive numeric array or type is not supported,
+	 * then generic conversion must be used.
+	 */
+	private static Object convertPrimitiveArray(Object value, DBRType type, boolean copy) {
+		
+		if (type.isDOUBLE()) {
+			if (value instanceof double[]) {
+				return copy ? ((double[])value).clone() : value;
+			}
+			if (value instanceof float[]) {
+				float[] v= (float[])value;
+				double[] a= new double[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof long[]) {
+				long[] v= (long[])value;
+				double[] a= new double[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof int[]) {
+				int[] v= (int[])value;
+				double[] a= new double[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof short[]) {
+				short[] v= (short[])value;
+				double[] a= new double[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof byte[]) {
+				byte[] v= (byte[])value;
+				double[] a= new double[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+		} else if (type.isFLOAT()) {
+			if (value instanceof float[]) {
+				return copy ? ((float[])value).clone() : value;
+			}
+			if (value instanceof double[]) {
+				double[] v= (double[])value;
+				float[] a= new float[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(float)v[i];
+				}
+				return a;
+			}
+			if (value instanceof long[]) {
+				long[] v= (long[])value;
+				float[] a= new float[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof int[]) {
+				int[] v= (int[])value;
+				float[] a= new float[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof short[]) {
+				short[] v= (short[])value;
+				float[] a= new float[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof byte[]) {
+				byte[] v= (byte[])value;
+				float[] a= new float[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+		} else if (type.isINT()) {
+			if (value instanceof int[]) {
+				return copy ? ((int[])value).clone() : value;
+			}
+			if (value instanceof double[]) {
+				double[] v= (double[])value;
+				int[] a= new int[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(int)v[i];
+				}
+				return a;
+			}
+			if (value instanceof float[]) {
+				float[] v= (float[])value;
+				int[] a= new int[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(int)v[i];
+				}
+				return a;
+			}
+			if (value instanceof long[]) {
+				long[] v= (long[])value;
+				int[] a= new int[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(int)v[i];
+				}
+				return a;
+			}
+			if (value instanceof short[]) {
+				short[] v= (short[])value;
+				int[] a= new int[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+			if (value instanceof byte[]) {
+				byte[] v= (byte[])value;
+				int[] a= new int[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+		} else if (type.isENUM() || type.isSHORT()) {
+			if (value instanceof short[]) {
+				return copy ? ((short[])value).clone() : value;
+			}
+			if (value instanceof double[]) {
+				double[] v= (double[])value;
+				short[] a= new short[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(short)v[i];
+				}
+				return a;
+			}
+			if (value instanceof float[]) {
+				float[] v= (float[])value;
+				short[] a= new short[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(short)v[i];
+				}
+				return a;
+			}
+			if (value instanceof long[]) {
+				long[] v= (long[])value;
+				short[] a= new short[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(short)v[i];
+				}
+				return a;
+			}
+			if (value instanceof int[]) {
+				int[] v= (int[])value;
+				short[] a= new short[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(short)v[i];
+				}
+				return a;
+			}
+			if (value instanceof byte[]) {
+				byte[] v= (byte[])value;
+				short[] a= new short[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=v[i];
+				}
+				return a;
+			}
+		} else if (type.isBYTE()) {
+			if (value instanceof byte[]) {
+				return copy ? ((byte[])value).clone() : value;
+			}
+			if (value instanceof double[]) {
+				double[] v= (double[])value;
+				byte[] a= new byte[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(byte)v[i];
+				}
+				return a;
+			}
+			if (value instanceof float[]) {
+				float[] v= (float[])value;
+				byte[] a= new byte[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(byte)v[i];
+				}
+				return a;
+			}
+			if (value instanceof long[]) {
+				long[] v= (long[])value;
+				byte[] a= new byte[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(byte)v[i];
+				}
+				return a;
+			}
+			if (value instanceof int[]) {
+				int[] v= (int[])value;
+				byte[] a= new byte[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(byte)v[i];
+				}
+				return a;
+			}
+			if (value instanceof short[]) {
+				short[] v= (short[])value;
+				byte[] a= new byte[v.length];
+				for (int i = 0; i < a.length; i++) {
+					a[i]=(byte)v[i];
+				}
+				return a;
+			}
+		} else if (type.isSTRING()) {
+			if (value instanceof String[]) {
+				String[] v= (String[])value;
+				// null elements are handled by generic conversion
+				for (int i = 0; i < v.length; i++) {
+					if (v[i]==null) {
+						return null;
+					}
+				}
+				return copy ? v.clone() : value;
+			}
+		}
+		
+		return null;
+	}
+
 	/**
 	 * <p>toString.</p>
 	 *
@@ -944,6 +1217,24 @@ public final class EPICSUtilities
 		+ ts.nsec() / 1000000;
 	}
 
+	/**
+	 * Returns UTC Java time of DBR timestamp, without creating intermediate timestamp object.
+	 * If DBR has no timestamp, current time is returned.
+	 *
+	 * @param dbr DBR with timestamp
+	 * @return Java UTC
+	 */
+	public static long toUTC(DBR dbr)
+	{
+		if (dbr !=null && dbr.isTIME()) {
+			TimeStamp ts= ((TIME)dbr).getTimeStamp();
+			if (ts!=null) {
+				return toUTC(ts);
+			}
+		}
+		return System.currentTimeMillis();
+	}
+
 	/**
 	 * Converts CA timestamp to DAL timestamp.
 	 *
@@ -1334,6 +1625,28 @@ public final class EPICSUtilities
 			return true;
 		}
 
+		if (o1 instanceof double[] && o2 instanceof double[]) {
+			return Arrays.equals((double[])o1, (double[])o2);
+		}
+		if (o1 instanceof float[] && o2 instanceof float[]) {
+			return Arrays.equals((float[])o1, (float[])o2);
+		}
+		if (o1 instanceof int[] && o2 instanceof int[]) {
+			return Arrays.equals((int[])o1, (int[])o2);
+		}
+		if (o1 instanceof short[] && o2 instanceof short[]) {
+			return Arrays.equals((short[])o1, (short[])o2);
+		}
+		if (o1 instanceof byte[] && o2 instanceof byte[]) {
+			return Arrays.equals((byte[])o1, (byte[])o2);
+		}
+		if (o1 instanceof long[] && o2 instanceof long[]) {
+			return Arrays.equals((long[])o1, (long[])o2);
+		}
+		if (o1 instanceof Object[] && o2 instanceof Object[]) {
+			return Arrays.equals((Object[])o1, (Object[])o2);
+		}
+
 		if (!o1.getClass().isArray() && !o2.getClass().isArray()) {
 			return o1.equals(o2);
 		}
@@ -1348,6 +1661,7 @@ public final class EPICSUtilities
 			return false;
 		}
 		
+		// arrays of different component types, fall back to element-wise comparison
 		for (int i = 0; i < l; i++) {
 			Object oo1= Array.get(o1, i);
 			Object oo2= Array.get(o2, i);
@@ -1359,6 +1673,78 @@ public final class EPICSUtilities
 		return true;
 	}
 	
+	/**
+	 * Returns array element as double. Primitive arrays are accessed directly,
+	 * other arrays are accessed with reflection.
+	 *
+	 * @param array an array object
+	 * @param index element index
+	 * @return element value as double
+	 */
+	public static final double getDouble(Object array, int index) {
+		if (array instanceof double[]) {
+			return ((double[])array)[index];
+		}
+		if (array instanceof float[]) {
+			return ((float[])array)[index];
+		}
+		if (array instanceof int[]) {
+			return ((int[])array)[index];
+		}
+		if (array instanceof short[]) {
+			return ((short[])array)[index];
+		}
+		if (array instanceof byte[]) {
+			return ((byte[])array)[index];
+		}
+		return Array.getDouble(array, index);
+	}
+
+	/**
+	 * Returns array element as int. Primitive arrays are accessed directly,
+	 * other arrays are accessed with reflection.
+	 *
+	 * @param array an array object
+	 * @param index element index
+	 * @return element value as int
+	 */
+	public static final int getInt(Object array, int index) {
+		if (array instanceof int[]) {
+			return ((int[])array)[index];
+		}
+		if (array instanceof short[]) {
+			return ((short[])array)[index];
+		}
+		if (array instanceof byte[]) {
+			return ((byte[])array)[index];
+		}
+		return Array.getInt(array, index);
+	}
+
+	/**
+	 * Returns array element as long. Primitive arrays are accessed directly,
+	 * other arrays are accessed with reflection.
+	 *
+	 * @param array an array object
+	 * @param index element index
+	 * @return element value as long
+	 */
+	public static final long getLong(Object array, int index) {
+		if (array instanceof int[]) {
+			return ((int[])array)[index];
+		}
+		if (array instanceof short[]) {
+			return ((short[])array)[index];
+		}
+		if (array instanceof byte[]) {
+			return ((byte[])array)[index];
+		}
+		if (array instanceof long[]) {
+			return ((long[])array)[index];
+		}
+		return Array.getLong(array, index);
+	}
+	
 	private EPICSUtilities() {
 	}
 }
@@ -0,0 +1,420 @@
+package org.scictrl.csshell.epics;
+
+import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import gov.aps.jca.event.AbstractEventDispatcher;
+import gov.aps.jca.event.AccessRightsEvent;
+import gov.aps.jca.event.AccessRightsListener;
+import gov.aps.jca.event.CAEvent;
+import gov.aps.jca.event.ConnectionEvent;
+import gov.aps.jca.event.ConnectionListener;
+import gov.aps.jca.event.ContextExceptionEvent;
+import gov.aps.jca.event.ContextExceptionListener;
+import gov.aps.jca.event.ContextMessageEvent;
+import gov.aps.jca.event.ContextMessageListener;
+import gov.aps.jca.event.GetEvent;
+import gov.aps.jca.event.GetListener;
+import gov.aps.jca.event.MonitorEvent;
+import gov.aps.jca.event.MonitorListener;
+import gov.aps.jca.event.PutEvent;
+import gov.aps.jca.event.PutListener;
+
+/**
+ * CA event dispatcher with several dispatching threads, each with own queue.
+ * <p>
+ * Events are assigned to the queue by event source, which is the channel for connection, monitor, get and put events.
+ * So events of same channel are delivered in order in which they were received, while events for different channels
+ * are delivered in parallel and slow listener delays only channels in its own queue.
+ * </p>
+ * <p>
+ * By default single dispatching thread is used, parallel dispatching is opt-in trough {@link #configure(int, int)}.
+ * </p>
+ * <p>
+ * By default queues are unbounded, so CA thread, which is dispatching the event, never waits for listeners.
+ * Back-pressure is opt-in: if queue limit is configured, CA thread waits when queue is full until there is space
+ * in queue, this slows down reading from the network instead of growing memory. Such wait also delays
+ * responses to requests, which are waited for by listeners, so limit must be set well above expected bursts.
+ * Events dispatched from one of the dispatcher threads are queued without waiting, even above the limit,
+ * so listener can not block own or other dispatching thread, and events are never delivered by foreign thread.
+ * </p>
+ * <p>
+ * Instance is created by CAJ context with default constructor, threads are started with first event,
+ * so {@link #configure(int, int)} must be called before context is initialized.
+ * </p>
+ *
+ * @author igor@scictrl.com
+ */
+public class StripedEventDispatcher extends AbstractEventDispatcher {
+
+	/** Default number of dispatching threads, parallel dispatching must be configured explicitly. */
+	public static final int DEFAULT_THREADS= 1;
+	/** Default capacity of queue for each thread, <code>0</code> means unbounded queue without back-pressure. */
+	public static final int DEFAULT_QUEUE_LIMIT= 0;
+
+	private static final AtomicInteger COUNT= new AtomicInteger();
+
+	private static abstract class Event implements Runnable {
+		final CAEvent ev;
+		final Object[] listeners;
+		long queued;
+		/** If <code>true</code> event holds space in queue, which is released when taken from queue. */
+		boolean permit;
+
+		Event(CAEvent ev, Object[] listeners) {
+			this.ev=ev;
+			this.listeners=listeners;
+		}
+
+		@Override
+		public void run() {
+			for (Object l : listeners) {
+				try {
+					dispatch((EventListener)l);
+				} catch (Throwable th) {
+					LogManager.getLogger(StripedEventDispatcher.class).warn("Listener of "+ev.getClass().getSimpleName()+" failed: "+th, th);
+				}
+			}
+		}
+
+		abstract void dispatch(EventListener l);
+	}
+
+	private final class Stripe extends Thread {
+		final BlockingQueue<Event> queue= new LinkedBlockingQueue<Event>();
+		/** Free space in queue, <code>null</code> if queue is unbounded. */
+		final Semaphore space;
+
+		Stripe(String name, int limit) {
+			super(name);
+			setDaemon(true);
+			space= limit>0 ? new Semaphore(limit) : null;
+		}
+
+		@Override
+		public void run() {
+			while (!killed) {
+				Event e;
+				try {
+					e= queue.poll(1, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					continue;
+				}
+				if (e!=null) {
+					if (e.permit) {
+						space.release();
+					}
+					execute(e);
+				}
+			}
+		}
+	}
+
+	private final Logger log= LogManager.getLogger(getClass());
+	private final int id= COUNT.incrementAndGet();
+	private int threads= DEFAULT_THREADS;
+	private int queueLimit= DEFAULT_QUEUE_LIMIT;
+	private volatile Stripe[] stripes;
+	private volatile boolean killed;
+
+	private final AtomicLong dispatched= new AtomicLong();
+	private final AtomicLong blocked= new AtomicLong();
+	private final AtomicLong totalLatency= new AtomicLong();
+	private volatile long lastLatency;
+	private volatile long maxLatency;
+	private volatile int maxQueueDepth;
+
+	/**
+	 * Constructor, used by CAJ context.
+	 */
+	public StripedEventDispatcher() {
+	}
+
+	/**
+	 * Sets number of threads and queue capacity. Has no effect after first event has been dispatched.
+	 *
+	 * @param threads number of dispatching threads
+	 * @param queueLimit capacity of queue for each thread, if <code>0</code> or less queues are unbounded
+	 */
+	public synchronized void configure(int threads, int queueLimit) {
+		if (stripes!=null) {
+			log.warn("Dispatcher already started, configuration ignored.");
+			return;
+		}
+		this.threads= Math.max(1, threads);
+		this.queueLimit= Math.max(0, queueLimit);
+	}
+
+	private Stripe[] getStripes() {
+		Stripe[] s= stripes;
+		if (s==null) {
+			synchronized (this) {
+				s= stripes;
+				if (s==null) {
+					s= new Stripe[threads];
+					for (int i = 0; i < s.length; i++) {
+						s[i]= new Stripe("StripedEventDispatcher-"+id+"-"+i, queueLimit);
+						s[i].start();
+					}
+					stripes=s;
+				}
+			}
+		}
+		return s;
+	}
+
+	private void queue(Event e) {
+		if (killed) {
+			return;
+		}
+		Stripe[] s= getStripes();
+		int h= System.identityHashCode(e.ev.getSource());
+		h^= h>>>16;
+		Stripe st= s[(h & 0x7fffffff) % s.length];
+
+		e.queued= System.nanoTime();
+		// waiting in dispatcher thread for space in own or other full queue could deadlock
+		if (st.space!=null && !(Thread.currentThread() instanceof Stripe)) {
+			if (!st.space.tryAcquire()) {
+				long b= blocked.incrementAndGet();
+				if (b==1 || b%1000==0) {
+					log.warn("Queue of "+st.getName()+" is full with "+queueLimit+" events, dispatching is waiting, waited "+b+" times.");
+				}
+				try {
+					st.space.acquire();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			e.permit= true;
+		}
+		st.queue.add(e);
+		int d= st.queue.size();
+		if (d>maxQueueDepth) {
+			maxQueueDepth= d;
+		}
+	}
+
+	private void execute(Event e) {
+		long l= System.nanoTime()-e.queued;
+		lastLatency= l;
+		if (l>maxLatency) {
+			maxLatency= l;
+		}
+		totalLatency.addAndGet(l);
+		dispatched.incrementAndGet();
+		e.run();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispose() {
+		killed= true;
+		Stripe[] s= stripes;
+		if (s!=null) {
+			for (Stripe st : s) {
+				st.queue.clear();
+				if (st.space!=null) {
+					// wakes up CA thread waiting for space
+					st.space.release(queueLimit);
+				}
+				st.interrupt();
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(ContextMessageEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((ContextMessageListener)l).contextMessage((ContextMessageEvent)ev);
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(ContextExceptionEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((ContextExceptionListener)l).contextException((ContextExceptionEvent)ev);
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(ConnectionEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((ConnectionListener)l).connectionChanged((ConnectionEvent)ev);
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(AccessRightsEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((AccessRightsListener)l).accessRightsChanged((AccessRightsEvent)ev);
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(MonitorEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((MonitorListener)l).monitorChanged((MonitorEvent)ev);
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(GetEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((GetListener)l).getCompleted((GetEvent)ev);
+			}
+		});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void dispatch(PutEvent event, List listeners) {
+		queue(new Event(event, listeners.toArray()) {
+			@Override
+			void dispatch(EventListener l) {
+				((PutListener)l).putCompleted((PutEvent)ev);
+			}
+		});
+	}
+
+	/**
+	 * <p>Getter for the field <code>threads</code>.</p>
+	 *
+	 * @return number of dispatching threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * <p>Getter for the field <code>queueLimit</code>.</p>
+	 *
+	 * @return capacity of queue for each thread, <code>0</code> if unbounded
+	 */
+	public int getQueueLimit() {
+		return queueLimit;
+	}
+
+	/**
+	 * Returns number of events currently waiting in all queues.
+	 *
+	 * @return number of queued events
+	 */
+	public int getQueueDepth() {
+		Stripe[] s= stripes;
+		int d=0;
+		if (s!=null) {
+			for (Stripe st : s) {
+				d+= st.queue.size();
+			}
+		}
+		return d;
+	}
+
+	/**
+	 * Returns maximal number of events observed in single queue.
+	 *
+	 * @return maximal queue depth
+	 */
+	public int getMaxQueueDepth() {
+		return maxQueueDepth;
+	}
+
+	/**
+	 * Returns number of dispatched events.
+	 *
+	 * @return number of dispatched events
+	 */
+	public long getDispatched() {
+		return dispatched.get();
+	}
+
+	/**
+	 * Returns number of times event source had to wait, because queue was full.
+	 *
+	 * @return number of waits on full queue
+	 */
+	public long getBlocked() {
+		return blocked.get();
+	}
+
+	/**
+	 * Returns time last event waited in queue before dispatch, in milliseconds.
+	 *
+	 * @return last dispatch latency in ms
+	 */
+	public double getLastLatency() {
+		return lastLatency/1000000.0;
+	}
+
+	/**
+	 * Returns maximal time event waited in queue before dispatch, in milliseconds.
+	 *
+	 * @return maximal dispatch latency in ms
+	 */
+	public double getMaxLatency() {
+		return maxLatency/1000000.0;
+	}
+
+	/**
+	 * Returns average time events waited in queue before dispatch, in milliseconds.
+	 *
+	 * @return average dispatch latency in ms
+	 */
+	public double getAverageLatency() {
+		long d= dispatched.get();
+		return d>0 ? totalLatency.get()/1000000.0/d : 0.0;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		StringBuilder sb= new StringBuilder(128);
+		sb.append("StripedEventDispatcher{threads:");
+		sb.append(threads);
+		sb.append(",queue:");
+		sb.append(getQueueDepth());
+		sb.append(",maxQueue:");
+		sb.append(maxQueueDepth);
+		sb.append(",dispatched:");
+		sb.append(dispatched.get());
+		sb.append(",blocked:");
+		sb.append(blocked.get());
+		sb.append(String.format(",latency:{last:%.2f,avg:%.2f,max:%.2f}}", getLastLatency(), getAverageLatency(), getMaxLatency()));
+		return sb.toString();
+	}
+
+}
@@ -234,24 +234,19 @@ public class CASperr {
 			@Override
 			public void run() {
 				
-				for (int i=0; i<names.size(); i++) {
-					final String s= names.get(i);
-					
-					getExecutor().submit(new Runnable() {
-						
-						@Override
-						public void run() {
-							try {
-								Poop<?, ?> p= connector.getOneShot(s);
-								if (p!=null) {
-									getCache().updateRecord(s, p);
-								}
-							} catch (Exception e) {
-								e.printStackTrace();
-							} 
+				final String[] n= names.toArray(new String[names.size()]);
+				
+				try {
+					// all names are requested in single batch
+					Poop<?, ?>[] p= connector.getOneShot(n);
+					for (int i = 0; i < p.length; i++) {
+						if (p[i]!=null) {
+							getCache().updateRecord(n[i], p[i]);
 						}
-					});
-				}
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				} 
 				updateButton.setEnabled(true);
 			}
 		}.start();
@@ -7,10 +7,13 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -90,6 +93,108 @@ public final class ConfigurationManager {
 		return Status.forName(s);
 	}
 
+	/**
+	 * Node in hierarchical index of alarm paths. Each node corresponds to one component of alarm path
+	 * and holds PVs, which have been configured with exactly this path. Children are sorted by component name.
+	 */
+	public static final class AlarmPathNode {
+		
+		private final String name;
+		private final String path;
+		private final Map<String, AlarmPathNode> children= new TreeMap<String, AlarmPathNode>();
+		private final List<String> pvs= new ArrayList<String>(4);
+		
+		AlarmPathNode(String name, String path) {
+			this.name=name;
+			this.path=path;
+		}
+		
+		AlarmPathNode addChild(String component) {
+			AlarmPathNode n= children.get(component);
+			if (n==null) {
+				n= new AlarmPathNode(component, path==null ? component : path+','+component);
+				children.put(component, n);
+			}
+			return n;
+		}
+		
+		/**
+		 * Returns path component of this node, <code>null</code> for root node.
+		 * @return path component
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * Returns full alarm path of this node with components separated by comma, <code>null</code> for root node.
+		 * @return full alarm path
+		 */
+		public String getPath() {
+			return path;
+		}
+		
+		/**
+		 * Returns child node for path component.
+		 * @param component path component
+		 * @return child node or <code>null</code>
+		 */
+		public AlarmPathNode getChild(String component) {
+			return children.get(component);
+		}
+		
+		/**
+		 * Returns child nodes, sorted by component name.
+		 * @return child nodes
+		 */
+		public Collection<AlarmPathNode> getChildren() {
+			return Collections.unmodifiableCollection(children.values());
+		}
+		
+		/**
+		 * Returns PVs configured with exactly this alarm path.
+		 * @return PVs of this node
+		 */
+		public List<String> getPVs() {
+			return Collections.unmodifiableList(pvs);
+		}
+		
+		/**
+		 * Finds node for alarm path, relative to this node.
+		 * @param components path components
+		 * @return node for path or <code>null</code> if there is no such path
+		 */
+		public AlarmPathNode find(String... components) {
+			AlarmPathNode n= this;
+			for (int i = 0; i < components.length && n!=null; i++) {
+				n= n.children.get(components[i]);
+			}
+			return n;
+		}
+		
+		/**
+		 * Adds PVs of this node and, if recursive, of all nodes below it, to the provided list.
+		 * Nodes are visited depth first, children in sorted order.
+		 * @param result list to which PVs are added
+		 * @param recursive if <code>true</code> PVs of all descendant nodes are added
+		 * @return provided result list
+		 */
+		public List<String> collectPVs(List<String> result, boolean recursive) {
+			result.addAll(pvs);
+			if (recursive) {
+				for (AlarmPathNode n : children.values()) {
+					n.collectPVs(result, true);
+				}
+			}
+			return result;
+		}
+		
+		@Override
+		public String toString() {
+			return "AlarmPath:{"+path+","+pvs.size()+" PVs,"+children.size()+" children}";
+		}
+	}
+	
 	/**
 	 * Visitor for hierarchical configuration, used during configuration parsing.
 	 */
@@ -105,7 +210,8 @@ public final class ConfigurationManager {
 		private List<Application> applications;
 		private Map<String, String> subsMerge;
 		private Map<String, SubnodeConfiguration> templates = new HashMap<String, SubnodeConfiguration>(8);
-		private Map<String, List<String>> alarmPaths= new HashMap<String, List<String>>();
+		private Map<String, AlarmPathNode> alarmPaths= new HashMap<String, AlarmPathNode>();
+		private AlarmPathNode alarmPathRoot= new AlarmPathNode(null, null);
 		
 		/**
 		 * Constructor.
@@ -354,22 +460,23 @@ public final class ConfigurationManager {
 		 */
 		public void addAlarmPath(String[] path, String pv) {
 			
-			StringBuilder sb= new StringBuilder(128);
-			sb.append(path[0]);
-			for (int i = 1; i < path.length; i++) {
-				sb.append(',');
-				sb.append(path[i]);
+			AlarmPathNode n= alarmPathRoot;
+			for (int i = 0; i < path.length; i++) {
+				n= n.addChild(path[i]);
 			}
-			String p= sb.toString();
-			
-			List<String> l= alarmPaths.get(p);
-			if (l==null) {
-				l= new ArrayList<String>();
-				alarmPaths.put(p, l);
-			}
-			l.add(pv);
+			n.pvs.add(pv);
+			alarmPaths.put(n.getPath(), n);
 			
 		}
+		
+		/**
+		 * Returns root of hierarchical index of collected alarm paths. Root has no name and no PVs,
+		 * its children are first components of alarm paths.
+		 * @return root node of alarm path index
+		 */
+		public AlarmPathNode getAlarmPathIndex() {
+			return alarmPathRoot;
+		}
 
 		/**
 		 * Returns collected alarm paths.
@@ -387,7 +494,7 @@ public final class ConfigurationManager {
 		 * @return collected PVs for alarm path
 		 */
 		public List<String> getPVsForAlarmPath(String path) {
-			return new ArrayList<String>(alarmPaths.get(path));
+			return new ArrayList<String>(alarmPaths.get(path).getPVs());
 		}
 		
 		/**
@@ -578,6 +685,11 @@ public final class ConfigurationManager {
 			SubnodeConfiguration subConf= config.configurationAt("processor");
 			injectSubstitutions(visitor.getSubstitutions(), subConf);
 			
+			// monitor posting options are declared together with trigger 
+			r.setMonitorDeadband(subConf.getDouble("monitorDeadband", ZERO_DOUBLE));
+			r.setArchiveDeadband(subConf.getDouble("archiveDeadband", ZERO_DOUBLE));
+			r.setMaxPostRate(subConf.getDouble("maxPostRate", ZERO_DOUBLE));
+			
 			String cl=subConf.getString("[@instance]");
 			
 			final String oldPac="com.kriznar";
@@ -6,16 +6,24 @@ package org.scictrl.csshell.epics.server;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.logging.log4j.LogManager;
@@ -43,6 +51,18 @@ public class Database {
 	public static final String CONFIG_ACTIVATION_MIN = "Activation.min";
 	/** Constant <code>CONFIG_ACTIVATION_DELAY="Activation.delay"</code> */
 	public static final String CONFIG_ACTIVATION_DELAY = "Activation.delay";
+	/** Constant <code>CONFIG_ACTIVATION_BATCH="Activation.batch"</code>, if <code>true</code> remote links are requested in batch and completed asynchronously, default is <code>false</code>. */
+	public static final String CONFIG_ACTIVATION_BATCH = "Activation.batch";
+	/** Constant <code>CONFIG_SCHEDULER_THREADS="Scheduler.threads"</code>, number of threads dispatching scheduled tasks to executor. */
+	public static final String CONFIG_SCHEDULER_THREADS = "Scheduler.threads";
+	/** Constant <code>CONFIG_ACTIVATION_PARALLEL="Activation.parallel"</code>, if <code>true</code> records and applications are activated concurrently. */
+	public static final String CONFIG_ACTIVATION_PARALLEL = "Activation.parallel";
+	/** Constant <code>CONFIG_ACTIVATION_THREADS="Activation.threads"</code>, number of threads used for parallel activation. */
+	public static final String CONFIG_ACTIVATION_THREADS = "Activation.threads";
+	/** Constant <code>CONFIG_PERSISTENCY_FLUSH_LATENCY="Persistency.flushLatency"</code>, maximal time in ms changed persistent value waits before written to the file. */
+	public static final String CONFIG_PERSISTENCY_FLUSH_LATENCY = "Persistency.flushLatency";
+	/** Constant <code>CONFIG_PERSISTENCY_FLUSH_BATCH="Persistency.flushBatch"</code>, number of changed persistent values, which triggers immediate write. */
+	public static final String CONFIG_PERSISTENCY_FLUSH_BATCH = "Persistency.flushBatch";
 
 	
 	private class ActivationTimer {
@@ -80,25 +100,27 @@ public class Database {
 			last=System.currentTimeMillis();
 		}
 		
-	}
-	
-	private class ScheduledTask extends TimerTask {
-		private Runnable r;
-
-		public ScheduledTask(Runnable r) {
-			super();
-			this.r = r;
-		}
-		
-		@Override
-		public void run() {
-			if (!active || getExecutor().isShutdown()) {
+		/**
+		 * Global rate limit for parallel activation: reserves next activation slot, 
+		 * slots are at least min+delay apart, then waits for the slot outside of lock.
+		 */
+		public void acquire() {
+			if (min<=0L && delay<=0L) {
 				return;
 			}
-			try {
-				getExecutor().execute(r);
-			} catch (Throwable th) {
-				LogManager.getLogger(this.getClass()).warn("Sheduled task had unhandled error.", th);
+			long t;
+			long slot;
+			synchronized (this) {
+				t= System.currentTimeMillis();
+				slot= last==0L ? t : Math.max(t, last+min)+delay;
+				last= slot;
+			}
+			if (slot>t) {
+				try {
+					Thread.sleep(slot-t);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
 			}
 		}
 		
@@ -122,22 +144,31 @@ public class Database {
 		}
 	}
 
-	private Map<String,Record> records;
+	private ConcurrentHashMap<String,Record> records;
 	private Server server;
 	
 	private ThreadPoolExecutor executor;
-	private Timer timer;
+	private ScheduledThreadPoolExecutor scheduler;
+	private int schedulerThreads;
+	private Set<PeriodicTask> periodicTasks= ConcurrentHashMap.newKeySet();
 	private EPICSConnector connector;
 	
 	private Logger log= LogManager.getLogger(getClass());
-	private boolean active;
+	private volatile boolean active;
 	
 	private PropertyChangeSupport support;
 	private PersistencyStore peristencyStore;
-	private Map<String,Application> applications;
+	private ConcurrentHashMap<String,Application> applications;
 	
 	private Object layzLock= "LayzLock";
 	private ActivationTimer activationTimer;
+	private boolean activationBatch;
+	private boolean activationParallel;
+	private int activationThreads;
+	private volatile boolean activating;
+	private Set<String> activatedRecords= ConcurrentHashMap.newKeySet();
+	private AtomicInteger activatedDependencies= new AtomicInteger();
+	private Map<String,Long> activationReport= new LinkedHashMap<String, Long>();
 	
 	/**
 	 * Crate new instance with reference to a {@link org.scictrl.csshell.epics.server.Server}.
@@ -152,9 +183,9 @@ public class Database {
 			throw new NullPointerException("Parameter 'server' is null!");
 		}
 		this.server=server;
-		records=new HashMap<String, Record>(256);
+		records=new ConcurrentHashMap<String, Record>(256);
 		support= new PropertyChangeSupport(this);
-		applications= new HashMap<String,Application>();
+		applications= new ConcurrentHashMap<String,Application>();
 		
 		Properties p= new Properties(server.getConfiguration());
 		//p.put(EPICSConnector.PROPERTY_VERBOSITY, "0");
@@ -174,11 +205,20 @@ public class Database {
 			}
 			
 			peristencyStore= new PersistencyStore(f,this);
+			peristencyStore.setFlushLatency(Long.parseLong(server.getConfiguration().getProperty(CONFIG_PERSISTENCY_FLUSH_LATENCY, Long.toString(PersistencyStore.DEFAULT_FLUSH_LATENCY))));
+			peristencyStore.setFlushBatch(Integer.parseInt(server.getConfiguration().getProperty(CONFIG_PERSISTENCY_FLUSH_BATCH, Integer.toString(PersistencyStore.DEFAULT_FLUSH_BATCH))));
 		}
 		
 		activationTimer= new ActivationTimer(
 				Long.parseLong(server.getConfiguration().getProperty(CONFIG_ACTIVATION_MIN, "0")),
 				Long.parseLong(server.getConfiguration().getProperty(CONFIG_ACTIVATION_DELAY, "0")));
+		activationBatch= Boolean.parseBoolean(server.getConfiguration().getProperty(CONFIG_ACTIVATION_BATCH, "false"));
+		schedulerThreads= Math.max(1, Integer.parseInt(server.getConfiguration().getProperty(CONFIG_SCHEDULER_THREADS, "2")));
+		activationParallel= Boolean.parseBoolean(server.getConfiguration().getProperty(CONFIG_ACTIVATION_PARALLEL, "false"));
+		activationThreads= Integer.parseInt(server.getConfiguration().getProperty(CONFIG_ACTIVATION_THREADS, Integer.toString(Runtime.getRuntime().availableProcessors())));
+		if (activationThreads<1) {
+			activationThreads=1;
+		}
 	}
 	
 	/**
@@ -235,51 +275,173 @@ public class Database {
 		}
 	}
 	
+	/**
+	 * Returns scheduler, which dispatches delayed and periodic tasks to executor.
+	 *
+	 * @return the scheduler
+	 */
+	public ScheduledThreadPoolExecutor getScheduler() {
+		if (scheduler==null) {
+			createScheduler();
+		}
+		return scheduler;
+	}
+	
+	private void createScheduler() {
+		synchronized (layzLock) {
+			if (scheduler == null) {
+				ScheduledThreadPoolExecutor s= new ScheduledThreadPoolExecutor(schedulerThreads, new ThreadFactory() {
+					int count=0;
+					@Override
+					public synchronized Thread newThread(Runnable r) {
+						return new Thread(r,"EPICS Server Timer-"+(++count));
+					}
+				});
+				s.setRemoveOnCancelPolicy(true);
+				s.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+				scheduler=s;
+			}
+		}
+	}
+
 	/**
 	 * Schedule execution of Runnable within thread pool.
 	 *
 	 * @param r the Runnable to be scheduled
 	 * @param delay a long
 	 */
-	public void schedule(Runnable r, long delay) {
-		if (timer==null) {
-			createtimer();
-		}
-		
+	public void schedule(final Runnable r, long delay) {
 		if (delay<=0) {
 			getExecutor().execute(r);
 		} else {
-			timer.schedule(new ScheduledTask(r), delay);
+			ScheduledThreadPoolExecutor s= getScheduler();
+			if (s.isShutdown()) {
+				return;
+			}
+			try {
+				s.schedule(new Runnable() {
+					@Override
+					public void run() {
+						if (!isExecuting()) {
+							return;
+						}
+						try {
+							getExecutor().execute(r);
+						} catch (Throwable th) {
+							log.warn("Sheduled task had unhandled error.", th);
+						}
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// database is shutting down
+				log.debug("Scheduled task rejected, scheduler is shut down.");
+			}
 		}
 	}
 
 	/**
-	 * Schedule execution of Runnable within thread pool.
+	 * Schedule periodic execution of Runnable within thread pool at fixed rate.
 	 *
 	 * @param r the Runnable to be scheduled
 	 * @param delay a long
 	 * @param period a long
+	 * @return the scheduled task, can be used to cancel it or to get statistics, it is canceled if database has been shut down
+	 * @see #scheduleAtFixedRate(String, Runnable, long, long)
+	 */
+	public PeriodicTask schedule(Runnable r, long delay, long period) {
+		return scheduleAtFixedRate(null, r, delay, period);
+	}
+
+	/**
+	 * Schedule periodic execution of Runnable within thread pool at fixed rate. Execution times are calculated 
+	 * from first execution and period, late execution does not shift following executions. 
+	 * If previous execution is still pending when next is due, next execution is skipped.
+	 *
+	 * @param name name of the task used in statistics and logging, for example record name, if <code>null</code> the Runnable is used
+	 * @param r the Runnable to be scheduled
+	 * @param delay initial delay in milliseconds
+	 * @param period period in milliseconds
+	 * @return the scheduled task, can be used to cancel it or to get statistics, it is canceled if database has been shut down
+	 */
+	public PeriodicTask scheduleAtFixedRate(String name, Runnable r, long delay, long period) {
+		return startPeriodic(new PeriodicTask(name, r, period, true, getScheduler(), getExecutor(), this::isExecuting), delay);
+	}
+
+	/**
+	 * Schedule periodic execution of Runnable within thread pool with fixed delay. Next execution is scheduled 
+	 * period after previous execution has been completed.
+	 *
+	 * @param name name of the task used in statistics and logging, if <code>null</code> the Runnable is used
+	 * @param r the Runnable to be scheduled
+	 * @param delay initial delay in milliseconds
+	 * @param period delay between executions in milliseconds
+	 * @return the scheduled task, can be used to cancel it or to get statistics, it is canceled if database has been shut down
+	 */
+	public PeriodicTask scheduleWithFixedDelay(String name, Runnable r, long delay, long period) {
+		return startPeriodic(new PeriodicTask(name, r, period, false, getScheduler(), getExecutor(), this::isExecuting), delay);
+	}
+	
+	/**
+	 * Returns <code>true</code> if database is active and scheduled tasks may be executed.
 	 */
-	public void schedule(Runnable r, long delay, long period) {
-		if (timer==null) {
-			createtimer();
+	private boolean isExecuting() {
+		return active && !getExecutor().isShutdown();
+	}
+	
+	private PeriodicTask startPeriodic(PeriodicTask t, long delay) {
+		periodicTasks.removeIf(PeriodicTask::isCanceled);
+		if (getScheduler().isShutdown()) {
+			log.debug("Periodic task '"+t.getName()+"' not started, scheduler is shut down.");
+			t.cancel();
+			return t;
 		}
-		
-		if (delay<=0) {
-			getExecutor().execute(r);
-		} else {
-			timer.schedule(new ScheduledTask(r), delay, period);
+		try {
+			t.start(delay);
+		} catch (RejectedExecutionException e) {
+			// database is shutting down
+			log.debug("Periodic task '"+t.getName()+"' rejected, scheduler is shut down.");
+			t.cancel();
+			return t;
 		}
+		periodicTasks.add(t);
+		return t;
 	}
 
-	private void createtimer() {
-		synchronized (layzLock) {
-			if (timer == null) {
-				timer = new Timer("EPICS Server Timer");
+	/**
+	 * Returns periodic tasks scheduled within this database with their execution statistics, 
+	 * sorted by maximal lateness, most late tasks first.
+	 *
+	 * @return list of scheduled periodic tasks
+	 */
+	public List<PeriodicTask> getPeriodicTasks() {
+		List<PeriodicTask> l= new ArrayList<PeriodicTask>(periodicTasks.size());
+		for (PeriodicTask t : periodicTasks) {
+			if (!t.isCanceled()) {
+				l.add(t);
 			}
 		}
+		l.sort(Comparator.comparingDouble(PeriodicTask::getMaxLateness).reversed());
+		return l;
 	}
-	
+
+	/**
+	 * Returns number of tasks waiting in executor queue for free thread.
+	 *
+	 * @return executor queue size
+	 */
+	public int getExecutorQueueSize() {
+		return getExecutor().getQueue().size();
+	}
+
+	/**
+	 * Returns number of delayed and periodic tasks waiting in scheduler.
+	 *
+	 * @return scheduler queue size
+	 */
+	public int getSchedulerQueueSize() {
+		return getScheduler().getQueue().size();
+	}
+
 	/**
 	 * Adds and registers all {@link org.scictrl.csshell.epics.server.Record} instances in array to this database.
 	 * If {@link org.scictrl.csshell.epics.server.Record} instance contains an {@link org.scictrl.csshell.epics.server.Application} reference, then also the {@link org.scictrl.csshell.epics.server.Application} is added and registered.
@@ -296,22 +458,14 @@ public class Database {
 		sb.append(" records: ");
 		for (Record record : records) {
 			
-			if (this.records.containsKey(record.getName())) {
-				log.error("AppServer already contains record '"+record.getName()+"', ignoring record with duplicate name!");
+			if (!register(record)) {
 				continue;
 			}
 			
 			sb.append(record.getName());
 			sb.append(", ");
-			record.initialize(this);
-			this.records.put(record.getName(), record);
 			
-			Application app= record.getApplication();
-			if (app!=null && !applications.containsKey(app.getName())) {
-				app.initialize(this);
-				applications.put(app.getName(),app);
-				support.firePropertyChange(PROPERTY_APPLICATIONS, null, getApplicationNames());
-			}
+			registerApplication(record.getApplication());
 			
 			if (active) {
 				activateNow(record);
@@ -333,20 +487,11 @@ public class Database {
 		StringBuilder sb= new StringBuilder(128);
 		
 
-		if (this.records.containsKey(record.getName())) {
-			log.error("AppServer already contains record '"+record.getName()+"', ignoring record with duplicate name!");
+		if (!register(record)) {
 			return;
 		}
-			
-		record.initialize(this);
-		this.records.put(record.getName(), record);
 		
-		Application app= record.getApplication();
-		if (app!=null && !applications.containsKey(app.getName())) {
-			app.initialize(this);
-			applications.put(app.getName(),app);
-			support.firePropertyChange(PROPERTY_APPLICATIONS, null, getApplicationNames());
-		}
+		registerApplication(record.getApplication());
 		
 		if (active) {
 			activateNow(record);
@@ -359,6 +504,45 @@ public class Database {
 		support.firePropertyChange(PROPERTY_RECORDS, null, record.getName());
 	}
 
+	/**
+	 * Initializes record and makes it visible in registry. Record is initialized before it is published, 
+	 * so concurrent lookups never see uninitialized record.
+	 *
+	 * @param record the record to register
+	 * @return <code>true</code> if registered, <code>false</code> if record with same name already exists
+	 */
+	private boolean register(Record record) {
+		if (!this.records.containsKey(record.getName())) {
+			record.initialize(this);
+			if (this.records.putIfAbsent(record.getName(), record)==null) {
+				return true;
+			}
+		}
+		log.error("AppServer already contains record '"+record.getName()+"', ignoring record with duplicate name!");
+		return false;
+	}
+
+	/**
+	 * Initializes and registers application, if not already registered. 
+	 * Application is initialized before it is published, so concurrent lookups never see uninitialized application.
+	 * Initialization is guarded by application, so it is initialized only once, even when records are added concurrently.
+	 *
+	 * @param app the application, can be <code>null</code>
+	 */
+	private void registerApplication(Application app) {
+		if (app==null || applications.containsKey(app.getName())) {
+			return;
+		}
+		synchronized (app) {
+			if (!applications.containsKey(app.getName())) {
+				app.initialize(this);
+				if (applications.putIfAbsent(app.getName(),app)==null) {
+					support.firePropertyChange(PROPERTY_APPLICATIONS, null, getApplicationNames());
+				}
+			}
+		}
+	}
+
 	/**
 	 * <p>getRecord.</p>
 	 *
@@ -421,33 +605,227 @@ public class Database {
 	/**
 	 * Calls activate on all registered {@link org.scictrl.csshell.epics.server.Record} and {@link org.scictrl.csshell.epics.server.Application} instances.
 	 * Called by the server during initialization.
+	 * <p>
+	 * If {@link #CONFIG_ACTIVATION_PARALLEL} is set, records and then applications are activated concurrently 
+	 * on bounded pool of {@link #CONFIG_ACTIVATION_THREADS} threads. Local records, which are linked by record being activated,
+	 * are activated first by same thread, see {@link #activateDependency(Record)}.
+	 * </p>
 	 */
-	public synchronized void activate() {
-		if (active==true) {
-			return;
+	public void activate() {
+		synchronized (this) {
+			if (active==true) {
+				return;
+			}
+			active=true;
+			if (!activationParallel) {
+				activateSequential();
+				return;
+			}
 		}
-		active=true;
+		activateParallel();
+	}
+	
+	private void activateSequential() {
+		long start= System.currentTimeMillis();
 		for (Record r : records.values()) {
-			activationTimer.checkAndDelay();
-			r.activate();
+			activateOnce(r);
 		}
+		long t= System.currentTimeMillis();
+		Map<String,Long> report= new LinkedHashMap<String, Long>();
 		for (Application app : applications.values()) {
 			activationTimer.checkAndDelay();
+			long ta= System.currentTimeMillis();
 			app.activate();
+			report.put(app.getName(), System.currentTimeMillis()-ta);
+		}
+		long end= System.currentTimeMillis();
+		
+		scheduleTriggers();
+		
+		synchronized (activationReport) {
+			activationReport.putAll(report);
 		}
+		logActivationReport(report, records.size(), t-start, end-start);
+	}
+	
+	private void activateParallel() {
+		long start= System.currentTimeMillis();
 		
+		ThreadPoolExecutor ex= new ThreadPoolExecutor(activationThreads, activationThreads, 1000, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			int count=0;
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				return new Thread(r,"AppServerActivation-"+(++count));
+			}
+		});
+		
+		Map<String,Long> report= new ConcurrentHashMap<String, Long>();
+		long t;
+		activating=true;
+		try {
+			List<Future<?>> f= new ArrayList<Future<?>>(records.size());
+			for (final Record r : records.values()) {
+				f.add(ex.submit(new Runnable() {
+					@Override
+					public void run() {
+						activateOnce(r);
+					}
+				}));
+			}
+			waitFor(f);
+			
+			t= System.currentTimeMillis();
+
+			f.clear();
+			for (final Application app : applications.values()) {
+				f.add(ex.submit(new Runnable() {
+					@Override
+					public void run() {
+						activationTimer.acquire();
+						long ta= System.currentTimeMillis();
+						app.activate();
+						report.put(app.getName(), System.currentTimeMillis()-ta);
+					}
+				}));
+			}
+			waitFor(f);
+		} finally {
+			activating=false;
+			ex.shutdown();
+		}
+		long end= System.currentTimeMillis();
+		
+		scheduleTriggers();
+		
+		synchronized (activationReport) {
+			activationReport.putAll(report);
+		}
+		log.info("Parallel activation with "+activationThreads+" threads, "+activatedDependencies.get()+" records activated ahead as local link dependencies");
+		logActivationReport(report, records.size(), t-start, end-start);
+	}
+	
+	private void waitFor(List<Future<?>> futures) {
+		for (Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (ExecutionException e) {
+				log.error("Activation failed: "+e.getCause(), e.getCause());
+			}
+		}
+	}
+	
+	private void scheduleTriggers() {
 		for (Record r : records.values()) {
 			if (r.getProcessor().getTrigger()>0) {
-				schedule(new ProcessorTask(r.getProcessor()), 1000, r.getProcessor().getTrigger());
+				scheduleAtFixedRate(r.getName(), new ProcessorTask(r.getProcessor()), 1000, r.getProcessor().getTrigger());
 			}
 		}
 	}
 	
+	/**
+	 * Activates record, if it has not been activated by this database yet.
+	 * Applies activation rate limit before activation.
+	 */
+	private boolean activateOnce(Record r) {
+		if (!activatedRecords.add(r.getName())) {
+			return false;
+		}
+		if (activating) {
+			activationTimer.acquire();
+		} else {
+			activationTimer.checkAndDelay();
+		}
+		r.activate();
+		return true;
+	}
+	
+	/**
+	 * Called by {@link ValueLinks} before local link to provided record is established.
+	 * During parallel activation the linked record is activated first by calling thread, 
+	 * unless it is already activated or being activated. Remote links have no activation dependency.
+	 * Outside parallel activation this call does nothing.
+	 *
+	 * @param r the local record, which is target of a link
+	 */
+	public void activateDependency(Record r) {
+		if (activating && records.get(r.getName())==r && activateOnce(r)) {
+			activatedDependencies.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if records and applications are activated in parallel, 
+	 * as configured with {@link #CONFIG_ACTIVATION_PARALLEL}.
+	 *
+	 * @return <code>true</code> if parallel activation is used
+	 */
+	public boolean isActivationParallel() {
+		return activationParallel;
+	}
+	
+	private void logActivationReport(Map<String,Long> report, int recordCount, long recordTime, long total) {
+		if (!log.isInfoEnabled()) {
+			return;
+		}
+		List<Map.Entry<String,Long>> l= new ArrayList<Map.Entry<String,Long>>(report.entrySet());
+		l.sort(Map.Entry.comparingByValue(Comparator.reverseOrder()));
+		
+		StringBuilder sb= new StringBuilder(64+l.size()*32);
+		sb.append("Activation done in ");
+		sb.append(total);
+		sb.append(" ms: ");
+		sb.append(recordCount);
+		sb.append(" records in ");
+		sb.append(recordTime);
+		sb.append(" ms, ");
+		sb.append(l.size());
+		sb.append(" applications in ");
+		sb.append(total-recordTime);
+		sb.append(" ms");
+		for (Map.Entry<String, Long> e : l) {
+			sb.append("\n  ");
+			sb.append(e.getKey());
+			sb.append(" ");
+			sb.append(e.getValue());
+			sb.append(" ms");
+		}
+		log.info(sb.toString());
+	}
+	
+	/**
+	 * Returns activation time in milliseconds for each activated application.
+	 * Includes time for requesting links, not time for remote connections to be established.
+	 *
+	 * @return map with application names and activation time in ms
+	 */
+	public Map<String,Long> getActivationReport() {
+		synchronized (activationReport) {
+			return new LinkedHashMap<String, Long>(activationReport);
+		}
+	}
+	
+	/**
+	 * Returns <code>true</code> if remote links are requested in batch during activation and completed asynchronously,
+	 * as configured with {@link #CONFIG_ACTIVATION_BATCH}.
+	 *
+	 * @return <code>true</code> if links are activated in batch
+	 */
+	public boolean isActivationBatch() {
+		return activationBatch;
+	}
+	
 	/**
 	 * <p>activationDelay.</p>
 	 */
 	public void activationDelay() {
-		activationTimer.checkAndDelay();
+		if (activating) {
+			activationTimer.acquire();
+		} else {
+			activationTimer.checkAndDelay();
+		}
 	}
 	
 	/**
@@ -459,6 +837,9 @@ public class Database {
 		}
 		active=false;
 		
+		if (scheduler!=null) {
+			scheduler.shutdownNow();
+		}
 		getExecutor().shutdown();
 		
 		/*for (Record r : records.values()) {
@@ -483,8 +864,7 @@ public class Database {
 			return;
 		}
 		
-		activationTimer.checkAndDelay();
-		r.activate();
+		activateOnce(r);
 		
 		Application a= r.getApplication();
 		
@@ -499,12 +879,18 @@ public class Database {
 			}
 			if (allIn) {
 				activationTimer.checkAndDelay();
+				long ta= System.currentTimeMillis();
 				a.activate();
+				ta= System.currentTimeMillis()-ta;
+				synchronized (activationReport) {
+					activationReport.put(a.getName(), ta);
+				}
+				log.info("Application '"+a.getName()+"' activated in "+ta+" ms");
 			}
 		}
 		
 		if (r.getProcessor().getTrigger()>0) {
-			schedule(new ProcessorTask(r.getProcessor()), 1000, r.getProcessor().getTrigger());
+			scheduleAtFixedRate(r.getName(), new ProcessorTask(r.getProcessor()), 1000, r.getProcessor().getTrigger());
 		}
 	}
 
@@ -572,6 +958,48 @@ public class Database {
 		
 	}
 
+	/**
+	 * Tries to get values for the PV names. For each PV it first try to locate local record in Database,
+	 * remaining values are requested from remote EPICS in single batch, see {@link org.scictrl.csshell.epics.EPICSConnector#getOneShot(String[])}.
+	 *
+	 * @param pvs an array of PV names
+	 * @return an array of values, same length and order as PV names, <code>null</code> where value could not be obtained
+	 */
+	public Object[] getValues(String[] pvs) {
+		Object[] values= new Object[pvs.length];
+		String[] remote= new String[pvs.length];
+		int count= 0;
+		
+		for (int i = 0; i < pvs.length; i++) {
+			Record r= getRecord(pvs[i]);
+			if (r!=null) {
+				values[i]= r.getValue();
+			} else {
+				remote[i]= pvs[i];
+				count++;
+			}
+		}
+		
+		if (count==0) {
+			return values;
+		}
+		
+		try {
+			Poop<?, DBR>[] poops= getConnector().getOneShot(remote);
+			for (int i = 0; i < poops.length; i++) {
+				if (poops[i]!=null) {
+					values[i]= poops[i].getValue();
+				} else if (remote[i]!=null) {
+					log.error("Failed to obtain value for '"+remote[i]+"'.");
+				}
+			}
+		} catch (Exception e) {
+			log.error("Failed to obtain values for "+count+" PVs: "+e.toString(), e);
+		}
+		
+		return values;
+	}
+
 	/**
 	 * Tries to get value for the PV name. It first try to locate local record in Database,
 	 * if that fails, then makes remote EPICS get.
@@ -0,0 +1,319 @@
+/**
+ *
+ */
+package org.scictrl.csshell.epics.server;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Periodic task scheduled by {@link Database}. Scheduler thread only dispatches the task to the
+ * {@link Database} executor, so slow task does not delay other scheduled tasks.
+ * <p>
+ * With fixed rate, execution times are calculated from the first execution time and the period,
+ * so late executions do not accumulate drift. If previous execution is still running or waiting in executor queue
+ * when next one is due, next execution is skipped and counted as overrun.
+ * With fixed delay, next execution is scheduled period after previous execution was completed.
+ * </p>
+ * <p>
+ * Task collects statistics: number of executions and overruns, lateness of execution start relative to planned time and
+ * duration of execution.
+ * </p>
+ * <p>
+ * While {@link Database} is not active or its executor is shut down, due executions are skipped, same as with
+ * {@link Database#schedule(Runnable, long)}.
+ * </p>
+ *
+ * @author igor@scictrl.com
+ */
+public class PeriodicTask {
+
+	private final String name;
+	private final Runnable task;
+	private final long period;
+	private final boolean fixedRate;
+	private final ScheduledExecutorService scheduler;
+	private final Executor executor;
+	private final BooleanSupplier enabled;
+	private final Logger log= LogManager.getLogger(getClass());
+
+	private final AtomicBoolean pending= new AtomicBoolean();
+	private volatile boolean canceled;
+	private volatile ScheduledFuture<?> future;
+
+	/** Planned time of next dispatch, in nanoseconds. */
+	private volatile long planned;
+	/** Planned time of execution currently in executor, in nanoseconds. */
+	private volatile long dispatchedPlanned;
+
+	private volatile long executions;
+	private volatile long overruns;
+	private volatile long lastLateness;
+	private volatile long maxLateness;
+	private volatile long totalLateness;
+	private volatile long lastDuration;
+	private volatile long maxDuration;
+
+	private final Runnable dispatcher= new Runnable() {
+		@Override
+		public void run() {
+			dispatch();
+		}
+	};
+
+	private final Runnable execution= new Runnable() {
+		@Override
+		public void run() {
+			execute();
+		}
+	};
+
+	PeriodicTask(String name, Runnable task, long period, boolean fixedRate, ScheduledExecutorService scheduler, Executor executor, BooleanSupplier enabled) {
+		if (period<=0) {
+			throw new IllegalArgumentException("Period must be positive, was "+period);
+		}
+		this.name= name!=null ? name : task.toString();
+		this.task= task;
+		this.period= period;
+		this.fixedRate= fixedRate;
+		this.scheduler= scheduler;
+		this.executor= executor;
+		this.enabled= enabled;
+	}
+
+	void start(long delay) {
+		if (delay<0) {
+			delay=0;
+		}
+		planned= System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(delay);
+		if (fixedRate) {
+			future= scheduler.scheduleAtFixedRate(dispatcher, delay, period, TimeUnit.MILLISECONDS);
+		} else {
+			future= scheduler.schedule(dispatcher, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void dispatch() {
+		if (canceled) {
+			return;
+		}
+		long p= planned;
+		if (fixedRate) {
+			planned= p+TimeUnit.MILLISECONDS.toNanos(period);
+		}
+		if (!enabled.getAsBoolean()) {
+			// database not active, execution is skipped, but task stays scheduled
+			if (!fixedRate) {
+				reschedule(System.nanoTime());
+			}
+			return;
+		}
+		if (!pending.compareAndSet(false, true)) {
+			long o= ++overruns;
+			if (o==1 || o%100==0) {
+				log.warn("Task '"+name+"' overrun, previous execution not finished within period of "+period+" ms, skipped "+o+" times");
+			}
+			return;
+		}
+		dispatchedPlanned= p;
+		try {
+			executor.execute(execution);
+		} catch (Exception e) {
+			pending.set(false);
+			log.warn("Task '"+name+"' dispatch failed: "+e, e);
+		}
+	}
+
+	private void execute() {
+		long start= System.nanoTime();
+		long late= Math.max(0L, start-dispatchedPlanned);
+		try {
+			if (!canceled) {
+				task.run();
+			}
+		} catch (Throwable th) {
+			log.warn("Task '"+name+"' had unhandled error.", th);
+		} finally {
+			long end= System.nanoTime();
+			long d= end-start;
+
+			executions++;
+			lastLateness= late;
+			totalLateness+= late;
+			if (late>maxLateness) {
+				maxLateness= late;
+			}
+			lastDuration= d;
+			if (d>maxDuration) {
+				maxDuration= d;
+			}
+
+			pending.set(false);
+
+			if (!fixedRate) {
+				reschedule(end);
+			}
+		}
+	}
+
+	/**
+	 * Schedules next execution with fixed delay, period after provided time.
+	 */
+	private void reschedule(long from) {
+		if (canceled) {
+			return;
+		}
+		planned= from+TimeUnit.MILLISECONDS.toNanos(period);
+		try {
+			future= scheduler.schedule(dispatcher, period, TimeUnit.MILLISECONDS);
+		} catch (Exception e) {
+			// scheduler has been shut down
+			canceled= true;
+		}
+	}
+
+	/**
+	 * Cancels further executions.
+	 */
+	public void cancel() {
+		canceled= true;
+		ScheduledFuture<?> f= future;
+		if (f!=null) {
+			f.cancel(false);
+		}
+	}
+
+	/**
+	 * <p>isCanceled.</p>
+	 *
+	 * @return <code>true</code> if task has been canceled
+	 */
+	public boolean isCanceled() {
+		return canceled;
+	}
+
+	/**
+	 * <p>Getter for the field <code>name</code>.</p>
+	 *
+	 * @return name of the task, for processor triggers this is record name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * <p>Getter for the field <code>period</code>.</p>
+	 *
+	 * @return period in milliseconds
+	 */
+	public long getPeriod() {
+		return period;
+	}
+
+	/**
+	 * <p>isFixedRate.</p>
+	 *
+	 * @return <code>true</code> if executed at fixed rate, <code>false</code> if with fixed delay
+	 */
+	public boolean isFixedRate() {
+		return fixedRate;
+	}
+
+	/**
+	 * Returns number of completed executions.
+	 *
+	 * @return number of completed executions
+	 */
+	public long getExecutions() {
+		return executions;
+	}
+
+	/**
+	 * Returns number of executions skipped, because previous execution was still running or queued.
+	 *
+	 * @return number of skipped executions
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * Returns <code>true</code> if execution is dispatched to executor and waiting in queue or running.
+	 *
+	 * @return <code>true</code> if execution is pending
+	 */
+	public boolean isPending() {
+		return pending.get();
+	}
+
+	/**
+	 * Returns lateness of last execution start relative to planned time, in milliseconds.
+	 *
+	 * @return lateness of last execution in ms
+	 */
+	public double getLastLateness() {
+		return lastLateness/1000000.0;
+	}
+
+	/**
+	 * Returns maximal lateness of execution start relative to planned time, in milliseconds.
+	 *
+	 * @return maximal lateness in ms
+	 */
+	public double getMaxLateness() {
+		return maxLateness/1000000.0;
+	}
+
+	/**
+	 * Returns average lateness of execution start relative to planned time, in milliseconds.
+	 *
+	 * @return average lateness in ms
+	 */
+	public double getAverageLateness() {
+		long e= executions;
+		return e>0 ? totalLateness/1000000.0/e : 0.0;
+	}
+
+	/**
+	 * Returns duration of last execution, in milliseconds.
+	 *
+	 * @return duration of last execution in ms
+	 */
+	public double getLastDuration() {
+		return lastDuration/1000000.0;
+	}
+
+	/**
+	 * Returns maximal duration of execution, in milliseconds.
+	 *
+	 * @return maximal duration in ms
+	 */
+	public double getMaxDuration() {
+		return maxDuration/1000000.0;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		StringBuilder sb= new StringBuilder(128);
+		sb.append(name);
+		sb.append("{period:");
+		sb.append(period);
+		sb.append(fixedRate ? ",rate" : ",delay");
+		sb.append(",executions:");
+		sb.append(executions);
+		sb.append(",overruns:");
+		sb.append(overruns);
+		sb.append(String.format(",lateness:{last:%.2f,avg:%.2f,max:%.2f}", getLastLateness(), getAverageLateness(), getMaxLateness()));
+		sb.append(String.format(",duration:{last:%.2f,max:%.2f}}", getLastDuration(), getMaxDuration()));
+		return sb.toString();
+	}
+
+}
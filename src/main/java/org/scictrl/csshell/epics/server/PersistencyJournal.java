@@ -0,0 +1,692 @@
+/**
+ *
+ */
+package org.scictrl.csshell.epics.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>Append-only binary journal of persistent values, used as backend by {@link org.scictrl.csshell.epics.server.PersistencyStore}.</p>
+ *
+ * <p>Each stored value is appended to the end of the file as an entry with key, typed value and CRC32 checksum,
+ * existing content of the file is never rewritten. Last entry for a key is the valid one. Supported values are
+ * primitive arrays <code>double[]</code>, <code>float[]</code>, <code>int[]</code>, <code>short[]</code>, <code>byte[]</code>,
+ * <code>String[]</code>, plain <code>String</code> and <code>Map&lt;String,String[]&gt;</code>.</p>
+ *
+ * <p>When opened, journal is replayed to memory. Replay stops at first incomplete or corrupted entry, which is
+ * what remains after a crash during write, and file is truncated to last valid entry.</p>
+ *
+ * <p>When number of entries in the file grows over compaction ratio times number of live keys, journal is compacted:
+ * snapshot with only live values is written to temporary file, which is synced to disk and then atomically moved over the journal.
+ * If process fails during compaction, old journal remains intact.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class PersistencyJournal implements Closeable {
+
+	/** Constant <code>MAGIC=0x43535031</code>, file header. */
+	public static final int MAGIC= 0x43535031;
+
+	/** Constant <code>DEFAULT_COMPACTION_RATIO=4</code> */
+	public static final int DEFAULT_COMPACTION_RATIO= 4;
+	/** Constant <code>DEFAULT_COMPACTION_MIN=1024</code> */
+	public static final int DEFAULT_COMPACTION_MIN= 1024;
+
+	private static final byte KIND_REMOVE= 0;
+	private static final byte KIND_DOUBLE= 1;
+	private static final byte KIND_FLOAT= 2;
+	private static final byte KIND_INT= 3;
+	private static final byte KIND_SHORT= 4;
+	private static final byte KIND_BYTE= 5;
+	private static final byte KIND_STRING_ARRAY= 6;
+	private static final byte KIND_STRING= 7;
+	private static final byte KIND_MAP= 8;
+
+	private static final int MAX_ENTRY= 64*1024*1024;
+	private static final int WRITE_THRESHOLD= 64*1024;
+
+	private final Logger log= LogManager.getLogger(getClass());
+
+	private final File file;
+	private final int compactionRatio;
+	private final int compactionMin;
+	private final Map<String,Object> live= new HashMap<String, Object>(256);
+
+	private FileChannel channel;
+	private final ByteArrayOutputStream pending= new ByteArrayOutputStream(4096);
+	private final DataOutputStream pendingOut= new DataOutputStream(pending);
+	private final ByteArrayOutputStream body= new ByteArrayOutputStream(1024);
+	private final DataOutputStream bodyOut= new DataOutputStream(body);
+	private final CRC32 crc= new CRC32();
+
+	private int entries;
+	private long length;
+	private long recoveredBytes;
+	private int compactions;
+
+	/**
+	 * Opens journal with default compaction parameters.
+	 *
+	 * @param file the journal file
+	 * @throws java.io.IOException if journal can not be opened
+	 */
+	public PersistencyJournal(File file) throws IOException {
+		this(file, DEFAULT_COMPACTION_RATIO, DEFAULT_COMPACTION_MIN);
+	}
+
+	/**
+	 * Opens journal file, replays it to memory and prepares it for appending. If file does not exist, it is created.
+	 *
+	 * @param file the journal file
+	 * @param compactionRatio journal is compacted when there is more entries than this ratio times number of live keys
+	 * @param compactionMin journal is not compacted with less entries than this
+	 * @throws java.io.IOException if journal can not be opened
+	 */
+	public PersistencyJournal(File file, int compactionRatio, int compactionMin) throws IOException {
+		this.file= file;
+		this.compactionRatio= Math.max(2, compactionRatio);
+		this.compactionMin= Math.max(0, compactionMin);
+
+		File p= file.getAbsoluteFile().getParentFile();
+		if (p!=null && !p.exists()) {
+			p.mkdirs();
+		}
+
+		// leftover from interrupted compaction, journal itself is still valid
+		File tmp= tempFile();
+		if (tmp.exists()) {
+			tmp.delete();
+		}
+
+		if (file.exists() && file.length()>0) {
+			replay();
+		} else {
+			length= writeSnapshot(file);
+			entries= live.size();
+		}
+
+		channel= FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+		channel.position(length);
+	}
+
+	private File tempFile() {
+		return new File(file.getPath()+".tmp");
+	}
+
+	private void replay() throws IOException {
+		long fileLength= file.length();
+		long offset= 0;
+
+		try (DataInputStream in= new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536))) {
+
+			if (in.readInt()!=MAGIC) {
+				throw new IOException("File '"+file+"' is not a persistency journal.");
+			}
+			offset= 4;
+
+			byte[] buff= new byte[1024];
+
+			while (true) {
+				int len;
+				try {
+					len= in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (len<=0 || len>MAX_ENTRY || offset+8+len>fileLength) {
+					break;
+				}
+				if (buff.length<len) {
+					buff= new byte[len];
+				}
+				try {
+					in.readFully(buff, 0, len);
+				} catch (EOFException e) {
+					break;
+				}
+				int sum;
+				try {
+					sum= in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				crc.reset();
+				crc.update(buff, 0, len);
+				if ((int)crc.getValue()!=sum) {
+					break;
+				}
+				try {
+					apply(new DataInputStream(new ByteArrayInputStream(buff, 0, len)));
+				} catch (IOException e) {
+					break;
+				}
+				offset+= 8+len;
+				entries++;
+			}
+		}
+
+		length= offset;
+
+		if (offset<fileLength) {
+			recoveredBytes= fileLength-offset;
+			log.warn("Persistency journal '"+file+"' has incomplete or corrupted data at offset "+offset+", discarding "+recoveredBytes+" bytes.");
+			try (FileChannel ch= FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				ch.truncate(offset);
+				ch.force(true);
+			}
+		}
+
+		log.debug("Persistency journal '"+file+"' replayed "+entries+" entries, "+live.size()+" live keys.");
+	}
+
+	private void apply(DataInputStream in) throws IOException {
+		byte kind= in.readByte();
+		String key= readString(in);
+		if (key==null) {
+			throw new IOException("Missing key.");
+		}
+		if (kind==KIND_REMOVE) {
+			live.remove(key);
+			return;
+		}
+		live.put(key, readValue(kind, in));
+	}
+
+	private static Object readValue(byte kind, DataInputStream in) throws IOException {
+		switch (kind) {
+			case KIND_DOUBLE: {
+				double[] d= new double[readLength(in)];
+				for (int i = 0; i < d.length; i++) {
+					d[i]= in.readDouble();
+				}
+				return d;
+			}
+			case KIND_FLOAT: {
+				float[] d= new float[readLength(in)];
+				for (int i = 0; i < d.length; i++) {
+					d[i]= in.readFloat();
+				}
+				return d;
+			}
+			case KIND_INT: {
+				int[] d= new int[readLength(in)];
+				for (int i = 0; i < d.length; i++) {
+					d[i]= in.readInt();
+				}
+				return d;
+			}
+			case KIND_SHORT: {
+				short[] d= new short[readLength(in)];
+				for (int i = 0; i < d.length; i++) {
+					d[i]= in.readShort();
+				}
+				return d;
+			}
+			case KIND_BYTE: {
+				byte[] d= new byte[readLength(in)];
+				in.readFully(d);
+				return d;
+			}
+			case KIND_STRING_ARRAY: {
+				return readStrings(in);
+			}
+			case KIND_STRING: {
+				return readString(in);
+			}
+			case KIND_MAP: {
+				int l= readLength(in);
+				Map<String,String[]> m= new LinkedHashMap<String, String[]>(l*2);
+				for (int i = 0; i < l; i++) {
+					m.put(readString(in), readStrings(in));
+				}
+				return m;
+			}
+			default:
+				throw new IOException("Unknown entry kind "+kind+".");
+		}
+	}
+
+	private static int readLength(DataInputStream in) throws IOException {
+		int l= in.readInt();
+		if (l<0 || l>MAX_ENTRY) {
+			throw new IOException("Invalid length "+l+".");
+		}
+		return l;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int l= in.readInt();
+		if (l<0) {
+			return null;
+		}
+		if (l>MAX_ENTRY) {
+			throw new IOException("Invalid length "+l+".");
+		}
+		byte[] b= new byte[l];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException {
+		String[] s= new String[readLength(in)];
+		for (int i = 0; i < s.length; i++) {
+			s[i]= readString(in);
+		}
+		return s;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s==null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b= s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] s) throws IOException {
+		out.writeInt(s.length);
+		for (String v : s) {
+			writeString(out, v);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static byte kindOf(Object value) {
+		if (value==null) {
+			return KIND_REMOVE;
+		} else if (value instanceof double[]) {
+			return KIND_DOUBLE;
+		} else if (value instanceof float[]) {
+			return KIND_FLOAT;
+		} else if (value instanceof int[]) {
+			return KIND_INT;
+		} else if (value instanceof short[]) {
+			return KIND_SHORT;
+		} else if (value instanceof byte[]) {
+			return KIND_BYTE;
+		} else if (value instanceof String[]) {
+			return KIND_STRING_ARRAY;
+		} else if (value instanceof String) {
+			return KIND_STRING;
+		} else if (value instanceof Map) {
+			for (Map.Entry<Object, Object> e : ((Map<Object,Object>)value).entrySet()) {
+				if (!(e.getKey() instanceof String) || !(e.getValue() instanceof String[])) {
+					throw new IllegalArgumentException("Map values must have String keys and String[] values.");
+				}
+			}
+			return KIND_MAP;
+		}
+		throw new IllegalArgumentException("Unsupported value type "+value.getClass().getName()+".");
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeEntry(DataOutputStream out, byte kind, String key, Object value) throws IOException {
+		body.reset();
+		bodyOut.writeByte(kind);
+		writeString(bodyOut, key);
+
+		switch (kind) {
+			case KIND_DOUBLE: {
+				double[] d= (double[])value;
+				bodyOut.writeInt(d.length);
+				for (double v : d) {
+					bodyOut.writeDouble(v);
+				}
+				break;
+			}
+			case KIND_FLOAT: {
+				float[] d= (float[])value;
+				bodyOut.writeInt(d.length);
+				for (float v : d) {
+					bodyOut.writeFloat(v);
+				}
+				break;
+			}
+			case KIND_INT: {
+				int[] d= (int[])value;
+				bodyOut.writeInt(d.length);
+				for (int v : d) {
+					bodyOut.writeInt(v);
+				}
+				break;
+			}
+			case KIND_SHORT: {
+				short[] d= (short[])value;
+				bodyOut.writeInt(d.length);
+				for (short v : d) {
+					bodyOut.writeShort(v);
+				}
+				break;
+			}
+			case KIND_BYTE: {
+				byte[] d= (byte[])value;
+				bodyOut.writeInt(d.length);
+				bodyOut.write(d);
+				break;
+			}
+			case KIND_STRING_ARRAY: {
+				writeStrings(bodyOut, (String[])value);
+				break;
+			}
+			case KIND_STRING: {
+				writeString(bodyOut, (String)value);
+				break;
+			}
+			case KIND_MAP: {
+				Map<String,String[]> m= (Map<String,String[]>)value;
+				bodyOut.writeInt(m.size());
+				for (Map.Entry<String, String[]> e : m.entrySet()) {
+					writeString(bodyOut, e.getKey());
+					writeStrings(bodyOut, e.getValue());
+				}
+				break;
+			}
+			default:
+				break;
+		}
+
+		bodyOut.flush();
+		crc.reset();
+		crc.update(body.toByteArray(), 0, body.size());
+
+		out.writeInt(body.size());
+		body.writeTo(out);
+		out.writeInt((int)crc.getValue());
+	}
+
+	private static boolean same(Object o1, Object o2) {
+		if (o1 instanceof Map && o2 instanceof Map) {
+			Map<?,?> m1= (Map<?,?>)o1;
+			Map<?,?> m2= (Map<?,?>)o2;
+			if (m1.size()!=m2.size()) {
+				return false;
+			}
+			for (Map.Entry<?, ?> e : m1.entrySet()) {
+				if (!Arrays.equals((Object[])e.getValue(), (Object[])m2.get(e.getKey()))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return Objects.deepEquals(o1, o2);
+	}
+
+	/**
+	 * Returns last stored value for the key.
+	 *
+	 * @param key the key
+	 * @return last stored value or <code>null</code> if there is none
+	 */
+	public synchronized Object get(String key) {
+		return live.get(key);
+	}
+
+	/**
+	 * Returns <code>true</code> if there is value stored for the key.
+	 *
+	 * @param key the key
+	 * @return <code>true</code> if there is value stored for the key
+	 */
+	public synchronized boolean contains(String key) {
+		return live.containsKey(key);
+	}
+
+	/**
+	 * Returns copy of all keys with value.
+	 *
+	 * @return set of live keys
+	 */
+	public synchronized Set<String> keys() {
+		return Collections.unmodifiableSet(new HashSet<String>(live.keySet()));
+	}
+
+	/**
+	 * Stores value for the key. Value is appended to the journal only if it differs from last stored value.
+	 * Entry is buffered in memory and written to the file when buffer grows large or with {@link #flush()}.
+	 * Journal takes ownership of provided value, it must not be changed afterwards.
+	 *
+	 * @param key the key
+	 * @param value the value, if <code>null</code> key is removed
+	 * @return <code>true</code> if entry was appended, <code>false</code> if value was the same as stored
+	 * @throws java.io.IOException if writing fails
+	 */
+	public synchronized boolean put(String key, Object value) throws IOException {
+		if (key==null) {
+			throw new NullPointerException("Key is null.");
+		}
+		byte kind= kindOf(value);
+		Object old= live.get(key);
+		if (value==null ? !live.containsKey(key) : same(old, value)) {
+			return false;
+		}
+		checkOpen();
+		writeEntry(pendingOut, kind, key, value);
+		entries++;
+		if (value==null) {
+			live.remove(key);
+		} else {
+			live.put(key, value);
+		}
+		if (pending.size()>WRITE_THRESHOLD) {
+			writePending();
+		}
+		return true;
+	}
+
+	/**
+	 * Removes value for the key.
+	 *
+	 * @param key the key
+	 * @return <code>true</code> if key was removed
+	 * @throws java.io.IOException if writing fails
+	 */
+	public boolean remove(String key) throws IOException {
+		return put(key, null);
+	}
+
+	private void checkOpen() throws IOException {
+		if (channel==null) {
+			throw new IOException("Persistency journal '"+file+"' is closed.");
+		}
+	}
+
+	private void writePending() throws IOException {
+		if (pending.size()==0) {
+			return;
+		}
+		pendingOut.flush();
+		ByteBuffer b= ByteBuffer.wrap(pending.toByteArray(), 0, pending.size());
+		while (b.hasRemaining()) {
+			length+= channel.write(b);
+		}
+		pending.reset();
+	}
+
+	/**
+	 * Writes buffered entries to the file and syncs file to disk. If journal has grown enough, it is compacted.
+	 *
+	 * @throws java.io.IOException if writing fails
+	 */
+	public synchronized void flush() throws IOException {
+		checkOpen();
+		writePending();
+		channel.force(false);
+		if (entries>compactionMin && entries>(long)compactionRatio*live.size()) {
+			compact();
+		}
+	}
+
+	/**
+	 * Rewrites journal with only live values. Snapshot is written to temporary file, synced and atomically moved over the journal.
+	 *
+	 * @throws java.io.IOException if writing fails
+	 */
+	public synchronized void compact() throws IOException {
+		checkOpen();
+		writePending();
+
+		long t= System.currentTimeMillis();
+		int before= entries;
+
+		File tmp= tempFile();
+		writeSnapshot(tmp);
+
+		channel.close();
+		channel= null;
+		try {
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			// journal counts are swapped only when snapshot has replaced the old journal
+			entries= live.size();
+			forceDirectory();
+		} finally {
+			channel= FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+			length= channel.size();
+			channel.position(length);
+		}
+		compactions++;
+
+		log.debug("Persistency journal '"+file+"' compacted from "+before+" to "+entries+" entries in "+(System.currentTimeMillis()-t)+" ms.");
+	}
+
+	/**
+	 * Writes all live keys to file.
+	 * @return length of written file
+	 */
+	private long writeSnapshot(File f) throws IOException {
+		ByteArrayOutputStream bo= new ByteArrayOutputStream(Math.max(4096, live.size()*64));
+		DataOutputStream out= new DataOutputStream(bo);
+		out.writeInt(MAGIC);
+		for (Map.Entry<String, Object> e : live.entrySet()) {
+			writeEntry(out, kindOf(e.getValue()), e.getKey(), e.getValue());
+		}
+		out.flush();
+
+		try (FileChannel ch= FileChannel.open(f.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer b= ByteBuffer.wrap(bo.toByteArray(), 0, bo.size());
+			while (b.hasRemaining()) {
+				ch.write(b);
+			}
+			ch.force(true);
+		}
+		return bo.size();
+	}
+
+	/**
+	 * Forces directory of journal file to disk, so that rename of compacted journal is durable.
+	 * Not all platforms can open directory, in that case rename is left to file system.
+	 */
+	private void forceDirectory() {
+		File dir= file.getAbsoluteFile().getParentFile();
+		if (dir==null) {
+			return;
+		}
+		try (FileChannel ch= FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+			ch.force(true);
+		} catch (IOException e) {
+			log.debug("Persistency journal directory '"+dir+"' could not be forced: "+e);
+		}
+	}
+
+	/**
+	 * Flushes and closes the journal.
+	 *
+	 * @throws java.io.IOException if writing fails
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel==null) {
+			return;
+		}
+		try {
+			writePending();
+			channel.force(false);
+		} finally {
+			channel.close();
+			channel= null;
+		}
+	}
+
+	/**
+	 * <p>Getter for the field <code>file</code>.</p>
+	 *
+	 * @return the journal file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns number of keys with value.
+	 *
+	 * @return number of live keys
+	 */
+	public synchronized int size() {
+		return live.size();
+	}
+
+	/**
+	 * Returns number of entries in the journal, including buffered entries.
+	 *
+	 * @return number of entries
+	 */
+	public synchronized int getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Returns length of journal in bytes, without buffered entries.
+	 *
+	 * @return length in bytes
+	 */
+	public synchronized long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns number of bytes discarded during recovery, when journal was opened.
+	 *
+	 * @return number of discarded bytes
+	 */
+	public long getRecoveredBytes() {
+		return recoveredBytes;
+	}
+
+	/**
+	 * <p>Getter for the field <code>compactions</code>.</p>
+	 *
+	 * @return number of compactions since opened
+	 */
+	public synchronized int getCompactions() {
+		return compactions;
+	}
+
+}
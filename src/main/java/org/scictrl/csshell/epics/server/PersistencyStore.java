@@ -6,18 +6,24 @@ package org.scictrl.csshell.epics.server;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.Executors;
-import java.util.concurrent.RejectedExecutionHandler;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.apache.commons.configuration.XMLConfiguration;
+import org.apache.commons.configuration.tree.ConfigurationNode;
 import org.apache.commons.text.StringEscapeUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,6 +31,10 @@ import org.apache.logging.log4j.Logger;
 /**
  * Stores and restores state of Record or PersistentValueProcessor, which are registered.
  *
+ * <p>Value changes only mark record or processor as changed. Changed values are written and flushed to the file
+ * by background thread, latest after flush latency or immediately when number of changed values reaches flush batch.
+ * Several changes of same value within flush latency result in single write.</p>
+ *
  * @author igor@scictrl.com
  */
 public class PersistencyStore implements Runnable {
@@ -48,29 +58,59 @@ public class PersistencyStore implements Runnable {
 
 		@Override
 		public void propertyChange(PropertyChangeEvent evt) {
-			store();
-			flushLater();
+			markDirty(this);
 		}
 		
 		public void store() {
 			if (proc!=null) {
-				store(proc);
+				backend.store(proc);
 			} else {
-				store(rec);
+				backend.store(rec);
 			}
 		}
 		
 		public void restore() {
-			if (proc!=null) {
-				restore(proc);
-			} else {
-				restore(rec);
+			synchronized (PersistencyStore.this) {
+				// pending changes must be visible to restore and are written now, they are not marked dirty any more
+				if (!dirty.isEmpty()) {
+					flush();
+				}
+				if (proc!=null) {
+					backend.restore(proc);
+				} else {
+					backend.restore(rec);
+				}
 			}
 		}
+
+	}
+	
+	/**
+	 * Storage format of the store.
+	 */
+	private interface Backend {
+		void store(Record rec);
+		void restore(Record rec);
+		void store(PersistentValueProcessor proc);
+		void restore(PersistentValueProcessor proc);
+		void flush() throws Exception;
+	}
+
+	/**
+	 * Stores values as escaped strings in XML file, file is rewritten on each flush.
+	 */
+	private class XMLBackend implements Backend {
 		
+		private XMLConfiguration store;
+
+		public XMLBackend(XMLConfiguration store) {
+			this.store=store;
+		}
+
+		@Override
 		public void store(PersistentValueProcessor proc) {
 			
-			String path= proc.getClass().getName()+DIVIDER+proc.getName();
+			String path= processorPath(proc);
 			
 			List<HierarchicalConfiguration> l=store.configurationsAt(path);
 			
@@ -93,27 +133,24 @@ public class PersistencyStore implements Runnable {
 			}		
 		}
 
+		@Override
 		public void store(Record rec) {
-			String path= rec.getName()+DIVIDER+Record.PROPERTY_VALUE;
+			String path= recordPath(rec);
 			String value= rec.getValueAsString();
 			value= StringEscapeUtils.escapeXml10(value);
 			value=value.replace(",", "\\,");
 			store.setProperty(path, value);
 		}
 
+		@Override
 		public void restore(Record rec) {
-			String path= rec.getName()+DIVIDER+Record.PROPERTY_VALUE;
-			String value= store.getString(path);
-			if (value!=null) {
-				value=StringEscapeUtils.unescapeXml(value);
-				value=value.replace("\\,", ",");
-				rec.setValueAsString(value);
-			}
+			restoreString(rec, store.getString(recordPath(rec)));
 		}
 
+		@Override
 		public void restore(PersistentValueProcessor proc) {
 			
-			String path= proc.getClass().getName()+DIVIDER+proc.getName();
+			String path= processorPath(proc);
 			
 			List<HierarchicalConfiguration> l=store.configurationsAt(path);
 			
@@ -130,21 +167,122 @@ public class PersistencyStore implements Runnable {
 			proc.restore(subconf);
 			
 		}
+		
+		@Override
+		public void flush() throws Exception {
+			store.save();
+		}
 
 	}
 	
+	/**
+	 * Stores values as typed entries in append-only {@link PersistencyJournal}.
+	 */
+	private class JournalBackend implements Backend {
+		
+		private PersistencyJournal journal;
+
+		public JournalBackend(PersistencyJournal journal) {
+			this.journal=journal;
+		}
+
+		@Override
+		public void store(Record rec) {
+			Object value= rec.getValue();
+			if (value instanceof double[]) {
+				value= ((double[])value).clone();
+			} else if (value instanceof float[]) {
+				value= ((float[])value).clone();
+			} else if (value instanceof int[]) {
+				value= ((int[])value).clone();
+			} else if (value instanceof short[]) {
+				value= ((short[])value).clone();
+			} else if (value instanceof byte[]) {
+				value= ((byte[])value).clone();
+			} else if (value instanceof String[]) {
+				value= ((String[])value).clone();
+			} else {
+				return;
+			}
+			put(recordPath(rec), value);
+		}
+
+		@Override
+		public void restore(Record rec) {
+			Object value= journal.get(recordPath(rec));
+			if (value instanceof String) {
+				// migrated from XML store, remains in string form until stored again
+				restoreString(rec, (String)value);
+			} else if (value!=null) {
+				rec.setValue(value);
+			}
+		}
+
+		@Override
+		public void store(PersistentValueProcessor proc) {
+			HierarchicalConfiguration conf= new HierarchicalConfiguration();
+			conf.setDelimiterParsingDisabled(true);
+			proc.store(conf);
+			put(processorPath(proc), toMap(conf));
+		}
+
+		@Override
+		public void restore(PersistentValueProcessor proc) {
+			Object value= journal.get(processorPath(proc));
+			if (value instanceof Map) {
+				proc.restore(toConfiguration((Map<?,?>)value));
+			}
+		}
+		
+		private void put(String key, Object value) {
+			try {
+				journal.put(key, value);
+			} catch (IOException e) {
+				log.error("Peristancy store failed to write to a file '"+storeFile+"'!",e);
+			}
+		}
+
+		@Override
+		public void flush() throws Exception {
+			journal.flush();
+		}
+	}
+	
 	private static final String DIVIDER="::";
 	
+	/** Constant <code>JOURNAL_EXTENSION=".journal"</code>, store file with this extension uses binary journal backend. */
+	public static final String JOURNAL_EXTENSION=".journal";
+	/** Constant <code>XML_EXTENSION=".xml"</code> */
+	public static final String XML_EXTENSION=".xml";
+	/** Constant <code>DEFAULT_FLUSH_LATENCY=5000</code>, maximal time in ms from value change to write to the file. */
+	public static final long DEFAULT_FLUSH_LATENCY=5000;
+	/** Constant <code>DEFAULT_FLUSH_BATCH=256</code>, number of changed values, which triggers immediate write. */
+	public static final int DEFAULT_FLUSH_BATCH=256;
+	
 	
 	Logger log= LogManager.getLogger(getClass());
 	
 	private File storeFile;
-	private XMLConfiguration store;
+	private Backend backend;
+	private PersistencyJournal journal;
 
 	@SuppressWarnings("unused")
 	private Database database;
 
-	private ThreadPoolExecutor exec;
+	private ScheduledThreadPoolExecutor exec;
+	private final Set<PersistencyProcessor> dirty= ConcurrentHashMap.newKeySet();
+	private final AtomicInteger dirtyCount= new AtomicInteger();
+	private final AtomicBoolean flushScheduled= new AtomicBoolean();
+	private final AtomicBoolean flushRequested= new AtomicBoolean();
+	private long flushLatency= DEFAULT_FLUSH_LATENCY;
+	private int flushBatch= DEFAULT_FLUSH_BATCH;
+
+	private volatile long flushCount;
+	private volatile long storeCount;
+	private volatile int lastFlushSize;
+	private volatile long lastFlushDuration;
+	private volatile long maxFlushDuration;
+	private volatile long totalFlushDuration;
 
 	private Map<Object,PersistencyProcessor> processors;
 
@@ -159,6 +297,10 @@ public class PersistencyStore implements Runnable {
 	/**
 	 * <p>Constructor for PersistencyStore.</p>
 	 *
+	 * <p>If file name ends with {@link #JOURNAL_EXTENSION}, values are stored in binary append-only {@link org.scictrl.csshell.epics.server.PersistencyJournal},
+	 * otherwise in XML file. When journal file does not exist yet, but there is XML store with same name or <code>persistency.xml</code>
+	 * in same directory, values from XML store are migrated to new journal. XML file is left unchanged.</p>
+	 *
 	 * @param f a {@link java.io.File} object
 	 * @param database a {@link org.scictrl.csshell.epics.server.Database} object
 	 * @throws org.apache.commons.configuration.ConfigurationException if any.
@@ -177,63 +319,366 @@ public class PersistencyStore implements Runnable {
 		if (storeFile.exists() && storeFile.length()==0) {
 			storeFile.delete();
 		}
-		try {
-			store= new XMLConfiguration();
-			store.setAttributeSplittingDisabled(true);
-			store.setDelimiterParsingDisabled(false);
-			store.setFile(storeFile);
-			if (storeFile.exists()) {
-				store.load();
+		
+		if (isJournalFile(storeFile)) {
+			try {
+				boolean created= !storeFile.exists();
+				journal= new PersistencyJournal(storeFile);
+				if (created) {
+					migrate(journal);
+				}
+				backend= new JournalBackend(journal);
+				log.info("Using persistancy journal file '"+storeFile+"' with "+journal.size()+" stored values.");
+			} catch (IOException e) {
+				log.warn("Opening persistancy journal file '"+storeFile+"' failed: "+e.toString(), e);
+				throw new ConfigurationException("Opening persistancy journal file '"+storeFile+"' failed: "+e.toString(), e);
+			}
+		} else {
+			try {
+				backend= new XMLBackend(loadXML(storeFile));
+				log.info("Using persistancy store file '"+storeFile+"'.");
+			} catch (Exception e) {
+				log.warn("Opening persistancy store file '"+storeFile+"' failed: "+e.toString(), e);
+				throw e;
 			}
-			log.info("Using persistancy store file '"+storeFile+"'.");
-		} catch (Exception e) {
-			log.warn("Opening persistancy store file '"+storeFile+"' failed: "+e.toString(), e);
-			throw e;
 		}
 		
-		exec= new ThreadPoolExecutor(1,1,1000,TimeUnit.MILLISECONDS,new ArrayBlockingQueue<Runnable>(1), Executors.defaultThreadFactory(),new RejectedExecutionHandler() {
-			
+		exec= new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
 			@Override
-			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
-				// ignored
+			public Thread newThread(Runnable r) {
+				Thread t= new Thread(r, "PersistencyStore-"+storeFile.getName());
+				t.setDaemon(true);
+				return t;
 			}
 		});
+		exec.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		
+		processors= new ConcurrentHashMap<Object, PersistencyStore.PersistencyProcessor>();
+	}
+	
+	private static boolean isJournalFile(File f) {
+		return f.getName().toLowerCase().endsWith(JOURNAL_EXTENSION);
+	}
+	
+	private static XMLConfiguration loadXML(File f) throws ConfigurationException {
+		XMLConfiguration store= new XMLConfiguration();
+		store.setAttributeSplittingDisabled(true);
+		store.setDelimiterParsingDisabled(false);
+		store.setFile(f);
+		if (f.exists()) {
+			store.load();
+		}
+		return store;
+	}
+	
+	/**
+	 * Finds XML store, from which values are migrated to new journal.
+	 * 
+	 * @param f journal file
+	 * @return XML file with same base name or <code>persistency.xml</code> in same directory, <code>null</code> if there is none
+	 */
+	private static File legacyFile(File f) {
+		String name= f.getName();
+		File x= new File(f.getParentFile(), name.substring(0, name.length()-JOURNAL_EXTENSION.length())+XML_EXTENSION);
+		if (x.exists() && x.length()>0) {
+			return x;
+		}
+		x= new File(f.getParentFile(), new File(Server.DEFAULT_PERSISTENCY_FILE).getName());
+		if (x.exists() && x.length()>0) {
+			return x;
+		}
+		return null;
+	}
+	
+	private void migrate(PersistencyJournal journal) throws IOException {
+		File x= legacyFile(storeFile);
+		if (x==null) {
+			return;
+		}
+		XMLConfiguration xml;
+		try {
+			xml= loadXML(x);
+		} catch (ConfigurationException e) {
+			log.warn("Migration from persistancy store file '"+x+"' failed: "+e.toString(), e);
+			return;
+		}
 		
-		processors= new HashMap<Object, PersistencyStore.PersistencyProcessor>();
+		int count= 0;
+		for (ConfigurationNode n : xml.getRootNode().getChildren()) {
+			String key= n.getName();
+			if (n.getChildrenCount()==0 && key.endsWith(DIVIDER+Record.PROPERTY_VALUE)) {
+				// records are kept in XML string form, record type is not known yet
+				String value= xml.getString(key);
+				if (value!=null) {
+					journal.put(key, value);
+					count++;
+				}
+			} else if (n.getChildrenCount()>0) {
+				// processor path contains class name with dots, node is used directly instead of key lookup
+				HierarchicalConfiguration conf= new HierarchicalConfiguration();
+				conf.setRootNode(n);
+				journal.put(key, toMap(conf));
+				count++;
+			}
+		}
+		journal.compact();
+		
+		log.info("Migrated "+count+" values from persistancy store file '"+x+"' to journal '"+storeFile+"'.");
+	}
+	
+	private static String recordPath(Record rec) {
+		return rec.getName()+DIVIDER+Record.PROPERTY_VALUE;
+	}
+	
+	private static String processorPath(PersistentValueProcessor proc) {
+		return proc.getClass().getName()+DIVIDER+proc.getName();
+	}
+	
+	private static void restoreString(Record rec, String value) {
+		if (value!=null) {
+			value=StringEscapeUtils.unescapeXml(value);
+			value=value.replace("\\,", ",");
+			rec.setValueAsString(value);
+		}
+	}
+	
+	private static Map<String,String[]> toMap(HierarchicalConfiguration conf) {
+		Map<String,String[]> m= new LinkedHashMap<String, String[]>();
+		Iterator<String> it= conf.getKeys();
+		while (it.hasNext()) {
+			String key= it.next();
+			List<Object> l= conf.getList(key);
+			String[] s= new String[l.size()];
+			for (int i = 0; i < s.length; i++) {
+				Object o= l.get(i);
+				s[i]= o!=null ? o.toString() : null;
+			}
+			m.put(key, s);
+		}
+		return m;
+	}
+	
+	private static HierarchicalConfiguration toConfiguration(Map<?,?> m) {
+		HierarchicalConfiguration conf= new HierarchicalConfiguration();
+		conf.setDelimiterParsingDisabled(true);
+		for (Map.Entry<?, ?> e : m.entrySet()) {
+			for (String s : (String[])e.getValue()) {
+				conf.addProperty((String)e.getKey(), s);
+			}
+		}
+		return conf;
+	}
+	
+	/**
+	 * Returns <code>true</code> if values are stored in binary journal.
+	 *
+	 * @return <code>true</code> if values are stored in binary journal, <code>false</code> if in XML file
+	 */
+	public boolean isJournal() {
+		return journal!=null;
+	}
+	
+	/**
+	 * Returns journal, if store uses journal backend.
+	 *
+	 * @return journal or <code>null</code> if XML backend is used
+	 */
+	public PersistencyJournal getJournal() {
+		return journal;
 	}
 	
 	/**
-	 * <p>flush.</p>
+	 * Writes all values, which were changed since last flush, to the store and flushes the store to the file.
+	 * Values are written in background with {@link #getFlushLatency()} delay, this method forces immediate write
+	 * in calling thread.
 	 */
 	public synchronized void flush() {
 		if (processors==null) return;
+		
+		flushScheduled.set(false);
+		flushRequested.set(false);
+
+		long t= System.nanoTime();
+		int count= drain();
 
 		try {
-			store.save();
-		} catch (ConfigurationException e) {
+			backend.flush();
+		} catch (Exception e) {
 			e.printStackTrace();
 			log.error("Peristancy sore failed to flush to a file '"+storeFile+"'!",e);
 		}
 		
+		long d= System.nanoTime()-t;
+		flushCount++;
+		storeCount+=count;
+		lastFlushSize=count;
+		lastFlushDuration=d;
+		totalFlushDuration+=d;
+		if (d>maxFlushDuration) {
+			maxFlushDuration=d;
+		}
+		
+		if (log.isDebugEnabled()) {
+			log.debug("Persistency store flushed "+count+" values in "+String.format("%.3f", d/1000000.0)+" ms.");
+		}
+		
 	}
 
-	/** {@inheritDoc} */
+	/**
+	 * Writes changed values to the backend, without flushing it to the file.
+	 *
+	 * @return number of written values
+	 */
+	private synchronized int drain() {
+		int count= 0;
+		Iterator<PersistencyProcessor> it= dirty.iterator();
+		while (it.hasNext()) {
+			PersistencyProcessor pp= it.next();
+			it.remove();
+			dirtyCount.decrementAndGet();
+			pp.store();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Flushes changed values, same as {@link #flush()}. Used by background writer.
+	 */
 	@Override
-	public synchronized void run() {
-		if (processors==null) return;
-		flush();
+	public void run() {
+		// flags are reset always, also when values were already written by other flush, otherwise no flush would be scheduled again
+		flushScheduled.set(false);
+		flushRequested.set(false);
+		if (processors==null || dirty.isEmpty()) return;
 		try {
-			this.wait(60000);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			flush();
+		} catch (Throwable t) {
+			log.error("Peristancy store flush failed: "+t.toString(), t);
 		}
 	}
 
-	private void flushLater() {
-		if (exec.getQueue().size()<2) {
-			exec.execute(this);
+	/**
+	 * Marks processor as changed. Value is stored later by background writer, 
+	 * which is triggered by flush latency or immediately, when number of changed values reaches flush batch.
+	 */
+	private void markDirty(PersistencyProcessor pp) {
+		if (!dirty.add(pp)) {
+			// already waiting, value is read at write time
+			return;
 		}
-		
+		int c= dirtyCount.incrementAndGet();
+		try {
+			if (c>=flushBatch) {
+				if (flushRequested.compareAndSet(false, true)) {
+					exec.execute(this);
+				}
+			} else if (flushScheduled.compareAndSet(false, true)) {
+				exec.schedule(this, flushLatency, TimeUnit.MILLISECONDS);
+			}
+		} catch (RejectedExecutionException e) {
+			// store has been closed, value will be stored with saveAll
+		}
+	}
+	
+	/**
+	 * Returns maximal time in milliseconds a changed value waits before it is written to the file.
+	 *
+	 * @return the flush latency in ms
+	 */
+	public long getFlushLatency() {
+		return flushLatency;
+	}
+	
+	/**
+	 * Sets maximal time in milliseconds a changed value waits before it is written to the file.
+	 *
+	 * @param flushLatency the flush latency in ms
+	 */
+	public void setFlushLatency(long flushLatency) {
+		this.flushLatency = Math.max(0, flushLatency);
+	}
+	
+	/**
+	 * Returns number of changed values, which triggers write without waiting for flush latency.
+	 *
+	 * @return the flush batch size
+	 */
+	public int getFlushBatch() {
+		return flushBatch;
+	}
+	
+	/**
+	 * Sets number of changed values, which triggers write without waiting for flush latency.
+	 *
+	 * @param flushBatch the flush batch size
+	 */
+	public void setFlushBatch(int flushBatch) {
+		this.flushBatch = Math.max(1, flushBatch);
+	}
+	
+	/**
+	 * Returns number of changed values waiting to be written.
+	 *
+	 * @return number of changed values waiting to be written
+	 */
+	public int getDirtyCount() {
+		return dirtyCount.get();
+	}
+	
+	/**
+	 * <p>Getter for the field <code>flushCount</code>.</p>
+	 *
+	 * @return number of flushes
+	 */
+	public long getFlushCount() {
+		return flushCount;
+	}
+	
+	/**
+	 * Returns number of values written by flushes.
+	 *
+	 * @return number of written values
+	 */
+	public long getStoreCount() {
+		return storeCount;
+	}
+	
+	/**
+	 * Returns number of values written by last flush.
+	 *
+	 * @return number of values written by last flush
+	 */
+	public int getLastFlushSize() {
+		return lastFlushSize;
+	}
+	
+	/**
+	 * Returns duration of last flush, in milliseconds.
+	 *
+	 * @return duration of last flush in ms
+	 */
+	public double getLastFlushDuration() {
+		return lastFlushDuration/1000000.0;
+	}
+	
+	/**
+	 * Returns maximal duration of flush, in milliseconds.
+	 *
+	 * @return maximal duration of flush in ms
+	 */
+	public double getMaxFlushDuration() {
+		return maxFlushDuration/1000000.0;
+	}
+	
+	/**
+	 * Returns average duration of flush, in milliseconds.
+	 *
+	 * @return average duration of flush in ms
+	 */
+	public double getAverageFlushDuration() {
+		long c= flushCount;
+		return c>0 ? totalFlushDuration/1000000.0/c : 0.0;
 	}
 
 	/**
@@ -243,7 +688,7 @@ public class PersistencyStore implements Runnable {
 	 *
 	 * @param proc the processor to be stored
 	 */
-	public void registerProcessor(PersistentValueProcessor proc) {
+	public synchronized void registerProcessor(PersistentValueProcessor proc) {
 		if (processors==null) return;
 		if (processors.containsKey(proc)) {
 			return;
@@ -259,7 +704,7 @@ public class PersistencyStore implements Runnable {
 	 *
 	 * @param rec a {@link org.scictrl.csshell.epics.server.Record} object
 	 */
-	public void registerValue(Record rec) {
+	public synchronized void registerValue(Record rec) {
 		if (processors==null) return;
 		if (processors.containsKey(rec)) {
 			return;
@@ -291,16 +736,55 @@ public class PersistencyStore implements Runnable {
 	}
 
 	/**
-	 * <p>saveAll.</p>
+	 * Writes values of all registered records and processors and flushes the store to the file in calling thread.
 	 */
-	public void saveAll() {
+	public synchronized void saveAll() {
 		if (processors==null) return;
 		
 		for (PersistencyProcessor pp : processors.values()) {
-			pp.store();
+			if (dirty.add(pp)) {
+				dirtyCount.incrementAndGet();
+			}
 		}
 		
 		flush();
 	}
 
+	/**
+	 * Writes values of all registered records and processors, same as {@link #saveAll()}, stops background writer,
+	 * waits for it to finish and closes journal file. Values changed after close are not stored any more.
+	 */
+	public void close() {
+		ScheduledThreadPoolExecutor ex;
+		synchronized (this) {
+			saveAll();
+			ex= exec;
+			if (ex!=null) {
+				ex.shutdown();
+			}
+		}
+		// background writer needs lock of this store, so it is awaited outside of it
+		if (ex!=null) {
+			try {
+				if (!ex.awaitTermination(10, TimeUnit.SECONDS)) {
+					log.warn("Persistency store writer did not terminate in 10 s.");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this) {
+			if (!dirty.isEmpty()) {
+				flush();
+			}
+			if (journal!=null) {
+				try {
+					journal.close();
+				} catch (IOException e) {
+					log.error("Closing persistancy journal file '"+storeFile+"' failed: "+e.toString(), e);
+				}
+			}
+		}
+	}
+
 }
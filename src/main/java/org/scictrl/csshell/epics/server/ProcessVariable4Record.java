@@ -3,6 +3,7 @@ package org.scictrl.csshell.epics.server;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,6 +24,8 @@ import gov.aps.jca.dbr.GR;
 import gov.aps.jca.dbr.LABELS;
 import gov.aps.jca.dbr.PRECISION;
 import gov.aps.jca.dbr.STS;
+import gov.aps.jca.dbr.Severity;
+import gov.aps.jca.dbr.Status;
 import gov.aps.jca.dbr.TIME;
 
 /**
@@ -31,10 +34,73 @@ import gov.aps.jca.dbr.TIME;
  * @author igor@scictrl.com
  */
 public class ProcessVariable4Record extends ProcessVariable implements PropertyChangeListener {
+	
+	/**
+	 * Snapshot of record meta data, recreated only when record meta data version changes.
+	 */
+	private static final class MetaData {
+		final int version;
+		final String units;
+		final Number upperDispLimit;
+		final Number lowerDispLimit;
+		final Number upperAlarmLimit;
+		final Number upperWarningLimit;
+		final Number lowerWarningLimit;
+		final Number lowerAlarmLimit;
+		final Number upperCtrlLimit;
+		final Number lowerCtrlLimit;
+		final short precision;
+		final String[] enumLabels;
+		
+		MetaData(Record r) {
+			version= r.getMetaDataVersion();
+			units= r.getUnits();
+			upperDispLimit= r.getUpperDispLimit();
+			lowerDispLimit= r.getLowerDispLimit();
+			upperAlarmLimit= r.getUpperAlarmLimit();
+			upperWarningLimit= r.getUpperWarningLimit();
+			lowerWarningLimit= r.getLowerWarningLimit();
+			lowerAlarmLimit= r.getLowerAlarmLimit();
+			upperCtrlLimit= r.getUpperCtrlLimit();
+			lowerCtrlLimit= r.getLowerCtrlLimit();
+			precision= r.getPrecision();
+			enumLabels= r.getEnumLabels();
+		}
+	}
+
+	/**
+	 * Constructor of reading DBR class, which wraps record value array of given type.
+	 */
+	private static final class Wrapper {
+		final Class<?> arrayType;
+		final Constructor<? extends DBR> constructor;
+		
+		Wrapper(Class<?> arrayType, Constructor<? extends DBR> constructor) {
+			this.arrayType= arrayType;
+			this.constructor= constructor;
+		}
+	}
 
 	Logger log= LogManager.getLogger(getClass()); 
 	
 	private Record record;
+	private volatile MetaData metaData;
+	private volatile Wrapper wrapper;
+	
+	private final Object postLock= new Object();
+	private double lastMonitorValue= Double.NaN;
+	private double lastArchiveValue= Double.NaN;
+	private Severity lastSeverity;
+	private Status lastStatus;
+	private long lastPost;
+	private int pendingMask;
+	private boolean flushScheduled;
+	private final Runnable flushTask= new Runnable() {
+		@Override
+		public void run() {
+			flushPending();
+		}
+	};
 
 	/**
 	 * <p>Constructor for ProcessVariable4Record.</p>
@@ -114,6 +180,15 @@ public class ProcessVariable4Record extends ProcessVariable implements PropertyC
 			return true;
 	}
 
+	private MetaData getMetaData() {
+		MetaData md= metaData;
+		if (md==null || md.version!=record.getMetaDataVersion()) {
+			md= new MetaData(record);
+			metaData=md;
+		}
+		return md;
+	}
+	
 	private void fillRecordMeta(DBR value) {
 		
 		if (value.isTIME()) {
@@ -129,39 +204,109 @@ public class ProcessVariable4Record extends ProcessVariable implements PropertyC
 			sts.setSeverity(record.getAlarmSeverity());
 			sts.setStatus(record.getAlarmStatus());
 		}
+		
+		if (!value.isGR() && !value.isPRECSION() && !value.isLABELS()) {
+			return;
+		}
+		
+		MetaData md= getMetaData();
 
 		if (value.isGR()) {
 			// fill GR
 			GR gr = (GR)value;
-			gr.setUnits(record.getUnits());
-			gr.setUpperDispLimit(record.getUpperDispLimit());
-			gr.setLowerDispLimit(record.getLowerDispLimit());
-			gr.setUpperAlarmLimit(record.getUpperAlarmLimit());
-			gr.setUpperWarningLimit(record.getUpperWarningLimit());
-			gr.setLowerWarningLimit(record.getLowerWarningLimit());
-			gr.setLowerAlarmLimit(record.getLowerAlarmLimit());
+			gr.setUnits(md.units);
+			gr.setUpperDispLimit(md.upperDispLimit);
+			gr.setLowerDispLimit(md.lowerDispLimit);
+			gr.setUpperAlarmLimit(md.upperAlarmLimit);
+			gr.setUpperWarningLimit(md.upperWarningLimit);
+			gr.setLowerWarningLimit(md.lowerWarningLimit);
+			gr.setLowerAlarmLimit(md.lowerAlarmLimit);
 		}
 
 		if (value.isCTRL()) {
 			// fill-up GR to CTRL
 			CTRL ctrl = (CTRL)value;
-			ctrl.setUpperCtrlLimit(record.getUpperCtrlLimit());
-			ctrl.setLowerCtrlLimit(record.getLowerCtrlLimit());
+			ctrl.setUpperCtrlLimit(md.upperCtrlLimit);
+			ctrl.setLowerCtrlLimit(md.lowerCtrlLimit);
 		}
 
 		if (value.isPRECSION()) {
 			// fill PRECISION
 			PRECISION precision = (PRECISION)value;
-			precision.setPrecision(record.getPrecision());
+			precision.setPrecision(md.precision);
 		}
 
 		if (value.isLABELS()) {
 			// fill LABELS
 			LABELS labels = (LABELS)value;
-			labels.setLabels(record.getEnumLabels());
+			labels.setLabels(md.enumLabels);
 		}
 		
 	}
+	
+	/**
+	 * Creates DBR for posting monitor event. DBR has same type as provided by 
+	 * {@link AbstractCASResponseHandler#createDBRforReading(ProcessVariable)}, so monitors receive same meta data as before.
+	 * If current record value array has full length, the DBR wraps it directly, otherwise value is copied into DBR. 
+	 * Wrapping is safe, because record value arrays are replaced and never modified after set.
+	 * Queued monitor events therefore keep the value which was current at the time of post.  
+	 * 
+	 * @return new monitor DBR with value and meta data or <code>null</code> if record value is not valid
+	 */
+	DBR createMonitorDBR() {
+		DBR dbr= wrapRecordValue();
+		if (dbr==null) {
+	    	dbr = AbstractCASResponseHandler.createDBRforReading(this);
+			if (!fillRecordValue(dbr,"monitor")) {
+				return null;
+			}
+		}
+		fillRecordMeta(dbr);
+		return dbr;
+	}
+
+	/**
+	 * Creates DBR of reading type, which wraps record value array.
+	 * @return new DBR or <code>null</code> if value can not be wrapped
+	 */
+	private DBR wrapRecordValue() {
+		Object o= record.getValue();
+		if (o==null || !o.getClass().isArray() || Array.getLength(o)!=record.getCount() || record.getCount()==0) {
+			return null;
+		}
+		Wrapper w= wrapper;
+		if (w==null || w.arrayType!=o.getClass()) {
+			w= new Wrapper(o.getClass(), findWrapConstructor(o.getClass()));
+			wrapper=w;
+		}
+		if (w.constructor==null) {
+			return null;
+		}
+		try {
+			return w.constructor.newInstance(o);
+		} catch (Exception e) {
+			log.warn("["+record.getName()+"] failed to wrap value: "+e, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Finds constructor, which takes value array, of the DBR class created for reading. 
+	 * @param arrayType class of record value array
+	 * @return the constructor or <code>null</code> if DBR class has no such constructor
+	 */
+	private Constructor<? extends DBR> findWrapConstructor(Class<?> arrayType) {
+		DBR dbr= AbstractCASResponseHandler.createDBRforReading(this);
+		if (dbr.getValue()==null || dbr.getValue().getClass()!=arrayType) {
+			return null;
+		}
+		try {
+			return dbr.getClass().getConstructor(arrayType);
+		} catch (NoSuchMethodException e) {
+			log.debug("["+record.getName()+"] "+dbr.getClass().getName()+" can not wrap value array.");
+			return null;
+		}
+	}
 
 	/** {@inheritDoc} */
 	@Override
@@ -174,11 +319,7 @@ public class ProcessVariable4Record extends ProcessVariable implements PropertyC
 		    // notify
 		    if (interest)
 		    {
-		    	DBR monitorDBR = AbstractCASResponseHandler.createDBRforReading(this);
-				fillRecordMeta(monitorDBR);
-				Object val= record.getValue();
-				System.arraycopy(val, 0, monitorDBR.getValue(), 0, Array.getLength(val));
-		    	eventCallback.postEvent(Monitor.VALUE|Monitor.LOG, monitorDBR);
+		    	postNow(Monitor.VALUE|Monitor.LOG);
 		    }
 			return CAStatus.NORMAL;
 		} catch (Throwable t) {
@@ -194,16 +335,120 @@ public class ProcessVariable4Record extends ProcessVariable implements PropertyC
 	    	return;
 	    }
 		
-    	DBR monitorDBR = AbstractCASResponseHandler.createDBRforReading(this);
-		fillRecordMeta(monitorDBR);
-		if (fillRecordValue(monitorDBR,"monitor")) {
-			if (evt.getPropertyName()==Record.PROPERTY_VALUE) {
-		    	eventCallback.postEvent(Monitor.VALUE|Monitor.ALARM|Monitor.LOG, monitorDBR);
-			} else if (evt.getPropertyName()==Record.PROPERTY_ALARM) {
-				eventCallback.postEvent(Monitor.ALARM, monitorDBR);
+		if (evt.getPropertyName()==Record.PROPERTY_VALUE) {
+			int mask= valueMask();
+			// alarm may be updated together with value without own event
+			if (alarmChanged()) {
+				mask|=Monitor.ALARM;
+			}
+			if (mask!=0) {
+				post(mask);
+			}
+		} else if (evt.getPropertyName()==Record.PROPERTY_ALARM) {
+			alarmChanged();
+			post(Monitor.ALARM);
+		}
+		
+	}
+	
+	/**
+	 * Checks value against monitor and archive deadband and returns which of VALUE and LOG masks should be posted.
+	 * Deadband is applied only to scalar numeric records, others always post both. 
+	 * @return combination of {@link Monitor#VALUE} and {@link Monitor#LOG} or 0 if change is within both deadbands
+	 */
+	private int valueMask() {
+		if (!record.isDeadbandApplicable()) {
+			return Monitor.VALUE|Monitor.LOG;
+		}
+		
+		double v= record.getValueAsDouble();
+		int mask=0;
+		
+		synchronized (postLock) {
+			if (outsideDeadband(v, lastMonitorValue, record.getMonitorDeadband())) {
+				lastMonitorValue=v;
+				mask|=Monitor.VALUE;
+			}
+			if (outsideDeadband(v, lastArchiveValue, record.getArchiveDeadband())) {
+				lastArchiveValue=v;
+				mask|=Monitor.LOG;
+			}
+		}
+		return mask;
+	}
+	
+	/**
+	 * Checks if record alarm severity or status differs from last posted and remembers it as posted.
+	 * @return <code>true</code> if alarm has changed since last post
+	 */
+	private boolean alarmChanged() {
+		Severity sev= record.getAlarmSeverity();
+		Status st= record.getAlarmStatus();
+		synchronized (postLock) {
+			if (sev==lastSeverity && st==lastStatus) {
+				return false;
+			}
+			lastSeverity=sev;
+			lastStatus=st;
+			return true;
+		}
+	}
+	
+	private static boolean outsideDeadband(double value, double last, double deadband) {
+		if (deadband<=0.0 || Double.isNaN(last) || Double.isNaN(value)) {
+			return true;
+		}
+		return Math.abs(value-last)>deadband;
+	}
+	
+	/**
+	 * Posts event with provided mask. If record has limited post rate, event is coalesced with 
+	 * other events within same interval and posted later with latest record value.
+	 * @param mask the monitor mask
+	 */
+	private void post(int mask) {
+		long interval= record.getPostInterval();
+		
+		if (interval>0) {
+			synchronized (postLock) {
+				pendingMask|=mask;
+				if (flushScheduled) {
+					return;
+				}
+				long now= System.currentTimeMillis();
+				long wait= lastPost+interval-now;
+				if (wait>0) {
+					flushScheduled=true;
+					record.getDatabase().schedule(flushTask, wait);
+					return;
+				}
+				mask=pendingMask;
+				pendingMask=0;
+				lastPost=now;
 			}
 		}
 		
+		postNow(mask);
+	}
+	
+	private void flushPending() {
+		int mask;
+		synchronized (postLock) {
+			mask=pendingMask;
+			pendingMask=0;
+			flushScheduled=false;
+			lastPost=System.currentTimeMillis();
+		}
+		if (mask!=0 && interest && record!=null) {
+			postNow(mask);
+		}
+	}
+	
+	private void postNow(int mask) {
+    	DBR monitorDBR = createMonitorDBR();
+		if (monitorDBR!=null) {
+	    	eventCallback.postEvent(mask, monitorDBR);
+		}
 	}
 	
 	/** {@inheritDoc} */
@@ -153,6 +153,12 @@ public class Record {
 	
 	private boolean activated= false;
 	
+	private double monitorDeadband= 0.0;
+	private double archiveDeadband= 0.0;
+	private double maxPostRate= 0.0;
+	
+	private volatile int metaDataVersion= 0;
+	
 	private Logger log= LogManager.getLogger(getClass());
 	
 	/**
@@ -438,7 +444,7 @@ public class Record {
 	 * @return a double
 	 */
 	public double getValueAsDouble() {
-		return Array.getDouble(processor.getValue(),0);
+		return EPICSUtilities.getDouble(processor.getValue(),0);
 	}
 
 	/**
@@ -447,7 +453,7 @@ public class Record {
 	 * @return a int
 	 */
 	public int getValueAsInt() {
-		return Array.getInt(processor.getValue(),0);
+		return EPICSUtilities.getInt(processor.getValue(),0);
 	}
 	
 	/**
@@ -456,7 +462,7 @@ public class Record {
 	 * @return a boolean
 	 */
 	public boolean getValueAsBoolean() {
-		return Array.getLong(processor.getValue(),0)==1L;
+		return EPICSUtilities.getLong(processor.getValue(),0)==1L;
 	}
 	
 	/**
@@ -466,8 +472,13 @@ public class Record {
 	 */
 	public double[] getValueAsDoubleArray() {
 		Object val= processor.getValue();
+		if (val instanceof double[]) {
+			return ((double[])val).clone();
+		}
 		double[] d= new double[Array.getLength(val)];
-		System.arraycopy(val, 0, d, 0, d.length);
+		for (int i = 0; i < d.length; i++) {
+			d[i]= EPICSUtilities.getDouble(val, i);
+		}
 		return d;
 	}
 	
@@ -617,6 +628,94 @@ public class Record {
 
 	}
 	
+	/**
+	 * Returns monitor deadband (MDEL). Value monitors are posted to CA clients only when scalar numeric value
+	 * changed for more than deadband since last posted value. If 0, each value change is posted.
+	 *
+	 * @return the monitor deadband
+	 */
+	public double getMonitorDeadband() {
+		return monitorDeadband;
+	}
+	
+	/**
+	 * Sets monitor deadband (MDEL), see {@link #getMonitorDeadband()}.
+	 *
+	 * @param monitorDeadband the monitor deadband, 0 disables filtering
+	 */
+	public void setMonitorDeadband(double monitorDeadband) {
+		this.monitorDeadband = monitorDeadband;
+	}
+	
+	/**
+	 * Returns archive deadband (ADEL). Same as monitor deadband, but applies to CA clients subscribed with LOG mask, 
+	 * such as archivers.
+	 *
+	 * @return the archive deadband
+	 */
+	public double getArchiveDeadband() {
+		return archiveDeadband;
+	}
+	
+	/**
+	 * Sets archive deadband (ADEL), see {@link #getArchiveDeadband()}.
+	 *
+	 * @param archiveDeadband the archive deadband, 0 disables filtering
+	 */
+	public void setArchiveDeadband(double archiveDeadband) {
+		this.archiveDeadband = archiveDeadband;
+	}
+	
+	/**
+	 * Returns maximal rate in Hz with which monitor events are posted to CA clients. 
+	 * Value changes within one interval are coalesced and only latest value is posted at the end of interval.
+	 * If 0, events are posted without delay.
+	 *
+	 * @return the maximal post rate in Hz
+	 */
+	public double getMaxPostRate() {
+		return maxPostRate;
+	}
+	
+	/**
+	 * Sets maximal rate in Hz with which monitor events are posted, see {@link #getMaxPostRate()}.
+	 *
+	 * @param maxPostRate the maximal post rate in Hz, 0 disables rate limiting
+	 */
+	public void setMaxPostRate(double maxPostRate) {
+		this.maxPostRate = maxPostRate;
+	}
+	
+	/**
+	 * Returns minimal interval in milliseconds between two monitor posts, calculated from {@link #getMaxPostRate()}.
+	 *
+	 * @return minimal interval between monitor posts in milliseconds, 0 if not limited
+	 */
+	public long getPostInterval() {
+		return maxPostRate>0.0 ? (long)(1000.0/maxPostRate) : 0L;
+	}
+	
+	/**
+	 * Returns version of record meta data (units, limits, precision and labels). 
+	 * Version is changed each time meta data is changed, so consumers can cache 
+	 * meta data and refresh it only when version is different.
+	 *
+	 * @return the meta data version
+	 */
+	public int getMetaDataVersion() {
+		return metaDataVersion;
+	}
+	
+	/**
+	 * Returns <code>true</code> if this record has scalar numeric value, to which monitor and archive deadband applies.
+	 *
+	 * @return <code>true</code> if deadband filtering applies to this record
+	 */
+	public boolean isDeadbandApplicable() {
+		return count==1 && (monitorDeadband>0.0 || archiveDeadband>0.0) 
+				&& (type.isDOUBLE() || type.isFLOAT() || type.isINT() || type.isSHORT() || type.isBYTE());
+	}
+
 	/**
 	 * <p>Getter for the field <code>database</code>.</p>
 	 *
@@ -807,6 +906,7 @@ public class Record {
 		upperCtrlLimit= record.upperCtrlLimit;
 		upperDispLimit= record.upperDispLimit;
 		upperWarningLimit= record.upperWarningLimit;
+		metaDataVersion++;
 	}
 
 	/**
@@ -822,6 +922,7 @@ public class Record {
 		units= record.units;
 		upperCtrlLimit= record.upperCtrlLimit;
 		upperDispLimit= record.upperDispLimit;
+		metaDataVersion++;
 	}
 
 	/**
@@ -848,6 +949,7 @@ public class Record {
 		upperCtrlLimit= md.getMaximum();
 		upperDispLimit= md.getDisplayMax();
 		upperWarningLimit= md.getWarnMax();
+		metaDataVersion++;
 	}
 
 
@@ -951,6 +1053,7 @@ public class Record {
 	public void setMinMax(Number min, Number max) {
 		lowerAlarmLimit=lowerCtrlLimit=lowerDispLimit=lowerWarningLimit=min;
 		upperAlarmLimit=upperCtrlLimit=upperDispLimit=upperWarningLimit=max;
+		metaDataVersion++;
 	}
 
 }
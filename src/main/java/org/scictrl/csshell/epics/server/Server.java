@@ -3,6 +3,8 @@
  */
 package org.scictrl.csshell.epics.server;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -12,6 +14,8 @@ import java.io.StringWriter;
 import java.net.InetSocketAddress;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -90,6 +94,12 @@ public class Server extends DefaultServerImpl implements Runnable {
 	/** Constant <code>APPSERVER_PERSISTENCY_FILE="AppServer.persistencyFile"</code> */
 	public static final String APPSERVER_PERSISTENCY_FILE = "AppServer.persistencyFile";
 
+	/**
+	 * System property name which defines maximal number of PV names, which are remembered as not served by this server.
+	 * Repeated CA search requests for such names are answered from this cache. If 0, cache is disabled.
+	 */
+	public static final String APPSERVER_SEARCH_CACHE_SIZE = "AppServer.searchCacheSize";
+
 	/** Constant <code>DEFAULT_ALARM_CONFIG_NAME="ANKA Machine"</code> */
 	public static final String DEFAULT_ALARM_CONFIG_NAME = "ANKA Machine";
 	/** Constant <code>DEFAULT_CONFIG_NAME="default"</code> */
@@ -98,6 +108,8 @@ public class Server extends DefaultServerImpl implements Runnable {
 	public static final String DEFAULT_PASSPHRASE = "please";
 	/** Constant <code>DEFAULT_PERSISTENCY_FILE="var/persistency.xml"</code> */
 	public static final String DEFAULT_PERSISTENCY_FILE = "var/persistency.xml";
+	/** Constant <code>DEFAULT_SEARCH_CACHE_SIZE=10000</code> */
+	public static final int DEFAULT_SEARCH_CACHE_SIZE = 10000;
 	
 	/**
 	 * Default value taken for system AppServer.input (APPSERVER_INIT_FILE {@link Server#APPSERVER_INIT_FILE}). 
@@ -245,7 +257,7 @@ public class Server extends DefaultServerImpl implements Runnable {
 	
 	
 	private Database database;
-	private boolean active;
+	private volatile boolean active;
 	private Thread deamon;
 	
 	Logger log= LogManager.getLogger(getClass());
@@ -254,6 +266,20 @@ public class Server extends DefaultServerImpl implements Runnable {
 	private ConfigurationVisitor inputData;
 	private boolean embedded= false;
 	
+	/**
+	 * Same map instance as inherited <code>pvs</code>, typed and concurrent, so lookups need no lock.
+	 */
+	private ConcurrentHashMap<String,ProcessVariable> processVariables;
+	/**
+	 * Names for which last search failed, answered without further lookups.
+	 */
+	private ConcurrentHashMap<String,Boolean> unknownNames;
+	/**
+	 * Incremented each time records are added, protects negative cache against stale inserts.
+	 */
+	private AtomicLong recordsVersion= new AtomicLong();
+	private int searchCacheSize;
+	
 	/**
 	 * <p>Constructor for Server.</p>
 	 *
@@ -297,7 +323,23 @@ public class Server extends DefaultServerImpl implements Runnable {
 	public Server(Properties prop, boolean embedded) throws RemoteException, ConfigurationException {
 		this.embedded=embedded;
 		configuration= prop;
+		
+		processVariables= new ConcurrentHashMap<String, ProcessVariable>(256);
+		pvs= processVariables;
+		unknownNames= new ConcurrentHashMap<String, Boolean>(256);
+		searchCacheSize= Integer.parseInt(prop.getProperty(APPSERVER_SEARCH_CACHE_SIZE, String.valueOf(DEFAULT_SEARCH_CACHE_SIZE)));
+		
 		database=new Database(this);
+		database.addPropertyChangeListener(new PropertyChangeListener() {
+			
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				if (Database.PROPERTY_RECORDS.equals(evt.getPropertyName())) {
+					recordsVersion.incrementAndGet();
+					unknownNames.clear();
+				}
+			}
+		});
 		
 	}
 
@@ -414,53 +456,79 @@ public class Server extends DefaultServerImpl implements Runnable {
 	}
 	
 	
+	/**
+	 * Returns record name part of PV name, if PV name ends with field suffix (for example <code>.VAL</code> or <code>.DESC</code>),
+	 * otherwise <code>null</code>.
+	 *
+	 * @param aliasName the PV name
+	 * @return record name without field suffix or <code>null</code>
+	 */
+	static String toRecordName(String aliasName) {
+		if (aliasName!=null  && aliasName.length()>4) {
+			if (aliasName.charAt(aliasName.length()-4)=='.') {
+				return aliasName.substring(0,aliasName.length()-4);
+			} else if (aliasName.charAt(aliasName.length()-5)=='.') {
+				return aliasName.substring(0,aliasName.length()-5);
+			}
+		}
+		return null;
+	}
+	
 	/** {@inheritDoc} */
 	@Override
 	public ProcessVariableExistanceCompletion processVariableExistanceTest(
 			String aliasName, InetSocketAddress clientAddress,
 			ProcessVariableExistanceCallback asyncCompletionCallback)
 			throws CAException, IllegalArgumentException, IllegalStateException {
-		synchronized (pvs)
-		{
-			if (!active) return ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE;
-			
-			@SuppressWarnings("unused")
-			String fieldName=null;
-			String recordName=null;
-			if (aliasName!=null  && aliasName.length()>4) {
-				if (aliasName.charAt(aliasName.length()-4)=='.') {
-					fieldName=aliasName.substring(aliasName.length()-3);
-					recordName=aliasName.substring(0,aliasName.length()-4);
-				} else if (aliasName.charAt(aliasName.length()-5)=='.') {
-					fieldName=aliasName.substring(aliasName.length()-4);
-					recordName=aliasName.substring(0,aliasName.length()-5);
-				}
-			}
-			
-			if (pvs.containsKey(aliasName)) {
-				//log.info("PV "+aliasName+" requested from "+clientAddress.getHostName());
-				return ProcessVariableExistanceCompletion.EXISTS_HERE;
-			}
-			
-			if (database.hasRecord(aliasName)) {
-				//log.info("PV "+aliasName+" requested from "+clientAddress.getHostName());
-				return ProcessVariableExistanceCompletion.EXISTS_HERE;
-			}
-			
-			//if (aliasName.startsWith("A:TEST")) log.info("PV "+aliasName+" requested from "+clientAddress.getHostName());
-
-			if (recordName!=null && pvs.containsKey(recordName)) {
-				log.info("PV "+aliasName+" requested from "+clientAddress.getHostName()+", but we have that only as record!!!");
-			}
-			if (recordName!=null && database.hasRecord(recordName)) {
-				log.info("PV "+aliasName+" requested from "+clientAddress.getHostName()+", but we have that only as record!!!");
-			}
 
+		if (!active || aliasName==null) return ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE;
+		
+		if (unknownNames.containsKey(aliasName)) {
 			return ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE;
 		}
+		
+		long version= recordsVersion.get();
+		
+		if (processVariables.containsKey(aliasName)) {
+			//log.info("PV "+aliasName+" requested from "+clientAddress.getHostName());
+			return ProcessVariableExistanceCompletion.EXISTS_HERE;
+		}
+		
+		if (database.hasRecord(aliasName)) {
+			//log.info("PV "+aliasName+" requested from "+clientAddress.getHostName());
+			return ProcessVariableExistanceCompletion.EXISTS_HERE;
+		}
+		
+		//if (aliasName.startsWith("A:TEST")) log.info("PV "+aliasName+" requested from "+clientAddress.getHostName());
+
+		String recordName= toRecordName(aliasName);
+		if (recordName!=null && (processVariables.containsKey(recordName) || database.hasRecord(recordName))) {
+			log.info("PV "+aliasName+" requested from "+clientAddress.getHostName()+", but we have that only as record!!!");
+		}
+		
+		rememberUnknown(aliasName, version);
+
+		return ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE;
 
 	}
 	
+	/**
+	 * Remembers name as unknown, unless records were added since lookup started. 
+	 * When cache is full it is cleared, names of frequently searched PVs are quickly added back.
+	 */
+	private void rememberUnknown(String aliasName, long version) {
+		if (searchCacheSize<=0) {
+			return;
+		}
+		if (unknownNames.size()>=searchCacheSize) {
+			unknownNames.clear();
+		}
+		unknownNames.put(aliasName, Boolean.TRUE);
+		if (recordsVersion.get()!=version) {
+			unknownNames.remove(aliasName);
+		}
+	}
+	
 	/** {@inheritDoc} */
 	@Override
 	public ProcessVariable processVariableAttach(String aliasName,
@@ -469,31 +537,26 @@ public class Server extends DefaultServerImpl implements Runnable {
 			throws CAStatusException, IllegalArgumentException,
 			IllegalStateException {
 		
-		synchronized (pvs)
-		{
-			ProcessVariable pv = (ProcessVariable)pvs.get(aliasName);
-			
-			if (pv==null) {
-				if (database.hasRecord(aliasName)) {
-					Record r= database.getRecord(aliasName);
-					
-					pv= new ProcessVariable4Record(r,eventCallback);
-					registerProcessVariable(pv);
-				}
+		ProcessVariable pv = processVariables.get(aliasName);
+		
+		if (pv==null) {
+			final Record r= database.getRecord(aliasName);
+			if (r!=null) {
+				pv= processVariables.computeIfAbsent(aliasName, n -> new ProcessVariable4Record(r,eventCallback));
 			}
+		}
+		
+		if (pv != null)
+		{
+			// set PV if not yet set
+			if (pv.getEventCallback() == null)
+				pv.setEventCallback(eventCallback);
 			
-			if (pv != null)
-			{
-				// set PV if not yet set
-				if (pv.getEventCallback() == null)
-					pv.setEventCallback(eventCallback);
-				
-				log.debug("PV "+aliasName+" attached");
-				return pv;
-			}
-			else
-				throw new CAStatusException(CAStatus.NOSUPPORT, "PV does not exist");
+			log.debug("PV "+aliasName+" attached");
+			return pv;
 		}
+		else
+			throw new CAStatusException(CAStatus.NOSUPPORT, "PV does not exist");
 		
 	}
 	
@@ -523,7 +586,7 @@ public class Server extends DefaultServerImpl implements Runnable {
 		
 		active=false;
 		
-		database.getPeristencyStore().saveAll();
+		database.getPeristencyStore().close();
 		
 		database.deactivate();
 		
@@ -0,0 +1,176 @@
+package org.scictrl.csshell.epics.server;
+
+import java.util.BitSet;
+
+import org.scictrl.csshell.epics.server.ValueLinks.ValueHolder;
+
+import gov.aps.jca.dbr.Severity;
+import gov.aps.jca.dbr.Status;
+
+/**
+ * Incremental calculation of summary alarm over many links, same as {@link ValueHolder#toSummaryBit(ValueHolder[], boolean[])}.
+ * <p>
+ * For each severity is kept set of link indexes, which currently have this severity and are not disabled.
+ * Changed link updates only own index, summary severity is highest severity with non-empty set and summary status
+ * is status of first link with that severity, so there is no scan over all values on each update.
+ * </p>
+ * <p>
+ * Aggregator is connected to links with {@link ValueLinks#setValueChangeListener(ValueLinks.ValueChangeListener)},
+ * links for disabling alarms are connected with {@link #disableListener()}.
+ * Values, which has not been received yet, do not contribute to summary.
+ * </p>
+ *
+ * @author igor@scictrl.com
+ */
+public class SummaryAggregator implements ValueLinks.ValueChangeListener {
+
+	private static final int LEVELS= Severity.INVALID_ALARM.getValue()+1;
+
+	private final int[] severity;
+	private final Status[] status;
+	private final boolean[] disabled;
+	private final BitSet[] levels= new BitSet[LEVELS];
+	private final int[] counts= new int[LEVELS];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size number of aggregated links
+	 */
+	public SummaryAggregator(int size) {
+		severity= new int[size];
+		status= new Status[size];
+		disabled= new boolean[size];
+		for (int i = 0; i < size; i++) {
+			severity[i]=-1;
+		}
+		for (int i = 0; i < levels.length; i++) {
+			levels[i]= new BitSet(size);
+		}
+	}
+
+	/**
+	 * Updates aggregator with last value of link, value is read under lock, so concurrent notifications
+	 * for same index leave aggregator with latest value.
+	 */
+	@Override
+	public synchronized void valueChanged(ValueLinks links, int index) {
+		update(index, links.getValueHolder(index));
+	}
+
+	/**
+	 * Returns listener for links, which disable alarms. Disabled link does not contribute to summary.
+	 * Link is disabled when it has valid value larger than 0, same as {@link ValueHolder#getValid(boolean[], ValueHolder[], boolean)}.
+	 *
+	 * @return listener for alarm disable links
+	 */
+	public ValueLinks.ValueChangeListener disableListener() {
+		return new ValueLinks.ValueChangeListener() {
+			@Override
+			public void valueChanged(ValueLinks links, int index) {
+				synchronized (SummaryAggregator.this) {
+					ValueHolder v= links.getValueHolder(index);
+					setDisabled(index, v!=null && v.status==Status.NO_ALARM && v.severity==Severity.NO_ALARM && v.longValue()>0);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Sets new value for link on index.
+	 *
+	 * @param index the index of link
+	 * @param vh new value, or <code>null</code> if link has no value
+	 */
+	public synchronized void update(int index, ValueHolder vh) {
+		remove(index);
+		if (vh!=null) {
+			severity[index]= vh.severity.getValue();
+			status[index]= vh.status;
+		} else {
+			severity[index]= -1;
+			status[index]= null;
+		}
+		add(index);
+	}
+
+	/**
+	 * Enables or disables link on index.
+	 *
+	 * @param index the index of link
+	 * @param disable if <code>true</code> link does not contribute to summary
+	 */
+	public synchronized void setDisabled(int index, boolean disable) {
+		if (disabled[index]==disable) {
+			return;
+		}
+		remove(index);
+		disabled[index]= disable;
+		add(index);
+	}
+
+	private void remove(int index) {
+		int s= severity[index];
+		if (s>=0 && !disabled[index]) {
+			levels[s].clear(index);
+			counts[s]--;
+		}
+	}
+
+	private void add(int index) {
+		int s= severity[index];
+		if (s>=0 && !disabled[index]) {
+			levels[s].set(index);
+			counts[s]++;
+		}
+	}
+
+	/**
+	 * Returns highest severity of enabled links.
+	 *
+	 * @return summary severity
+	 */
+	public synchronized Severity getSeverity() {
+		for (int i = LEVELS-1; i > 0; i--) {
+			if (counts[i]>0) {
+				return Severity.forValue(i);
+			}
+		}
+		return Severity.NO_ALARM;
+	}
+
+	/**
+	 * Returns status of first enabled link with highest severity.
+	 *
+	 * @return summary status
+	 */
+	public synchronized Status getStatus() {
+		for (int i = LEVELS-1; i > 0; i--) {
+			if (counts[i]>0) {
+				return status[levels[i].nextSetBit(0)];
+			}
+		}
+		return Status.NO_ALARM;
+	}
+
+	/**
+	 * Returns summary value holder with severity and status of all enabled links.
+	 * Value type is not aggregated and is <code>null</code>.
+	 *
+	 * @return summary holder
+	 */
+	public synchronized ValueHolder toSummaryBit() {
+		return new ValueHolder(ValueLinks.SUMMARY, null, getSeverity(), getStatus(), null, System.currentTimeMillis());
+	}
+
+	/**
+	 * Returns number of enabled links with provided severity.
+	 *
+	 * @param s the severity
+	 * @return number of enabled links with severity
+	 */
+	public synchronized int getCount(Severity s) {
+		return counts[s.getValue()];
+	}
+
+}
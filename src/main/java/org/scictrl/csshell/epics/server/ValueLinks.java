@@ -5,18 +5,31 @@ import java.beans.PropertyChangeListener;
 import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.scictrl.csshell.Connection;
+import org.scictrl.csshell.DataType;
 import org.scictrl.csshell.MetaData;
 import org.scictrl.csshell.Poop;
 import org.scictrl.csshell.RemoteException;
 import org.scictrl.csshell.Status.State;
+import org.scictrl.csshell.epics.DBRListener;
 import org.scictrl.csshell.epics.EPICSConnection;
+import org.scictrl.csshell.epics.EPICSConnector;
 import org.scictrl.csshell.epics.EPICSUtilities;
 
+import gov.aps.jca.Monitor;
 import gov.aps.jca.dbr.DBR;
 import gov.aps.jca.dbr.DBRType;
 import gov.aps.jca.dbr.STS;
@@ -26,6 +39,20 @@ import gov.aps.jca.dbr.Status;
 /**
  * <p>ValueLinks class.</p>
  *
+ * <p>Link name can be followed by space separated options for remote monitor, for example
+ * <code>A:SR:BPM:Waveform mask=ALARM count=100 type=FLOAT</code>:</p>
+ * <ul>
+ * <li><code>mask</code> - monitor mask, combination of <code>VALUE</code>, <code>LOG</code> and <code>ALARM</code> separated with <code>|</code>, or integer mask.</li>
+ * <li><code>count</code> - number of requested array elements, from the start of array.</li>
+ * <li><code>type</code> - requested DBR type, such as <code>DOUBLE</code>, <code>FLOAT</code>, <code>INT</code>, <code>SHORT</code>, <code>BYTE</code>, <code>ENUM</code> or <code>STRING</code>.</li>
+ * </ul>
+ * <p>Options are ignored for links to local records.</p>
+ *
+ * <p>Received values are stored without locking, each store increments version counter. Consume methods
+ * return snapshot of values and mark the version as consumed. Update notifications are coalesced,
+ * at most one notification is pending at any time.
+ * Monitor DBRs of remote links are stored as received and converted to {@link ValueHolder} only when value is read.</p>
+ *
  * @author igor@scictrl.com
  */
 public class ValueLinks {
@@ -33,6 +60,90 @@ public class ValueLinks {
 	/** Constant <code>SUMMARY="Summary"</code> */
 	public static final String SUMMARY="Summary";
 	
+	/** Constant <code>OPTION_MASK="mask"</code> */
+	public static final String OPTION_MASK="mask";
+	/** Constant <code>OPTION_COUNT="count"</code> */
+	public static final String OPTION_COUNT="count";
+	/** Constant <code>OPTION_TYPE="type"</code> */
+	public static final String OPTION_TYPE="type";
+	
+	/**
+	 * Parses monitor options following link name, see class description for syntax.
+	 *
+	 * @param link the link name with options
+	 * @return monitor parameters for {@link org.scictrl.csshell.epics.EPICSConnection#addDBRListener(DBRListener, Map)}, or <code>null</code> if there is no option
+	 * @throws java.lang.IllegalArgumentException if option can not be parsed
+	 */
+	public static Map<String,Object> parseLinkOptions(String link) {
+		return parseLinkOptions(link, tokenize(link));
+	}
+	
+	/**
+	 * Splits link into PV name, which is first token, and options, separated by any whitespace.
+	 */
+	private static String[] tokenize(String link) {
+		return link.trim().split("\\s+");
+	}
+	
+	private static Map<String,Object> parseLinkOptions(String link, String[] s) {
+		if (s.length<2) {
+			return null;
+		}
+		Map<String,Object> param= new HashMap<String,Object>(4);
+		for (int i = 1; i < s.length; i++) {
+			int j= s[i].indexOf('=');
+			if (j<1) {
+				throw new IllegalArgumentException("Link '"+link+"' option '"+s[i]+"' is not in form key=value.");
+			}
+			String key= s[i].substring(0, j).toLowerCase();
+			String val= s[i].substring(j+1).toUpperCase();
+			try {
+				if (OPTION_MASK.equals(key)) {
+					int mask=0;
+					for (String m : val.split("[|+]")) {
+						if ("VALUE".equals(m)) {
+							mask|= Monitor.VALUE;
+						} else if ("LOG".equals(m)) {
+							mask|= Monitor.LOG;
+						} else if ("ALARM".equals(m)) {
+							mask|= Monitor.ALARM;
+						} else {
+							mask|= Integer.parseInt(m);
+						}
+					}
+					param.put(EPICSConnector.PARAMETER_MONITOR_MASK, mask);
+				} else if (OPTION_COUNT.equals(key)) {
+					param.put(EPICSConnector.PARAMETER_MONITOR_COUNT, Integer.valueOf(val));
+				} else if (OPTION_TYPE.equals(key)) {
+					DBRType type= DBRType.forName(val.startsWith("DBR_") ? val : "DBR_"+val);
+					if (type==null) {
+						throw new IllegalArgumentException("Unknown DBR type.");
+					}
+					param.put(EPICSConnector.PARAMETER_MONITOR_TYPE, type);
+				} else {
+					throw new IllegalArgumentException("Unknown option.");
+				}
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Link '"+link+"' option '"+s[i]+"' is not valid: "+e.getMessage(), e);
+			}
+		}
+		return param;
+	}
+	
+	/**
+	 * Receives notification for each value stored by link, before coalesced update is fired.
+	 * Notification is done from thread which delivered the value, it must be fast and must not block.
+	 */
+	public interface ValueChangeListener {
+		/**
+		 * Value of link on provided index has changed, new value is available with {@link ValueLinks#getValueHolder(int)}.
+		 *
+		 * @param links the links with changed value
+		 * @param index the index of changed link
+		 */
+		public void valueChanged(ValueLinks links, int index);
+	}
+	
 	/**
 	 * Holds value.
 	 */
@@ -259,6 +370,20 @@ public class ValueLinks {
 		abstract void setValue(Object value) throws RemoteException, Exception;
 		abstract ValueHolder getValue() throws RemoteException, Exception;
 		abstract void disconnect();
+		
+		/**
+		 * Requests value without blocking, by default same as {@link #getValue()}.
+		 * @return future with value
+		 */
+		CompletableFuture<ValueHolder> getValueAsync() {
+			try {
+				return CompletableFuture.completedFuture(getValue());
+			} catch (Exception e) {
+				CompletableFuture<ValueHolder> f= new CompletableFuture<ValueHolder>();
+				f.completeExceptionally(e);
+				return f;
+			}
+		}
 	}
 
 	private class RecordListener extends ValueListener {
@@ -279,7 +404,7 @@ public class ValueLinks {
 			if (!active) {
 				return;
 			}
-			values[index]= new ValueHolder(record.getName(), record.getValue(), record.getAlarmSeverity(), record.getAlarmStatus(), record.getType(), EPICSUtilities.toUTC(record.getTimestamp()));
+			store(index, new ValueHolder(record.getName(), record.getValue(), record.getAlarmSeverity(), record.getAlarmStatus(), record.getType(), EPICSUtilities.toUTC(record.getTimestamp())));
 			update();
 		}
 		
@@ -304,8 +429,7 @@ public class ValueLinks {
 		
 		@Override
 		ValueHolder getValue() throws RemoteException, Exception {
-			values[index]= new ValueHolder(record.getName(), record.getValue(), record.getAlarmSeverity(), record.getAlarmStatus(), record.getType(), EPICSUtilities.toUTC(record.getTimestamp()));
-			return values[index];
+			return store(index, new ValueHolder(record.getName(), record.getValue(), record.getAlarmSeverity(), record.getAlarmStatus(), record.getType(), EPICSUtilities.toUTC(record.getTimestamp())));
 		}
 		
 		@Override
@@ -329,12 +453,27 @@ public class ValueLinks {
 
 	}
 	
-	private class ConnectionListener extends ValueListener {
+	private class ConnectionListener extends ValueListener implements DBRListener<Object> {
 		final EPICSConnection<Object> conn;
+		private boolean connected;
+		/** DBR type of monitor, if overridden by link options. */
+		private final DBRType monitorType;
+		private volatile Class<?> javaType;
+		/** Native type of channel, resolved with first DBR after connect. */
+		private volatile DBRType fieldType;
 		
 		public ConnectionListener(int index, EPICSConnection<Object> conn) {
 			super(index);
 			this.conn=conn;
+			// must be set before DBRs are received
+			remote[index]=this;
+			
+			Map<String,Object> param= options[index];
+			if (param!=null && param.get(EPICSConnector.PARAMETER_MONITOR_TYPE) instanceof DBRType) {
+				monitorType= (DBRType)param.get(EPICSConnector.PARAMETER_MONITOR_TYPE);
+			} else {
+				monitorType= null;
+			}
 			
 			String p=null;
 			if (propertyType==Record.PROPERTY_VALUE) {
@@ -343,7 +482,12 @@ public class ValueLinks {
 				p=Connection.PROPERTY_ALARM;
 			}
 			try {
-				conn.addPropertyChangeListener(p, this);
+				// values are received as DBR, which avoids Poop and event creation for each update
+				if (p==Connection.PROPERTY_VALUE) {
+					conn.addDBRListener(this, options[index]);
+				} else {
+					conn.addPropertyChangeListener(p, this);
+				}
 				conn.addPropertyChangeListener(Connection.PROPERTY_STATUS, this);
 			} catch (RemoteException e) {
 				e.printStackTrace();
@@ -352,24 +496,73 @@ public class ValueLinks {
 		
 		@Override
 		void disconnect() {
-			conn.removePropertyChangeListener(propertyType, this);
+			if (propertyType==Record.PROPERTY_VALUE) {
+				conn.removeDBRListener(this);
+				// last received value stays available after deactivation
+				convert();
+			} else {
+				conn.removePropertyChangeListener(propertyType, this);
+			}
 			conn.removePropertyChangeListener(Connection.PROPERTY_STATUS, this);
 			conn.destroy();
 		}
 		
+		@Override
+		public void dbrChanged(EPICSConnection<Object> connection, DBR dbr) {
+			if (!active) {
+				return;
+			}
+			if (!connected && conn.isConnected()) {
+				connected=true;
+				linkConnected();
+			}
+			if (fieldType==null) {
+				// resolved while connected, conversion may happen later
+				fieldType= conn.getChannel().getFieldType();
+			}
+			if (javaType==null) {
+				// with overridden monitor type Java type follows the received DBR
+				DataType dt= monitorType!=null ? EPICSUtilities.toDataType(monitorType, dbr.getCount()) : null;
+				javaType= dt!=null ? dt.getJavaClass() : conn.getDataType().getJavaClass();
+			}
+			receive(index, dbr);
+			update();
+		}
+		
+		/**
+		 * Converts last received DBR, if any, to value holder. Conversion is done by reader under lock of this listener,
+		 * so that older DBR never replaces value stored later.
+		 */
+		void convert() {
+			synchronized (this) {
+				DBR dbr= received.getAndSet(index, null);
+				if (dbr==null) {
+					return;
+				}
+				Object value= EPICSUtilities.toJavaValue(dbr, javaType, fieldType);
+				values.set(index, new ValueHolder(conn.getName(), value, ((STS)dbr).getSeverity(), ((STS)dbr).getStatus(), fieldType, EPICSUtilities.toUTC(dbr)));
+			}
+		}
+		
 		@Override
 		public void propertyChange(PropertyChangeEvent evt) {
 			if (!active) {
 				return;
 			}
 			log.debug("Update "+conn.getName()+" "+evt.getNewValue()+" ("+conn.getStatus()+")");
+			if (!connected && conn.isConnected()) {
+				connected=true;
+				linkConnected();
+			}
 			Poop<?, DBR> p= conn.getLastPoop();
 			if (p!=null) {
-				values[index]= new ValueHolder(conn.getName(), p.getValue(), ((STS)p.getVector()).getSeverity(), ((STS)p.getVector()).getStatus(), conn.getChannel().getFieldType(), p.getTimestamp().getMilliseconds());
+				store(index, new ValueHolder(conn.getName(), p.getValue(), ((STS)p.getVector()).getSeverity(), ((STS)p.getVector()).getStatus(), conn.getChannel().getFieldType(), p.getTimestamp().getMilliseconds()));
 				update();
 			} else {
 				if (!conn.isConnected()) {
-					values[index]= new ValueHolder(conn.getName());
+					store(index, new ValueHolder(conn.getName()));
+					// resolved again after reconnect, pending DBR has been replaced by store
+					fieldType=null;
 					update();
 				}
 				//System.out.println(conn.getName()+" "+conn.getStatus()+" "+conn.isReady());
@@ -410,13 +603,19 @@ public class ValueLinks {
 		ValueHolder getValue() throws RemoteException, Exception {
 			Poop<?, DBR> p= conn.getPoop();
 			if (p!=null) {
-				values[index]= new ValueHolder(conn.getName(), p.getValue(), ((STS)p.getVector()).getSeverity(), ((STS)p.getVector()).getStatus(), conn.getChannel().getFieldType(),p.getTimestamp().getMilliseconds());
-			} else {
-				if (!conn.isConnected()) {
-					values[index]= new ValueHolder(conn.getName());
-				}
+				return store(index, new ValueHolder(conn.getName(), p.getValue(), ((STS)p.getVector()).getSeverity(), ((STS)p.getVector()).getStatus(), conn.getChannel().getFieldType(),p.getTimestamp().getMilliseconds()));
 			}
-			return values[index];
+			if (!conn.isConnected()) {
+				return store(index, new ValueHolder(conn.getName()));
+			}
+			return holder(index);
+		}
+		
+		@Override
+		CompletableFuture<ValueHolder> getValueAsync() {
+			return conn.getAsync().thenApply(p -> {
+				return store(index, new ValueHolder(conn.getName(), p.getValue(), ((STS)p.getVector()).getSeverity(), ((STS)p.getVector()).getStatus(), conn.getChannel().getFieldType(),p.getTimestamp().getMilliseconds()));
+			});
 		}
 		
 		@Override
@@ -426,24 +625,53 @@ public class ValueLinks {
 	}
 
 	private String[] linkNames;
-	private ValueHolder[] values;
+	/** Link names without options. */
+	private String[] names;
+	/** Monitor parameters from link options, <code>null</code> for links without options. */
+	private Map<String,Object>[] options;
+	private final AtomicReferenceArray<ValueHolder> values;
+	/** Last DBR received by remote link, not yet converted to value holder. */
+	private final AtomicReferenceArray<DBR> received;
+	/** Remote link listeners by link index, they convert received DBRs. */
+	private final ConnectionListener[] remote;
+	/** Incremented after each stored value. */
+	private final AtomicLong version= new AtomicLong();
+	/** Version of values returned by last consume, negative when not consumed. */
+	private final AtomicLong consumedVersion= new AtomicLong(-1);
 	private PropertyChangeListener listener;
-	private long lastUpdate;
+	private volatile ValueChangeListener valueChangeListener;
+	private volatile long lastUpdate;
 	private long minUpdateRate=10;
-	private boolean updatePending;
+	private final AtomicBoolean updatePending= new AtomicBoolean();
 	private List<ValueListener> listeners;
 	private final String propertyType;
-	private boolean ready=false;
+	private volatile boolean ready=false;
 	private Logger log= LogManager.getLogger(getClass());
 	private String name;
 	private Database db;
 	
-	private boolean consumed=false;
-	private Status lastStatus;
-	private Severity lastSeverity;
+	/** Alarm summary of values, valid for version at which it was calculated. */
+	private volatile AlarmSummary lastAlarm;
 	private String context;
 	
 	private boolean active=false;
+	private long activationStart;
+	private int remoteCount;
+	private final AtomicInteger connectedCount= new AtomicInteger();
+	private final AtomicBoolean reported= new AtomicBoolean();
+	private volatile boolean requested;
+	
+	private static final class AlarmSummary {
+		final long version;
+		final Status status;
+		final Severity severity;
+		
+		AlarmSummary(long version, Status status, Severity severity) {
+			this.version=version;
+			this.status=status;
+			this.severity=severity;
+		}
+	}
 
 	/**
 	 * Creates new link handler. Name is used as a context.
@@ -509,11 +737,22 @@ public class ValueLinks {
 
 		this.name=name;
 		this.linkNames=linkNames;
+		this.names= new String[linkNames.length];
+		@SuppressWarnings("unchecked")
+		Map<String,Object>[] opt= new Map[linkNames.length];
+		this.options=opt;
+		for (int i = 0; i < linkNames.length; i++) {
+			String[] t= tokenize(linkNames[i]);
+			names[i]= t[0];
+			options[i]= parseLinkOptions(linkNames[i], t);
+		}
 		this.listener=listener;
 		this.propertyType=propertyType;
 		this.context=context;
 
-		values= new ValueHolder[linkNames.length];
+		values= new AtomicReferenceArray<ValueHolder>(linkNames.length);
+		received= new AtomicReferenceArray<DBR>(linkNames.length);
+		remote= new ConnectionListener[linkNames.length];
 		
 	}
 	
@@ -533,18 +772,31 @@ public class ValueLinks {
 	 * @param db a {@link org.scictrl.csshell.epics.server.Database} object
 	 */
 	public void activate(Database db) {
-		if (this.db!=null) {
+		if (active) {
 			log.warn("["+(context!=null?context+"/":"")+name+"] has been already activated, skipping.");
 			return;
 		}
 		active=true;
 		this.db=db;
 		db.activationDelay();
+		// counters are reset, links may be activated again after deactivation
+		remoteCount=0;
+		connectedCount.set(0);
+		reported.set(false);
+		requested=false;
+		activationStart= System.currentTimeMillis();
 		listeners= new ArrayList<ValueListener>(linkNames.length);
-		for (int i = 0; i < linkNames.length && active==true; i++) {
-			String name= linkNames[i].trim();
+		
+		if (db.isActivationBatch()) {
+			activateBatch(db);
+			return;
+		}
+		
+		for (int i = 0; i < names.length && active==true; i++) {
+			String name= names[i];
 			Record r= db.getRecord(name);
 			if (r!=null) {
+				db.activateDependency(r);
 				listeners.add(new RecordListener(i, r));
 				log.info("["+(context!=null?context+"/":"")+this.name+"] local connection to '"+name+"'");
 			} else {
@@ -556,6 +808,7 @@ public class ValueLinks {
 					t= System.currentTimeMillis()-t;
 
 					if (conn!=null) {
+						remoteCount++;
 						listeners.add(new ConnectionListener(i, conn));
 						log.info("["+(context!=null?context+"/":"")+this.name+"] in "+t+" ms remote connection to "+name);
  					} else {
@@ -568,6 +821,97 @@ public class ValueLinks {
 				}
 			}
 		}
+		requested=true;
+		checkAllConnected();
+	}
+	
+	/**
+	 * Batched activation: first all remote channels are created without waiting, then listeners are attached 
+	 * and IO is flushed once. Links are completed when connection callbacks arrive.
+	 */
+	private void activateBatch(Database db) {
+		
+		EPICSConnection<?>[] conns= new EPICSConnection<?>[linkNames.length];
+		int local=0;
+		
+		for (int i = 0; i < names.length && active==true; i++) {
+			String name= names[i];
+			Record r= db.getRecord(name);
+			if (r!=null) {
+				db.activateDependency(r);
+				listeners.add(new RecordListener(i, r));
+				local++;
+				log.debug("["+(context!=null?context+"/":"")+this.name+"] local connection to '"+name+"'");
+			} else {
+				try {
+					conns[i]= db.getConnector().newConnection(name,null);
+					if (conns[i]==null) {
+						log.error("["+(context!=null?context+"/":"")+this.name+"] remote connection to "+name+" FAILED for unknown reason!");
+					}
+				} catch (RemoteException e) {
+					e.printStackTrace();
+					log.error("Remote connection "+this.name+" to "+name+" FAILED!",e);
+				}
+			}
+		}
+		
+		for (int i = 0; i < conns.length; i++) {
+			if (conns[i]!=null) {
+				remoteCount++;
+			}
+		}
+		
+		for (int i = 0; i < conns.length && active==true; i++) {
+			if (conns[i]!=null) {
+				@SuppressWarnings("unchecked")
+				EPICSConnection<Object> conn= (EPICSConnection<Object>) conns[i];
+				listeners.add(new ConnectionListener(i, conn));
+				log.debug("["+(context!=null?context+"/":"")+this.name+"] remote connection to "+conn.getName());
+			}
+		}
+		
+		if (remoteCount>0) {
+			db.getConnector().flushIO();
+		}
+		
+		log.info("["+(context!=null?context+"/":"")+this.name+"] in "+(System.currentTimeMillis()-activationStart)+" ms requested "+local+" local and "+remoteCount+" remote connections");
+		requested=true;
+		checkAllConnected();
+	}
+	
+	/**
+	 * Called by connection listener first time its connection is established.
+	 */
+	private void linkConnected() {
+		connectedCount.incrementAndGet();
+		checkAllConnected();
+	}
+	
+	/**
+	 * Reports activation time, when all remote links has been connected.
+	 */
+	private void checkAllConnected() {
+		if (requested && remoteCount>0 && connectedCount.get()==remoteCount && reported.compareAndSet(false, true)) {
+			log.info("["+(context!=null?context+"/":"")+this.name+"] all "+remoteCount+" remote connections established in "+(System.currentTimeMillis()-activationStart)+" ms");
+		}
+	}
+	
+	/**
+	 * Returns number of remote links, which has been connected at least once since activation.
+	 *
+	 * @return number of connected remote links
+	 */
+	public int getConnectedCount() {
+		return connectedCount.get();
+	}
+	
+	/**
+	 * Returns number of remote links, which were requested during activation.
+	 *
+	 * @return number of remote links
+	 */
+	public int getRemoteCount() {
+		return remoteCount;
 	}
 	
 	/**
@@ -590,13 +934,85 @@ public class ValueLinks {
 	 *
 	 * @return copy of received values up to this point
 	 */
-	public synchronized ValueHolder[] consume() {
-		ValueHolder[] o = new ValueHolder[values.length];
-		System.arraycopy(values, 0, o, 0, o.length);
-		consumed=true;
+	public ValueHolder[] consume() {
+		// version is read before values, so concurrent store leaves links not consumed
+		long v= version.get();
+		ValueHolder[] o = snapshot();
+		consumedVersion.accumulateAndGet(v, Math::max);
+		return o;
+	}
+	
+	private ValueHolder[] snapshot() {
+		ValueHolder[] o = new ValueHolder[values.length()];
+		for (int i = 0; i < o.length; i++) {
+			o[i]= holder(i);
+		}
 		return o;
 	}
 	
+	/**
+	 * Returns value of link, received DBR is converted to value holder first.
+	 */
+	private ValueHolder holder(int index) {
+		if (received.get(index)!=null) {
+			remote[index].convert();
+		}
+		return values.get(index);
+	}
+	
+	private ValueHolder store(int index, ValueHolder vh) {
+		ConnectionListener l= remote[index];
+		if (l!=null) {
+			synchronized (l) {
+				// received DBR is older than this value
+				received.set(index, null);
+				values.set(index, vh);
+			}
+		} else {
+			values.set(index, vh);
+		}
+		stored(index);
+		return vh;
+	}
+	
+	/**
+	 * Stores DBR received by remote link without conversion, it is converted to value holder when value is read.
+	 * Monitor events therefore do not allocate value holder and Java value, if several DBRs are received
+	 * between two reads, only last one is converted.
+	 */
+	private void receive(int index, DBR dbr) {
+		received.set(index, dbr);
+		stored(index);
+	}
+	
+	private void stored(int index) {
+		version.incrementAndGet();
+		ValueChangeListener l= valueChangeListener;
+		if (l!=null) {
+			l.valueChanged(this, index);
+		}
+	}
+	
+	/**
+	 * Returns last received value of link on provided index, without marking values as consumed.
+	 *
+	 * @param index the index of link
+	 * @return last received value or <code>null</code> if no value has been received
+	 */
+	public ValueHolder getValueHolder(int index) {
+		return holder(index);
+	}
+	
+	/**
+	 * Sets listener, which is notified for each received value. Must be set before activation
+	 * to receive initial values.
+	 *
+	 * @param l the listener, can be <code>null</code>
+	 */
+	public void setValueChangeListener(ValueChangeListener l) {
+		this.valueChangeListener= l;
+	}
+	
 	/**
 	 * <p>consumeAsDoubles.</p>
 	 *
@@ -677,11 +1093,8 @@ public class ValueLinks {
 	 *
 	 * @return a {@link gov.aps.jca.dbr.Severity} object
 	 */
-	public synchronized Severity getLastSeverity() {
-		if (lastSeverity==null) {
-			updateStatusAndStatus();
-		}
-		return lastSeverity;
+	public Severity getLastSeverity() {
+		return getLastAlarm().severity;
 	}
 	
 	/**
@@ -689,11 +1102,8 @@ public class ValueLinks {
 	 *
 	 * @return a boolean
 	 */
-	public synchronized boolean isLastSeverityInvalid() {
-		if (lastSeverity==null) {
-			updateStatusAndStatus();
-		}
-		return lastSeverity.isGreaterThanOrEqual(Severity.INVALID_ALARM);
+	public boolean isLastSeverityInvalid() {
+		return getLastAlarm().severity.isGreaterThanOrEqual(Severity.INVALID_ALARM);
 	}
 
 	/**
@@ -701,11 +1111,8 @@ public class ValueLinks {
 	 *
 	 * @return a boolean
 	 */
-	public synchronized boolean isLastSeverityHigh() {
-		if (lastSeverity==null) {
-			updateStatusAndStatus();
-		}
-		return lastSeverity.isGreaterThan(Severity.NO_ALARM);
+	public boolean isLastSeverityHigh() {
+		return getLastAlarm().severity.isGreaterThan(Severity.NO_ALARM);
 	}
 
 	/**
@@ -713,31 +1120,36 @@ public class ValueLinks {
 	 *
 	 * @return a {@link gov.aps.jca.dbr.Status} object
 	 */
-	public synchronized Status getLastStatus() {
-		if (lastStatus==null) {
-			updateStatusAndStatus();
-		}
-		return lastStatus;
+	public Status getLastStatus() {
+		return getLastAlarm().status;
 	}
 	
 	
-	private void updateStatusAndStatus() {
+	private AlarmSummary getLastAlarm() {
+		AlarmSummary a= lastAlarm;
+		long v= version.get();
+		if (a!=null && a.version==v) {
+			return a;
+		}
+		
 		Status status= Status.NO_ALARM;
 		Severity severity= Severity.NO_ALARM;
 		
-		for (int i = 0; i < values.length; i++) {
-			if (values[i]==null) {
-				lastStatus=Status.UDF_ALARM;
-				lastSeverity=Severity.INVALID_ALARM;
-				return;
+		for (int i = 0; i < values.length(); i++) {
+			ValueHolder vh= holder(i);
+			if (vh==null) {
+				status=Status.UDF_ALARM;
+				severity=Severity.INVALID_ALARM;
+				break;
 			}
-			if (severity.isLessThan(values[i].severity)) {
-				status=values[i].status;
-				severity=values[i].severity;
+			if (severity.isLessThan(vh.severity)) {
+				status=vh.status;
+				severity=vh.severity;
 			} 
 		}
-		lastStatus=status;
-		lastSeverity=severity;
+		a= new AlarmSummary(v, status, severity);
+		lastAlarm=a;
+		return a;
 	}
 
 	/**
@@ -745,15 +1157,15 @@ public class ValueLinks {
 	 *
 	 * @return <code>true</code> if after consume was called and no new values were delivered
 	 */
-	public synchronized boolean isConsumed() {
-		return consumed;
+	public boolean isConsumed() {
+		return consumedVersion.get()>=version.get();
 	}
 
 	/**
 	 * <p>resetConsumedFlag.</p>
 	 */
-	public synchronized void resetConsumedFlag() {
-		consumed=false;
+	public void resetConsumedFlag() {
+		consumedVersion.set(-1);
 	}
 	
 	/**
@@ -764,9 +1176,10 @@ public class ValueLinks {
 	 */
 	public boolean isReady() {
 		if (!ready) {
-			for (int i = 0; i < values.length; i++) {
-				if (values[i]==null) return false;
-				if (values[i].failed) return false;
+			for (int i = 0; i < values.length(); i++) {
+				ValueHolder vh= holder(i);
+				if (vh==null) return false;
+				if (vh.failed) return false;
 			}
 			ready=true;
 		}
@@ -782,7 +1195,8 @@ public class ValueLinks {
 		ArrayList<String> l= new ArrayList<String>(linkNames.length);
 		
 		for (int i = 0; i < linkNames.length; i++) {
-			if (values[i]==null || values[i].failed) {
+			ValueHolder vh= holder(i);
+			if (vh==null || vh.failed) {
 				l.add(linkNames[i]);
 			}
 		}
@@ -848,22 +1262,17 @@ public class ValueLinks {
 	/**
 	 * Schedules update, take care that only update is scheduled 
 	 */
-	private synchronized void update() {
-		consumed=false;
-		
-		lastSeverity=null;
-		lastStatus=null;
-		
+	private void update() {
 		if (listener!=null) {
 			
-			if (updatePending) {
+			if (!updatePending.compareAndSet(false, true)) {
 				return;
 			}
 			
-			long diff= System.currentTimeMillis()-lastUpdate;
-			lastUpdate= System.currentTimeMillis();
+			long now= System.currentTimeMillis();
+			long diff= now-lastUpdate;
+			lastUpdate= now;
 
-			updatePending=true;
 			db.schedule(new Runnable() {
 				
 				@Override
@@ -881,8 +1290,8 @@ public class ValueLinks {
 	 */
 	protected void fireUpdate() {
 		if (listener!=null) {
-			updatePending=false;
-			PropertyChangeEvent p= new PropertyChangeEvent(this, name, null, values);
+			updatePending.set(false);
+			PropertyChangeEvent p= new PropertyChangeEvent(this, name, null, snapshot());
 			listener.propertyChange(p);
 		}
 	}
@@ -989,9 +1398,25 @@ public class ValueLinks {
 	 * @throws java.lang.Exception if any.
 	 */
 	public ValueHolder[] getValue() throws Exception {
-		ValueHolder[] vh= new ValueHolder[listeners.size()];
+		// all remote requests are issued first, then collected
+		List<CompletableFuture<ValueHolder>> f= new ArrayList<CompletableFuture<ValueHolder>>(listeners.size());
 		for (int i = 0; i < listeners.size(); i++) {
-			vh[i]= listeners.get(i).getValue();
+			f.add(listeners.get(i).getValueAsync());
+		}
+		ValueHolder[] vh= new ValueHolder[listeners.size()];
+		for (int i = 0; i < vh.length; i++) {
+			try {
+				vh[i]= f.get(i).get();
+			} catch (ExecutionException e) {
+				Throwable t= e.getCause();
+				if (t instanceof CompletionException && t.getCause()!=null) {
+					t= t.getCause();
+				}
+				if (t instanceof Exception) {
+					throw (Exception)t;
+				}
+				throw e;
+			}
 		}
 		return vh;
 	}
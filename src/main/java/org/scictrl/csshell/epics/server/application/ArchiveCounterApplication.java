@@ -7,14 +7,12 @@ import java.util.Date;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.csstudio.archive.reader.ArchiveReader;
-import org.csstudio.archive.reader.ValueIterator;
 import org.epics.util.time.Timestamp;
-import org.epics.vtype.Alarm;
 import org.epics.vtype.AlarmSeverity;
-import org.epics.vtype.Time;
-import org.epics.vtype.VNumber;
-import org.epics.vtype.VType;
 import org.scictrl.csshell.Tools;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveCache;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveClient;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveSamples;
 
 import com.aquenos.csstudio.archive.json.reader.JsonArchiveReaderFactory;
 
@@ -31,31 +29,33 @@ public class ArchiveCounterApplication extends AbstractApplication {
 	
 	final class AverageCalculator {
 		
-		ValueIterator data;
+		ArchiveSamples data;
 		int size;
 		double avg=0.0;
 		double rms=0.0;
 		double std=0.0;
 		double span=0.0;
 		
-		public AverageCalculator(ValueIterator data) {
+		public AverageCalculator(ArchiveSamples data) {
 			this.data=data;
 		}
 		
 		public void update() throws Exception {
 			
-			Timestamp start=null;
-			Timestamp end=null;
+			long start=-1;
+			long end=-1;
 			
-			while(data.hasNext()) {
-				VType vt= data.next();
-				Timestamp t= ((Time)vt).getTimestamp();
-				AlarmSeverity a= ((Alarm)vt).getAlarmSeverity();
-				double d= ((VNumber)vt).getValue().doubleValue();
+			for (int i = 0; data!=null && i < data.size(); i++) {
+				if (data.getLength(i)==0) {
+					continue;
+				}
+				long t= data.getTime(i);
+				AlarmSeverity a= AlarmSeverity.values()[data.getSeverity(i)];
+				double d= data.getValue(i);
 				
 				if (AlarmSeverity.NONE==a || (!strictAlarmFilter && AlarmSeverity.INVALID!=a)) {
 					size++;
-					if (start==null) {
+					if (start<0) {
 						start=t;
 					}
 					end=t;
@@ -72,8 +72,8 @@ public class ArchiveCounterApplication extends AbstractApplication {
 				rms=Math.sqrt(rms);
 			}
 			
-			if (end!=null && start!=null) {
-				span=(double)(end.getSec()-start.getSec())/60.0;
+			if (end>=0 && start>=0) {
+				span=(double)(end/1000000000L-start/1000000000L)/60.0;
 			}
 		}
 		
@@ -93,6 +93,7 @@ public class ArchiveCounterApplication extends AbstractApplication {
 	private static final String STRICT = "StrictAlarms";
 	private String archiveLink;
 	private ArchiveReader reader;
+	private ArchiveCache cache;
 	private boolean strictAlarmFilter;
 
 	/**
@@ -115,6 +116,10 @@ public class ArchiveCounterApplication extends AbstractApplication {
 			throw new IllegalArgumentException("Configuration has no archive parameter!");
 		}
 		
+		if (config.getBoolean("archive_cache", true)) {
+			cache= ArchiveCache.getInstance();
+		}
+		
 		addRecordOfMemoryValueProcessor(STRICT, "Strict alarm filter", DBRType.BYTE, strictAlarmFilter);
 		addRecordOfMemoryValueProcessor(AVG, "average", DBRType.DOUBLE, 0.0);
 		addRecordOfMemoryValueProcessor(RMS, "RMS", DBRType.DOUBLE, 0.0);
@@ -228,8 +233,11 @@ public class ArchiveCounterApplication extends AbstractApplication {
 			getRecord(STATUS).setValueAsString("BUSY: retrieving data");
 			
 			long t= System.currentTimeMillis();
-			ValueIterator it= reader.getRawValues(1,pv.trim(),Timestamp.of(start),Timestamp.of(end));
-			AverageCalculator calc= new AverageCalculator(it);
+			ArchiveCache.Loader loader= (p, s, e) -> ArchiveClient.readSamples(reader.getRawValues(1,p,Timestamp.of(start),Timestamp.of(end)), new ArchiveSamples());
+			ArchiveSamples data= cache!=null
+					? cache.get(archiveLink, pv.trim(), start.getTime()*1000000L, end.getTime()*1000000L, loader)
+					: loader.load(pv.trim(), 0, 0);
+			AverageCalculator calc= new AverageCalculator(data);
 			calc.update();
 			t= System.currentTimeMillis()-t;
 
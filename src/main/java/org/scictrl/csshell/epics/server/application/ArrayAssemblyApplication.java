@@ -11,16 +11,15 @@ import java.util.Map;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
 import org.csstudio.archive.reader.ArchiveReader;
-import org.csstudio.archive.reader.ValueIterator;
-import org.epics.util.array.ListNumber;
 import org.epics.util.time.Timestamp;
-import org.epics.vtype.VNumberArray;
-import org.epics.vtype.VType;
 import org.scictrl.csshell.Tools;
 import org.scictrl.csshell.epics.server.Record;
 import org.scictrl.csshell.epics.server.ValueLinks;
 import org.scictrl.csshell.epics.server.ValueLinks.ValueHolder;
 import org.scictrl.csshell.epics.server.application.RunningCounterApplication.AverageCalculator;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveCache;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveClient;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveSamples;
 
 import com.aquenos.csstudio.archive.json.reader.JsonArchiveReaderFactory;
 
@@ -141,6 +140,7 @@ public class ArrayAssemblyApplication extends AbstractApplication implements Run
 	private Record size;
 	private String archiveLink;
 	private ArchiveReader reader;
+	private ArchiveCache cache;
 	private Record status;
 	private Record severity;
 	
@@ -156,6 +156,9 @@ public class ArrayAssemblyApplication extends AbstractApplication implements Run
 		super.configure(name, config);
 		
 		archiveLink= config.getString("archive_url".toLowerCase());
+		if (config.getBoolean("archive_cache", true)) {
+			cache= ArchiveCache.getInstance();
+		}
 		
 		rate= (long)(config.getDouble("rate",1.0)*1000.0);
 		long interval= (long)(config.getDouble("interval",60.0)*1000.0);
@@ -366,6 +369,24 @@ public class ArrayAssemblyApplication extends AbstractApplication implements Run
 		}
 	}
 
+	/**
+	 * Returns first archived array at time, from shared archive cache if possible.
+	 */
+	private double[] getArchived(String pv, Date time) throws Exception {
+		ArchiveCache.Loader loader= (p, start, end) -> ArchiveClient.readSamples(reader.getRawValues(1,p,Timestamp.of(time),Timestamp.of(time)), new ArchiveSamples());
+		long t= time.getTime()*1000000L;
+		ArchiveSamples s= cache!=null ? cache.get(archiveLink, pv, t, t, loader) : loader.load(pv, t, t);
+		
+		double[] d= new double[elements.size()];
+		if (s!=null && s.size()>0) {
+			int i= Math.min(d.length, s.getLength(0));
+			for (int j = 0; j < i; j++) {
+				d[j]=s.getValue(0, j);
+			}
+		}
+		return d;
+	}
+
 	private synchronized void getData() {
 		
         try {
@@ -404,38 +425,9 @@ public class ArrayAssemblyApplication extends AbstractApplication implements Run
 				return;
 			}
 			
-			double[] val= new double[elements.size()];
-			ValueIterator it= reader.getRawValues(1,pvVal.trim(),Timestamp.of(time),Timestamp.of(time));
-			if (it.hasNext()) {
-				VType vt= it.next();
-				ListNumber ln= ((VNumberArray)vt).getData();
-				int i= Math.min(val.length, ln.size());
-				for (int j = 0; j < i; j++) {
-					val[j]=ln.getDouble(j);
-				}
-			}
-			
-			double[] avg= new double[elements.size()];
-			it= reader.getRawValues(1,pvAvg.trim(),Timestamp.of(time),Timestamp.of(time));
-			if (it.hasNext()) {
-				VType vt= it.next();
-				ListNumber ln= ((VNumberArray)vt).getData();
-				int i= Math.min(avg.length, ln.size());
-				for (int j = 0; j < i; j++) {
-					avg[j]=ln.getDouble(j);
-				}
-			}
-			
-			double[] std= new double[elements.size()];
-			it= reader.getRawValues(1,pvStd.trim(),Timestamp.of(time),Timestamp.of(time));
-			if (it.hasNext()) {
-				VType vt= it.next();
-				ListNumber ln= ((VNumberArray)vt).getData();
-				int i= Math.min(std.length, ln.size());
-				for (int j = 0; j < i; j++) {
-					std[j]=ln.getDouble(j);
-				}
-			}
+			double[] val= getArchived(pvVal.trim(), time);
+			double[] avg= getArchived(pvAvg.trim(), time);
+			double[] std= getArchived(pvStd.trim(), time);
 
 			getRecord(ARCH_AVG).setValue(avg);
 			getRecord(ARCH_STD).setValue(std);
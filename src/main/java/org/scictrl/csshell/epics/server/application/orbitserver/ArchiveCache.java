@@ -0,0 +1,428 @@
+package org.scictrl.csshell.epics.server.application.orbitserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>Local cache of archive samples, shared by applications which read same PVs from archive.</p>
+ *
+ * <p>Samples are cached for archive source, PV and time range. Request for range, which is within already
+ * cached range, is served from cache, overlapping ranges of same PV are merged, so repeated requests around
+ * same time instant are loaded from archive only once. Samples are returned as archive would return them
+ * for requested range, see {@link ArchiveSamples#copyRange(long, long, ArchiveSamples)}.</p>
+ *
+ * <p>Cache has in-heap tier limited by number of cached values, least recently used ranges are removed
+ * when limit is reached. If cache file is configured, removed ranges are moved to on-disk tier, which is
+ * memory mapped file used as ring buffer, oldest ranges in file are overwritten by new ones.
+ * Ranges from on-disk tier are moved back to heap when used.</p>
+ *
+ * <p>Ranges which end too close to current time, or where archive returned maximal number of samples,
+ * are not cached, because archive might return more samples for them later.</p>
+ *
+ * <p>Shared instance is configured with system properties {@link #PROPERTY_HEAP_VALUES}, {@link #PROPERTY_FILE},
+ * {@link #PROPERTY_FILE_SIZE} and {@link #PROPERTY_LIVE_MARGIN}.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public final class ArchiveCache {
+
+	/**
+	 * Loads samples from archive, when they are not in cache.
+	 */
+	public interface Loader {
+		/**
+		 * Loads samples for PV from archive.
+		 *
+		 * @param pv the PV name
+		 * @param start range start as nanosecond timestamp
+		 * @param end range end as nanosecond timestamp
+		 * @return samples ordered by time, or <code>null</code> if archive has no record for PV
+		 * @throws java.lang.Exception if loading fails
+		 */
+		ArchiveSamples load(String pv, long start, long end) throws Exception;
+	}
+
+	private static final class Entry {
+		final String key;
+		final long start;
+		final long end;
+		final ArchiveSamples samples;
+
+		Entry(String key, long start, long end, ArchiveSamples samples) {
+			this.key= key;
+			this.start= start;
+			this.end= end;
+			this.samples= samples;
+		}
+
+		int cost() {
+			// empty ranges are also counted, otherwise they would never be evicted
+			return 1+samples.size()+samples.getValueCount();
+		}
+	}
+
+	private static final class DiskEntry {
+		final String key;
+		final long start;
+		final long end;
+		final int offset;
+		final int length;
+
+		DiskEntry(String key, long start, long end, int offset, int length) {
+			this.key= key;
+			this.start= start;
+			this.end= end;
+			this.offset= offset;
+			this.length= length;
+		}
+	}
+
+	/** Constant <code>PROPERTY_HEAP_VALUES="ArchiveCache.heap_values"</code>, maximal number of values in heap tier. */
+	public static final String PROPERTY_HEAP_VALUES = "ArchiveCache.heap_values";
+	/** Constant <code>PROPERTY_FILE="ArchiveCache.file"</code>, file for on-disk tier, if not set on-disk tier is not used. */
+	public static final String PROPERTY_FILE = "ArchiveCache.file";
+	/** Constant <code>PROPERTY_FILE_SIZE="ArchiveCache.file_size"</code>, size of on-disk tier in bytes. */
+	public static final String PROPERTY_FILE_SIZE = "ArchiveCache.file_size";
+	/** Constant <code>PROPERTY_LIVE_MARGIN="ArchiveCache.live_margin"</code>, ranges ending later than this many milliseconds before now are not cached. */
+	public static final String PROPERTY_LIVE_MARGIN = "ArchiveCache.live_margin";
+
+	/** Constant <code>DEFAULT_HEAP_VALUES=1000000</code> */
+	public static final int DEFAULT_HEAP_VALUES = 1000000;
+	/** Constant <code>DEFAULT_FILE_SIZE=64MB</code> */
+	public static final int DEFAULT_FILE_SIZE = 64*1024*1024;
+	/** Constant <code>DEFAULT_LIVE_MARGIN=60000</code> */
+	public static final long DEFAULT_LIVE_MARGIN = 60000;
+
+	private static ArchiveCache instance;
+
+	/**
+	 * Returns shared cache instance, created with configuration from system properties.
+	 *
+	 * @return shared cache
+	 */
+	public static synchronized ArchiveCache getInstance() {
+		if (instance==null) {
+			int heap= Integer.getInteger(PROPERTY_HEAP_VALUES, DEFAULT_HEAP_VALUES);
+			long margin= Long.getLong(PROPERTY_LIVE_MARGIN, DEFAULT_LIVE_MARGIN);
+			String file= System.getProperty(PROPERTY_FILE);
+			if (file!=null && file.trim().length()>0) {
+				try {
+					instance= new ArchiveCache(heap, margin, new File(file.trim()), Integer.getInteger(PROPERTY_FILE_SIZE, DEFAULT_FILE_SIZE));
+				} catch (IOException e) {
+					LogManager.getLogger(ArchiveCache.class).error("Failed to open archive cache file '"+file+"', only heap cache is used: "+e.toString(), e);
+				}
+			}
+			if (instance==null) {
+				instance= new ArchiveCache(heap, margin);
+			}
+		}
+		return instance;
+	}
+
+	private final Logger log= LogManager.getLogger(getClass());
+
+	private final int maxHeapValues;
+	private final long liveMargin;
+	private final LinkedHashMap<Entry, Entry> lru= new LinkedHashMap<Entry, Entry>(64, 0.75f, true);
+	private final Map<String, TreeMap<Long, Entry>> heap= new HashMap<String, TreeMap<Long, Entry>>();
+	private int heapValues;
+
+	private final MappedByteBuffer file;
+	private final TreeMap<Integer, DiskEntry> diskByOffset= new TreeMap<Integer, DiskEntry>();
+	private final Map<String, TreeMap<Long, DiskEntry>> disk= new HashMap<String, TreeMap<Long, DiskEntry>>();
+	private int writePosition;
+
+	private long hits;
+	private long diskHits;
+	private long misses;
+
+	/**
+	 * Creates cache with heap tier only.
+	 *
+	 * @param maxHeapValues maximal number of cached values
+	 * @param liveMargin ranges ending later than this many milliseconds before now are not cached
+	 */
+	public ArchiveCache(int maxHeapValues, long liveMargin) {
+		this.maxHeapValues= maxHeapValues;
+		this.liveMargin= liveMargin;
+		this.file= null;
+	}
+
+	/**
+	 * Creates cache with heap and on-disk tier.
+	 *
+	 * @param maxHeapValues maximal number of cached values in heap
+	 * @param liveMargin ranges ending later than this many milliseconds before now are not cached
+	 * @param f file for on-disk tier, content is overwritten
+	 * @param fileSize size of on-disk tier in bytes
+	 * @throws java.io.IOException if file can not be mapped
+	 */
+	public ArchiveCache(int maxHeapValues, long liveMargin, File f, int fileSize) throws IOException {
+		this.maxHeapValues= maxHeapValues;
+		this.liveMargin= liveMargin;
+		// mapping stays valid after file is closed
+		try (RandomAccessFile raf= new RandomAccessFile(f, "rw")) {
+			raf.setLength(fileSize);
+			this.file= raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+		}
+		log.info("Archive cache file '"+f+"' mapped with "+fileSize+" bytes.");
+	}
+
+	/**
+	 * Returns samples for PV and time range, from cache if cache has them, otherwise from loader.
+	 * Returned buffer is owned by caller.
+	 *
+	 * @param source archive source, for example archive URL, samples from different sources are not mixed
+	 * @param pv the PV name
+	 * @param start range start as nanosecond timestamp
+	 * @param end range end as nanosecond timestamp
+	 * @param loader loads samples from archive if they are not cached
+	 * @return samples, or <code>null</code> if archive has no record for PV
+	 * @throws java.lang.Exception if loading fails
+	 */
+	public ArchiveSamples get(String source, String pv, long start, long end, Loader loader) throws Exception {
+
+		String key= source+'|'+pv;
+
+		synchronized (this) {
+			ArchiveSamples s= lookup(key, start, end);
+			if (s!=null) {
+				return s;
+			}
+			misses++;
+		}
+
+		// archive is read without lock, so requests for different PVs are loaded in parallel
+		ArchiveSamples s= loader.load(pv, start, end);
+
+		if (s==null || s.isTruncated() || end>(System.currentTimeMillis()-liveMargin)*1000000L) {
+			return s;
+		}
+
+		synchronized (this) {
+			store(key, start, end, s);
+		}
+		return s.copyRange(start, end, new ArchiveSamples(s.size()));
+	}
+
+	private ArchiveSamples lookup(String key, long start, long end) {
+
+		TreeMap<Long, Entry> m= heap.get(key);
+		if (m!=null) {
+			// heap ranges of same PV are merged, so they do not overlap
+			Map.Entry<Long, Entry> f= m.floorEntry(start);
+			if (f!=null && f.getValue().end>=end) {
+				Entry e= f.getValue();
+				lru.get(e);
+				hits++;
+				return e.samples.copyRange(start, end, new ArchiveSamples(e.samples.size()));
+			}
+		}
+
+		TreeMap<Long, DiskEntry> d= disk.get(key);
+		if (d!=null) {
+			// ranges on disk may overlap
+			for (DiskEntry de : d.headMap(start, true).descendingMap().values()) {
+				if (de.end>=end) {
+					ByteBuffer b= file.duplicate();
+					b.position(de.offset);
+					ArchiveSamples s= ArchiveSamples.read(b);
+					removeDisk(de);
+					diskHits++;
+					store(key, de.start, de.end, s);
+					return s.copyRange(start, end, new ArchiveSamples(s.size()));
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private void store(String key, long start, long end, ArchiveSamples samples) {
+
+		TreeMap<Long, Entry> m= heap.get(key);
+		if (m==null) {
+			m= new TreeMap<Long, Entry>();
+			heap.put(key, m);
+		}
+
+		// merge with all overlapping ranges, ranges are ordered and do not overlap, so their ends are ordered too
+		Iterator<Entry> it= m.headMap(end, true).descendingMap().values().iterator();
+		while (it.hasNext()) {
+			Entry e= it.next();
+			if (e.end<start) {
+				break;
+			}
+			it.remove();
+			lru.remove(e);
+			heapValues-= e.cost();
+			samples= ArchiveSamples.merge(e.samples, samples);
+			start= Math.min(start, e.start);
+			end= Math.max(end, e.end);
+		}
+
+		Entry n= new Entry(key, start, end, samples);
+		m.put(start, n);
+		lru.put(n, n);
+		heapValues+= n.cost();
+
+		while (heapValues>maxHeapValues && !lru.isEmpty()) {
+			Entry e= lru.keySet().iterator().next();
+			lru.remove(e);
+			heapValues-= e.cost();
+			TreeMap<Long, Entry> em= heap.get(e.key);
+			em.remove(e.start);
+			if (em.isEmpty()) {
+				heap.remove(e.key);
+			}
+			spill(e);
+		}
+	}
+
+	private void spill(Entry e) {
+
+		if (file==null) {
+			return;
+		}
+
+		int length= e.samples.byteSize();
+		if (length>file.capacity()) {
+			return;
+		}
+		if (writePosition+length>file.capacity()) {
+			writePosition= 0;
+		}
+
+		// overwritten ranges are removed from disk tier
+		Integer o= diskByOffset.floorKey(writePosition);
+		if (o!=null && o+diskByOffset.get(o).length<=writePosition) {
+			o= diskByOffset.higherKey(o);
+		}
+		while (o!=null && o<writePosition+length) {
+			DiskEntry de= diskByOffset.get(o);
+			o= diskByOffset.higherKey(o);
+			removeDisk(de);
+		}
+
+		// ranges contained in spilled one are not needed any more
+		TreeMap<Long, DiskEntry> d= disk.get(e.key);
+		if (d!=null) {
+			Iterator<DiskEntry> it= d.subMap(e.start, true, e.end, true).values().iterator();
+			while (it.hasNext()) {
+				DiskEntry de= it.next();
+				if (de.end<=e.end) {
+					it.remove();
+					diskByOffset.remove(de.offset);
+				}
+			}
+		} else {
+			d= new TreeMap<Long, DiskEntry>();
+			disk.put(e.key, d);
+		}
+
+		ByteBuffer b= file.duplicate();
+		b.position(writePosition);
+		e.samples.write(b);
+
+		DiskEntry de= new DiskEntry(e.key, e.start, e.end, writePosition, length);
+		d.put(e.start, de);
+		diskByOffset.put(writePosition, de);
+		writePosition+= length;
+	}
+
+	private void removeDisk(DiskEntry de) {
+		diskByOffset.remove(de.offset);
+		TreeMap<Long, DiskEntry> d= disk.get(de.key);
+		if (d!=null && d.get(de.start)==de) {
+			d.remove(de.start);
+			if (d.isEmpty()) {
+				disk.remove(de.key);
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached samples from both tiers.
+	 */
+	public synchronized void clear() {
+		lru.clear();
+		heap.clear();
+		heapValues= 0;
+		diskByOffset.clear();
+		disk.clear();
+		writePosition= 0;
+	}
+
+	/**
+	 * Returns number of requests served from heap tier.
+	 *
+	 * @return number of heap hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns number of requests served from on-disk tier.
+	 *
+	 * @return number of disk hits
+	 */
+	public synchronized long getDiskHits() {
+		return diskHits;
+	}
+
+	/**
+	 * Returns number of requests, which were loaded from archive.
+	 *
+	 * @return number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns number of timestamps and values currently cached in heap tier.
+	 *
+	 * @return number of cached values in heap
+	 */
+	public synchronized int getHeapValues() {
+		return heapValues;
+	}
+
+	/**
+	 * Returns number of ranges currently cached in heap tier.
+	 *
+	 * @return number of ranges in heap
+	 */
+	public synchronized int getHeapRanges() {
+		return lru.size();
+	}
+
+	/**
+	 * Returns number of ranges currently cached in on-disk tier.
+	 *
+	 * @return number of ranges on disk
+	 */
+	public synchronized int getDiskRanges() {
+		return diskByOffset.size();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public synchronized String toString() {
+		return "ArchiveCache{hits:"+hits+",diskHits:"+diskHits+",misses:"+misses+",heapRanges:"+lru.size()+",heapValues:"+heapValues+",diskRanges:"+diskByOffset.size()+"}";
+	}
+
+}
@@ -6,15 +6,36 @@ package org.scictrl.csshell.epics.server.application.orbitserver;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Vector;
-import java.util.zip.DeflaterInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.csstudio.archive.reader.ValueIterator;
+import org.epics.util.array.ListNumber;
+import org.epics.util.time.Timestamp;
+import org.epics.vtype.Alarm;
+import org.epics.vtype.Time;
+import org.epics.vtype.VNumber;
+import org.epics.vtype.VNumberArray;
+import org.epics.vtype.VType;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
@@ -29,6 +50,23 @@ public class ArchiveClient {
 	
 	/** Constant <code>SAMPLES_SEARCH_COUNT=50</code> */
 	public static final int SAMPLES_SEARCH_COUNT = 50;
+	
+	/** Constant <code>DEFAULT_PARALLEL_REQUESTS=8</code>, number of archive requests executed in parallel. */
+	public static final int DEFAULT_PARALLEL_REQUESTS = 8;
+	
+	/** Constant <code>DEFAULT_REQUEST_TIMEOUT=10000</code>, timeout for single archive request in milliseconds. */
+	public static final long DEFAULT_REQUEST_TIMEOUT = 10000;
+	
+	/** Constant <code>MAX_PARALLEL_REQUESTS=16</code>, number of threads shared by all archive requests. */
+	public static final int MAX_PARALLEL_REQUESTS = 16;
+	
+	private static final AtomicInteger THREAD_COUNT= new AtomicInteger();
+	
+	private static HttpClient httpClient;
+	private static ThreadPoolExecutor executor;
+	
+	// factory is thread safe, parser must not close archive stream, which is drained for connection reuse
+	private static final JsonFactory JSON= new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
 
 	
 	/** Constant <code>log</code> */
@@ -75,7 +113,7 @@ public class ArchiveClient {
 			if ("gzip".equalsIgnoreCase(content_encoding)) {
 				is = new GZIPInputStream(conn.getInputStream());
 			} else if ("deflate".equalsIgnoreCase(content_encoding)) {
-				is = new DeflaterInputStream(conn.getInputStream());
+				is = new InflaterInputStream(conn.getInputStream());
 			} else {
 				is = conn.getInputStream();
 			}
@@ -92,94 +130,398 @@ public class ArchiveClient {
 	}
 	
 	/**
-	 * Parse InputStream with PV data in JSON format.
+	 * Returns HTTP client shared by all archive requests. Client keeps connections to archive server
+	 * alive and reuses them for following requests.
 	 *
-	 * @param jsonInputStream InputStream with PV data from Archive Proxy server in JSON format.
-	 * @return Vector with PV data; each element is an 2-element array where [0] is Long nanosecond
-	 *             timestamp and [1] is Double PV value. Null is returned on error or if no data is found.
+	 * @return shared HTTP client
 	 */
-	public static Vector<Object[]> getJsonPVValues(InputStream jsonInputStream) {
-		// Vector that will contain resulting data
-		Vector <Object[]>pvData = new Vector<Object[]>();
+	public static synchronized HttpClient getHttpClient() {
+		if (httpClient==null) {
+			httpClient= HttpClient.newBuilder()
+					.version(HttpClient.Version.HTTP_1_1)
+					.connectTimeout(Duration.ofMillis(DEFAULT_REQUEST_TIMEOUT))
+					.build();
+		}
+		return httpClient;
+	}
+	
+	/**
+	 * Returns executor shared by all archive requests. It has at most {@link #MAX_PARALLEL_REQUESTS} daemon threads,
+	 * which are created when needed and terminate after one minute without requests.
+	 *
+	 * @return shared executor
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (executor==null) {
+			executor= new ThreadPoolExecutor(MAX_PARALLEL_REQUESTS, MAX_PARALLEL_REQUESTS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), r -> {
+				Thread t= new Thread(r, "ArchiveClient-"+THREAD_COUNT.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+	
+	/**
+	 * Query JSON Archive Proxy server for PV data with shared HTTP client, which reuses connections.
+	 * Returned stream must be closed, so the connection can be reused.
+	 *
+	 * @param pvName Name of PV we're querying the archiver for
+	 * @param tsStart Start of time interval for PV data in nanosecond timestamp format
+	 * @param tsEnd End of time interval for PV data in nanosecond timestamp format
+	 * @param count Max. number of elements to retrieve from archive server
+	 * @param archive_url a {@link java.lang.String} object
+	 * @param timeout timeout for receiving response in milliseconds
+	 * @return InputStream with JSON data, null if there is no data for PV
+	 * @throws java.io.IOException if request fails
+	 * @throws java.lang.InterruptedException if interrupted while waiting for response
+	 */
+	public static InputStream fetchArchiveDataStream(String pvName, long tsStart, long tsEnd, int count, String archive_url, long timeout) throws IOException, InterruptedException {
 		
-		try {
-			JsonParser jp = new JsonFactory().createJsonParser(jsonInputStream);
-			
-			if (jp.nextToken() != JsonToken.START_ARRAY) {
-				log.error("Expected data to start with '" + JsonToken.START_ARRAY + "'");
+		StringBuilder url = new StringBuilder(archive_url);
+		url.append("samples/");
+		url.append(pvName);
+		url.append("?start=" + tsStart);
+		url.append("&end=" + tsEnd);
+		url.append("&count=" + count);
+		
+		HttpRequest req= HttpRequest.newBuilder(URI.create(url.toString()))
+				.header("Accept-Encoding", "gzip, deflate")
+				.timeout(Duration.ofMillis(timeout))
+				.GET()
+				.build();
+		
+		HttpResponse<InputStream> res= getHttpClient().send(req, HttpResponse.BodyHandlers.ofInputStream());
+		
+		if (res.statusCode()!=200) {
+			res.body().close();
+			if (res.statusCode()==404) {
+				log.error("["+pvName+"] no archive record (" + url.toString()+")");
 				return null;
 			}
-			JsonToken jsonToken = jp.nextToken();
-			
-			Long tsNano = null;
-			int tsObjectCount = 0;
-			
-			Double value = null;
-			int valueObjectCount = 0;
-			
-			int objectDepth = 0;
-			int objectCount = 0;
-			while (true) {
-				// This isn't really expected
-				if (jsonToken == null) {
-					log.error("Unexpected end of stream");
-					break;
-				// Normal termination of stream
-				} else if (jsonToken == JsonToken.END_ARRAY && objectDepth == 0) {
-					break;
-				// Count how nested we are in the JSON tree
-				} else if (jsonToken == JsonToken.START_OBJECT) {
-					objectDepth++;
-				} else if (jsonToken == JsonToken.END_OBJECT) {
-					objectDepth--;
-					
-					// Count only top-level JSON objects
-					if (objectDepth == 0) {
-						objectCount++;
-					}
+			throw new IOException("["+pvName+"] archive server response "+res.statusCode()+" ("+url.toString()+")");
+		}
+		
+		String content_encoding = res.headers().firstValue("Content-Encoding").orElse(null);
+		
+		if ("gzip".equalsIgnoreCase(content_encoding)) {
+			return new GZIPInputStream(res.body());
+		} else if ("deflate".equalsIgnoreCase(content_encoding)) {
+			return new InflaterInputStream(res.body());
+		}
+		return res.body();
+	}
+	
+	/**
+	 * Query JSON Archive Proxy server for PV samples with shared HTTP client.
+	 * If archive returns <code>count</code> samples, returned samples are marked as truncated.
+	 *
+	 * @param pvName Name of PV we're querying the archiver for
+	 * @param tsStart Start of time interval for PV data in nanosecond timestamp format
+	 * @param tsEnd End of time interval for PV data in nanosecond timestamp format
+	 * @param count Max. number of elements to retrieve from archive server
+	 * @param archive_url a {@link java.lang.String} object
+	 * @param timeout timeout for receiving response in milliseconds
+	 * @return samples, null if there is no data for PV
+	 * @throws java.io.IOException if request fails
+	 * @throws java.lang.InterruptedException if interrupted while waiting for response
+	 */
+	public static ArchiveSamples fetchSamples(String pvName, long tsStart, long tsEnd, int count, String archive_url, long timeout) throws IOException, InterruptedException {
+		try (InputStream jsonData= fetchArchiveDataStream(pvName, tsStart, tsEnd, count, archive_url, timeout)) {
+			if (jsonData==null) {
+				return null;
+			}
+			ArchiveSamples s= readSamples(jsonData, new ArchiveSamples(count));
+			s.setTruncated(s.size()>=count);
+			drain(jsonData);
+			return s;
+		}
+	}
+	
+	/**
+	 * Reads stream to the end, so HTTP connection can be reused.
+	 */
+	private static void drain(InputStream is) throws IOException {
+		while (is.skip(Long.MAX_VALUE)>0 || is.read()>=0) {
+			// drain
+		}
+	}
+	
+	/**
+	 * Receives samples from {@link ArchiveClient#parseSamples(InputStream, SampleConsumer)} as they are parsed.
+	 * Value array is parser's buffer and is reused for next sample, consumer must copy values it wants to keep.
+	 */
+	public interface SampleConsumer {
+		/**
+		 * Called for each parsed sample.
+		 *
+		 * @param time nanosecond timestamp of sample
+		 * @param value buffer with sample values, scalar PV has one value
+		 * @param length number of valid values in buffer
+		 * @return <code>true</code> if parsing should continue, <code>false</code> to stop parsing
+		 */
+		boolean sample(long time, double[] value, int length);
+	}
+	
+	/**
+	 * Sample consumer, which keeps sample closest to target time. Samples from archive are ordered by time,
+	 * so parsing is stopped with first sample at or after target time, rest of the stream is not parsed.
+	 * If two samples are equally close, the earlier is kept. Instance can be reused with {@link #reset(long)}.
+	 */
+	public static final class ClosestSample implements SampleConsumer {
+		
+		private long target;
+		private long time;
+		private double[] value= new double[1];
+		private int length;
+		private boolean found;
+		
+		/**
+		 * Constructor.
+		 *
+		 * @param targetTime target nanosecond timestamp
+		 */
+		public ClosestSample(long targetTime) {
+			reset(targetTime);
+		}
+		
+		/**
+		 * Clears found sample and sets new target time.
+		 *
+		 * @param targetTime target nanosecond timestamp
+		 */
+		public void reset(long targetTime) {
+			target= targetTime;
+			found= false;
+			length= 0;
+		}
+		
+		/** {@inheritDoc} */
+		@Override
+		public boolean sample(long t, double[] v, int l) {
+			if (!found || Math.abs(target-t)<Math.abs(target-time)) {
+				found= true;
+				time= t;
+				if (value.length<l) {
+					value= new double[l];
 				}
+				System.arraycopy(v, 0, value, 0, l);
+				length= l;
+			}
+			return t<target;
+		}
+		
+		/**
+		 * Returns <code>true</code> if any sample was received.
+		 *
+		 * @return <code>true</code> if sample was found
+		 */
+		public boolean isFound() {
+			return found;
+		}
+		
+		/**
+		 * Returns nanosecond timestamp of closest sample.
+		 *
+		 * @return nanosecond timestamp
+		 */
+		public long getTime() {
+			return time;
+		}
+		
+		/**
+		 * Returns first value of closest sample, or NaN if sample has no values.
+		 *
+		 * @return first value
+		 */
+		public double getValue() {
+			return found && length>0 ? value[0] : Double.NaN;
+		}
+		
+		/**
+		 * Returns copy of all values of closest sample, for waveform PVs.
+		 *
+		 * @return sample values, empty if no sample was found
+		 */
+		public double[] getValues() {
+			return Arrays.copyOf(value, found ? length : 0);
+		}
+	}
+	
+	/**
+	 * Parses stream with PV samples from Archive Proxy server in JSON format and passes each sample to consumer,
+	 * without creating objects for samples. Sample time may be JSON number or string, sample value may be
+	 * single value or array of values, as for waveform PVs. Parsing stops when consumer returns <code>false</code>,
+	 * in this case the rest of the stream is not read. Stream is not closed.
+	 *
+	 * @param jsonInputStream InputStream with PV data from Archive Proxy server in JSON format
+	 * @param consumer receives parsed samples
+	 * @return number of samples passed to consumer
+	 * @throws java.io.IOException if stream can not be read or does not contain expected data
+	 */
+	public static int parseSamples(InputStream jsonInputStream, SampleConsumer consumer) throws IOException {
+		
+		JsonParser jp = JSON.createParser(jsonInputStream);
+		
+		if (jp.nextToken() != JsonToken.START_ARRAY) {
+			throw new IOException("Expected data to start with '" + JsonToken.START_ARRAY + "'");
+		}
+		
+		double[] buffer= new double[16];
+		int count= 0;
+		JsonToken jsonToken;
+		
+		while ((jsonToken = jp.nextToken()) == JsonToken.START_OBJECT) {
+			long tsNano = 0;
+			boolean hasTime = false;
+			int length = -1;
+			
+			while (jp.nextToken() == JsonToken.FIELD_NAME) {
+				String name = jp.getCurrentName();
+				JsonToken v = jp.nextToken();
 				
-				// Check if we're in values for fields that are interesting to us
-				if (objectDepth == 1 && jsonToken != JsonToken.FIELD_NAME) {
+				if ("time".equals(name)) {
 					// Timestamp is with nanosecond precision
-					if (jp.getCurrentName() == "time") {
-						tsNano = Long.valueOf(jp.getText());
-						tsObjectCount = objectCount;
-						
-					} else if (jp.getCurrentName() == "value") {
-						// PV values are stored as arrays
-						if (jsonToken == JsonToken.START_ARRAY) {
-							// Move token to array value
-							jsonToken = jp.nextToken();
-							
-							value = Double.valueOf(jp.getText());
-							valueObjectCount = objectCount;
+					tsNano = v == JsonToken.VALUE_STRING ? Long.parseLong(jp.getText().trim()) : jp.getLongValue();
+					hasTime = true;
+				} else if ("value".equals(name)) {
+					length = 0;
+					if (v == JsonToken.START_ARRAY) {
+						// PV values are stored as arrays, waveforms have more than one element
+						while ((v = jp.nextToken()) != JsonToken.END_ARRAY) {
+							if (v == null) {
+								throw new IOException("Unexpected end of stream");
+							}
+							if (length == buffer.length) {
+								buffer = Arrays.copyOf(buffer, length*2);
+							}
+							buffer[length++] = toDouble(jp, v);
 						}
-					}
-				}
-				
-				// Check if we have a timestamp/value pair and put it to a collection
-				if (tsNano != null && value != null) {
-					if (tsObjectCount == valueObjectCount) {
-						Object[] arr = {tsNano, value};
-						pvData.add(arr);
 					} else {
-						log.warn("PV timestamp and PV value belong to different JSON objects.");
+						buffer[length++] = toDouble(jp, v);
 					}
-					
-					tsNano = null;
-					value = null;
+				} else {
+					jp.skipChildren();
 				}
+			}
+			
+			if (jp.currentToken() != JsonToken.END_OBJECT) {
+				throw new IOException("Unexpected end of stream");
+			}
+			
+			if (hasTime && length >= 0) {
+				count++;
+				if (!consumer.sample(tsNano, buffer, length)) {
+					return count;
+				}
+			} else {
+				log.warn("JSON sample without time or value ignored.");
+			}
+		}
+		
+		if (jsonToken != JsonToken.END_ARRAY) {
+			throw new IOException(jsonToken == null ? "Unexpected end of stream" : "Unexpected token '" + jsonToken + "'");
+		}
+		
+		return count;
+	}
+	
+	private static double toDouble(JsonParser jp, JsonToken t) throws IOException {
+		switch (t) {
+			case VALUE_NUMBER_INT:
+			case VALUE_NUMBER_FLOAT:
+				return jp.getDoubleValue();
+			case VALUE_STRING:
+				try {
+					return Double.parseDouble(jp.getText());
+				} catch (NumberFormatException e) {
+					return Double.NaN;
+				}
+			default:
+				// nested structures or null are not numeric values
+				jp.skipChildren();
+				return Double.NaN;
+		}
+	}
+	
+	/**
+	 * Parses stream with PV samples from Archive Proxy server in JSON format into reusable sample buffer.
+	 * Buffer is cleared before parsing.
+	 *
+	 * @param jsonInputStream InputStream with PV data from Archive Proxy server in JSON format
+	 * @param samples buffer, which receives samples
+	 * @return the same buffer
+	 * @throws java.io.IOException if stream can not be read or does not contain expected data
+	 */
+	public static ArchiveSamples readSamples(InputStream jsonInputStream, ArchiveSamples samples) throws IOException {
+		samples.clear();
+		parseSamples(jsonInputStream, samples);
+		return samples;
+	}
+	
+	/**
+	 * Reads samples from archive reader iterator into sample buffer, buffer is not cleared.
+	 * Numeric and numeric array values are stored together with alarm severity, for other values
+	 * sample without values is stored. Iterator is closed.
+	 *
+	 * @param it values from archive reader
+	 * @param samples buffer, which receives samples
+	 * @return the same buffer
+	 * @throws java.lang.Exception if reading from archive fails
+	 */
+	public static ArchiveSamples readSamples(ValueIterator it, ArchiveSamples samples) throws Exception {
+		double[] buffer= new double[1];
+		try {
+			while (it.hasNext()) {
+				VType vt= it.next();
 				
-				// This shouldn't really happen
-				if (objectDepth < 0) {
-					log.error("JSON top object depth is less than zero!");
-					break;
+				long t= 0;
+				if (vt instanceof Time) {
+					Timestamp ts= ((Time)vt).getTimestamp();
+					t= ts.getSec()*1000000000L+ts.getNanoSec();
 				}
+				int sev= vt instanceof Alarm ? ((Alarm)vt).getAlarmSeverity().ordinal() : 0;
 				
-				// Move to next JSON token
-				jsonToken = jp.nextToken();
+				int length= 0;
+				if (vt instanceof VNumber) {
+					buffer[0]= ((VNumber)vt).getValue().doubleValue();
+					length= 1;
+				} else if (vt instanceof VNumberArray) {
+					ListNumber ln= ((VNumberArray)vt).getData();
+					length= ln.size();
+					if (buffer.length<length) {
+						buffer= new double[length];
+					}
+					for (int i = 0; i < length; i++) {
+						buffer[i]= ln.getDouble(i);
+					}
+				}
+				samples.add(t, sev, buffer, length);
 			}
+		} finally {
+			it.close();
+		}
+		return samples;
+	}
+	
+	/**
+	 * Parse InputStream with PV data in JSON format.
+	 * Kept for compatibility, {@link #readSamples(InputStream, ArchiveSamples)} does not create object for each sample.
+	 *
+	 * @param jsonInputStream InputStream with PV data from Archive Proxy server in JSON format.
+	 * @return Vector with PV data; each element is an 2-element array where [0] is Long nanosecond
+	 *             timestamp and [1] is Double PV value. Null is returned on error or if no data is found.
+	 */
+	public static Vector<Object[]> getJsonPVValues(InputStream jsonInputStream) {
+		// Vector that will contain resulting data
+		final Vector <Object[]>pvData = new Vector<Object[]>();
+		
+		try {
+			parseSamples(jsonInputStream, (t, v, l) -> {
+				pvData.add(new Object[]{t, l > 0 ? v[0] : Double.NaN});
+				return true;
+			});
 		} catch (Exception e) {
 			log.error("Error parsing input stream with JSON data: " + e.getMessage());
 			return null;
@@ -194,120 +536,30 @@ public class ArchiveClient {
 	}
 	
 	/**
-	 * Parse InputStream with PV data in JSON format.
+	 * Parse InputStream with PV data in JSON format and return sample closest to target time.
+	 * Parsing stops with first sample at or after target time, see {@link ClosestSample}.
 	 *
 	 * @param jsonInputStream InputStream with PV data from Archive Proxy server in JSON format.
-	 * @return Vector with PV data; each element is an 2-element array where [0] is Long nanosecond
-	 *             timestamp and [1] is Double PV value. Null is returned on error or if no data is found.
-	 * @param targetTime a long
+	 * @return 2-element array where [0] is Long nanosecond timestamp and [1] is Double PV value.
+	 *             Null is returned on error or if no data is found.
+	 * @param targetTime target time in milliseconds
 	 */
 	public static Object[] getClosestTimeValuePoint(InputStream jsonInputStream, long targetTime) {
 		
-		Long bestNanoTime=null;
-		Double bestValue=null;
+		ClosestSample closest= new ClosestSample(targetTime*1000000L);
 		
 		try {
-			JsonParser jp = new JsonFactory().createJsonParser(jsonInputStream);
-			
-			if (jp.nextToken() != JsonToken.START_ARRAY) {
-				log.error("Expected data to start with '" + JsonToken.START_ARRAY + "'");
-				return null;
-			}
-			JsonToken jsonToken = jp.nextToken();
-			
-			Long tsNano = null;
-			int tsObjectCount = 0;
-			
-			Double value = null;
-			int valueObjectCount = 0;
-			
-			int objectDepth = 0;
-			int objectCount = 0;
-			while (true) {
-				
-				//System.out.print("> ");
-				//for (int i = 0; i < objectDepth; i++) {
-				//	System.out.print("> ");
-				//}
-				//System.out.println(objectCount+" "+jsonToken.toString()+" "+jp.getCurrentName());
-
-				// This isn't really expected
-				if (jsonToken == null) {
-					log.error("Unexpected end of stream");
-					break;
-				// Normal termination of stream
-				} else if (jsonToken == JsonToken.END_ARRAY && objectDepth == 0) {
-					break;
-				// Count how nested we are in the JSON tree
-				} else if (jsonToken == JsonToken.START_OBJECT) {
-					objectDepth++;
-				} else if (jsonToken == JsonToken.END_OBJECT) {
-					objectDepth--;
-					
-					// Count only top-level JSON objects
-					if (objectDepth == 0) {
-						objectCount++;
-					}
-				}
-				
-				// Check if we're in values for fields that are interesting to us
-				if (objectDepth == 1 && jsonToken != JsonToken.FIELD_NAME) {
-					// Timestamp is with nanosecond precision
-					if (jp.getCurrentName() == "time") {
-						tsNano = Long.valueOf(jp.getText());
-						tsObjectCount = objectCount;
-						
-					} else if (jp.getCurrentName() == "value") {
-						// PV values are stored as arrays
-						if (jsonToken == JsonToken.START_ARRAY) {
-							// Move token to array value
-							jsonToken = jp.nextToken();
-							
-							value = Double.valueOf(jp.getText());
-							valueObjectCount = objectCount;
-							
-							//System.out.println("# "+value+" "+tsNano/1000000+" "+new Date(tsNano/1000000));
-						}
-					}
-				}
-				
-				// Check if we have a timestamp/value pair and put it to a collection
-				if (tsNano != null && value != null) {
-					
-					if (tsObjectCount == valueObjectCount) {
-						
-						if (bestNanoTime==null || bestValue==null || Math.abs(targetTime*1000000-tsNano)<Math.abs(targetTime*1000000-bestNanoTime)) {
-							bestNanoTime=tsNano;
-							bestValue=value;
-						}
-						
-					} else {
-						log.warn("PV timestamp and PV value belong to different JSON objects.");
-					}
-					
-					tsNano = null;
-					value = null;
-				}
-				
-				// This shouldn't really happen
-				if (objectDepth < 0) {
-					log.error("JSON top object depth is less than zero!");
-					break;
-				}
-				
-				// Move to next JSON token
-				jsonToken = jp.nextToken();
-			}
+			parseSamples(jsonInputStream, closest);
 		} catch (Exception e) {
 			log.error("Error parsing input stream with JSON data: " + e.getMessage());
 			return null;
 		}
 		
-		if (bestNanoTime==null || bestValue==null) {
+		if (!closest.isFound()) {
 			return null;
 		}
 		
-		return new Object[]{bestNanoTime,bestValue};
+		return new Object[]{closest.getTime(),closest.getValue()};
 	}
 
 	/**
@@ -348,6 +600,7 @@ public class ArchiveClient {
 	
 	/**
 	 * Retrieve PV values from JSON Archive Proxy server for PV names specified in pvs.
+	 * Requests are executed in parallel, see {@link #getTimeInstant(String[][], long, long, String, int, long)}.
 	 *
 	 * @param pvs String array of PV names that will be queried from archiver
 	 * @param targetTime in milliseconds
@@ -356,36 +609,143 @@ public class ArchiveClient {
 	 * @param archiver_url a {@link java.lang.String} object
 	 */
 	public static double[] getTimeInstant(String[] pvs, long targetTime, long timeWindow , String archiver_url) {
+		return getTimeInstant(new String[][]{pvs}, targetTime, timeWindow, archiver_url, DEFAULT_PARALLEL_REQUESTS, DEFAULT_REQUEST_TIMEOUT)[0];
+	}
+	
+	/**
+	 * Retrieve PV values from JSON Archive Proxy server for several groups of PV names at same time instant.
+	 * Requests for all PVs from all groups are executed together on shared executor, at most <code>parallel</code>
+	 * at the same time, but not more than {@link #MAX_PARALLEL_REQUESTS}, over connections, which are kept alive and reused.
+	 * If PV has no data or request fails or does not complete within timeout, 0 is used as PV value.
+	 *
+	 * @param pvs groups of PV names that will be queried from archiver
+	 * @param targetTime in milliseconds
+	 * @param timeWindow in milliseconds
+	 * @param archiver_url a {@link java.lang.String} object
+	 * @param parallel maximal number of requests executed in parallel
+	 * @param timeout timeout for single request in milliseconds
+	 * @return arrays with PV values from archiver, one for each group of PV names
+	 */
+	public static double[][] getTimeInstant(String[][] pvs, long targetTime, long timeWindow , String archiver_url, int parallel, long timeout) {
+		return getTimeInstant(pvs, targetTime, timeWindow, archiver_url, parallel, timeout, null);
+	}
+	
+	/**
+	 * Retrieve PV values from JSON Archive Proxy server for several groups of PV names at same time instant,
+	 * same as {@link #getTimeInstant(String[][], long, long, String, int, long)}, but samples are first
+	 * looked up in cache and samples loaded from archive are stored in cache.
+	 *
+	 * @param pvs groups of PV names that will be queried from archiver
+	 * @param targetTime in milliseconds
+	 * @param timeWindow in milliseconds
+	 * @param archiver_url a {@link java.lang.String} object
+	 * @param parallel maximal number of requests executed in parallel
+	 * @param timeout timeout for single request in milliseconds
+	 * @param cache cache for archive samples, if <code>null</code> all PVs are requested from archive
+	 * @return arrays with PV values from archiver, one for each group of PV names
+	 */
+	public static double[][] getTimeInstant(String[][] pvs, long targetTime, long timeWindow , String archiver_url, int parallel, long timeout, ArchiveCache cache) {
 		
 		// Get target date and add 10^9 to make it a fake nanosecond
 		// precision timestamp, which the JSON Archive Proxy server
 		// expects as a URL parameter
 
 		// Make sure to convert offset from seconds to nanoseconds
-		long tsStart = (targetTime - timeWindow) * 1000000L;
-		long tsEnd = (targetTime + timeWindow) * 1000000L;
+		final long tsStart = (targetTime - timeWindow) * 1000000L;
+		final long tsEnd = (targetTime + timeWindow) * 1000000L;
 		
-		// Fetch values from JSON Archive proxy for specified PVs
-		double values[] = new double[pvs.length];
+		int total=0;
+		double[][] values= new double[pvs.length][];
 		for (int i = 0; i < pvs.length; i++) {
-			InputStream jsonData = getArchiveDataStream(pvs[i], tsStart, tsEnd, SAMPLES_SEARCH_COUNT, archiver_url);
-			
-			if (jsonData==null) {
-				log.warn("No reference orbit data for '"+pvs[i]+"', 0 used instead.");
-				values[i]=0.0;
-			} else {
+			values[i]= new double[pvs[i].length];
+			total+= pvs[i].length;
+		}
+		if (total==0) {
+			return values;
+		}
+		
+		long t0= System.currentTimeMillis();
+		
+		@SuppressWarnings("unchecked")
+		final FutureTask<Double>[][] f= new FutureTask[pvs.length][];
+		final FutureTask<?>[] tasks= new FutureTask[total];
+		int n=0;
+		for (int i = 0; i < pvs.length; i++) {
+			f[i]= new FutureTask[pvs[i].length];
+			for (int j = 0; j < pvs[i].length; j++) {
+				final String pv= pvs[i][j];
+				tasks[n++]= f[i][j]= new FutureTask<Double>(() -> {
+					if (cache!=null) {
+						ArchiveSamples s= cache.get(archiver_url, pv, tsStart, tsEnd, (p, start, end) -> fetchSamples(p, start, end, SAMPLES_SEARCH_COUNT, archiver_url, timeout));
+						int k= s!=null ? s.indexOfClosest(targetTime*1000000L) : -1;
+						return k>=0 ? Double.valueOf(s.getValue(k)) : null;
+					}
+					try (InputStream jsonData= fetchArchiveDataStream(pv, tsStart, tsEnd, SAMPLES_SEARCH_COUNT, archiver_url, timeout)) {
+						if (jsonData==null) {
+							return null;
+						}
+						ClosestSample closest= new ClosestSample(targetTime*1000000L);
+						parseSamples(jsonData, closest);
+						// parsing stops at target time, connection is reused only if response has been read to the end
+						drain(jsonData);
+						return closest.isFound() ? Double.valueOf(closest.getValue()) : null;
+					}
+				});
+			}
+		}
+		
+		// executor is shared, so parallel requests of this call are limited by number of workers taking next request
+		final AtomicInteger next= new AtomicInteger();
+		Runnable worker= () -> {
+			int k;
+			while ((k= next.getAndIncrement())<tasks.length) {
+				// cancelled task does not run
+				tasks[k].run();
+				// clears interrupt from cancellation of timed out request, before next request
+				Thread.interrupted();
+			}
+		};
+		ExecutorService ex= getExecutor();
+		for (int i = Math.max(1, Math.min(parallel, total)); i > 0; i--) {
+			ex.execute(worker);
+		}
+		
+		try {
+			// requests wait in queue, so overall deadline allows each parallel slot to run its share with full timeout
+			long deadline= System.currentTimeMillis()+timeout*((total+parallel-1)/Math.max(1, parallel));
 			
-				Object[] pair= getClosestTimeValuePoint(jsonData, targetTime);
-	
-				if (pair!=null && pair[0]!=null && pair[1]!=null) {
-					values[i]=(double) pair[1];
-				} else {
-					log.warn("No reference orbit data for '"+pvs[i]+"', 0 used instead.");
-					values[i]=0.0;
+			for (int i = 0; i < f.length; i++) {
+				for (int j = 0; j < f[i].length; j++) {
+					Double value= null;
+					try {
+						value= f[i][j].get(Math.max(1, deadline-System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+					} catch (TimeoutException e) {
+						f[i][j].cancel(true);
+						log.warn("["+pvs[i][j]+"] archive request timeout.");
+					} catch (InterruptedException e) {
+						f[i][j].cancel(true);
+						Thread.currentThread().interrupt();
+					} catch (Exception e) {
+						log.error("["+pvs[i][j]+"] archive request failed: "+e.getMessage());
+					}
+					
+					if (value!=null) {
+						values[i][j]=value;
+					} else {
+						log.warn("No reference orbit data for '"+pvs[i][j]+"', 0 used instead.");
+						values[i][j]=0.0;
+					}
 				}
 			}
+		} finally {
+			// requests, which are not completed yet, are interrupted or skipped
+			for (FutureTask<?> t : tasks) {
+				t.cancel(true);
+			}
 		}
 		
+		log.debug("Fetched "+total+" PVs from archive in "+(System.currentTimeMillis()-t0)+" ms.");
+		
 		return values;
 	}
 	
@@ -0,0 +1,338 @@
+package org.scictrl.csshell.epics.server.application.orbitserver;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * <p>Reusable buffer for PV samples parsed from archive with {@link ArchiveClient#readSamples(java.io.InputStream, ArchiveSamples)}.</p>
+ *
+ * <p>Timestamps and values are kept in primitive arrays, values of all samples are stored one after another in
+ * single array, so waveform samples with different lengths need no additional objects.
+ * Arrays grow as needed and are kept when buffer is cleared, so same buffer can be used for many requests.
+ * Each sample has also alarm severity level, 0 means no alarm, archive readers which provide alarms store
+ * ordinal of <code>org.epics.vtype.AlarmSeverity</code>.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public final class ArchiveSamples implements ArchiveClient.SampleConsumer {
+
+	private long[] time;
+	private byte[] severity;
+	private int[] offset;
+	private double[] data;
+	private int size;
+	private int dataSize;
+	private boolean truncated;
+
+	/**
+	 * Constructor with default capacity.
+	 */
+	public ArchiveSamples() {
+		this(ArchiveClient.SAMPLES_SEARCH_COUNT);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity initial number of scalar samples, which fit in buffer without growing
+	 */
+	public ArchiveSamples(int capacity) {
+		capacity= Math.max(1, capacity);
+		time= new long[capacity];
+		severity= new byte[capacity];
+		offset= new int[capacity+1];
+		data= new double[capacity];
+	}
+
+	/**
+	 * Removes all samples, allocated arrays are kept.
+	 */
+	public void clear() {
+		size= 0;
+		dataSize= 0;
+		truncated= false;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean sample(long t, double[] value, int length) {
+		add(t, value, length);
+		return true;
+	}
+
+	/**
+	 * Appends sample to the buffer.
+	 *
+	 * @param t nanosecond timestamp of sample
+	 * @param value sample values
+	 * @param length number of values used from <code>value</code>
+	 */
+	public void add(long t, double[] value, int length) {
+		add(t, 0, value, length);
+	}
+
+	/**
+	 * Appends sample with alarm severity to the buffer.
+	 *
+	 * @param t nanosecond timestamp of sample
+	 * @param sev alarm severity level of sample
+	 * @param value sample values
+	 * @param length number of values used from <code>value</code>
+	 */
+	public void add(long t, int sev, double[] value, int length) {
+		add(t, sev, value, 0, length);
+	}
+
+	private void add(long t, int sev, double[] value, int from, int length) {
+		if (size==time.length) {
+			time= Arrays.copyOf(time, size*2);
+			severity= Arrays.copyOf(severity, size*2);
+			offset= Arrays.copyOf(offset, size*2+1);
+		}
+		if (dataSize+length>data.length) {
+			data= Arrays.copyOf(data, Math.max(data.length*2, dataSize+length));
+		}
+		System.arraycopy(value, from, data, dataSize, length);
+		time[size]= t;
+		severity[size]= (byte)sev;
+		offset[size]= dataSize;
+		dataSize+= length;
+		size++;
+		offset[size]= dataSize;
+	}
+
+	/**
+	 * Returns number of samples in buffer.
+	 *
+	 * @return number of samples
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns nanosecond timestamp of sample.
+	 *
+	 * @param i the sample index
+	 * @return nanosecond timestamp
+	 */
+	public long getTime(int i) {
+		check(i);
+		return time[i];
+	}
+
+	/**
+	 * Returns alarm severity level of sample, 0 if sample has no alarm or archive does not provide it.
+	 *
+	 * @param i the sample index
+	 * @return alarm severity level
+	 */
+	public int getSeverity(int i) {
+		check(i);
+		return severity[i];
+	}
+
+	/**
+	 * Returns number of values of sample, 1 for scalar PVs.
+	 *
+	 * @param i the sample index
+	 * @return number of values
+	 */
+	public int getLength(int i) {
+		check(i);
+		return offset[i+1]-offset[i];
+	}
+
+	/**
+	 * Returns first value of sample, or NaN if sample has no values.
+	 *
+	 * @param i the sample index
+	 * @return first value
+	 */
+	public double getValue(int i) {
+		return getLength(i)>0 ? data[offset[i]] : Double.NaN;
+	}
+
+	/**
+	 * Returns value of waveform sample.
+	 *
+	 * @param i the sample index
+	 * @param k index of value within sample
+	 * @return value
+	 */
+	public double getValue(int i, int k) {
+		if (k<0 || k>=getLength(i)) {
+			throw new IndexOutOfBoundsException("Value index "+k+" out of "+getLength(i));
+		}
+		return data[offset[i]+k];
+	}
+
+	/**
+	 * Returns copy of all values of sample.
+	 *
+	 * @param i the sample index
+	 * @return sample values
+	 */
+	public double[] getValues(int i) {
+		check(i);
+		return Arrays.copyOfRange(data, offset[i], offset[i+1]);
+	}
+
+	/**
+	 * Returns index of sample with timestamp closest to target time, if two samples are equally close
+	 * the earlier is returned.
+	 *
+	 * @param targetTime target nanosecond timestamp
+	 * @return sample index, or -1 if buffer is empty
+	 */
+	public int indexOfClosest(long targetTime) {
+		int best= -1;
+		for (int i = 0; i < size; i++) {
+			if (best<0 || Math.abs(targetTime-time[i])<Math.abs(targetTime-time[best])) {
+				best= i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Returns total number of values of all samples.
+	 *
+	 * @return number of values
+	 */
+	public int getValueCount() {
+		return dataSize;
+	}
+
+	/**
+	 * Returns <code>true</code> if archive returned maximal requested number of samples,
+	 * so buffer may not contain all samples from requested time range.
+	 *
+	 * @return <code>true</code> if samples may be missing
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	/**
+	 * Marks buffer as possibly not containing all samples from requested time range.
+	 *
+	 * @param truncated <code>true</code> if samples may be missing
+	 */
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+	/**
+	 * Copies samples within time range to target buffer, same as archive would return them for the range:
+	 * the last sample before start, if there is one, followed by all samples up to and including end.
+	 * Samples must be ordered by time.
+	 *
+	 * @param start range start as nanosecond timestamp
+	 * @param end range end as nanosecond timestamp
+	 * @param target buffer, which receives samples, it is not cleared
+	 * @return the target buffer
+	 */
+	public ArchiveSamples copyRange(long start, long end, ArchiveSamples target) {
+		int from= 0;
+		while (from<size && time[from]<start) {
+			from++;
+		}
+		if (from>0 && (from==size || time[from]>start)) {
+			from--;
+		}
+		for (int i = from; i < size && time[i]<=end; i++) {
+			target.add(time[i], severity[i], data, offset[i], offset[i+1]-offset[i]);
+		}
+		return target;
+	}
+
+	/**
+	 * Merges two buffers with samples ordered by time into new buffer with samples ordered by time.
+	 * If both buffers have sample with same timestamp, sample from <code>b</code> is used.
+	 *
+	 * @param a first buffer
+	 * @param b second buffer
+	 * @return new buffer with samples of both buffers
+	 */
+	public static ArchiveSamples merge(ArchiveSamples a, ArchiveSamples b) {
+		ArchiveSamples m= new ArchiveSamples(a.size+b.size);
+		int i= 0;
+		int j= 0;
+		while (i<a.size || j<b.size) {
+			if (j>=b.size || (i<a.size && a.time[i]<b.time[j])) {
+				m.add(a.time[i], a.severity[i], a.data, a.offset[i], a.offset[i+1]-a.offset[i]);
+				i++;
+			} else {
+				if (i<a.size && a.time[i]==b.time[j]) {
+					i++;
+				}
+				m.add(b.time[j], b.severity[j], b.data, b.offset[j], b.offset[j+1]-b.offset[j]);
+				j++;
+			}
+		}
+		m.truncated= a.truncated || b.truncated;
+		return m;
+	}
+
+	/**
+	 * Number of bytes needed by {@link #write(ByteBuffer)}.
+	 */
+	int byteSize() {
+		return 9+size*(8+1+4)+dataSize*8;
+	}
+
+	/**
+	 * Writes samples to buffer in binary form.
+	 */
+	void write(ByteBuffer b) {
+		b.putInt(size);
+		b.putInt(dataSize);
+		b.put((byte)(truncated ? 1 : 0));
+		for (int i = 0; i < size; i++) {
+			b.putLong(time[i]);
+			b.put(severity[i]);
+			b.putInt(offset[i+1]-offset[i]);
+		}
+		for (int i = 0; i < dataSize; i++) {
+			b.putDouble(data[i]);
+		}
+	}
+
+	/**
+	 * Reads samples written by {@link #write(ByteBuffer)}.
+	 */
+	static ArchiveSamples read(ByteBuffer b) {
+		int n= b.getInt();
+		int d= b.getInt();
+		ArchiveSamples s= new ArchiveSamples(n);
+		s.truncated= b.get()!=0;
+		if (s.data.length<d) {
+			s.data= new double[d];
+		}
+		for (int i = 0; i < n; i++) {
+			s.time[i]= b.getLong();
+			s.severity[i]= b.get();
+			s.offset[i+1]= s.offset[i]+b.getInt();
+		}
+		for (int i = 0; i < d; i++) {
+			s.data[i]= b.getDouble();
+		}
+		s.size= n;
+		s.dataSize= d;
+		return s;
+	}
+
+	private void check(int i) {
+		if (i<0 || i>=size) {
+			throw new IndexOutOfBoundsException("Sample index "+i+" out of "+size);
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String toString() {
+		return "ArchiveSamples{size:"+size+",values:"+dataSize+"}";
+	}
+
+}
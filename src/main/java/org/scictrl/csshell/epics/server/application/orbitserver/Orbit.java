@@ -96,10 +96,25 @@ public final class Orbit {
 	@SuppressWarnings("unused")
 	final private Orbit ref;
 	
-	final private boolean relative;
-	final private int size;
+	private boolean relative;
+	final int size;
 	private Timestamp time;
 	
+	/**
+	 * Constructor for orbit with own position arrays, which are filled in place by {@link OrbitWorkspace}.
+	 *
+	 * @param size number of positions
+	 * @param relative if orbit is relative to reference
+	 */
+	Orbit(int size, boolean relative) {
+		this.size=size;
+		this.ref=null;
+		this.relative=relative;
+		this.time= new Timestamp();
+		positions[O._H]= new double[size];
+		positions[O._V]= new double[size];
+	}
+	
 	/**
 	 * <p>Constructor for Orbit.</p>
 	 *
@@ -447,4 +462,15 @@ public final class Orbit {
 		return relative;
 	}
 	
+	/**
+	 * Marks orbit as updated in place by {@link OrbitWorkspace}.
+	 *
+	 * @param time time of update
+	 * @param relative if orbit is relative to reference
+	 */
+	void updated(Timestamp time, boolean relative) {
+		this.time=time;
+		this.relative=relative;
+	}
+	
 }
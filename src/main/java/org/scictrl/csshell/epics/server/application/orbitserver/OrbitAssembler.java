@@ -0,0 +1,193 @@
+package org.scictrl.csshell.epics.server.application.orbitserver;
+
+/**
+ * <p>Pairs horizontal and vertical BPM readouts of same acquisition into one orbit update.</p>
+ *
+ * <p>Readouts of one plane are kept pending until readout of other plane arrives with source timestamp
+ * within pairing window, then both are returned together as one {@link Acquisition}.
+ * If other plane does not arrive, because it did not change or its update is late, pending readout is
+ * returned alone, combined with last readout of other plane. This happens when next readout of same plane
+ * arrives, when readout of other plane arrives outside of the window, or when {@link #flush(long)} is called
+ * after window has expired.</p>
+ *
+ * <p>With negative window readouts are not paired and each is returned immediately.
+ * Class is not thread safe, caller must synchronize access.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public final class OrbitAssembler {
+
+	/** Constant <code>DEFAULT_WINDOW=40</code>, default pairing window in milliseconds. */
+	public static final long DEFAULT_WINDOW = 40;
+
+	/**
+	 * Orbit readout, which is ready to be published.
+	 */
+	public static final class Acquisition {
+		/** Horizontal positions. */
+		public final double[] x;
+		/** Vertical positions. */
+		public final double[] y;
+		/** <code>true</code> if horizontal positions are new in this acquisition. */
+		public final boolean updateX;
+		/** <code>true</code> if vertical positions are new in this acquisition. */
+		public final boolean updateY;
+		/** Source timestamp of acquisition, latest of updated planes, in milliseconds. */
+		public final long timestamp;
+
+		Acquisition(double[] x, double[] y, boolean updateX, boolean updateY, long timestamp) {
+			this.x= x;
+			this.y= y;
+			this.updateX= updateX;
+			this.updateY= updateY;
+			this.timestamp= timestamp;
+		}
+
+		/** {@inheritDoc} */
+		@Override
+		public String toString() {
+			return "Acquisition{x:"+updateX+",y:"+updateY+",t:"+timestamp+"}";
+		}
+	}
+
+	private final long window;
+	private double[] lastX;
+	private double[] lastY;
+
+	private double[] pending;
+	private boolean pendingX;
+	private long pendingTimestamp;
+	private long pendingSince;
+
+	private long paired;
+	private long single;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size number of BPMs, last positions are initially 0
+	 * @param window pairing window in milliseconds, if negative planes are not paired
+	 */
+	public OrbitAssembler(int size, long window) {
+		this.window= window;
+		this.lastX= new double[size];
+		this.lastY= new double[size];
+	}
+
+	/**
+	 * Offers new horizontal readout.
+	 *
+	 * @param x horizontal positions, array is not copied and must not be changed
+	 * @param timestamp source timestamp in milliseconds
+	 * @return acquisition, which is ready to be published, or <code>null</code>
+	 */
+	public Acquisition offerX(double[] x, long timestamp) {
+		return offer(true, x, timestamp);
+	}
+
+	/**
+	 * Offers new vertical readout.
+	 *
+	 * @param y vertical positions, array is not copied and must not be changed
+	 * @param timestamp source timestamp in milliseconds
+	 * @return acquisition, which is ready to be published, or <code>null</code>
+	 */
+	public Acquisition offerY(double[] y, long timestamp) {
+		return offer(false, y, timestamp);
+	}
+
+	private Acquisition offer(boolean isX, double[] v, long timestamp) {
+
+		if (window<0) {
+			store(isX, v);
+			single++;
+			return new Acquisition(lastX, lastY, isX, !isX, timestamp);
+		}
+
+		Acquisition a= null;
+
+		if (pending!=null) {
+			if (pendingX!=isX && Math.abs(timestamp-pendingTimestamp)<=window) {
+				store(pendingX, pending);
+				store(isX, v);
+				pending= null;
+				paired++;
+				return new Acquisition(lastX, lastY, true, true, Math.max(timestamp, pendingTimestamp));
+			}
+			// same plane again or other plane from different acquisition, pending one has no pair
+			a= releasePending();
+		}
+
+		pending= v;
+		pendingX= isX;
+		pendingTimestamp= timestamp;
+		pendingSince= System.currentTimeMillis();
+
+		return a;
+	}
+
+	private void store(boolean isX, double[] v) {
+		if (isX) {
+			lastX= v;
+		} else {
+			lastY= v;
+		}
+	}
+
+	private Acquisition releasePending() {
+		store(pendingX, pending);
+		pending= null;
+		single++;
+		return new Acquisition(lastX, lastY, pendingX, !pendingX, pendingTimestamp);
+	}
+
+	/**
+	 * Returns pending readout alone, if it has waited for other plane longer than pairing window.
+	 *
+	 * @param now current time in milliseconds
+	 * @return acquisition with single plane updated, or <code>null</code>
+	 */
+	public Acquisition flush(long now) {
+		if (pending!=null && now-pendingSince>=window) {
+			return releasePending();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns <code>true</code> if there is readout waiting for other plane.
+	 *
+	 * @return <code>true</code> if readout is pending
+	 */
+	public boolean isPending() {
+		return pending!=null;
+	}
+
+	/**
+	 * <p>Getter for the field <code>window</code>.</p>
+	 *
+	 * @return pairing window in milliseconds
+	 */
+	public long getWindow() {
+		return window;
+	}
+
+	/**
+	 * Returns number of acquisitions with both planes paired.
+	 *
+	 * @return number of paired acquisitions
+	 */
+	public long getPaired() {
+		return paired;
+	}
+
+	/**
+	 * Returns number of acquisitions with single plane updated.
+	 *
+	 * @return number of single plane acquisitions
+	 */
+	public long getSingle() {
+		return single;
+	}
+
+}
@@ -16,6 +16,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
@@ -24,6 +25,7 @@ import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
@@ -40,6 +42,7 @@ import org.scictrl.csshell.epics.server.ValueLinks.ValueHolder;
 import org.scictrl.csshell.epics.server.application.AbstractApplication;
 import org.scictrl.csshell.epics.server.application.orbitserver.Orbit.O;
 import org.scictrl.csshell.epics.server.application.orbitserver.Orbit.Stat;
+import org.scictrl.csshell.epics.server.application.orbitserver.OrbitAssembler.Acquisition;
 import org.scictrl.csshell.epics.server.processor.MemoryValueProcessor;
 
 import gov.aps.jca.dbr.DBRType;
@@ -355,7 +358,12 @@ public class OrbitServerApplication extends AbstractApplication {
 	private String[] pvY;
 	
 	private String archive_url;
+	private int archive_parallel;
+	private long archive_timeout;
+	private ArchiveCache archive_cache;
 	
+	private OrbitAssembler assembler;
+	private OrbitWorkspace workspace;
 	private ValueHolder[] updateX; 
 	private ValueHolder[] updateY; 
 	private ValueHolder[] lastX; 
@@ -471,6 +479,12 @@ public class OrbitServerApplication extends AbstractApplication {
 		}
 		log4info("JSON archive URL set to: '" + archive_url + "'");
 		
+		archive_parallel= config.getInt("archive_parallel", ArchiveClient.DEFAULT_PARALLEL_REQUESTS);
+		archive_timeout= config.getLong("archive_timeout", ArchiveClient.DEFAULT_REQUEST_TIMEOUT);
+		if (config.getBoolean("archive_cache", true)) {
+			archive_cache= ArchiveCache.getInstance();
+		}
+		
 		names= config.getStringArray("bpms");
 		
 		if (names==null) {
@@ -484,6 +498,8 @@ public class OrbitServerApplication extends AbstractApplication {
 		}
 		
 		//count=names.length;
+		
+		workspace= new OrbitWorkspace(names.length);
 
 		String posFile= config.getString("bpm_positions");
 		
@@ -658,6 +674,8 @@ public class OrbitServerApplication extends AbstractApplication {
 		
 		lastX= new ValueHolder[names.length];
 		lastY= new ValueHolder[names.length];
+		
+		assembler= new OrbitAssembler(names.length, config.getLong("pairing_window", OrbitAssembler.DEFAULT_WINDOW));
 		//lastBbaX= new ValueHolder[names.length];
 		//lastBbaY= new ValueHolder[names.length];
 		
@@ -669,13 +687,15 @@ public class OrbitServerApplication extends AbstractApplication {
 	}
 
 	private void updateDiffs() {
-		double diffbba= diffRMS(reference, bbaRef);
+		double[] diff= OrbitWorkspace.diffRMS(reference, bbaRef, injRef, insRef);
+		
+		double diffbba= diff[0];
 		getRecord(REFERENCE_DIFF_BBAREF).setValue(diffbba);
 
-		double diffinj= diffRMS(reference, injRef);
+		double diffinj= diff[1];
 		getRecord(REFERENCE_DIFF_INJREF).setValue(diffinj);
 		
-		double diffins= diffRMS(reference, insRef);
+		double diffins= diff[2];
 		getRecord(REFERENCE_DIFF_INSREF).setValue(diffins);
 		
 		
@@ -1055,16 +1075,8 @@ public class OrbitServerApplication extends AbstractApplication {
 					}
 					if (change) {
 						lastX=updateX;
-						double[] a= new double[lastX.length];
-						for (int i = 0; i < a.length; i++) {
-							a[i]=lastX[i].doubleValue();
-						}
 						//System.out.println("UPDATE "+System.currentTimeMillis());
-						orbitRaw= updateOrbit(a, orbitRaw.getPosV(),null,LIVE_RAW_X,null,false); 
-						//System.out.println("A "+orbitRaw.getPosH()[0]+" "+orbitRaw.getPosV()[0]);
-						orbit= updateOrbit(orbitRaw.getPosH(),orbitRaw.getPosV(),reference,LIVE_X,null,hasReference);
-						getRecord(LIVE_X).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
-						getRecord(LIVE_RAW_X).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
+						publishOrbit(assembler.offerX(toPositions(lastX), toTimestamp(lastX)));
 					} else {
 						//System.out.println("CHANGE "+System.currentTimeMillis());
 					}
@@ -1090,16 +1102,8 @@ public class OrbitServerApplication extends AbstractApplication {
 					}
 					if (change) {
 						lastY=updateY;
-						double[] a= new double[lastY.length];
-						for (int i = 0; i < a.length; i++) {
-							a[i]=lastY[i].doubleValue();
-						}
 						//System.out.println("UPDATE "+System.currentTimeMillis());
-						orbitRaw= updateOrbit(orbitRaw.getPosH(),a,null,null,LIVE_RAW_Y,false); 
-						//System.out.println("B "+orbitRaw.getPosH()[0]+" "+orbitRaw.getPosV()[0]);
-						orbit= updateOrbit(orbitRaw.getPosH(),orbitRaw.getPosV(),reference,null,LIVE_Y,hasReference);
-						getRecord(LIVE_Y).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
-						getRecord(LIVE_RAW_Y).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
+						publishOrbit(assembler.offerY(toPositions(lastY), toTimestamp(lastY)));
 					} else {
 						//System.out.println("CHANGE "+System.currentTimeMillis());
 					}
@@ -1149,6 +1153,70 @@ public class OrbitServerApplication extends AbstractApplication {
 	}
 	
 	
+	private static double[] toPositions(ValueHolder[] vh) {
+		double[] a= new double[vh.length];
+		for (int i = 0; i < a.length; i++) {
+			a[i]=vh[i].doubleValue();
+		}
+		return a;
+	}
+	
+	/**
+	 * Source timestamp of BPM readout, BPMs are not updated at exactly same time, so latest is used.
+	 */
+	private static long toTimestamp(ValueHolder[] vh) {
+		long t= 0L;
+		for (ValueHolder v : vh) {
+			t= Math.max(t, v.timestamp);
+		}
+		return t;
+	}
+	
+	/**
+	 * Publishes orbit assembled from both planes of one acquisition: raw orbit, orbit relative to
+	 * the reference and their statistics are calculated once and all live records are updated together.
+	 * If acquisition has only one plane updated, records of other plane are not updated.
+	 * Unpaired plane waiting for the other is published when pairing window expires.
+	 */
+	private void publishOrbit(Acquisition a) {
+		
+		if (assembler.isPending()) {
+			database.schedule(() -> {
+				synchronized (OrbitServerApplication.this) {
+					publishOrbit(assembler.flush(System.currentTimeMillis()));
+				}
+			}, Math.max(1, assembler.getWindow()));
+		}
+		
+		if (a==null) {
+			return;
+		}
+		
+		updateLiveOrbit(a.x,a.y,a.updateX,a.updateY);
+		
+		if (a.updateX) {
+			getRecord(LIVE_X).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
+			getRecord(LIVE_RAW_X).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
+		}
+		if (a.updateY) {
+			getRecord(LIVE_Y).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
+			getRecord(LIVE_RAW_Y).updateAlarm(Severity.NO_ALARM,Status.NO_ALARM);
+		}
+	}
+	
+	/**
+	 * Calculates live raw orbit and orbit relative to reference in workspace and publishes them.
+	 */
+	private void updateLiveOrbit(double[] x, double[] y, boolean updateX, boolean updateY) {
+		workspace.update(x, y, hasReference ? reference : null);
+		orbitRaw= workspace.getRaw();
+		orbit= workspace.getOrbit();
+		List<Record> changed= new ArrayList<Record>(32);
+		setOrbit(orbitRaw, workspace.getRawStatString(), updateX ? LIVE_RAW_X : null, updateY ? LIVE_RAW_Y : null, changed);
+		setOrbit(orbit, workspace.getOrbitStatString(), updateX ? LIVE_X : null, updateY ? LIVE_Y : null, changed);
+		notifyOrbit(changed, updateX ? LIVE_X : null, updateY ? LIVE_Y : null);
+	}
+	
 	private void notifyArchiveChange(final String name, final int i) {
 		if (name == ARCHIVE_TIME_PICKER[i]) {
 			long time= getRecord(ARCHIVE_TIME_PICKER[i]).getValueAsInt()*1000L;
@@ -1215,11 +1283,13 @@ public class OrbitServerApplication extends AbstractApplication {
 						Date targetDate = new Date(getRecord(name).getValueAsInt()*1000L);
 						log4info("Start fetching orbit data for timestamp: " + getRecord(name).getValueAsInt()+" ("+targetDate+").");
 						
-						double[] orbitx = ArchiveClient.getTimeInstant(pvX,targetDate.getTime(),SAMPLES_SEARCH_TIME_WINDOW,archive_url);
-						double[] orbity = ArchiveClient.getTimeInstant(pvY,targetDate.getTime(),SAMPLES_SEARCH_TIME_WINDOW,archive_url);
+						// all four orbits are requested together
+						double[][] data = ArchiveClient.getTimeInstant(new String[][]{pvX,pvY,pvBbaX,pvBbaY},targetDate.getTime(),SAMPLES_SEARCH_TIME_WINDOW,archive_url,archive_parallel,archive_timeout,archive_cache);
+						double[] orbitx = data[0];
+						double[] orbity = data[1];
 	
-						double[] refx = ArchiveClient.getTimeInstant(pvBbaX,targetDate.getTime(),SAMPLES_SEARCH_TIME_WINDOW,archive_url);
-						double[] refy = ArchiveClient.getTimeInstant(pvBbaY,targetDate.getTime(),SAMPLES_SEARCH_TIME_WINDOW,archive_url);
+						double[] refx = data[2];
+						double[] refy = data[3];
 
 						getRecord(STATUS_LOADING_ARCHIVE[i]).setValue(0);
 	
@@ -1262,7 +1332,7 @@ public class OrbitServerApplication extends AbstractApplication {
 				reference= updateOrbit(getRecord(REFERENCE_X).getValueAsDoubleArray(), getRecord(REFERENCE_Y).getValueAsDoubleArray(), null, REFERENCE_X, REFERENCE_Y, false);
 				referenceSaveTask.commitSave(reference,getRecord(REFERENCE_COMMENT).getValueAsString());
 				updateDiffs();
-				orbit= updateOrbit(orbitRaw.getPosH(),orbitRaw.getPosV(),reference,LIVE_X,LIVE_Y,hasReference);
+				updateLiveOrbit(orbitRaw.getPosH(),orbitRaw.getPosV(),true,true);
 				mem= updateOrbit(memRaw.getPosH(), memRaw.getPosV(), reference, MEM_X, MEM_Y, hasReference);
 				//if (archiveDefined) archive= updateOrbit(archiveRaw.getPosH(), archiveRaw.getPosV(), reference, ARCHIVE_X, ARCHIVE_Y, ARCHIVE_STAT_X, ARCHIVE_STAT_Y, ARCHIVE_STAT_STRING, hasReference);
 				resetOnDemandProcessor(REFERENCE_SAVE_CSV);
@@ -1582,41 +1652,93 @@ public class OrbitServerApplication extends AbstractApplication {
 
 		Orbit o= hasRef ? new Orbit(x, y, ref) : new Orbit(x, y);
 
-		setting.add(orbitX);
-		setting.add(orbitY);
+		publishOrbit(o, o.toStringStatFancy(), orbitX, orbitY);
+		
+		return o;
+	}
+
+	/**
+	 * Sets orbit positions and statistics to records of provided orbit.
+	 * Listeners are notified after records of both planes have been set.
+	 *
+	 * @param o orbit to be published
+	 * @param stat formatted statistics of the orbit
+	 * @param orbitX name of horizontal orbit record, if <code>null</code> horizontal records are not updated
+	 * @param orbitY name of vertical orbit record, if <code>null</code> vertical records are not updated
+	 */
+	private void publishOrbit(final Orbit o, final String stat, final String orbitX, final String orbitY) {
+		List<Record> changed= new ArrayList<Record>(16);
+		setOrbit(o, stat, orbitX, orbitY, changed);
+		notifyOrbit(changed, orbitX, orbitY);
+	}
+
+	/**
+	 * Sets orbit positions and statistics to records of provided orbit without notifying listeners.
+	 *
+	 * @param o orbit to be published
+	 * @param stat formatted statistics of the orbit
+	 * @param orbitX name of horizontal orbit record, if <code>null</code> horizontal records are not updated
+	 * @param orbitY name of vertical orbit record, if <code>null</code> vertical records are not updated
+	 * @param changed collects records, which value was updated
+	 */
+	private void setOrbit(final Orbit o, final String stat, final String orbitX, final String orbitY, final List<Record> changed) {
+
 		if (orbitX!=null) {
 			String pr= orbitX.substring(0, orbitX.length()-2);
 			
-			getRecord(orbitX).setValue(o.getPosH());
+			setValue(orbitX, o.getPosH(), changed);
 			double[] d= o.getStatH();
-			getRecord(pr+SFX_STAT_X).setValue(d);
-			getRecord(pr+SFX_STAT_X_AVG).setValue(d[Stat._AVG]);
-			getRecord(pr+SFX_STAT_X_MAX).setValue(d[Stat._MAX]);
-			getRecord(pr+SFX_STAT_X_RMS).setValue(d[Stat._RMS]);
-			getRecord(pr+SFX_STAT_X_STD).setValue(d[Stat._STD]);
+			setValue(pr+SFX_STAT_X, d, changed);
+			setValue(pr+SFX_STAT_X_AVG, d[Stat._AVG], changed);
+			setValue(pr+SFX_STAT_X_MAX, d[Stat._MAX], changed);
+			setValue(pr+SFX_STAT_X_RMS, d[Stat._RMS], changed);
+			setValue(pr+SFX_STAT_X_STD, d[Stat._STD], changed);
 
-			getRecord(pr+SFX_STAT_STRING).setValue(o.toStringStatFancy());
+			setValue(pr+SFX_STAT_STRING, stat, changed);
 		}
 		if (orbitY!=null) {
 			String pr= orbitY.substring(0, orbitY.length()-2);
 
-			getRecord(orbitY).setValue(o.getPosV());
+			setValue(orbitY, o.getPosV(), changed);
 			double[] d= o.getStatV();
-			getRecord(pr+SFX_STAT_Y).setValue(d);
-			getRecord(pr+SFX_STAT_Y_AVG).setValue(d[Stat._AVG]);
-			getRecord(pr+SFX_STAT_Y_MAX).setValue(d[Stat._MAX]);
-			getRecord(pr+SFX_STAT_Y_RMS).setValue(d[Stat._RMS]);
-			getRecord(pr+SFX_STAT_Y_STD).setValue(d[Stat._STD]);
+			setValue(pr+SFX_STAT_Y, d, changed);
+			setValue(pr+SFX_STAT_Y_AVG, d[Stat._AVG], changed);
+			setValue(pr+SFX_STAT_Y_MAX, d[Stat._MAX], changed);
+			setValue(pr+SFX_STAT_Y_RMS, d[Stat._RMS], changed);
+			setValue(pr+SFX_STAT_Y_STD, d[Stat._STD], changed);
 			
 			if (orbitX==null) {
-				getRecord(pr+SFX_STAT_STRING).setValue(o.toStringStatFancy());
+				setValue(pr+SFX_STAT_STRING, stat, changed);
 			}
 		}
-		
+	}
+
+	private void setValue(final String name, final Object value, final List<Record> changed) {
+		Record r= getRecord(name);
+		if (((MemoryValueProcessor)r.getProcessor()).setValue(value, false)) {
+			changed.add(r);
+		}
+	}
+
+	/**
+	 * Fires value change of records, which have been set by {@link #setOrbit(Orbit, String, String, String, List)}.
+	 *
+	 * @param changed records with updated value
+	 * @param orbitX name of horizontal orbit record, which is being set
+	 * @param orbitY name of vertical orbit record, which is being set
+	 */
+	private void notifyOrbit(final List<Record> changed, final String orbitX, final String orbitY) {
+
+		setting.add(orbitX);
+		setting.add(orbitY);
+		for (Record r : changed) {
+			if (r.isAlarmUndefined()) {
+				r.updateAlarm(Severity.NO_ALARM, Status.NO_ALARM, false);
+			}
+			r.fireValueChange();
+		}
 		setting.remove(orbitX);
 		setting.remove(orbitY);
-		
-		return o;
 	}
 
 }
@@ -0,0 +1,233 @@
+package org.scictrl.csshell.epics.server.application.orbitserver;
+
+import org.scictrl.csshell.Timestamp;
+import org.scictrl.csshell.epics.server.application.orbitserver.Orbit.O;
+import org.scictrl.csshell.epics.server.application.orbitserver.Orbit.Stat;
+
+/**
+ * <p>Reusable workspace for live orbit calculation.</p>
+ *
+ * <p>Raw orbit, orbit relative to reference and statistics of both are calculated in single pass over
+ * BPM positions, into position and statistics arrays, which are allocated once.
+ * Workspace is double buffered: new orbit is calculated into back buffer, which then becomes front buffer.
+ * Orbits returned after previous update stay valid and unchanged during next update, so they can be used as input
+ * for it, but are overwritten by the update after it.</p>
+ *
+ * <p>Statistics strings are formatted only when any statistics value has changed at displayed precision.
+ * Class is not thread safe, caller must synchronize access.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public final class OrbitWorkspace {
+
+	private final int size;
+	private final Orbit[] raw;
+	private final Orbit[] orbit;
+	private int front;
+
+	private final long[][] statKey= new long[2][8];
+	private final String[] statString= new String[2];
+
+	/**
+	 * Constructor.
+	 *
+	 * @param size number of BPMs
+	 */
+	public OrbitWorkspace(int size) {
+		this.size=size;
+		this.raw= new Orbit[]{new Orbit(size, false), new Orbit(size, false)};
+		this.orbit= new Orbit[]{new Orbit(size, false), new Orbit(size, false)};
+	}
+
+	/**
+	 * Calculates raw orbit from provided positions and orbit relative to reference with statistics for both.
+	 * Input arrays are not changed and not referenced after call, they can be positions of orbits returned
+	 * by previous update.
+	 *
+	 * @param x horizontal positions
+	 * @param y vertical positions
+	 * @param ref reference orbit, if <code>null</code> relative orbit is same as raw orbit
+	 */
+	public void update(double[] x, double[] y, Orbit ref) {
+
+		if (x.length!=size || y.length!=size || (ref!=null && ref.size!=size)) {
+			throw new IllegalArgumentException("Array sizes does not match!");
+		}
+
+		int back= 1-front;
+
+		Orbit r= raw[back];
+		Orbit o= orbit[back];
+
+		double[] rx= r.positions[O._H];
+		double[] ry= r.positions[O._V];
+		double[] ox= o.positions[O._H];
+		double[] oy= o.positions[O._V];
+		double[] refx= ref!=null ? ref.positions[O._H] : null;
+		double[] refy= ref!=null ? ref.positions[O._V] : null;
+
+		double rxSum=0.0, rxSq=0.0, rxMax=0.0;
+		double rySum=0.0, rySq=0.0, ryMax=0.0;
+		double oxSum=0.0, oxSq=0.0, oxMax=0.0;
+		double oySum=0.0, oySq=0.0, oyMax=0.0;
+
+		for (int i = 0; i < size; i++) {
+			double a= x[i];
+			double b= y[i];
+			rx[i]=a;
+			ry[i]=b;
+
+			rxSum+=a;
+			rxSq+=(a*a);
+			if (Math.abs(a)>Math.abs(rxMax)) rxMax=a;
+			rySum+=b;
+			rySq+=(b*b);
+			if (Math.abs(b)>Math.abs(ryMax)) ryMax=b;
+
+			if (refx!=null) {
+				a-=refx[i];
+				b-=refy[i];
+			}
+			ox[i]=a;
+			oy[i]=b;
+
+			oxSum+=a;
+			oxSq+=(a*a);
+			if (Math.abs(a)>Math.abs(oxMax)) oxMax=a;
+			oySum+=b;
+			oySq+=(b*b);
+			if (Math.abs(b)>Math.abs(oyMax)) oyMax=b;
+		}
+
+		stat(r.stat[O._H], rxSum, rxSq, rxMax);
+		stat(r.stat[O._V], rySum, rySq, ryMax);
+		stat(o.stat[O._H], oxSum, oxSq, oxMax);
+		stat(o.stat[O._V], oySum, oySq, oyMax);
+
+		Timestamp t= new Timestamp();
+		r.updated(t, false);
+		o.updated(t, ref!=null);
+
+		front=back;
+	}
+
+	/**
+	 * Fills statistics same way as {@link Orbit} does.
+	 */
+	private void stat(double[] s, double sum, double sq, double max) {
+		if (size<2) {
+			s[Stat._AVG]=Double.NaN;
+			s[Stat._RMS]=Double.NaN;
+			s[Stat._STD]=Double.NaN;
+			s[Stat._MAX]=Double.NaN;
+			return;
+		}
+		double avg= sum/size;
+		double ms= sq/size;
+		s[Stat._AVG]=avg;
+		s[Stat._RMS]=Math.sqrt(ms);
+		s[Stat._STD]=Math.sqrt(Math.abs(ms-(avg*avg)));
+		s[Stat._MAX]=max;
+	}
+
+	/**
+	 * Returns raw orbit from last update.
+	 *
+	 * @return raw orbit
+	 */
+	public Orbit getRaw() {
+		return raw[front];
+	}
+
+	/**
+	 * Returns orbit relative to reference from last update.
+	 *
+	 * @return relative orbit
+	 */
+	public Orbit getOrbit() {
+		return orbit[front];
+	}
+
+	/**
+	 * Returns {@link Orbit#toStringStatFancy()} of raw orbit from last update.
+	 * String is formatted again only if statistics changed at displayed precision.
+	 *
+	 * @return raw orbit statistics string
+	 */
+	public String getRawStatString() {
+		return statString(0, raw[front]);
+	}
+
+	/**
+	 * Returns {@link Orbit#toStringStatFancy()} of relative orbit from last update.
+	 * String is formatted again only if statistics changed at displayed precision.
+	 *
+	 * @return relative orbit statistics string
+	 */
+	public String getOrbitStatString() {
+		return statString(1, orbit[front]);
+	}
+
+	private String statString(int i, Orbit o) {
+		long[] key= statKey[i];
+		boolean change= statString[i]==null;
+		int k=0;
+		for (int j = 0; j < 2; j++) {
+			double[] s= o.stat[j];
+			for (int l = 0; l < 4; l++) {
+				long n= toKey(s[l]);
+				if (key[k]!=n) {
+					key[k]=n;
+					change=true;
+				}
+				k++;
+			}
+		}
+		if (change) {
+			statString[i]=o.toStringStatFancy();
+		}
+		return statString[i];
+	}
+
+	/**
+	 * Value as rounded to 3 decimals, with sign, so that "-0.000" differs from "0.000".
+	 */
+	private static long toKey(double d) {
+		if (Double.isNaN(d)) {
+			return Long.MIN_VALUE;
+		}
+		long n= Math.round(Math.abs(d)*1000.0)<<1;
+		return d<0.0 ? n|1L : n;
+	}
+
+	/**
+	 * <p>Calculates RMS of difference between orbit and each of references in single pass,
+	 * same as {@link OrbitServerApplication#diffRMS(Orbit, Orbit)} for each reference.</p>
+	 *
+	 * @param a orbit
+	 * @param refs references
+	 * @return an array of RMS differences, one for each reference
+	 */
+	public static double[] diffRMS(Orbit a, Orbit... refs) {
+		double[] ax= a.positions[O._H];
+		double[] ay= a.positions[O._V];
+		double[] rms= new double[refs.length];
+
+		for (int i = 0; i < ax.length; i++) {
+			double x= ax[i];
+			double y= ay[i];
+			for (int j = 0; j < refs.length; j++) {
+				double d= x-refs[j].positions[O._H][i];
+				rms[j]+= (d*d);
+				d= y-refs[j].positions[O._V][i];
+				rms[j]+= (d*d);
+			}
+		}
+
+		for (int j = 0; j < rms.length; j++) {
+			rms[j]= Math.sqrt(rms[j]/2.0/ax.length);
+		}
+		return rms;
+	}
+
+}
@@ -158,6 +158,19 @@ public class MemoryValueProcessor extends AbstractValueProcessor {
 		_setValue(value, null, null, true, false);
 	}
 
+	/**
+	 * Sets new value to this processor and fires value update event only if notify is <code>true</code>.
+	 * With notify <code>false</code> caller is responsible to call {@link Record#fireValueChange()} when
+	 * value was updated, this way several records can be set before any of them notifies listeners.
+	 *
+	 * @param value value to be set
+	 * @param notify if <code>true</code> fire notify event if value was change, <code>false</code> suppresses events
+	 * @return true if value was updated
+	 */
+	public boolean setValue(Object value, boolean notify) {
+		return _setValue(value, null, null, notify, false);
+	}
+
 	/**
 	 * Internal set: sets new value to this processor.
 	 * It checks if it is fixed, it never sets fixed value.
@@ -206,9 +219,19 @@ public class MemoryValueProcessor extends AbstractValueProcessor {
 			status=Status.NO_ALARM;
 		}
 
-		value= convert(value);
+		boolean changed;
+		if (!force && isNativeArray(value)) {
+			// incoming array has already stored type, compare it before converting to avoid copy
+			changed= !EPICSUtilities.deepEquals(this.value, value);
+			if (changed) {
+				value= convert(value);
+			}
+		} else {
+			value= convert(value);
+			changed= force || !EPICSUtilities.deepEquals(this.value, value);
+		}
 		
-		if (force || !EPICSUtilities.deepEquals(this.value, value)) {
+		if (changed) {
 			// value has changed or we force update regardles the value change
 			this.value=value;
 			this.lastChangeTimestamp=this.timestamp;
@@ -230,6 +253,18 @@ public class MemoryValueProcessor extends AbstractValueProcessor {
 	}
 	
 	
+	/**
+	 * Returns <code>true</code> if provided value is primitive array of same class as currently stored value,
+	 * such value can be compared to stored value without conversion.
+	 *
+	 * @param val value to be checked
+	 * @return <code>true</code> if value is primitive array of same class as stored value
+	 */
+	private boolean isNativeArray(Object val) {
+		Object v= this.value;
+		return v!=null && val!=null && v.getClass()==val.getClass() && v.getClass().isArray() && v.getClass().getComponentType().isPrimitive();
+	}
+
 	/**
 	 * <p>convert.</p>
 	 *
@@ -333,6 +368,10 @@ public class MemoryValueProcessor extends AbstractValueProcessor {
 		if (value==null) {
 			return false;
 		}
+		if (value instanceof byte[]) {
+			byte[] b= (byte[])value;
+			return b.length>0 && b[0]==1;
+		}
 		try {
 			return Array.getByte(value,0)==1;
 		} catch (Exception e) {
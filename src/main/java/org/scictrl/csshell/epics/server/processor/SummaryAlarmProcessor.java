@@ -9,8 +9,10 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.commons.configuration.HierarchicalConfiguration;
+import org.scictrl.csshell.epics.server.ConfigurationManager.AlarmPathNode;
 import org.scictrl.csshell.epics.server.ConfigurationManager.ConfigurationVisitor;
 import org.scictrl.csshell.epics.server.Record;
+import org.scictrl.csshell.epics.server.SummaryAggregator;
 import org.scictrl.csshell.epics.server.ValueLinks;
 import org.scictrl.csshell.epics.server.ValueLinks.ValueHolder;
 
@@ -34,6 +36,8 @@ import gov.aps.jca.dbr.Status;
  * </li>
  * </ul>
  *
+ * <p>Summary is maintained incrementally by {@link SummaryAggregator}, each input change updates only own index.</p>
+ *
  * @author igor@scictrl.com
  */
 public class SummaryAlarmProcessor extends DefaultAlarmProcessor {
@@ -45,6 +49,7 @@ public class SummaryAlarmProcessor extends DefaultAlarmProcessor {
 	private String[] path;
 	private boolean pathRecursive;
 	private ValueLinks inputAD;
+	private SummaryAggregator summary;
 
 	@SuppressWarnings("unused")
 	private String nameAD;
@@ -84,6 +89,8 @@ public class SummaryAlarmProcessor extends DefaultAlarmProcessor {
 		if (names!=null && names.length>0) {
 			
 			this.input= new ValueLinks(record.getName(), names, this, type);
+			this.summary= new SummaryAggregator(names.length);
+			this.input.setValueChangeListener(summary);
 			
 			if (alarmDisablePv!=null) {
 				String[] namesAD= new String[names.length];
@@ -110,6 +117,7 @@ public class SummaryAlarmProcessor extends DefaultAlarmProcessor {
 					}
 				}
 				this.inputAD= new ValueLinks(nameAD=record.getName()+"_AD", namesAD, this, type);
+				this.inputAD.setValueChangeListener(summary.disableListener());
 			}
 			
 			update(true, Severity.INVALID_ALARM, Status.UDF_ALARM,false);
@@ -139,18 +147,7 @@ public class SummaryAlarmProcessor extends DefaultAlarmProcessor {
 				return;
 			}
 			
-			
-			ValueHolder[] vh= input.consume();
-			
-			boolean[] alarmDisable= new boolean[vh.length];
-			if (inputAD!=null) {
-				ValueHolder[] vhAD= inputAD.consume();
-				ValueHolder.getValid(alarmDisable, vhAD, false);
-			} else {
-				Arrays.fill(alarmDisable, false);
-			}
-								
-			ValueHolder vhsum=ValueHolder.toSummaryBit(vh,alarmDisable);
+			ValueHolder vhsum=summary.toSummaryBit();
 			
 			update(vhsum.isAlarm(),vhsum.severity,vhsum.status,true);
 			return;
@@ -166,38 +163,18 @@ public class SummaryAlarmProcessor extends DefaultAlarmProcessor {
 		if (path!=null) {
 			
 			ConfigurationVisitor cv= getRecord().getDatabase().getServer().getInputData();
-			String[] paths= cv.getAlarmPaths();
-			
-			List<String> p= new ArrayList<String>();
-			
-			StringBuilder sb= new StringBuilder(128);
-			sb.append(path[0]);
-			for (int i = 1; i < path.length; i++) {
-				sb.append(',');
-				sb.append(path[i]);
-			}
-			String ph= sb.toString();
-
-			
-			for (String p1 : paths) {
-				if (pathRecursive) {
-					if (p1.length()>=ph.length() && p1.startsWith(ph) && (p1.length()==ph.length() || p1.charAt(ph.length())==',')) {
-						p.add(p1);
-					} 
-				} else if (p1.equals(ph)) {
-					p.add(p1);
-					break;
-				}
-			}
+			AlarmPathNode node= cv.getAlarmPathIndex().find(path);
 			
 			List<String> pvs= new ArrayList<String>();
 			
-			for (String p1 : p) {
-				pvs.addAll(cv.getPVsForAlarmPath(p1));
+			if (node!=null) {
+				node.collectPVs(pvs, pathRecursive);
 			}
 			
 			if (pvs.size()>0) {
 				input= new ValueLinks(record.getName(),pvs.toArray(new String[pvs.size()]),this,Record.PROPERTY_VALUE);
+				summary= new SummaryAggregator(pvs.size());
+				input.setValueChangeListener(summary);
 			} else {
 				log.warn("Summary alarm '{}' has found not links for search path '{}'.",getName(),Arrays.toString(path));
 			}
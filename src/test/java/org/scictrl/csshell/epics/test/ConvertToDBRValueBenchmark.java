@@ -0,0 +1,98 @@
+package org.scictrl.csshell.epics.test;
+
+import java.lang.reflect.Array;
+
+import org.scictrl.csshell.epics.EPICSUtilities;
+
+import gov.aps.jca.dbr.DBRType;
+
+/**
+ * <p>Measures {@link EPICSUtilities#convertToDBRValue(Object, DBRType)} for all combinations
+ * of DBR types and source array types. Each combination is first checked against generic
+ * element-by-element conversion, then timed.</p>
+ *
+ * <p>Run as java application, optional arguments are array size and number of iterations.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class ConvertToDBRValueBenchmark {
+
+	private static final DBRType[] TYPES= {DBRType.DOUBLE, DBRType.FLOAT, DBRType.INT, DBRType.SHORT, DBRType.ENUM, DBRType.BYTE, DBRType.STRING};
+
+	/**
+	 * <p>main.</p>
+	 *
+	 * @param args args
+	 */
+	public static void main(String[] args) {
+
+		int size= args.length>0 ? Integer.parseInt(args[0]) : 10000;
+		int iterations= args.length>1 ? Integer.parseInt(args[1]) : 2000;
+
+		Object[] sources= new Object[7];
+		double[] d= new double[size];
+		for (int i = 0; i < d.length; i++) {
+			d[i]= (i%200)-100.5;
+		}
+		sources[0]= d;
+		sources[1]= EPICSUtilities.convertToDBRValue(d, DBRType.FLOAT);
+		sources[2]= new long[size];
+		for (int i = 0; i < size; i++) {
+			((long[])sources[2])[i]= (long)d[i];
+		}
+		sources[3]= EPICSUtilities.convertToDBRValue(d, DBRType.INT);
+		sources[4]= EPICSUtilities.convertToDBRValue(d, DBRType.SHORT);
+		sources[5]= EPICSUtilities.convertToDBRValue(d, DBRType.BYTE);
+		sources[6]= EPICSUtilities.convertToDBRValue(d, DBRType.STRING);
+
+		long sink= 0;
+
+		System.out.println("Array "+size+" elements, "+iterations+" iterations, ns/conversion for primitive and boxed source");
+		for (DBRType type : TYPES) {
+			for (Object src : sources) {
+				Object res;
+				try {
+					res= EPICSUtilities.convertToDBRValue(src, type);
+				} catch (RuntimeException e) {
+					// e.g. decimal strings to integer types, not supported by generic conversion either
+					continue;
+				}
+				Object[] boxed= box(src);
+				Object ref= EPICSUtilities.convertToDBRValue(boxed, type);
+				if (!EPICSUtilities.deepEquals(ref, res)) {
+					throw new IllegalStateException("Conversion mismatch "+src.getClass().getSimpleName()+" -> "+type);
+				}
+				for (int i = 0; i < iterations; i++) {
+					sink+= Array.getLength(EPICSUtilities.convertToDBRValue(src, type));
+				}
+				long t0= System.nanoTime();
+				for (int i = 0; i < iterations; i++) {
+					sink+= Array.getLength(EPICSUtilities.convertToDBRValue(src, type));
+				}
+				long t1= System.nanoTime();
+				for (int i = 0; i < iterations; i++) {
+					sink+= Array.getLength(EPICSUtilities.convertToDBRValue(boxed, type));
+				}
+				long t2= System.nanoTime();
+				System.out.println(String.format("%-10s -> %-11s %10d %10d", src.getClass().getSimpleName(), type.getName(), (t1-t0)/iterations, (t2-t1)/iterations));
+			}
+		}
+		System.out.println(sink);
+	}
+
+	/**
+	 * Boxed copy of source array, converted with generic element-by-element conversion.
+	 */
+	private static Object[] box(Object src) {
+		int l= Array.getLength(src);
+		Object[] boxed= new Object[l];
+		for (int i = 0; i < l; i++) {
+			boxed[i]= Array.get(src, i);
+		}
+		return boxed;
+	}
+
+	private ConvertToDBRValueBenchmark() {
+	}
+
+}
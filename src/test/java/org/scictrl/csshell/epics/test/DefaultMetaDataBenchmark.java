@@ -0,0 +1,99 @@
+package org.scictrl.csshell.epics.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.scictrl.csshell.AbstractConnector;
+import org.scictrl.csshell.SubstringMatcher;
+
+/**
+ * <p>Measures default metadata lookup by connection name, as done by {@link AbstractConnector#getDefaultMetaData(String, org.scictrl.csshell.DataType)},
+ * compares old linear scan with <code>String.contains</code> over all registered patterns with {@link SubstringMatcher}.
+ * Results of both lookups are first checked to be equal for all names, then timed.</p>
+ *
+ * <p>Run as java application, optional arguments are number of registered patterns and number of looked up names.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class DefaultMetaDataBenchmark {
+
+	/**
+	 * <p>main.</p>
+	 *
+	 * @param args args
+	 */
+	public static void main(String[] args) {
+
+		int patterns= args.length>0 ? Integer.parseInt(args[0]) : 10000;
+		int lookups= args.length>1 ? Integer.parseInt(args[1]) : 10000;
+
+		Random r= new Random(42);
+
+		LinkedHashMap<String, Integer> legacy= new LinkedHashMap<String, Integer>(patterns*2);
+		SubstringMatcher<Integer> matcher= new SubstringMatcher<Integer>();
+
+		for (int i = 0; i < patterns; i++) {
+			String p= "D"+Integer.toString(r.nextInt(patterns*4), 36).toUpperCase()+(i%7==0 ? ":" : "");
+			legacy.put(p, i);
+			matcher.put(p, i);
+		}
+
+		String[] names= new String[lookups];
+		for (int i = 0; i < names.length; i++) {
+			names[i]= "A:SR:"+Integer.toString(r.nextInt(patterns*8), 36).toUpperCase()+":D"+Integer.toString(r.nextInt(patterns*8), 36).toUpperCase()+":Current";
+		}
+
+		int matched= 0;
+		for (String n : names) {
+			Integer a= linear(legacy, n);
+			Integer b= matcher.match(n);
+			if (a==null ? b!=null : !a.equals(b)) {
+				throw new IllegalStateException("Lookup for '"+n+"' differs, linear "+a+", indexed "+b);
+			}
+			if (a!=null) {
+				matched++;
+			}
+		}
+
+		// warm up
+		long sink= 0;
+		for (int k = 0; k < 3; k++) {
+			for (String n : names) {
+				Integer a= linear(legacy, n);
+				Integer b= matcher.match(n);
+				sink+= (a!=null ? a : 0)+(b!=null ? b : 0);
+			}
+		}
+
+		long t0= System.nanoTime();
+		for (String n : names) {
+			Integer a= linear(legacy, n);
+			sink+= a!=null ? a : 0;
+		}
+		long t1= System.nanoTime();
+		for (String n : names) {
+			Integer b= matcher.match(n);
+			sink+= b!=null ? b : 0;
+		}
+		long t2= System.nanoTime();
+
+		System.out.println(patterns+" patterns, "+lookups+" lookups, "+matched+" matched");
+		System.out.println("linear scan: "+((t1-t0)/lookups)+" ns/lookup");
+		System.out.println("indexed:     "+((t2-t1)/lookups)+" ns/lookup");
+		System.out.println(sink);
+	}
+
+	private static Integer linear(Map<String, Integer> map, String name) {
+		for (String key: map.keySet()) {
+			if (name.contains(key)) {
+				return map.get(key);
+			}
+		}
+		return null;
+	}
+
+	private DefaultMetaDataBenchmark() {
+	}
+
+}
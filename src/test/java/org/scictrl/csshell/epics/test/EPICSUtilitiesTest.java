@@ -4,8 +4,11 @@
 package org.scictrl.csshell.epics.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Array;
@@ -288,6 +291,73 @@ public class EPICSUtilitiesTest {
 		test_convertToDBRNull(new Object[]{null}, DBRType.CTRL_DOUBLE);
 	}
 	
+	/**
+	 * Test.
+	 */
+	@Test
+	public void test_convertToDBRValueCopy() {
+		double[] d= {0.1,0.2};
+		Object res= EPICSUtilities.convertToDBRValue(d, DBRType.DOUBLE);
+		assertNotSame(d, res);
+		assertTrue(EPICSUtilities.deepEquals(d, res));
+		assertSame(d, EPICSUtilities.convertToDBRValue(d, DBRType.DOUBLE, false));
+		
+		int[] i= {1,2};
+		assertNotSame(i, EPICSUtilities.convertToDBRValue(i, DBRType.INT));
+		assertSame(i, EPICSUtilities.convertToDBRValue(i, DBRType.INT, false));
+		
+		String[] st= {"A",null};
+		assertTrue(EPICSUtilities.deepEquals(new String[]{"A","null"}, EPICSUtilities.convertToDBRValue(st, DBRType.STRING, false)));
+
+		test_convertToDBRValue(new float[]{0.5f,1.5f}, DBRType.CTRL_DOUBLE, new double[]{0.5,1.5});
+		test_convertToDBRValue(new double[]{1.7,-1.7}, DBRType.CTRL_INT, new int[]{1,-1});
+		test_convertToDBRValue(new double[]{1.7}, DBRType.CTRL_FLOAT, new float[]{1.7f});
+		test_convertToDBRValue(new int[]{300}, DBRType.CTRL_BYTE, new byte[]{(byte)300});
+		test_convertToDBRValue(new double[]{70000.0}, DBRType.CTRL_SHORT, new short[]{(short)70000});
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void test_deepEquals() {
+		assertTrue(EPICSUtilities.deepEquals(null, null));
+		assertFalse(EPICSUtilities.deepEquals(null, new double[]{1.0}));
+		assertTrue(EPICSUtilities.deepEquals(new double[]{0.1,0.2}, new double[]{0.1,0.2}));
+		assertFalse(EPICSUtilities.deepEquals(new double[]{0.1,0.2}, new double[]{0.1,0.3}));
+		assertFalse(EPICSUtilities.deepEquals(new double[]{0.1}, new double[]{0.1,0.2}));
+		assertTrue(EPICSUtilities.deepEquals(new double[]{Double.NaN}, new double[]{Double.NaN}));
+		assertTrue(EPICSUtilities.deepEquals(new float[]{0.1f}, new float[]{0.1f}));
+		assertTrue(EPICSUtilities.deepEquals(new int[]{1,2}, new int[]{1,2}));
+		assertFalse(EPICSUtilities.deepEquals(new int[]{1,2}, new int[]{2,1}));
+		assertTrue(EPICSUtilities.deepEquals(new short[]{1}, new short[]{1}));
+		assertTrue(EPICSUtilities.deepEquals(new byte[]{1}, new byte[]{1}));
+		assertFalse(EPICSUtilities.deepEquals(new byte[]{1}, new byte[]{0}));
+		assertTrue(EPICSUtilities.deepEquals(new String[]{"A","B"}, new String[]{"A","B"}));
+		assertFalse(EPICSUtilities.deepEquals(new String[]{"A"}, new String[]{"B"}));
+		assertFalse(EPICSUtilities.deepEquals(new double[]{1.0}, new int[]{1}));
+		assertFalse(EPICSUtilities.deepEquals(new double[]{1.0}, Double.valueOf(1.0)));
+		assertTrue(EPICSUtilities.deepEquals(Double.valueOf(1.0), Double.valueOf(1.0)));
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void test_getDouble() {
+		assertEquals(0.5, EPICSUtilities.getDouble(new double[]{0.5}, 0), 0.0);
+		assertEquals(0.5, EPICSUtilities.getDouble(new float[]{0.5f}, 0), 0.0);
+		assertEquals(2.0, EPICSUtilities.getDouble(new int[]{1,2}, 1), 0.0);
+		assertEquals(2.0, EPICSUtilities.getDouble(new short[]{2}, 0), 0.0);
+		assertEquals(2.0, EPICSUtilities.getDouble(new byte[]{2}, 0), 0.0);
+		assertEquals(2.0, EPICSUtilities.getDouble(new long[]{2L}, 0), 0.0);
+		assertEquals(2, EPICSUtilities.getInt(new int[]{2}, 0));
+		assertEquals(2, EPICSUtilities.getInt(new short[]{2}, 0));
+		assertEquals(2, EPICSUtilities.getInt(new byte[]{2}, 0));
+		assertEquals(1L, EPICSUtilities.getLong(new byte[]{1}, 0));
+		assertEquals(1L, EPICSUtilities.getLong(new long[]{1L}, 0));
+	}
+
 	/**
 	 * <p>test_convertToDBRValue.</p>
 	 *
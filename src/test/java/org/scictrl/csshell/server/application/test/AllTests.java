@@ -14,7 +14,11 @@ import org.junit.runners.Suite.SuiteClasses;
 	EmbeddedApplicationServerTest.class, 
 	FeedbackLoopApplicationTest.class, 
 	ScanApplicationTest.class,
-	RunningCounterApplicationTest.class})
+	RunningCounterApplicationTest.class,
+	ArchiveClientTest.class,
+	ArchiveCacheTest.class,
+	OrbitAssemblerTest.class,
+	OrbitWorkspaceTest.class})
 public class AllTests {
 
 	private AllTests() {
@@ -0,0 +1,256 @@
+package org.scictrl.csshell.server.application.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveCache;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveClient;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveSamples;
+
+/**
+ * <p>Tests {@link ArchiveCache} with generated archive data and with {@link ArchiveStubServer}.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class ArchiveCacheTest {
+
+	private static final long MS= 1000000L;
+
+	private final AtomicInteger loads= new AtomicInteger();
+	/**
+	 * Generated archive, sample each 10 ms, value is sample number, PVs ending with ":WF" have 3 values.
+	 */
+	private final ArchiveCache.Loader archive= (pv, start, end) -> {
+		loads.incrementAndGet();
+		return generate(pv, start, end);
+	};
+
+	/**
+	 * Constructor.
+	 */
+	public ArchiveCacheTest() {
+	}
+
+	/**
+	 * <p>setUp.</p>
+	 */
+	@Before
+	public void setUp() {
+		Configurator.initialize(new DefaultConfiguration());
+		loads.set(0);
+	}
+
+	private static ArchiveSamples generate(String pv, long start, long end) {
+		ArchiveSamples s= new ArchiveSamples();
+		int length= pv.endsWith(":WF") ? 3 : 1;
+		double[] v= new double[length];
+		// archive returns also last sample before start
+		for (long k = start/(10*MS); k <= end/(10*MS); k++) {
+			for (int i = 0; i < length; i++) {
+				v[i]= k+i*0.5;
+			}
+			s.add(k*10*MS, (int)(k%3), v, length);
+		}
+		return s;
+	}
+
+	private static void assertSamples(ArchiveSamples expected, ArchiveSamples actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getTime(i), actual.getTime(i));
+			assertEquals(expected.getSeverity(i), actual.getSeverity(i));
+			assertArrayEquals(expected.getValues(i), actual.getValues(i), 0.0);
+		}
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testRanges() throws Exception {
+
+		ArchiveCache c= new ArchiveCache(100000, 0);
+		String pv= "A:TEST:WF";
+
+		assertSamples(generate(pv, 1000*MS, 2000*MS), c.get("a", pv, 1000*MS, 2000*MS, archive));
+		assertEquals(1, loads.get());
+
+		// contained range is served from cache
+		assertSamples(generate(pv, 1205*MS, 1800*MS), c.get("a", pv, 1205*MS, 1800*MS, archive));
+		assertSamples(generate(pv, 1500*MS, 1500*MS), c.get("a", pv, 1500*MS, 1500*MS, archive));
+		assertEquals(1, loads.get());
+		assertEquals(2, c.getHits());
+
+		// different source or PV is not mixed
+		c.get("b", pv, 1205*MS, 1800*MS, archive);
+		c.get("a", "A:TEST:X", 1205*MS, 1800*MS, archive);
+		assertEquals(3, loads.get());
+
+		// overlapping ranges are merged
+		assertSamples(generate(pv, 1800*MS, 2500*MS), c.get("a", pv, 1800*MS, 2500*MS, archive));
+		assertEquals(4, loads.get());
+		assertSamples(generate(pv, 1100*MS, 2400*MS), c.get("a", pv, 1100*MS, 2400*MS, archive));
+		assertEquals(4, loads.get());
+		assertEquals(3, c.getHeapRanges());
+
+		// disjoint ranges are kept separate
+		c.get("a", pv, 3000*MS, 3100*MS, archive);
+		assertEquals(5, loads.get());
+		assertEquals(4, c.getHeapRanges());
+		c.get("a", pv, 2000*MS, 3050*MS, archive);
+		assertEquals(6, loads.get());
+		assertEquals(3, c.getHeapRanges());
+		assertSamples(generate(pv, 1000*MS, 3100*MS), c.get("a", pv, 1000*MS, 3100*MS, archive));
+		assertEquals(6, loads.get());
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testNotCached() throws Exception {
+
+		ArchiveCache c= new ArchiveCache(100000, 60000);
+		String pv= "A:TEST:X";
+
+		// recent data may still change
+		long now= System.currentTimeMillis()*MS;
+		c.get("a", pv, now-1000*MS, now, archive);
+		c.get("a", pv, now-1000*MS, now, archive);
+		assertEquals(2, loads.get());
+
+		// truncated response
+		ArchiveCache.Loader truncated= (p, s, e) -> {
+			ArchiveSamples a= archive.load(p, s, e);
+			a.setTruncated(true);
+			return a;
+		};
+		c.get("a", pv, 1000*MS, 2000*MS, truncated);
+		c.get("a", pv, 1000*MS, 2000*MS, truncated);
+		assertEquals(4, loads.get());
+
+		// missing PV
+		assertNull(c.get("a", pv, 1000*MS, 2000*MS, (p, s, e) -> null));
+
+		assertEquals(0, c.getHeapRanges());
+		assertEquals(0, c.getHits());
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testEvictionAndDisk() throws Exception {
+
+		File f= File.createTempFile("archive-cache", ".bin");
+		f.deleteOnExit();
+
+		// each range has 101 samples with 3 values, cost is 405, heap holds two ranges
+		ArchiveCache c= new ArchiveCache(1000, 0, f, 64*1024);
+
+		for (int i = 0; i < 5; i++) {
+			c.get("a", "A:TEST:"+i+":WF", 1000*MS, 2000*MS, archive);
+		}
+		assertEquals(5, loads.get());
+		assertEquals(2, c.getHeapRanges());
+		assertEquals(3, c.getDiskRanges());
+		assertTrue(c.getHeapValues()<=1000);
+
+		// least recently used are on disk and are moved back to heap, last used are still in heap
+		for (int i = 4; i >= 0; i--) {
+			assertSamples(generate("A:TEST:"+i+":WF", 1500*MS, 1600*MS), c.get("a", "A:TEST:"+i+":WF", 1500*MS, 1600*MS, archive));
+		}
+		assertEquals(5, loads.get());
+		assertEquals(3, c.getDiskHits());
+		assertEquals(2, c.getHits());
+
+		// file is used as ring buffer, oldest ranges are overwritten
+		for (int i = 5; i < 100; i++) {
+			c.get("a", "A:TEST:"+i+":WF", 1000*MS, 2000*MS, archive);
+		}
+		assertTrue(c.getDiskRanges()<95);
+		int l= loads.get();
+		for (int i = 97; i < 100; i++) {
+			assertSamples(generate("A:TEST:"+i+":WF", 1000*MS, 2000*MS), c.get("a", "A:TEST:"+i+":WF", 1000*MS, 2000*MS, archive));
+		}
+		assertEquals(l, loads.get());
+		c.get("a", "A:TEST:5:WF", 1000*MS, 2000*MS, archive);
+		assertEquals(l+1, loads.get());
+
+		// heap only cache drops evicted ranges
+		ArchiveCache h= new ArchiveCache(1000, 0);
+		for (int i = 0; i < 5; i++) {
+			h.get("a", "A:TEST:"+i+":WF", 1000*MS, 2000*MS, archive);
+		}
+		assertEquals(2, h.getHeapRanges());
+		assertEquals(0, h.getDiskRanges());
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testEmptyRangesEvicted() throws Exception {
+
+		ArchiveCache c= new ArchiveCache(10, 0);
+
+		for (int i = 0; i < 100; i++) {
+			ArchiveSamples s= c.get("a", "A:TEST:"+i, 1000*MS, 2000*MS, (pv, start, end) -> new ArchiveSamples());
+			assertEquals(0, s.size());
+		}
+		assertEquals(10, c.getHeapRanges());
+		assertEquals(10, c.getHeapValues());
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testTimeInstant() throws Exception {
+
+		ArchiveStubServer server= new ArchiveStubServer();
+		try {
+			String[][] pvs= {{"A:SR:BPM:001:SA:X","A:SR:BPM:002:SA:X"},{"A:SR:BPM:001:SA:Y","A:SR:BPM:002:SA:Y"}};
+			long target= System.currentTimeMillis()-3600000L;
+			ArchiveCache c= new ArchiveCache(100000, ArchiveCache.DEFAULT_LIVE_MARGIN);
+
+			double[][] v= ArchiveClient.getTimeInstant(pvs, target, 5, server.getURL(), 4, 5000, c);
+			assertEquals(4, server.getRequests());
+			for (int i = 0; i < pvs.length; i++) {
+				for (int j = 0; j < pvs[i].length; j++) {
+					assertEquals(ArchiveStubServer.valueFor(pvs[i][j]), v[i][j], 0.0);
+				}
+			}
+
+			// same instant is served from cache
+			double[][] v2= ArchiveClient.getTimeInstant(pvs, target, 5, server.getURL(), 4, 5000, c);
+			assertEquals(4, server.getRequests());
+			assertEquals(4, c.getHits());
+			for (int i = 0; i < pvs.length; i++) {
+				assertArrayEquals(v[i], v2[i], 0.0);
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+}
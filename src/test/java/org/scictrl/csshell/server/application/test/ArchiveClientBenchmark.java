@@ -0,0 +1,65 @@
+package org.scictrl.csshell.server.application.test;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveClient;
+
+/**
+ * <p>Measures end-to-end latency of orbit retrieval from archive with {@link ArchiveClient#getTimeInstant(String[][], long, long, String, int, long)}
+ * from {@link ArchiveStubServer}, which delays each response.</p>
+ *
+ * <p>Run as java application, optional arguments are number of BPMs, response delay in milliseconds
+ * and number of parallel requests, defaults are 100 BPMs, 10 ms and 8 requests.
+ * Reported is time for one orbit, compared to time of sequential requests, and number of connections used.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class ArchiveClientBenchmark {
+
+	/**
+	 * <p>main.</p>
+	 *
+	 * @param args args
+	 * @throws java.lang.Exception if fails
+	 */
+	public static void main(String[] args) throws Exception {
+
+		int bpms= args.length>0 ? Integer.parseInt(args[0]) : 100;
+		long delay= args.length>1 ? Long.parseLong(args[1]) : 10;
+		int parallel= args.length>2 ? Integer.parseInt(args[2]) : ArchiveClient.DEFAULT_PARALLEL_REQUESTS;
+
+		Configurator.initialize(new DefaultConfiguration());
+
+		String[] axis= {"X","Y","BBA:X","BBA:Y"};
+		String[][] pvs= new String[axis.length][bpms];
+		for (int i = 0; i < axis.length; i++) {
+			for (int j = 0; j < bpms; j++) {
+				pvs[i][j]= String.format("A:SR:BPM:%03d:SA:%s", j, axis[i]);
+			}
+		}
+		long target= System.currentTimeMillis()-3600000L;
+
+		ArchiveStubServer server= new ArchiveStubServer();
+		try {
+			server.setDelay(delay);
+
+			// warm up, opens connections
+			ArchiveClient.getTimeInstant(pvs, target, 5, server.getURL(), parallel, 5000);
+
+			for (int k = 0; k < 3; k++) {
+				server.reset();
+				long t= System.currentTimeMillis();
+				ArchiveClient.getTimeInstant(pvs, target, 5, server.getURL(), parallel, 5000);
+				t= System.currentTimeMillis()-t;
+
+				System.out.println("Archive instant for "+pvs.length+"x"+bpms+" PVs with "+delay+" ms latency: "+t+" ms, sequential would take at least "+(pvs.length*bpms*delay)+" ms, "+server.getConnections()+" connections, "+server.getMaxActive()+" parallel");
+			}
+		} finally {
+			server.stop();
+		}
+	}
+
+	private ArchiveClientBenchmark() {
+	}
+
+}
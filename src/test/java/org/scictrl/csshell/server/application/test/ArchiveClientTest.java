@@ -0,0 +1,211 @@
+package org.scictrl.csshell.server.application.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Vector;
+
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.DefaultConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveClient;
+import org.scictrl.csshell.epics.server.application.orbitserver.ArchiveSamples;
+
+/**
+ * <p>Tests parallel retrieval of orbit from archive with {@link ArchiveStubServer}.
+ * Latency is measured by {@link ArchiveClientBenchmark}.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class ArchiveClientTest {
+
+	private ArchiveStubServer server;
+
+	/**
+	 * Constructor.
+	 */
+	public ArchiveClientTest() {
+	}
+
+	/**
+	 * <p>setUp.</p>
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Before
+	public void setUp() throws Exception {
+		Configurator.initialize(new DefaultConfiguration());
+		server= new ArchiveStubServer();
+	}
+
+	/**
+	 * <p>tearDown.</p>
+	 */
+	@After
+	public void tearDown() {
+		server.stop();
+	}
+
+	private static String[][] orbitPVs(int bpms) {
+		String[] axis= {"X","Y","BBA:X","BBA:Y"};
+		String[][] pvs= new String[axis.length][bpms];
+		for (int i = 0; i < axis.length; i++) {
+			for (int j = 0; j < bpms; j++) {
+				pvs[i][j]= String.format("A:SR:BPM:%03d:SA:%s", j, axis[i]);
+			}
+		}
+		return pvs;
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testTimeInstant() {
+
+		int bpms= 100;
+		long delay= 10;
+		int parallel= 8;
+		String[][] pvs= orbitPVs(bpms);
+		long target= System.currentTimeMillis()-3600000L;
+
+		server.setDelay(delay);
+
+		double[][] v= ArchiveClient.getTimeInstant(pvs, target, 5, server.getURL(), parallel, 5000);
+
+		assertEquals(pvs.length, v.length);
+		for (int i = 0; i < pvs.length; i++) {
+			assertEquals(bpms, v[i].length);
+			for (int j = 0; j < bpms; j++) {
+				assertEquals(pvs[i][j], ArchiveStubServer.valueFor(pvs[i][j]), v[i][j], 0.0);
+			}
+		}
+
+		assertEquals(pvs.length*bpms, server.getRequests());
+		assertTrue(server.getMaxActive()<=parallel);
+
+		// shared executor is reused with other parallel limit
+		server.reset();
+		double[] d= ArchiveClient.getTimeInstant(new String[][]{pvs[0]}, target, 5, server.getURL(), 2, 5000)[0];
+		for (int j = 0; j < bpms; j++) {
+			assertEquals(pvs[0][j], ArchiveStubServer.valueFor(pvs[0][j]), d[j], 0.0);
+		}
+		assertEquals(bpms, server.getRequests());
+		assertTrue(server.getMaxActive()<=2);
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testMissingAndTimeout() {
+
+		String[] pvs= {"A:SR:BPM:001:SA:X","A:SR:BPM:002:SA:X","A:SR:BPM:003:SA:X"};
+		server.addMissing(pvs[1]);
+		server.addSlow(pvs[2], 10000);
+
+		long t= System.currentTimeMillis();
+		double[][] v= ArchiveClient.getTimeInstant(new String[][]{pvs}, System.currentTimeMillis(), 5, server.getURL(), 4, 1000);
+		t= System.currentTimeMillis()-t;
+
+		assertEquals(ArchiveStubServer.valueFor(pvs[0]), v[0][0], 0.0);
+		assertEquals(0.0, v[0][1], 0.0);
+		assertEquals(0.0, v[0][2], 0.0);
+		assertTrue("Took "+t+" ms", t<5000);
+	}
+
+	private static InputStream json(String s) {
+		return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testParser() throws Exception {
+
+		String data= "[{\"time\":1000000,\"severity\":{\"level\":\"OK\",\"hasValue\":true},\"value\":[1.5]},"
+				+ "{\"time\":\"2000000\",\"metaData\":{\"type\":\"numeric\",\"units\":[\"mm\"]},\"value\":[1,2,3]},"
+				+ "{\"value\":3.5,\"time\":3000000},"
+				+ "{\"time\":4000000,\"value\":[]}]";
+
+		ArchiveSamples s= ArchiveClient.readSamples(json(data), new ArchiveSamples(1));
+		assertEquals(4, s.size());
+		assertEquals(1000000L, s.getTime(0));
+		assertEquals(1.5, s.getValue(0), 0.0);
+		assertEquals(2000000L, s.getTime(1));
+		assertEquals(3, s.getLength(1));
+		assertArrayEquals(new double[]{1,2,3}, s.getValues(1), 0.0);
+		assertEquals(2.0, s.getValue(1, 1), 0.0);
+		assertEquals(3.5, s.getValue(2), 0.0);
+		assertEquals(0, s.getLength(3));
+		assertTrue(Double.isNaN(s.getValue(3)));
+		assertEquals(1, s.indexOfClosest(2400000));
+
+		// buffer is reused
+		ArchiveClient.readSamples(json("[{\"time\":5,\"value\":[7]}]"), s);
+		assertEquals(1, s.size());
+		assertEquals(7.0, s.getValue(0), 0.0);
+
+		Vector<Object[]> v= ArchiveClient.getJsonPVValues(json(data));
+		assertEquals(4, v.size());
+		assertEquals(Long.valueOf(2000000L), v.get(1)[0]);
+		assertEquals(Double.valueOf(1.0), v.get(1)[1]);
+		assertNull(ArchiveClient.getJsonPVValues(json("[]")));
+		assertNull(ArchiveClient.getJsonPVValues(json("{}")));
+
+		// closest sample, earlier wins when equally close, waveform values are kept
+		ArchiveClient.ClosestSample c= new ArchiveClient.ClosestSample(2500000);
+		assertEquals(3, ArchiveClient.parseSamples(json(data), c));
+		assertEquals(2000000L, c.getTime());
+		assertArrayEquals(new double[]{1,2,3}, c.getValues(), 0.0);
+
+		Object[] p= ArchiveClient.getClosestTimeValuePoint(json(data), 4);
+		assertEquals(Long.valueOf(4000000L), p[0]);
+
+		// parsing stops after target time, the rest of the stream is not parsed
+		String broken= "[{\"time\":1000000,\"value\":[1]},{\"time\":3000000,\"value\":[3]},{\"time\":5000000,\"value\":[5]},{\"time\":garbage";
+		p= ArchiveClient.getClosestTimeValuePoint(json(broken), 3);
+		assertEquals(Long.valueOf(3000000L), p[0]);
+		assertEquals(Double.valueOf(3.0), p[1]);
+		assertNull(ArchiveClient.getJsonPVValues(json(broken)));
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testParserWithServer() throws Exception {
+
+		String pv= "A:SR:BPM:001:SA:X";
+		long target= System.currentTimeMillis();
+		server.setSamples(1001);
+
+		// closest sample from streaming parser is same as from all parsed samples
+		ArchiveSamples s= new ArchiveSamples();
+		try (InputStream is= ArchiveClient.fetchArchiveDataStream(pv, (target-5)*1000000L, (target+5)*1000000L, 1001, server.getURL(), 5000)) {
+			ArchiveClient.readSamples(is, s);
+		}
+		assertEquals(1001, s.size());
+		int i= s.indexOfClosest(target*1000000L);
+		assertEquals(ArchiveStubServer.valueFor(pv), s.getValue(i), 0.0);
+
+		try (InputStream is= ArchiveClient.fetchArchiveDataStream(pv, (target-5)*1000000L, (target+5)*1000000L, 1001, server.getURL(), 5000)) {
+			Object[] p= ArchiveClient.getClosestTimeValuePoint(is, target);
+			assertEquals(s.getTime(i), ((Long)p[0]).longValue());
+			assertEquals(s.getValue(i), (Double)p[1], 0.0);
+		}
+	}
+
+}
@@ -0,0 +1,238 @@
+package org.scictrl.csshell.server.application.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * <p>Local stub of JSON Archive Proxy server for tests of {@link org.scictrl.csshell.epics.server.application.orbitserver.ArchiveClient}.</p>
+ *
+ * <p>For each requested PV server returns samples evenly distributed over requested time interval.
+ * The sample in the middle of interval has value {@link #valueFor(String)}, other samples differ from it.
+ * Each response can be delayed, to simulate archive latency, and is gzip compressed if client accepts it.
+ * PVs can be declared missing, then server responds with 404, or slow, then response is delayed for additional time.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class ArchiveStubServer {
+
+	static {
+		// without it small responses wait for delayed ACK and latency is dominated by TCP stack
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Set<String> missing= Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Map<String, Long> slow= new ConcurrentHashMap<String, Long>();
+	private final Set<String> connections= Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicInteger requests= new AtomicInteger();
+	private final AtomicInteger active= new AtomicInteger();
+	private final AtomicInteger maxActive= new AtomicInteger();
+	private volatile long delay;
+	private volatile int samples= 11;
+
+	/**
+	 * Creates and starts server on free local port.
+	 *
+	 * @throws java.io.IOException if server can not be started
+	 */
+	public ArchiveStubServer() throws IOException {
+		server= HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		executor= Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/archive/1/samples/", this::handle);
+		server.start();
+	}
+
+	/**
+	 * Returns archive URL of this server, as expected by archive client.
+	 *
+	 * @return archive URL
+	 */
+	public String getURL() {
+		return "http://localhost:"+server.getAddress().getPort()+"/archive/1/";
+	}
+
+	/**
+	 * Returns value of sample closest to requested time for PV.
+	 *
+	 * @param pv the PV name
+	 * @return expected value
+	 */
+	public static double valueFor(String pv) {
+		return (pv.hashCode() % 10000)/100.0;
+	}
+
+	/**
+	 * Sets delay of each response.
+	 *
+	 * @param delay delay in milliseconds
+	 */
+	public void setDelay(long delay) {
+		this.delay= delay;
+	}
+
+	/**
+	 * Sets number of samples returned for each request.
+	 *
+	 * @param samples number of samples, should be odd, so one sample is in middle of interval
+	 */
+	public void setSamples(int samples) {
+		this.samples= samples;
+	}
+
+	/**
+	 * Declares PV, for which server responds with 404.
+	 *
+	 * @param pv the PV name
+	 */
+	public void addMissing(String pv) {
+		missing.add(pv);
+	}
+
+	/**
+	 * Declares PV, for which response is delayed for additional time.
+	 *
+	 * @param pv the PV name
+	 * @param delay additional delay in milliseconds
+	 */
+	public void addSlow(String pv, long delay) {
+		slow.put(pv, delay);
+	}
+
+	/**
+	 * Returns number of received requests.
+	 *
+	 * @return number of requests
+	 */
+	public int getRequests() {
+		return requests.get();
+	}
+
+	/**
+	 * Returns maximal number of requests handled at same time.
+	 *
+	 * @return maximal number of parallel requests
+	 */
+	public int getMaxActive() {
+		return maxActive.get();
+	}
+
+	/**
+	 * Returns number of different client connections, over which requests were received.
+	 *
+	 * @return number of connections
+	 */
+	public int getConnections() {
+		return connections.size();
+	}
+
+	/**
+	 * Resets counters.
+	 */
+	public void reset() {
+		requests.set(0);
+		maxActive.set(0);
+		connections.clear();
+	}
+
+	/**
+	 * Stops server.
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange ex) throws IOException {
+		int a= active.incrementAndGet();
+		maxActive.accumulateAndGet(a, Math::max);
+		requests.incrementAndGet();
+		connections.add(ex.getRemoteAddress().toString());
+		boolean done= false;
+		try {
+			String path= ex.getRequestURI().getPath();
+			String pv= path.substring(path.lastIndexOf('/')+1);
+			Map<String, String> q= new HashMap<String, String>();
+			for (String p : ex.getRequestURI().getQuery().split("&")) {
+				int i= p.indexOf('=');
+				q.put(p.substring(0, i), p.substring(i+1));
+			}
+
+			long d= delay+slow.getOrDefault(pv, 0L);
+			if (d>0) {
+				try {
+					Thread.sleep(d);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+
+			if (missing.contains(pv)) {
+				// request is completed before client receives response
+				done= true;
+				active.decrementAndGet();
+				ex.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			long start= Long.parseLong(q.get("start"));
+			long end= Long.parseLong(q.get("end"));
+			int n= samples;
+			double v= valueFor(pv);
+
+			StringBuilder sb= new StringBuilder(64*n);
+			sb.append('[');
+			for (int k = 0; k < n; k++) {
+				long t= n>1 ? start+(end-start)*k/(n-1) : (start+end)/2;
+				if (k>0) {
+					sb.append(',');
+				}
+				sb.append("{\"time\":");
+				sb.append(t);
+				sb.append(",\"severity\":{\"level\":\"OK\",\"hasValue\":true},\"status\":\"NO_ALARM\",\"quality\":\"Original\",\"metaData\":{\"type\":\"numeric\"},\"type\":\"double\",\"value\":[");
+				sb.append(v+(k-n/2)*0.5);
+				sb.append("]}");
+			}
+			sb.append(']');
+			byte[] body= sb.toString().getBytes(StandardCharsets.UTF_8);
+
+			String enc= ex.getRequestHeaders().getFirst("Accept-Encoding");
+			if (enc!=null && enc.contains("gzip")) {
+				ByteArrayOutputStream b= new ByteArrayOutputStream(body.length);
+				try (OutputStream os= new GZIPOutputStream(b)) {
+					os.write(body);
+				}
+				body= b.toByteArray();
+				ex.getResponseHeaders().add("Content-Encoding", "gzip");
+			}
+			done= true;
+			active.decrementAndGet();
+			ex.sendResponseHeaders(200, body.length);
+			try (OutputStream os= ex.getResponseBody()) {
+				os.write(body);
+			}
+		} finally {
+			if (!done) {
+				active.decrementAndGet();
+			}
+			ex.close();
+		}
+	}
+
+}
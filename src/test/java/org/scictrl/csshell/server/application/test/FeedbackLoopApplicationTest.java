@@ -77,6 +77,8 @@ public class FeedbackLoopApplicationTest extends AbstractConfiguredServerTest {
 		assertEquals(app.getName(), a.getName());
 		assertEquals(app, a);
 		
+		assertTrue(server.getDatabase().getActivationReport().containsKey(app.getName()));
+		
 		
 		// initial values
 		input.setValue(0.0);
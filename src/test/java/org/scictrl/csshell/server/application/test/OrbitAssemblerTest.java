@@ -0,0 +1,109 @@
+package org.scictrl.csshell.server.application.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.scictrl.csshell.epics.server.application.orbitserver.OrbitAssembler;
+import org.scictrl.csshell.epics.server.application.orbitserver.OrbitAssembler.Acquisition;
+
+/**
+ * <p>Tests pairing of X and Y readouts in {@link OrbitAssembler}.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class OrbitAssemblerTest {
+
+	/**
+	 * Constructor.
+	 */
+	public OrbitAssemblerTest() {
+	}
+
+	private static double[] v(double d) {
+		return new double[]{d, d+1};
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testPairing() {
+
+		OrbitAssembler oa= new OrbitAssembler(2, 40);
+
+		// both planes of same acquisition give one orbit
+		assertNull(oa.offerX(v(1), 1000));
+		assertTrue(oa.isPending());
+		Acquisition a= oa.offerY(v(2), 1010);
+		assertNotNull(a);
+		assertFalse(oa.isPending());
+		assertTrue(a.updateX && a.updateY);
+		assertArrayEquals(v(1), a.x, 0.0);
+		assertArrayEquals(v(2), a.y, 0.0);
+		assertEquals(1010, a.timestamp);
+
+		// Y first works same
+		assertNull(oa.offerY(v(4), 1100));
+		a= oa.offerX(v(3), 1100);
+		assertTrue(a.updateX && a.updateY);
+		assertArrayEquals(v(3), a.x, 0.0);
+		assertArrayEquals(v(4), a.y, 0.0);
+		assertEquals(2, oa.getPaired());
+
+		// X without Y is published with last Y, when next X arrives
+		assertNull(oa.offerX(v(5), 1200));
+		a= oa.offerX(v(6), 1300);
+		assertTrue(a.updateX);
+		assertFalse(a.updateY);
+		assertArrayEquals(v(5), a.x, 0.0);
+		assertArrayEquals(v(4), a.y, 0.0);
+		assertEquals(1200, a.timestamp);
+
+		// Y from different acquisition does not pair, pending X is released
+		a= oa.offerY(v(7), 1400);
+		assertTrue(a.updateX);
+		assertFalse(a.updateY);
+		assertArrayEquals(v(6), a.x, 0.0);
+		assertTrue(oa.isPending());
+
+		// pending Y is released after window expired
+		assertNull(oa.flush(System.currentTimeMillis()-1000));
+		a= oa.flush(System.currentTimeMillis()+1000);
+		assertFalse(a.updateX);
+		assertTrue(a.updateY);
+		assertArrayEquals(v(6), a.x, 0.0);
+		assertArrayEquals(v(7), a.y, 0.0);
+		assertFalse(oa.isPending());
+		assertNull(oa.flush(System.currentTimeMillis()+1000));
+		assertEquals(2, oa.getPaired());
+		assertEquals(3, oa.getSingle());
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testNoPairing() {
+
+		OrbitAssembler oa= new OrbitAssembler(2, -1);
+
+		Acquisition a= oa.offerX(v(1), 1000);
+		assertTrue(a.updateX);
+		assertFalse(a.updateY);
+		assertArrayEquals(v(1), a.x, 0.0);
+		assertArrayEquals(new double[2], a.y, 0.0);
+
+		a= oa.offerY(v(2), 1000);
+		assertFalse(a.updateX);
+		assertTrue(a.updateY);
+		assertArrayEquals(v(1), a.x, 0.0);
+		assertArrayEquals(v(2), a.y, 0.0);
+		assertFalse(oa.isPending());
+	}
+
+}
@@ -0,0 +1,124 @@
+package org.scictrl.csshell.server.application.test;
+
+import java.util.Random;
+
+import org.scictrl.csshell.epics.server.application.orbitserver.Orbit;
+import org.scictrl.csshell.epics.server.application.orbitserver.OrbitWorkspace;
+
+/**
+ * <p>Measures live orbit calculation for one acquisition, compares old calculation with new {@link Orbit}
+ * objects for raw and relative orbit and formatted statistics for each, as done before by
+ * {@link org.scictrl.csshell.epics.server.application.orbitserver.OrbitServerApplication},
+ * with {@link OrbitWorkspace}. Results of both calculations are first checked to be equal, then timed.</p>
+ *
+ * <p>Run as java application, optional arguments are number of BPMs, update rate in Hz and duration in seconds
+ * of simulated orbit feed, defaults are 200 BPMs at 10 Hz for one hour.
+ * Reported is time per update and CPU share needed at given rate.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class OrbitWorkspaceBenchmark {
+
+	/**
+	 * <p>main.</p>
+	 *
+	 * @param args args
+	 */
+	public static void main(String[] args) {
+
+		int bpms= args.length>0 ? Integer.parseInt(args[0]) : 200;
+		int rate= args.length>1 ? Integer.parseInt(args[1]) : 10;
+		int duration= args.length>2 ? Integer.parseInt(args[2]) : 3600;
+		int updates= rate*duration;
+
+		Random r= new Random(42);
+
+		double[] refx= new double[bpms];
+		double[] refy= new double[bpms];
+		for (int i = 0; i < bpms; i++) {
+			refx[i]= r.nextGaussian()*0.5;
+			refy[i]= r.nextGaussian()*0.3;
+		}
+		Orbit reference= new Orbit(refx, refy);
+
+		// BPM readouts are noise around stable orbit, feed is recycled
+		double[][] x= new double[100][bpms];
+		double[][] y= new double[100][bpms];
+		for (int k = 0; k < x.length; k++) {
+			for (int i = 0; i < bpms; i++) {
+				x[k][i]= refx[i]+0.2+r.nextGaussian()*0.001;
+				y[k][i]= refy[i]-0.1+r.nextGaussian()*0.001;
+			}
+		}
+
+		OrbitWorkspace ws= new OrbitWorkspace(bpms);
+
+		for (int k = 0; k < x.length; k++) {
+			Orbit raw= new Orbit(x[k], y[k]);
+			Orbit o= new Orbit(raw.getPosH(), raw.getPosV(), reference);
+			ws.update(x[k], y[k], reference);
+			check(raw, ws.getRaw(), raw.toStringStatFancy(), ws.getRawStatString());
+			check(o, ws.getOrbit(), o.toStringStatFancy(), ws.getOrbitStatString());
+		}
+
+		// warm up
+		long sink= 0;
+		for (int k = 0; k < 3*x.length*10; k++) {
+			sink+= legacy(x[k%x.length], y[k%x.length], reference);
+			sink+= workspace(ws, x[k%x.length], y[k%x.length], reference);
+		}
+
+		long t0= System.nanoTime();
+		for (int k = 0; k < updates; k++) {
+			sink+= legacy(x[k%x.length], y[k%x.length], reference);
+		}
+		long t1= System.nanoTime();
+		for (int k = 0; k < updates; k++) {
+			sink+= workspace(ws, x[k%x.length], y[k%x.length], reference);
+		}
+		long t2= System.nanoTime();
+
+		double period= 1.0e9/rate;
+		System.out.println(bpms+" BPMs, "+rate+" Hz, "+updates+" updates");
+		System.out.println("new orbits: "+((t1-t0)/updates)+" ns/update, "+String.format("%.4f", (t1-t0)/(double)updates/period*100.0)+" % CPU");
+		System.out.println("workspace:  "+((t2-t1)/updates)+" ns/update, "+String.format("%.4f", (t2-t1)/(double)updates/period*100.0)+" % CPU");
+		System.out.println(sink);
+	}
+
+	private static long legacy(double[] x, double[] y, Orbit reference) {
+		Orbit raw= new Orbit(x, y);
+		Orbit o= new Orbit(raw.getPosH(), raw.getPosV(), reference);
+		return raw.toStringStatFancy().length()+o.toStringStatFancy().length()+(long)o.getStdH();
+	}
+
+	private static long workspace(OrbitWorkspace ws, double[] x, double[] y, Orbit reference) {
+		ws.update(x, y, reference);
+		return ws.getRawStatString().length()+ws.getOrbitStatString().length()+(long)ws.getOrbit().getStdH();
+	}
+
+	private static void check(Orbit a, Orbit b, String sa, String sb) {
+		for (Orbit.O ori : Orbit.O.values()) {
+			double[] pa= a.getPositions(ori);
+			double[] pb= b.getPositions(ori);
+			for (int i = 0; i < pa.length; i++) {
+				if (pa[i]!=pb[i]) {
+					throw new IllegalStateException("Position "+ori+" "+i+" differs, "+pa[i]+" "+pb[i]);
+				}
+			}
+			double[] a1= a.getStatistics(ori);
+			double[] b1= b.getStatistics(ori);
+			for (int i = 0; i < a1.length; i++) {
+				if (Double.compare(a1[i], b1[i])!=0) {
+					throw new IllegalStateException("Statistics "+ori+" "+i+" differs, "+a1[i]+" "+b1[i]);
+				}
+			}
+		}
+		if (!sa.equals(sb)) {
+			throw new IllegalStateException("Statistics string differs, '"+sa+"' '"+sb+"'");
+		}
+	}
+
+	private OrbitWorkspaceBenchmark() {
+	}
+
+}
@@ -0,0 +1,90 @@
+package org.scictrl.csshell.server.application.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.scictrl.csshell.epics.server.application.orbitserver.Orbit;
+import org.scictrl.csshell.epics.server.application.orbitserver.OrbitWorkspace;
+
+/**
+ * <p>Tests {@link OrbitWorkspace} calculates same orbits and statistics as {@link Orbit}.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class OrbitWorkspaceTest {
+
+	/**
+	 * Constructor.
+	 */
+	public OrbitWorkspaceTest() {
+	}
+
+	private static void assertOrbit(Orbit expected, Orbit actual) {
+		assertArrayEquals(expected.getPosH(), actual.getPosH(), 0.0);
+		assertArrayEquals(expected.getPosV(), actual.getPosV(), 0.0);
+		assertArrayEquals(expected.getStatH(), actual.getStatH(), 0.0);
+		assertArrayEquals(expected.getStatV(), actual.getStatV(), 0.0);
+		assertEquals(expected.isRelative(), actual.isRelative());
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testUpdate() {
+
+		double[] x= {0.1, -0.4, 0.25, 1.5};
+		double[] y= {-0.2, 0.3, 0.05, -0.75};
+		Orbit ref= new Orbit(new double[]{0.1, 0.1, 0.1, 0.1}, new double[]{-0.3, 0.0, 0.3, 0.0});
+
+		OrbitWorkspace ws= new OrbitWorkspace(4);
+		ws.update(x, y, ref);
+
+		Orbit raw= new Orbit(x, y);
+		Orbit o= new Orbit(x, y, ref);
+		assertOrbit(raw, ws.getRaw());
+		assertOrbit(o, ws.getOrbit());
+		assertEquals(raw.toStringStatFancy(), ws.getRawStatString());
+		assertEquals(o.toStringStatFancy(), ws.getOrbitStatString());
+
+		// previous orbit can be used as input and stays unchanged
+		Orbit prevRaw= ws.getRaw();
+		Orbit prev= ws.getOrbit();
+		ws.update(prevRaw.getPosH(), prevRaw.getPosV(), null);
+		assertNotSame(prevRaw, ws.getRaw());
+		assertOrbit(raw, prevRaw);
+		assertOrbit(o, prev);
+		assertOrbit(raw, ws.getRaw());
+		assertArrayEquals(x, ws.getOrbit().getPosH(), 0.0);
+		assertFalse(ws.getOrbit().isRelative());
+		assertTrue(prev.isRelative());
+		assertEquals(raw.toStringStatFancy(), ws.getOrbitStatString());
+
+		// buffers are reused
+		ws.update(x, y, ref);
+		assertSame(prevRaw, ws.getRaw());
+		assertSame(prev, ws.getOrbit());
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testDiffRMS() {
+
+		Orbit a= new Orbit(new double[]{0.1, -0.4, 0.25}, new double[]{-0.2, 0.3, 0.05});
+		Orbit b= new Orbit(new double[]{0.0, 0.0, 0.0}, new double[]{0.0, 0.0, 0.0});
+		Orbit c= new Orbit(new double[]{0.1, -0.4, 0.25}, new double[]{-0.2, 0.3, 0.05});
+
+		double[] d= OrbitWorkspace.diffRMS(a, b, c);
+		assertEquals(2, d.length);
+		assertEquals(Math.sqrt((0.01+0.16+0.0625+0.04+0.09+0.0025)/6.0), d[0], 1e-12);
+		assertEquals(0.0, d[1], 0.0);
+	}
+
+}
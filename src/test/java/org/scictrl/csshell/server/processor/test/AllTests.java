@@ -19,6 +19,7 @@ import org.junit.runners.Suite.SuiteClasses;
 	ValueCheckProcessorTest.class,
 	StatusCheckAlarmProcessorTest.class,
 	SummaryAlarmProcessorTest.class,
+	SummaryAlarmProcessorParallelTest.class,
 	ForwardValueProcessorTest.class,
 	MemoryValueProcessorsTest.class
 	})
@@ -5,11 +5,23 @@ package org.scictrl.csshell.server.processor.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.junit.Test;
+import org.scictrl.csshell.Connection;
+import org.scictrl.csshell.DataType;
+import org.scictrl.csshell.epics.EPICSConnection;
 import org.scictrl.csshell.epics.server.Record;
 import org.scictrl.csshell.server.test.AbstractConfiguredServerTest;
 
+import gov.aps.jca.Monitor;
 import gov.aps.jca.dbr.Severity;
 import gov.aps.jca.dbr.Status;
 
@@ -20,11 +32,13 @@ import gov.aps.jca.dbr.Status;
  */
 public class MemoryValueProcessorsTest extends AbstractConfiguredServerTest {
 
+	private static final long TIMEOUT= 5000;
+
 	/**
 	 * <p>Constructor for MemoryValueProcessorsTest.</p>
 	 */
 	public MemoryValueProcessorsTest() {
-		pvCount+=2;
+		pvCount+=4;
 	}
 
 	/**
@@ -54,4 +68,102 @@ public class MemoryValueProcessorsTest extends AbstractConfiguredServerTest {
 
 	}
 
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testDeadband() throws Exception {
+		
+		Record recC= server.getDatabase().getRecord("A:TEST:01:ValueC");
+		
+		assertEquals(0.5, recC.getMonitorDeadband(), 0.000001);
+		assertEquals(2.0, recC.getArchiveDeadband(), 0.000001);
+		assertEquals(100L, recC.getPostInterval());
+		assertEquals(true, recC.isDeadbandApplicable());
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> c= (EPICSConnection<Double>) connector.newConnection(recC.getName(), DataType.DOUBLE);
+		final List<Double> values= listenValues(c);
+		
+		recC.setValue(new double[]{0.1});
+		assertTrue(waitFor(() -> values.contains(0.1), TIMEOUT));
+
+		// within deadband, events of one channel arrive in order, so next posted value proves it was not posted
+		recC.setValue(new double[]{0.3});
+		recC.setValue(new double[]{1.0});
+		assertTrue(waitFor(() -> values.contains(1.0), TIMEOUT));
+		assertEquals(Arrays.asList(0.1, 1.0), since(values, 0.1));
+		assertEquals(1.0, c.getValue(), 0.000001);
+		
+		// burst is coalesced to latest value
+		for (int i = 2; i < 20; i++) {
+			recC.setValue(new double[]{i});
+		}
+		assertTrue(waitFor(() -> values.contains(19.0), TIMEOUT));
+		List<Double> burst= since(values, 1.0);
+		assertTrue(burst.toString(), burst.size()<1+18);
+		assertEquals(19.0, burst.get(burst.size()-1), 0.000001);
+		assertEquals(19.0, c.getValue(), 0.000001);
+	}
+
+	/**
+	 * Test monitor deadband filters value changes for VALUE|ALARM subscriber, also when archive deadband is 0
+	 * and each change is posted as LOG event.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testMonitorDeadbandWithoutArchiveDeadband() throws Exception {
+		
+		Record recD= server.getDatabase().getRecord("A:TEST:01:ValueD");
+		
+		assertEquals(0.5, recD.getMonitorDeadband(), 0.000001);
+		assertEquals(0.0, recD.getArchiveDeadband(), 0.000001);
+		
+		// property listeners monitor with default mask, as standard clients do
+		assertEquals(Monitor.VALUE|Monitor.ALARM, connector.getDefaultMonitorMask());
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> c= (EPICSConnection<Double>) connector.newConnection(recD.getName(), DataType.DOUBLE);
+		final List<Double> values= listenValues(c);
+		
+		recD.setValue(new double[]{1.0});
+		assertTrue(waitFor(() -> values.contains(1.0), TIMEOUT));
+
+		// within monitor deadband, posted only as LOG
+		recD.setValue(new double[]{1.2});
+		recD.setValue(new double[]{1.4});
+		assertEquals(1.0, c.getValue(), 0.000001);
+
+		recD.setValue(new double[]{2.0});
+		assertTrue(waitFor(() -> values.contains(2.0), TIMEOUT));
+		assertEquals(Arrays.asList(1.0, 2.0), since(values, 1.0));
+		assertEquals(2.0, c.getValue(), 0.000001);
+	}
+
+	/**
+	 * Collects values received by value property listener, waits for initial value of connection.
+	 */
+	private List<Double> listenValues(EPICSConnection<Double> c) throws Exception {
+		final List<Double> values= new CopyOnWriteArrayList<Double>();
+		c.addPropertyChangeListener(Connection.PROPERTY_VALUE, new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				values.add(((Number)evt.getNewValue()).doubleValue());
+			}
+		});
+		assertTrue(waitFor(() -> !values.isEmpty(), TIMEOUT));
+		return values;
+	}
+
+	/**
+	 * Returns received values starting with last occurrence of provided value.
+	 */
+	private static List<Double> since(List<Double> values, double value) {
+		List<Double> l= new ArrayList<Double>(values);
+		return l.subList(l.lastIndexOf(value), l.size());
+	}
+
 }
@@ -0,0 +1,65 @@
+/**
+ * 
+ */
+package org.scictrl.csshell.server.processor.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scictrl.csshell.epics.server.Database;
+import org.scictrl.csshell.epics.server.Record;
+
+/**
+ * <p>Runs {@link SummaryAlarmProcessorTest} with parallel database activation.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class SummaryAlarmProcessorParallelTest extends SummaryAlarmProcessorTest {
+
+	/**
+	 * Constructor.
+	 */
+	public SummaryAlarmProcessorParallelTest() {
+		configFile= getConfigDir()+SummaryAlarmProcessorTest.class.getSimpleName()+".xml";
+	}
+	
+	/** {@inheritDoc} */
+	@Before
+	@Override
+	public void setUp() throws Exception {
+		System.setProperty(Database.CONFIG_ACTIVATION_PARALLEL, "true");
+		System.setProperty(Database.CONFIG_ACTIVATION_THREADS, "4");
+		super.setUp();
+	}
+	
+	/** {@inheritDoc} */
+	@After
+	@Override
+	public void tearDown() throws Exception {
+		try {
+			System.clearProperty(Database.CONFIG_ACTIVATION_PARALLEL);
+			System.clearProperty(Database.CONFIG_ACTIVATION_THREADS);
+		} finally {
+			super.tearDown();
+		}
+	}
+	
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testActivation() {
+		assertTrue(server.getDatabase().isActivationParallel());
+		
+		Iterator<Record> it= server.getDatabase().recordsIterator();
+		while (it.hasNext()) {
+			Record r= it.next();
+			assertTrue(r.getName(), r.isActivated());
+		}
+	}
+
+}
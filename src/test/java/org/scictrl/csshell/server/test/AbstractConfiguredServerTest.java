@@ -7,6 +7,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.util.function.BooleanSupplier;
+
 import org.junit.Before;
 import org.scictrl.csshell.epics.EPICSConnector;
 import org.scictrl.csshell.epics.server.ConfigurationManager;
@@ -101,6 +103,24 @@ public class AbstractConfiguredServerTest extends AbstractSimpleServerTest {
 		}
 	}
 	
+	/**
+	 * Polls condition until it is met or timeout expires.
+	 *
+	 * @param condition the condition to be met
+	 * @param timeout the timeout in milliseconds
+	 * @return <code>true</code> if condition was met before timeout
+	 */
+	protected boolean waitFor(BooleanSupplier condition, long timeout) {
+		long deadline= System.currentTimeMillis()+timeout;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis()>deadline) {
+				return false;
+			}
+			pause(10);
+		}
+		return true;
+	}
+	
 	/**
 	 * <p>getConfigDir.</p>
 	 *
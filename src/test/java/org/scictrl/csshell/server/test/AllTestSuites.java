@@ -12,6 +12,7 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({ 
 		AllTests.class, 
+		org.scictrl.csshell.test.AllTests.class,
 		org.scictrl.csshell.epics.test.AllTests.class,
 		org.scictrl.csshell.server.application.test.AllTests.class,
 		org.scictrl.csshell.server.processor.test.AllTests.class,
@@ -10,7 +10,7 @@ import org.junit.runners.Suite.SuiteClasses;
  * @author igor@scictrl.com
  */
 @RunWith(Suite.class)
-@SuiteClasses({ ConfigTest.class, ServerTest.class, SingleConnectionTest.class, PersistencyStoreTest.class})
+@SuiteClasses({ ConfigTest.class, ServerTest.class, SingleConnectionTest.class, PersistencyStoreTest.class, SummaryAggregatorTest.class})
 public class AllTests {
 
 	private AllTests() {
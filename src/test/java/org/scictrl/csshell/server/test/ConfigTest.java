@@ -3,11 +3,15 @@
  */
 package org.scictrl.csshell.server.test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -22,6 +26,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.scictrl.csshell.epics.server.ConfigurationManager;
+import org.scictrl.csshell.epics.server.ConfigurationManager.AlarmPathNode;
 import org.scictrl.csshell.epics.server.ConfigurationManager.ConfigurationVisitor;
 import org.scictrl.csshell.epics.server.Record;
 import org.w3c.dom.Document;
@@ -145,4 +150,43 @@ public class ConfigTest {
 		}
 		
 	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if fails
+	 */
+	@Test
+	public void testAlarmPathIndex() throws Exception {
+		
+		DocumentBuilderFactory dbf= DocumentBuilderFactory.newInstance();
+		Document alarmDoc = dbf.newDocumentBuilder().newDocument();
+		
+		ConfigurationVisitor cv= new ConfigurationVisitor("default", alarmDoc);
+		ConfigurationManager.loadConfig("src/test/config/server.xml", cv);
+		
+		AlarmPathNode n= cv.getAlarmPathIndex().find("Comp1","Comp2","Comp3");
+		assertNotNull(n);
+		assertEquals("Comp1,Comp2,Comp3", n.getPath());
+		assertEquals(Arrays.asList("A:TEST:Test001","A:TEST:Alarm001"), n.getPVs());
+		assertEquals(cv.getPVsForAlarmPath("Comp1,Comp2,Comp3"), n.getPVs());
+		
+		cv.addAlarmPath(new String[]{"Comp1","Comp2"}, "A:TEST:PV1");
+		cv.addAlarmPath(new String[]{"Comp1","Comp2x"}, "A:TEST:PV2");
+		cv.addAlarmPath(new String[]{"Comp1","Comp2","Comp4","Comp5"}, "A:TEST:PV3");
+		
+		assertArrayEquals(new String[]{"Comp1,Comp2","Comp1,Comp2,Comp3","Comp1,Comp2,Comp4,Comp5","Comp1,Comp2x"}, cv.getAlarmPaths());
+		
+		n= cv.getAlarmPathIndex().find("Comp1","Comp2");
+		assertEquals(Arrays.asList("A:TEST:PV1"), n.collectPVs(new ArrayList<String>(), false));
+		assertEquals(Arrays.asList("A:TEST:PV1","A:TEST:Test001","A:TEST:Alarm001","A:TEST:PV3"), n.collectPVs(new ArrayList<String>(), true));
+		assertEquals(5, cv.getAlarmPathIndex().getChild("Comp1").collectPVs(new ArrayList<String>(), true).size());
+		
+		// intermediate node without own PVs
+		n= cv.getAlarmPathIndex().find("Comp1","Comp2","Comp4");
+		assertEquals(0, n.getPVs().size());
+		assertEquals(1, n.collectPVs(new ArrayList<String>(), true).size());
+		
+		assertNull(cv.getAlarmPathIndex().find("Comp1","Comp3"));
+	}
 }
@@ -0,0 +1,91 @@
+package org.scictrl.csshell.server.test;
+
+import java.beans.PropertyChangeEvent;
+import java.lang.management.ManagementFactory;
+
+import org.scictrl.csshell.epics.server.ProcessVariable4Record;
+import org.scictrl.csshell.epics.server.Record;
+import org.scictrl.csshell.epics.server.processor.MemoryValueProcessor;
+
+import com.cosylab.epics.caj.cas.handlers.AbstractCASResponseHandler;
+
+import gov.aps.jca.cas.ProcessVariableEventCallback;
+import gov.aps.jca.dbr.DBR;
+import gov.aps.jca.dbr.DBRType;
+
+/**
+ * <p>Measures allocation and time per monitor post for large waveform records,
+ * compares old allocate-and-copy path with current posting from {@link ProcessVariable4Record}.</p>
+ *
+ * <p>Run as java application, optional arguments are waveform size and number of posts.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class MonitorPostBenchmark {
+
+	/**
+	 * <p>main.</p>
+	 *
+	 * @param args args
+	 */
+	public static void main(String[] args) {
+
+		int size= args.length>0 ? Integer.parseInt(args[0]) : 16384;
+		int posts= args.length>1 ? Integer.parseInt(args[1]) : 10000;
+
+		Record r= MemoryValueProcessor.newProcessor("A:TEST:Benchmark:01", DBRType.DOUBLE, size, "Benchmark", new double[size], false, false).getRecord();
+
+		final long[] sink= new long[1];
+		ProcessVariableEventCallback cb= new ProcessVariableEventCallback() {
+			@Override
+			public void postEvent(int select, DBR event) {
+				sink[0]+=event.getCount();
+			}
+			@Override
+			public void canceled() {
+			}
+		};
+
+		ProcessVariable4Record pv= new ProcessVariable4Record(r, cb);
+		pv.interestRegister();
+		PropertyChangeEvent evt= new PropertyChangeEvent(r, Record.PROPERTY_VALUE, null, null);
+
+		// warm up
+		for (int i = 0; i < posts; i++) {
+			legacyPost(pv, r, cb);
+			pv.propertyChange(evt);
+		}
+
+		com.sun.management.ThreadMXBean mx= (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long id= Thread.currentThread().getId();
+
+		long b0= mx.getThreadAllocatedBytes(id);
+		long t0= System.nanoTime();
+		for (int i = 0; i < posts; i++) {
+			legacyPost(pv, r, cb);
+		}
+		long t1= System.nanoTime();
+		long b1= mx.getThreadAllocatedBytes(id);
+		for (int i = 0; i < posts; i++) {
+			pv.propertyChange(evt);
+		}
+		long t2= System.nanoTime();
+		long b2= mx.getThreadAllocatedBytes(id);
+
+		System.out.println("Waveform "+size+" elements, "+posts+" posts");
+		System.out.println("allocate and copy: "+((b1-b0)/posts)+" bytes/post, "+((t1-t0)/posts)+" ns/post");
+		System.out.println("current:           "+((b2-b1)/posts)+" bytes/post, "+((t2-t1)/posts)+" ns/post");
+		System.out.println(sink[0]);
+	}
+
+	private static void legacyPost(ProcessVariable4Record pv, Record r, ProcessVariableEventCallback cb) {
+		DBR dbr= AbstractCASResponseHandler.createDBRforReading(pv);
+		Object val= r.getValue();
+		System.arraycopy(val, 0, dbr.getValue(), 0, dbr.getCount());
+		cb.postEvent(0, dbr);
+	}
+
+	private MonitorPostBenchmark() {
+	}
+
+}
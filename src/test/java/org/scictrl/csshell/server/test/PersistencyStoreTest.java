@@ -4,10 +4,14 @@
 package org.scictrl.csshell.server.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 import org.apache.commons.configuration.ConfigurationException;
 import org.apache.commons.configuration.HierarchicalConfiguration;
@@ -195,4 +199,248 @@ public class PersistencyStoreTest {
 			fail(e.toString());
 		}
 	}
+	
+	private static Record[] newRecords() {
+		Record[] recs= {
+				new Record("TEST:02:D", DBRType.DOUBLE, 1),
+				new Record("TEST:02:Dd", DBRType.DOUBLE, 10),
+				new Record("TEST:02:S", DBRType.STRING, 1),
+				new Record("TEST:02:C", DBRType.BYTE, 16),
+				new Record("TEST:02:I", DBRType.INT, 4)};
+		
+		for (Record r : recs) {
+			r.setProcessor(new MemoryValueProcessor());
+			r.getProcessor().configure(r, new HierarchicalConfiguration());
+		}
+		return recs;
+	}
+	
+	private static void setValues(Record[] recs) {
+		recs[0].setValue(1.2345678);
+		recs[1].setValue(new double[]{0.1,1.1,2.1,3.1,4.1,5.1,6.1,7.1,8.1,9.1});
+		recs[2].setValue("A>B/C:D,E;F");
+		recs[3].setValue("A>B/C:D,E;F");
+		recs[4].setValue(new int[]{1,-2,3,Integer.MAX_VALUE});
+	}
+	
+	private static void checkValues(Record[] recs) {
+		assertEquals(1.2345678, recs[0].getValueAsDouble(), 0.0);
+		testEquals(new double[]{0.1,1.1,2.1,3.1,4.1,5.1,6.1,7.1,8.1,9.1}, (double[])recs[1].getValue());
+		assertEquals("A>B/C:D,E;F", recs[2].getValueAsString());
+		assertEquals("A>B/C:D,E;F", recs[3].getValueAsString());
+		Assert.assertArrayEquals(new int[]{1,-2,3,Integer.MAX_VALUE}, (int[])recs[4].getValue());
+	}
+
+	/**
+	 * Test of journal backend: store, restore, recovery from incomplete write and compaction.
+	 */
+	@Test
+	public void testJournal() {
+		
+		File file= new File("./src/test/config/AppServer/persistancyJournal.journal");
+		
+		if (file.exists()) {
+			file.delete();
+		}
+		
+		try {
+			PersistencyStore store= new PersistencyStore(file, null);
+			assertTrue(store.isJournal());
+			
+			Record[] recs= newRecords();
+			for (Record r : recs) {
+				store.registerValue(r);
+			}
+			setValues(recs);
+			store.saveAll();
+			
+			int entries= store.getJournal().getEntries();
+			
+			// unchanged values are not appended again
+			store.saveAll();
+			assertEquals(entries, store.getJournal().getEntries());
+			store.close();
+			
+			// simulates crash during write of last entry
+			long length= file.length();
+			try (FileOutputStream out= new FileOutputStream(file, true)) {
+				out.write(new byte[]{0,0,0,100,1,2,3});
+			}
+			
+			store= new PersistencyStore(file, null);
+			assertEquals(7, store.getJournal().getRecoveredBytes());
+			assertEquals(length, file.length());
+			
+			recs= newRecords();
+			for (Record r : recs) {
+				store.registerValue(r);
+			}
+			checkValues(recs);
+			
+			entries= store.getJournal().getEntries();
+			for (int i = 0; i < 10; i++) {
+				recs[0].setValue(i);
+				store.saveAll();
+			}
+			assertEquals(entries+10, store.getJournal().getEntries());
+
+			store.getJournal().compact();
+			assertEquals(recs.length, store.getJournal().getEntries());
+			assertEquals(1, store.getJournal().getCompactions());
+			store.close();
+			
+			store= new PersistencyStore(file, null);
+			recs= newRecords();
+			for (Record r : recs) {
+				store.registerValue(r);
+			}
+			assertEquals(9.0, recs[0].getValueAsDouble(), 0.0);
+			store.close();
+			
+		} catch (ConfigurationException | IOException e) {
+			e.printStackTrace();
+			fail(e.toString());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test of migration from XML store to journal.
+	 */
+	@Test
+	public void testJournalMigration() {
+		
+		File xml= new File("./src/test/config/AppServer/persistancyMigration.xml");
+		File file= new File("./src/test/config/AppServer/persistancyMigration.journal");
+		
+		xml.delete();
+		file.delete();
+		
+		try {
+			PersistencyStore store= new PersistencyStore(xml, null);
+			assertFalse(store.isJournal());
+			
+			Record[] recs= newRecords();
+			setValues(recs);
+			for (Record r : recs) {
+				store.registerValue(r);
+			}
+			store.saveAll();
+			
+			store= new PersistencyStore(file, null);
+			assertTrue(store.isJournal());
+			assertEquals(recs.length, store.getJournal().size());
+
+			recs= newRecords();
+			for (Record r : recs) {
+				store.registerValue(r);
+			}
+			checkValues(recs);
+			
+			// migrated string values are replaced with typed values
+			store.saveAll();
+			assertTrue(store.getJournal().get("TEST:02:Dd::value") instanceof double[]);
+			store.close();
+			
+		} catch (ConfigurationException | IOException e) {
+			e.printStackTrace();
+			fail(e.toString());
+		} finally {
+			xml.delete();
+			file.delete();
+		}
+	}
+
+	private static void waitFlushed(PersistencyStore store, long flushCount) throws InterruptedException {
+		long t= System.currentTimeMillis()+5000;
+		while ((store.getDirtyCount()>0 || store.getFlushCount()<flushCount) && System.currentTimeMillis()<t) {
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Test of write-behind: changes are coalesced and written after flush latency or when flush batch is reached.
+	 */
+	@Test
+	public void testWriteBehind() {
+		
+		File file= new File("./src/test/config/AppServer/persistancyWriteBehind.journal");
+		
+		if (file.exists()) {
+			file.delete();
+		}
+		
+		try {
+			PersistencyStore store= new PersistencyStore(file, null);
+			store.setFlushLatency(200);
+			store.setFlushBatch(1000);
+			
+			Record[] recs= newRecords();
+			for (Record r : recs) {
+				store.registerValue(r);
+			}
+			
+			for (int i = 1; i <= 100; i++) {
+				recs[0].setValue(i);
+			}
+			assertEquals(1, store.getDirtyCount());
+			assertEquals(0, store.getFlushCount());
+			
+			waitFlushed(store, 1);
+			assertEquals(0, store.getDirtyCount());
+			assertEquals(1, store.getFlushCount());
+			assertEquals(1, store.getLastFlushSize());
+			assertTrue(store.getLastFlushDuration()>0.0);
+			assertEquals(100.0, ((double[])store.getJournal().get("TEST:02:D::value"))[0], 0.0);
+			
+			// batch size reached, written without waiting for latency
+			store.setFlushLatency(60000);
+			store.setFlushBatch(3);
+			
+			recs[0].setValue(1.0);
+			recs[1].setValue(new double[]{1.0});
+			assertEquals(2, store.getDirtyCount());
+			recs[4].setValue(new int[]{4,3,2,1});
+			
+			waitFlushed(store, 2);
+			assertEquals(0, store.getDirtyCount());
+			assertEquals(2, store.getFlushCount());
+			assertEquals(3, store.getStoreCount()-1);
+			Assert.assertArrayEquals(new int[]{4,3,2,1}, (int[])store.getJournal().get("TEST:02:I::value"));
+			
+			// restore writes pending changes, later changes are still written after latency
+			store.setFlushLatency(100);
+			store.setFlushBatch(1000);
+			long flushes= store.getFlushCount();
+			recs[0].setValue(7.0);
+			assertEquals(1, store.getDirtyCount());
+			
+			Record[] recs2= newRecords();
+			store.registerValue(recs2[0]);
+			assertEquals(0, store.getDirtyCount());
+			assertEquals(flushes+1, store.getFlushCount());
+			assertEquals(7.0, recs2[0].getValueAsDouble(), 0.0);
+			
+			recs[0].setValue(8.0);
+			waitFlushed(store, flushes+2);
+			assertEquals(0, store.getDirtyCount());
+			assertEquals(8.0, ((double[])store.getJournal().get("TEST:02:D::value"))[0], 0.0);
+			
+			// close stops writer and closes journal file
+			store.close();
+			try {
+				store.getJournal().put("TEST:02:D::value", new double[]{9.0});
+				fail("Journal is not closed.");
+			} catch (IOException e) {
+				// expected
+			}
+			
+		} catch (ConfigurationException | IOException | InterruptedException e) {
+			e.printStackTrace();
+			fail(e.toString());
+		} finally {
+			file.delete();
+		}
+	}
 }
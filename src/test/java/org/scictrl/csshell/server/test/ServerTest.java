@@ -1,11 +1,25 @@
 package org.scictrl.csshell.server.test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.logging.log4j.core.config.Configurator;
 import org.apache.logging.log4j.core.config.DefaultConfiguration;
@@ -16,17 +30,28 @@ import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runners.MethodSorters;
+import org.scictrl.csshell.AbstractConnector;
 import org.scictrl.csshell.Connection;
 import org.scictrl.csshell.ConnectorUtilities;
 import org.scictrl.csshell.DataType;
 import org.scictrl.csshell.Poop;
+import org.scictrl.csshell.RemoteException;
+import org.scictrl.csshell.epics.DBRListener;
 import org.scictrl.csshell.epics.EPICSConnection;
+import org.scictrl.csshell.epics.EPICSConnectionLease;
 import org.scictrl.csshell.epics.EPICSConnector;
+import org.scictrl.csshell.epics.StripedEventDispatcher;
 import org.scictrl.csshell.epics.server.ConfigurationManager;
+import org.scictrl.csshell.epics.server.PeriodicTask;
 import org.scictrl.csshell.epics.server.Record;
 import org.scictrl.csshell.epics.server.Server;
+import org.scictrl.csshell.epics.server.ValueLinks;
+import org.scictrl.csshell.epics.server.processor.MemoryValueProcessor;
 
+import gov.aps.jca.Monitor;
+import gov.aps.jca.cas.ProcessVariableExistanceCompletion;
 import gov.aps.jca.dbr.DBR;
+import gov.aps.jca.dbr.DBRType;
 import gov.aps.jca.dbr.STS;
 import gov.aps.jca.dbr.Severity;
 import gov.aps.jca.dbr.Status;
@@ -301,7 +326,13 @@ public class ServerTest {
 		
 		assertEquals(d3.doubleValue(), d5.doubleValue(),0.0001);
 
+		// monitor update is dispatched asynchronously, may arrive after get
 		Poop<?, ?> p2= ec1.getLastPoop();
+		long t= System.currentTimeMillis();
+		while (p1==p2 && System.currentTimeMillis()-t<1000) {
+			Thread.sleep(10);
+			p2= ec1.getLastPoop();
+		}
 		
 		assertEquals(false, p1==p2);
 		assertEquals(d3.doubleValue(), ((Number)p2.getValue()).doubleValue(),0.0001);
@@ -345,4 +376,602 @@ public class ServerTest {
 		assertEquals(Severity.INVALID_ALARM, ((STS)p2.getVector()).getSeverity());
 		assertEquals(Status.LINK_ALARM, ((STS)p2.getVector()).getStatus());
 	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testAsync() throws Exception {
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec= (EPICSConnection<Double>) connector.newConnection(pvs[1], DataType.DOUBLE);
+		
+		ec.whenConnected().get(1000, TimeUnit.MILLISECONDS);
+		assertTrue(ec.isConnected());
+		
+		Poop<Double, DBR> p= ec.putCallbackAsync(3.0).get();
+		assertEquals(3.0, p.getValue(), 0.0001);
+		
+		p= ec.getAsync().get();
+		assertEquals(3.0, p.getValue(), 0.0001);
+		assertNotNull(p.getMetaData());
+		
+		ec.putAsync(4.0).get();
+		assertEquals(4.0, ec.getValue(), 0.0001);
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> missing= (EPICSConnection<Double>) connector.newConnection("A:TEST:Missing:02", DataType.DOUBLE);
+		try {
+			missing.getAsync().get();
+			fail("Get from missing channel must fail.");
+		} catch (ExecutionException e) {
+			assertNotNull(e.getCause());
+		}
+		
+		ec.destroy();
+		missing.destroy();
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testConnectionPool() throws Exception {
+		
+		Properties p1= new Properties();
+		p1.setProperty(ConnectorUtilities.CONNECTION_TIMEOUT, "1000");
+		p1.setProperty(AbstractConnector.PROPERTY_POOL_IDLE_TIMEOUT, "200");
+		p1.setProperty(AbstractConnector.PROPERTY_POOL_MAX_SIZE, "2");
+		connector.shutdown();
+		connector= EPICSConnector.newInstance(p1);
+		
+		@SuppressWarnings("unchecked")
+		AbstractConnector<EPICSConnection<?>>.DefaultConnectionCache pool= (AbstractConnector<EPICSConnection<?>>.DefaultConnectionCache) connector.getConnectionCache();
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec1= (EPICSConnection<Double>) connector.newConnection(pvs[0], DataType.DOUBLE);
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec2= (EPICSConnection<Double>) connector.newConnection(pvs[0], DataType.DOUBLE);
+		
+		// each holder has own handle of same pooled connection
+		assertNotSame(ec1, ec2);
+		assertSame(ec1.getChannel(), ec2.getChannel());
+		EPICSConnection<?> shared= ((EPICSConnectionLease<?>)ec1).getShared();
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getMisses());
+		assertEquals(1, pool.size());
+		
+		// one user releasing shared connection does not close it for others
+		ec1.destroy();
+		assertTrue(ec1.isDestroyed());
+		assertFalse(ec2.isDestroyed());
+		ec2.setValue(5.0);
+		assertEquals(5.0, ec2.getValue(), 0.0001);
+		assertEquals(0, pool.getIdleCount());
+		
+		// pool is full, third connection is not pooled and is closed as soon as released
+		EPICSConnection<?> ec3= connector.newConnection(pvs[1], DataType.DOUBLE);
+		EPICSConnection<?> ec4= connector.newConnection(pvs[3], DataType.LONG);
+		assertEquals(2, pool.size());
+		assertEquals(1, pool.getRejections());
+		ec4.destroy();
+		assertTrue(((EPICSConnectionLease<?>)ec4).getShared().isDestroyed());
+		ec3.destroy();
+		
+		// released connection is idle and reused
+		ec2.destroy();
+		assertFalse(shared.isDestroyed());
+		assertEquals(2, pool.getIdleCount());
+		
+		EPICSConnection<?> ec5= connector.newConnection(pvs[0], DataType.DOUBLE);
+		assertSame(shared, ((EPICSConnectionLease<?>)ec5).getShared());
+		assertEquals(2, pool.getHits());
+		ec5.destroy();
+		
+		// idle connections are evicted and closed after idle timeout
+		long t= System.currentTimeMillis();
+		while (pool.size()>0 && System.currentTimeMillis()-t<5000) {
+			Thread.sleep(10);
+		}
+		
+		assertTrue(shared.isDestroyed());
+		assertEquals(0, pool.size());
+		assertEquals(2, pool.getEvictions());
+		try {
+			shared.whenConnected().get();
+			fail("Closed connection must fail.");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RemoteException);
+		}
+	}
+
+	/**
+	 * Test of shared connection released twice by one holder.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testConnectionPoolDoubleDestroy() throws Exception {
+		
+		Properties p1= new Properties();
+		p1.setProperty(ConnectorUtilities.CONNECTION_TIMEOUT, "1000");
+		p1.setProperty(AbstractConnector.PROPERTY_POOL_IDLE_TIMEOUT, "0");
+		connector.shutdown();
+		connector= EPICSConnector.newInstance(p1);
+		
+		@SuppressWarnings("unchecked")
+		AbstractConnector<EPICSConnection<?>>.DefaultConnectionCache pool= (AbstractConnector<EPICSConnection<?>>.DefaultConnectionCache) connector.getConnectionCache();
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec1= (EPICSConnection<Double>) connector.newConnection(pvs[0], DataType.DOUBLE);
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec2= (EPICSConnection<Double>) connector.newConnection(pvs[0], DataType.DOUBLE);
+		EPICSConnection<?> shared= ((EPICSConnectionLease<?>)ec2).getShared();
+		
+		// second release by same holder has no effect, connection is not evicted under other holder
+		ec1.destroy();
+		ec1.destroy();
+		assertEquals(0, pool.getIdleCount());
+		assertEquals(0, pool.getOverReleases());
+		assertEquals(0, pool.getEvictions());
+		
+		assertFalse(ec2.isDestroyed());
+		ec2.setValue(3.0);
+		assertEquals(3.0, ec2.getValue(), 0.0001);
+		assertTrue(ec2.isConnected());
+		
+		// last release closes connection immediately with idle timeout 0
+		ec2.destroy();
+		ec2.destroy();
+		assertTrue(shared.isDestroyed());
+		assertEquals(0, pool.size());
+		assertEquals(1, pool.getEvictions());
+		assertEquals(0, pool.getOverReleases());
+	}
+
+	/**
+	 * Test of concurrent lookups of same connection.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testConnectionPoolConcurrent() throws Exception {
+		
+		@SuppressWarnings("unchecked")
+		AbstractConnector<EPICSConnection<?>>.DefaultConnectionCache pool= (AbstractConnector<EPICSConnection<?>>.DefaultConnectionCache) connector.getConnectionCache();
+		
+		final EPICSConnection<?>[] ec= new EPICSConnection<?>[8];
+		final CountDownLatch start= new CountDownLatch(1);
+		Thread[] threads= new Thread[ec.length];
+		for (int i = 0; i < threads.length; i++) {
+			final int k= i;
+			threads[i]= new Thread() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						ec[k]= connector.newConnection(pvs[1], DataType.DOUBLE);
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			};
+			threads[i].start();
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		
+		// only one channel is created and pooled
+		assertEquals(1, pool.size());
+		for (int i = 0; i < ec.length; i++) {
+			assertNotNull(ec[i]);
+			assertSame(ec[0].getChannel(), ec[i].getChannel());
+		}
+		for (int i = 0; i < ec.length; i++) {
+			ec[i].destroy();
+		}
+		assertEquals(1, pool.getIdleCount());
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testDBRListener() throws Exception {
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec= (EPICSConnection<Double>) connector.newConnection(pvs[1], DataType.DOUBLE);
+		ec.whenConnected().get(1000, TimeUnit.MILLISECONDS);
+		
+		final AtomicInteger count= new AtomicInteger();
+		final DBR[] last= new DBR[1];
+		DBRListener<Double> l= new DBRListener<Double>() {
+			@Override
+			public void dbrChanged(EPICSConnection<Double> connection, DBR dbr) {
+				last[0]=dbr;
+				count.incrementAndGet();
+			}
+		};
+		
+		ec.addDBRListener(l);
+		assertTrue(ec.hasMonitor());
+		
+		ec.setValue(7.0);
+		
+		long t= System.currentTimeMillis();
+		while ((last[0]==null || ((double[])last[0].getValue())[0]!=7.0) && System.currentTimeMillis()-t<1000) {
+			Thread.sleep(10);
+		}
+		assertNotNull(last[0]);
+		assertEquals(7.0, ((double[])last[0].getValue())[0], 0.0001);
+		assertTrue(last[0].isTIME());
+		
+		// poop is created from last DBR on request and then reused
+		Poop<Double, DBR> p= ec.getLastPoop();
+		assertSame(last[0], p.getVector());
+		assertEquals(7.0, p.getValue(), 0.0001);
+		assertSame(p, ec.getLastPoop());
+		
+		ec.removeDBRListener(l);
+		assertFalse(ec.hasMonitor());
+		assertTrue(count.get()>0);
+		
+		ec.destroy();
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testMonitorOptions() throws Exception {
+		
+		Map<String,Object> param= ValueLinks.parseLinkOptions("A:TEST:Wave:01 mask=VALUE|ALARM count=5 type=FLOAT");
+		assertEquals(Monitor.VALUE|Monitor.ALARM, param.get(EPICSConnector.PARAMETER_MONITOR_MASK));
+		assertEquals(5, param.get(EPICSConnector.PARAMETER_MONITOR_COUNT));
+		assertEquals(DBRType.FLOAT, param.get(EPICSConnector.PARAMETER_MONITOR_TYPE));
+		assertNull(ValueLinks.parseLinkOptions(" A:TEST:Wave:01 "));
+		// name and options are separated by any whitespace
+		param= ValueLinks.parseLinkOptions("A:TEST:Wave:01\tmask=VALUE \t count=5");
+		assertEquals(Monitor.VALUE, param.get(EPICSConnector.PARAMETER_MONITOR_MASK));
+		assertEquals(5, param.get(EPICSConnector.PARAMETER_MONITOR_COUNT));
+		try {
+			ValueLinks.parseLinkOptions("A:TEST:Wave:01 size=5");
+			fail("Unknown option must fail.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		
+		double[] wave= new double[100];
+		for (int i = 0; i < wave.length; i++) {
+			wave[i]=i;
+		}
+		server.getDatabase().addRecord(MemoryValueProcessor.newProcessor("A:TEST:Wave:01", DBRType.DOUBLE, wave.length, "Waveform", wave, false, false).getRecord());
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<double[]> ec= (EPICSConnection<double[]>) connector.newConnection("A:TEST:Wave:01", DataType.DOUBLES);
+		
+		final DBR[] last= new DBR[1];
+		DBRListener<double[]> l= new DBRListener<double[]>() {
+			@Override
+			public void dbrChanged(EPICSConnection<double[]> connection, DBR dbr) {
+				last[0]=dbr;
+			}
+		};
+		ec.addDBRListener(l, param);
+		
+		long t= System.currentTimeMillis();
+		while (last[0]==null && System.currentTimeMillis()-t<1000) {
+			Thread.sleep(10);
+		}
+		
+		// only requested part of waveform is transferred in requested type
+		assertNotNull(last[0]);
+		assertTrue(last[0].isFLOAT());
+		assertTrue(last[0].isTIME());
+		assertEquals(5, last[0].getCount());
+		assertEquals(4.0f, ((float[])last[0].getValue())[4], 0.0001);
+		
+		// filtered updates do not replace last value of connection and do not need shared monitor
+		assertFalse(ec.hasMonitor());
+		assertNull(ec.getLastDBR());
+		
+		ec.removeDBRListener(l);
+		ec.destroy();
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testEventDispatcher() throws Exception {
+		
+		assertTrue(connector.getEventDispatcher() instanceof StripedEventDispatcher);
+		StripedEventDispatcher ed= (StripedEventDispatcher)connector.getEventDispatcher();
+		
+		@SuppressWarnings("unchecked")
+		EPICSConnection<Double> ec= (EPICSConnection<Double>) connector.newConnection(pvs[1], DataType.DOUBLE);
+		ec.whenConnected().get(1000, TimeUnit.MILLISECONDS);
+		
+		final List<Double> values= new CopyOnWriteArrayList<Double>();
+		DBRListener<Double> l= new DBRListener<Double>() {
+			@Override
+			public void dbrChanged(EPICSConnection<Double> connection, DBR dbr) {
+				values.add(((double[])dbr.getValue())[0]);
+			}
+		};
+		ec.addDBRListener(l);
+		
+		for (int i = 1; i <= 20; i++) {
+			ec.putAsync(100.0+i);
+		}
+		ec.putAsync(200.0).get(1000, TimeUnit.MILLISECONDS);
+		
+		long t= System.currentTimeMillis();
+		while ((values.isEmpty() || values.get(values.size()-1)!=200.0) && System.currentTimeMillis()-t<1000) {
+			Thread.sleep(10);
+		}
+		
+		// updates of single channel are delivered in order
+		assertEquals(200.0, values.get(values.size()-1), 0.0001);
+		double prev= Double.NEGATIVE_INFINITY;
+		for (Double d : values) {
+			if (d>100.0) {
+				assertTrue(d>=prev);
+				prev=d;
+			}
+		}
+		
+		assertTrue(ed.getDispatched()>0);
+		assertEquals(0, ed.getBlocked());
+		assertTrue(ed.getMaxLatency()>=ed.getAverageLatency());
+		
+		ec.removeDBRListener(l);
+		ec.destroy();
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testValueLinksConcurrent() throws Exception {
+		
+		final Record[] records= new Record[40];
+		String[] names= new String[records.length];
+		for (int i = 0; i < records.length; i++) {
+			names[i]= "A:TEST:Link:"+i;
+			records[i]= MemoryValueProcessor.newProcessor(names[i], DBRType.DOUBLE, 1, "Link", new double[]{0.0}, false, false).getRecord();
+			server.getDatabase().addRecord(records[i]);
+		}
+		
+		final AtomicInteger updates= new AtomicInteger();
+		ValueLinks vl= new ValueLinks("A:TEST:Links", names, new PropertyChangeListener() {
+			@Override
+			public void propertyChange(PropertyChangeEvent evt) {
+				updates.incrementAndGet();
+			}
+		}, Record.PROPERTY_VALUE);
+		vl.activate(server.getDatabase());
+		
+		assertTrue(vl.isReady());
+		assertEquals(Severity.NO_ALARM, vl.getLastSeverity());
+		vl.consume();
+		assertTrue(vl.isConsumed());
+		
+		final int writes= 500;
+		Thread[] threads= new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int offset= t;
+			threads[t]= new Thread() {
+				@Override
+				public void run() {
+					for (int k = 1; k <= writes; k++) {
+						for (int i = offset; i < records.length; i+=threads.length) {
+							records[i].setValue(new double[]{k});
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		boolean alive= true;
+		while (alive) {
+			vl.consume();
+			vl.getLastSeverity();
+			alive= false;
+			for (Thread t : threads) {
+				alive|= t.isAlive();
+			}
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		
+		// last consume may have seen all stores, one more store after writers are done
+		records[0].setValue(new double[]{writes+1});
+		
+		assertFalse(vl.isConsumed());
+		double[] d= vl.consumeAsDoubles();
+		assertTrue(vl.isConsumed());
+		assertEquals(writes+1, d[0], 0.0);
+		for (int i = 1; i < d.length; i++) {
+			assertEquals(writes, d[i], 0.0);
+		}
+		
+		long t= System.currentTimeMillis();
+		while (updates.get()==0 && System.currentTimeMillis()-t<1000) {
+			Thread.sleep(10);
+		}
+		// notifications are coalesced
+		assertTrue(updates.get()>0);
+		assertTrue(updates.get()<writes*records.length);
+		
+		vl.resetConsumedFlag();
+		assertFalse(vl.isConsumed());
+		vl.deactivate();
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testGetMany() throws Exception {
+		
+		String[] names= {pvs[0], pvs[1], "A:TEST:Missing:01", null, pvs[3]};
+		
+		// default test timeout is too short for batch search of several channels
+		Properties p1= new Properties();
+		p1.setProperty(ConnectorUtilities.CONNECTION_TIMEOUT, "1000");
+		connector.shutdown();
+		connector= EPICSConnector.newInstance(p1);
+		
+		DBR[] dbr= connector.getMany(names, DBRType.DOUBLE);
+		
+		assertEquals(names.length, dbr.length);
+		assertNotNull(dbr[0]);
+		assertNotNull(dbr[1]);
+		assertNull(dbr[2]);
+		assertNull(dbr[3]);
+		assertNotNull(dbr[4]);
+		assertEquals(0.0, ((double[])dbr[0].getValue())[0], 0.0001);
+		
+		Poop<?, DBR>[] p= connector.getOneShot(new String[]{pvs[0], pvs[3]});
+		
+		assertEquals(2, p.length);
+		assertEquals(Double.class, p[0].getValue().getClass());
+		assertEquals(Long.class, p[1].getValue().getClass());
+		
+		Object[] v= server.getDatabase().getValues(new String[]{pvs[1], "A:TEST:Missing:01"});
+		assertEquals(0.0, ((double[])v[0])[0], 0.0001);
+		assertNull(v[1]);
+	}
+
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testSearchCache() throws Exception {
+		
+		InetSocketAddress a= new InetSocketAddress("localhost", 5064);
+		String name= "A:TEST:Search:01";
+		
+		assertEquals(ProcessVariableExistanceCompletion.EXISTS_HERE, server.processVariableExistanceTest(pvs[0], a, null));
+		assertEquals(ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE, server.processVariableExistanceTest(pvs[0]+".DESC", a, null));
+		
+		// miss is remembered
+		assertEquals(ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE, server.processVariableExistanceTest(name, a, null));
+		assertEquals(ProcessVariableExistanceCompletion.DOES_NOT_EXIST_HERE, server.processVariableExistanceTest(name, a, null));
+		
+		// adding record while active must invalidate remembered misses
+		server.getDatabase().addRecord(MemoryValueProcessor.newDoubleProcessor(name, "Search", 1.0, false).getRecord());
+
+		assertEquals(ProcessVariableExistanceCompletion.EXISTS_HERE, server.processVariableExistanceTest(name, a, null));
+		
+		Poop<?, DBR> p= connector.getOneShot(name);
+		assertNotNull(p);
+		assertEquals(1.0, ((Number)p.getValue()).doubleValue(),0.0001);
+	}
+	
+	/**
+	 * Test.
+	 *
+	 * @throws java.lang.Exception if any.
+	 */
+	@Test
+	public void testScheduler() throws Exception {
+		
+		final AtomicInteger fast= new AtomicInteger();
+		final AtomicInteger slow= new AtomicInteger();
+		
+		PeriodicTask rate= server.getDatabase().scheduleAtFixedRate("Fast", new Runnable() {
+			@Override
+			public void run() {
+				fast.incrementAndGet();
+			}
+		}, 10, 20);
+		
+		PeriodicTask delay= server.getDatabase().scheduleWithFixedDelay("Slow", new Runnable() {
+			@Override
+			public void run() {
+				slow.incrementAndGet();
+				try {
+					Thread.sleep(60);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}, 10, 20);
+		
+		PeriodicTask overrun= server.getDatabase().scheduleAtFixedRate("Overrun", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(60);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}, 10, 20);
+		
+		Thread.sleep(1000);
+		
+		rate.cancel();
+		delay.cancel();
+		overrun.cancel();
+		
+		assertTrue(rate.isFixedRate());
+		assertFalse(delay.isFixedRate());
+		
+		// 1 s with 20 ms period is 50 executions, without drift
+		assertTrue("fast "+fast.get(), fast.get()>=40 && fast.get()<=51);
+		assertEquals(fast.get(), rate.getExecutions());
+		assertEquals(0, rate.getOverruns());
+		
+		// 60 ms execution + 20 ms delay gives at most 13 executions
+		assertTrue("slow "+slow.get(), slow.get()>=8 && slow.get()<=13);
+		assertEquals(0, delay.getOverruns());
+		
+		assertTrue(overrun.getOverruns()>0);
+		assertTrue(overrun.getMaxDuration()>=50.0);
+		
+		int c= fast.get();
+		Thread.sleep(100);
+		assertEquals(c, fast.get());
+		
+		assertFalse(server.getDatabase().getPeriodicTasks().contains(rate));
+		
+		// tasks scheduled after shutdown are not started
+		server.getDatabase().deactivate();
+		PeriodicTask late= server.getDatabase().scheduleAtFixedRate("Late", new Runnable() {
+			@Override
+			public void run() {
+				fast.incrementAndGet();
+			}
+		}, 10, 20);
+		assertTrue(late.isCanceled());
+		assertFalse(server.getDatabase().getPeriodicTasks().contains(late));
+		server.getDatabase().schedule(new Runnable() {
+			@Override
+			public void run() {
+				fast.incrementAndGet();
+			}
+		}, 10);
+	}
 }
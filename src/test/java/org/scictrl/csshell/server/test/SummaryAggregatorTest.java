@@ -0,0 +1,135 @@
+package org.scictrl.csshell.server.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.scictrl.csshell.epics.server.SummaryAggregator;
+import org.scictrl.csshell.epics.server.ValueLinks.ValueHolder;
+
+import gov.aps.jca.dbr.DBRType;
+import gov.aps.jca.dbr.Severity;
+import gov.aps.jca.dbr.Status;
+
+/**
+ * <p>Tests {@link SummaryAggregator} against {@link ValueHolder#toSummaryBit(ValueHolder[], boolean[])}.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class SummaryAggregatorTest {
+
+	private static final Severity[] SEVERITIES= {Severity.NO_ALARM, Severity.MINOR_ALARM, Severity.MAJOR_ALARM, Severity.INVALID_ALARM};
+	private static final Status[] STATUSES= {Status.NO_ALARM, Status.HIGH_ALARM, Status.LINK_ALARM};
+
+	/**
+	 * Constructor.
+	 */
+	public SummaryAggregatorTest() {
+	}
+
+	private static ValueHolder holder(int i, int combination) {
+		Severity sev= SEVERITIES[combination%SEVERITIES.length];
+		Status st= STATUSES[(combination/SEVERITIES.length)%STATUSES.length];
+		return new ValueHolder("A:TEST:"+i, 0, sev, st, DBRType.BYTE, 0L);
+	}
+
+	private static void assertSummary(String msg, ValueHolder[] values, boolean[] disabled, SummaryAggregator aggregator) {
+		ValueHolder expected= ValueHolder.toSummaryBit(values, disabled);
+		ValueHolder actual= aggregator.toSummaryBit();
+		assertEquals(msg, expected.severity, actual.severity);
+		assertEquals(msg, expected.status, actual.status);
+		assertEquals(msg, expected.isAlarm(), actual.isAlarm());
+		assertEquals(msg, expected.severity, aggregator.getSeverity());
+		assertEquals(msg, expected.status, aggregator.getStatus());
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testAllCombinations() {
+
+		int n= 3;
+		int states= SEVERITIES.length*STATUSES.length*2;
+		int total= 1;
+		for (int i = 0; i < n; i++) {
+			total*= states;
+		}
+
+		for (int c = 0; c < total; c++) {
+			ValueHolder[] values= new ValueHolder[n];
+			boolean[] disabled= new boolean[n];
+			SummaryAggregator aggregator= new SummaryAggregator(n);
+			int k= c;
+			for (int i = 0; i < n; i++) {
+				int s= k%states;
+				k/= states;
+				values[i]= holder(i, s/2);
+				disabled[i]= s%2==1;
+				aggregator.update(i, values[i]);
+				aggregator.setDisabled(i, disabled[i]);
+			}
+			assertSummary("combination "+c, values, disabled, aggregator);
+		}
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testIncremental() {
+
+		int n= 20;
+		Random r= new Random(42);
+		ValueHolder[] values= new ValueHolder[n];
+		boolean[] disabled= new boolean[n];
+		SummaryAggregator aggregator= new SummaryAggregator(n);
+		for (int i = 0; i < n; i++) {
+			values[i]= holder(i, 0);
+			aggregator.update(i, values[i]);
+		}
+		assertSummary("initial", values, disabled, aggregator);
+
+		for (int k = 0; k < 5000; k++) {
+			int i= r.nextInt(n);
+			if (r.nextInt(4)==0) {
+				disabled[i]= !disabled[i];
+				aggregator.setDisabled(i, disabled[i]);
+			} else {
+				values[i]= holder(i, r.nextInt(SEVERITIES.length*STATUSES.length));
+				aggregator.update(i, values[i]);
+			}
+			assertSummary("change "+k, values, disabled, aggregator);
+		}
+
+		for (Severity s : SEVERITIES) {
+			int count= 0;
+			for (int i = 0; i < n; i++) {
+				if (!disabled[i] && values[i].severity==s) {
+					count++;
+				}
+			}
+			assertEquals(count, aggregator.getCount(s));
+		}
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testNoValue() {
+
+		SummaryAggregator aggregator= new SummaryAggregator(2);
+		assertEquals(Severity.NO_ALARM, aggregator.getSeverity());
+		assertEquals(Status.NO_ALARM, aggregator.getStatus());
+
+		// value, which has not been received, does not contribute to summary
+		aggregator.update(0, new ValueHolder("A:TEST:0", 0, Severity.MAJOR_ALARM, Status.HIGH_ALARM, DBRType.BYTE, 0L));
+		assertEquals(Severity.MAJOR_ALARM, aggregator.getSeverity());
+		aggregator.update(0, null);
+		assertEquals(Severity.NO_ALARM, aggregator.getSeverity());
+		assertEquals(0, aggregator.getCount(Severity.MAJOR_ALARM));
+	}
+
+}
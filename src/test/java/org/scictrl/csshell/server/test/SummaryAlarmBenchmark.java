@@ -0,0 +1,116 @@
+package org.scictrl.csshell.server.test;
+
+import java.util.Random;
+
+import org.scictrl.csshell.epics.server.SummaryAggregator;
+import org.scictrl.csshell.epics.server.ValueLinks.ValueHolder;
+
+import gov.aps.jca.dbr.DBRType;
+import gov.aps.jca.dbr.Severity;
+import gov.aps.jca.dbr.Status;
+
+/**
+ * <p>Measures summary alarm calculation after single input change, compares old full recalculation,
+ * as done by {@link org.scictrl.csshell.epics.server.processor.SummaryAlarmProcessor} with consume and
+ * {@link ValueHolder#toSummaryBit(ValueHolder[], boolean[])}, with {@link SummaryAggregator}.
+ * Results of both calculations are first checked to be equal for each change, then timed.</p>
+ *
+ * <p>Run as java application, optional arguments are number of inputs and number of changes.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class SummaryAlarmBenchmark {
+
+	private static final Severity[] SEVERITIES= {Severity.NO_ALARM, Severity.NO_ALARM, Severity.NO_ALARM, Severity.MINOR_ALARM, Severity.MAJOR_ALARM, Severity.INVALID_ALARM};
+	private static final Status[] STATUSES= {Status.HIHI_ALARM, Status.HIGH_ALARM, Status.LOW_ALARM, Status.STATE_ALARM, Status.LINK_ALARM, Status.UDF_ALARM};
+
+	/**
+	 * <p>main.</p>
+	 *
+	 * @param args args
+	 */
+	public static void main(String[] args) {
+
+		int inputs= args.length>0 ? Integer.parseInt(args[0]) : 10000;
+		int changes= args.length>1 ? Integer.parseInt(args[1]) : 10000;
+
+		Random r= new Random(42);
+
+		ValueHolder[] values= new ValueHolder[inputs];
+		boolean[] disabled= new boolean[inputs];
+		SummaryAggregator aggregator= new SummaryAggregator(inputs);
+		for (int i = 0; i < inputs; i++) {
+			values[i]= new ValueHolder("A:TEST:"+i, 0, Severity.NO_ALARM, Status.NO_ALARM, DBRType.BYTE, 0L);
+			aggregator.update(i, values[i]);
+			if (i%100==0) {
+				disabled[i]=true;
+				aggregator.setDisabled(i, true);
+			}
+		}
+
+		int[] index= new int[changes];
+		ValueHolder[] change= new ValueHolder[changes];
+		for (int k = 0; k < changes; k++) {
+			index[k]= r.nextInt(inputs);
+			Severity sev= SEVERITIES[r.nextInt(SEVERITIES.length)];
+			// alarms are rare, most changes clear alarm
+			if (r.nextInt(10)>0) {
+				sev= Severity.NO_ALARM;
+			}
+			change[k]= new ValueHolder("A:TEST:"+index[k], 0, sev, sev==Severity.NO_ALARM ? Status.NO_ALARM : STATUSES[r.nextInt(STATUSES.length)], DBRType.BYTE, k);
+		}
+
+		for (int k = 0; k < changes; k++) {
+			values[index[k]]= change[k];
+			aggregator.update(index[k], change[k]);
+			ValueHolder a= legacy(values, disabled);
+			ValueHolder b= aggregator.toSummaryBit();
+			if (a.severity!=b.severity || a.status!=b.status) {
+				throw new IllegalStateException("Summary after change "+k+" differs, full "+a+", incremental "+b);
+			}
+		}
+
+		// warm up
+		long sink= 0;
+		for (int w = 0; w < 3; w++) {
+			for (int k = 0; k < changes; k++) {
+				values[index[k]]= change[k];
+				sink+= legacy(values, disabled).severity.getValue();
+				aggregator.update(index[k], change[k]);
+				sink+= aggregator.toSummaryBit().severity.getValue();
+			}
+		}
+
+		long t0= System.nanoTime();
+		for (int k = 0; k < changes; k++) {
+			values[index[k]]= change[k];
+			sink+= legacy(values, disabled).severity.getValue();
+		}
+		long t1= System.nanoTime();
+		for (int k = 0; k < changes; k++) {
+			aggregator.update(index[k], change[k]);
+			sink+= aggregator.toSummaryBit().severity.getValue();
+		}
+		long t2= System.nanoTime();
+
+		System.out.println(inputs+" inputs, "+changes+" changes, final "+aggregator.toSummaryBit());
+		System.out.println("full:        "+((t1-t0)/changes)+" ns/change");
+		System.out.println("incremental: "+((t2-t1)/changes)+" ns/change");
+		System.out.println(sink);
+	}
+
+	/**
+	 * Same steps as old summary calculation, copy of values, disable array and full scan.
+	 */
+	private static ValueHolder legacy(ValueHolder[] values, boolean[] disabled) {
+		ValueHolder[] vh= new ValueHolder[values.length];
+		System.arraycopy(values, 0, vh, 0, vh.length);
+		boolean[] d= new boolean[vh.length];
+		System.arraycopy(disabled, 0, d, 0, d.length);
+		return ValueHolder.toSummaryBit(vh, d);
+	}
+
+	private SummaryAlarmBenchmark() {
+	}
+
+}
@@ -0,0 +1,19 @@
+package org.scictrl.csshell.test;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runners.Suite.SuiteClasses;
+
+/**
+ * <p>AllTests class.</p>
+ *
+ * @author igor@scictrl.com
+ */
+@RunWith(Suite.class)
+@SuiteClasses({ SubstringMatcherTest.class })
+public class AllTests {
+
+	private AllTests() {
+	}
+
+}
@@ -0,0 +1,157 @@
+package org.scictrl.csshell.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.scictrl.csshell.SubstringMatcher;
+
+/**
+ * <p>Tests {@link SubstringMatcher} against linear {@link String#contains(CharSequence)} scan over patterns in registration order.</p>
+ *
+ * @author igor@scictrl.com
+ */
+public class SubstringMatcherTest {
+
+	/**
+	 * Constructor.
+	 */
+	public SubstringMatcherTest() {
+	}
+
+	/**
+	 * Returns first pattern contained in text, as linear scan did before {@link SubstringMatcher}.
+	 */
+	private static String linear(List<String> patterns, String text) {
+		for (String p : patterns) {
+			if (text.contains(p)) {
+				return p;
+			}
+		}
+		return null;
+	}
+
+	private static SubstringMatcher<String> matcher(List<String> patterns) {
+		SubstringMatcher<String> m= new SubstringMatcher<String>();
+		for (String p : patterns) {
+			m.put(p, p);
+		}
+		return m;
+	}
+
+	private static void assertMatches(List<String> patterns, String... texts) {
+		SubstringMatcher<String> m= matcher(patterns);
+		for (String t : texts) {
+			assertEquals(patterns+" in '"+t+"'", linear(patterns, t), m.match(t));
+		}
+	}
+
+	private static List<String> list(String... patterns) {
+		List<String> l= new ArrayList<String>(patterns.length);
+		for (String p : patterns) {
+			l.add(p);
+		}
+		return l;
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testEmpty() {
+		SubstringMatcher<String> m= new SubstringMatcher<String>();
+		assertEquals(0, m.size());
+		assertNull(m.match(""));
+		assertNull(m.match("A:TEST:01"));
+
+		// empty pattern is contained in any text
+		assertMatches(list(""), "", "A:TEST:01");
+		assertMatches(list("TEST", ""), "", "A:TEST:01", "B:01");
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testOverlapping() {
+		String[] texts= {"abcd", "xabcdx", "abc", "bcd", "ab", "cd", "", "aabbccdd", "abcabcd"};
+		assertMatches(list("abc", "bcd"), texts);
+		assertMatches(list("bcd", "abc"), texts);
+		assertMatches(list("ab", "bc", "cd", "abcd"), texts);
+		assertMatches(list("aa", "aaa", "a"), "a", "aa", "aaa", "baaab", "b");
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testSuffix() {
+		String[] texts= {"abcd", "xcd", "cd", "abc", "xabcdx", "d", "bcdcd"};
+		assertMatches(list("abcd", "cd"), texts);
+		assertMatches(list("cd", "abcd"), texts);
+		assertMatches(list("abcd", "bcd", "cd", "d"), texts);
+		assertMatches(list("d", "cd", "bcd", "abcd"), texts);
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testNonAscii() {
+		String[] texts= {"Straße", "Grüße", "GRÜSSE", "日本語", "本", "Ω:TEST:µA", "µ", "emoji 😀 text", "😁"};
+		assertMatches(list("ß", "Grüße", "日本", "本語", "µA", "😀"), texts);
+		assertMatches(list("本語", "日本", "Grüße", "ß", "\uD83D", "µ"), texts);
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testReplace() {
+		SubstringMatcher<String> m= matcher(list("abc", "bc"));
+		assertEquals("abc", m.match("xabc"));
+		// replaced value keeps registration order
+		m.put("abc", "new");
+		assertEquals(2, m.size());
+		assertEquals("new", m.get("abc"));
+		assertEquals("new", m.match("xabc"));
+		assertEquals("bc", m.match("xbc"));
+	}
+
+	/**
+	 * Test.
+	 */
+	@Test
+	public void testRandom() {
+		Random r= new Random(42);
+		String alphabet= "abcä:";
+		for (int k = 0; k < 200; k++) {
+			List<String> patterns= new ArrayList<String>();
+			int n= r.nextInt(8);
+			for (int i = 0; i < n; i++) {
+				String p= random(r, alphabet, 1+r.nextInt(4));
+				if (!patterns.contains(p)) {
+					patterns.add(p);
+				}
+			}
+			SubstringMatcher<String> m= matcher(patterns);
+			for (int i = 0; i < 20; i++) {
+				String t= random(r, alphabet, r.nextInt(12));
+				assertEquals(patterns+" in '"+t+"'", linear(patterns, t), m.match(t));
+			}
+		}
+	}
+
+	private static String random(Random r, String alphabet, int length) {
+		StringBuilder sb= new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			sb.append(alphabet.charAt(r.nextInt(alphabet.length())));
+		}
+		return sb.toString();
+	}
+
+}